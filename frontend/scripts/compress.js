@@ -0,0 +1,48 @@
+// Writes a .br and a .gz sibling next to each compressible file in build/,
+// e.g. build/static/js/main.1a2b3c4d.js.br.  Run by npm after "npm run build"
+// (the "postbuild" script); the backend serves the siblings to clients that
+// accept them (see StaticResourceConfig.java).  Only node's own zlib is used.
+
+const fs = require("fs");
+const path = require("path");
+const zlib = require("zlib");
+
+const BUILD_DIR = path.join(__dirname, "..", "build");
+// index.html is left out: FrontendController serves it from memory
+const EXTENSIONS = [".js", ".css", ".json", ".svg", ".txt", ".ico", ".map"];
+// below this size the headers cost more than compression saves
+const MIN_SIZE = 1024;
+
+function files(dir) {
+  return fs.readdirSync(dir, { withFileTypes: true }).flatMap((entry) => {
+    const file = path.join(dir, entry.name);
+    return entry.isDirectory() ? files(file) : [file];
+  });
+}
+
+function compress(file) {
+  const content = fs.readFileSync(file);
+  const br = zlib.brotliCompressSync(content, {
+    params: {
+      [zlib.constants.BROTLI_PARAM_QUALITY]: zlib.constants.BROTLI_MAX_QUALITY,
+      [zlib.constants.BROTLI_PARAM_SIZE_HINT]: content.length,
+    },
+  });
+  const gz = zlib.gzipSync(content, { level: zlib.constants.Z_BEST_COMPRESSION });
+  // a sibling that is not smaller is not worth sending
+  if (br.length < content.length) fs.writeFileSync(file + ".br", br);
+  if (gz.length < content.length) fs.writeFileSync(file + ".gz", gz);
+  return { original: content.length, br: br.length, gz: gz.length };
+}
+
+let original = 0, br = 0, gz = 0;
+files(BUILD_DIR)
+  .filter((file) => EXTENSIONS.includes(path.extname(file)))
+  .filter((file) => fs.statSync(file).size >= MIN_SIZE)
+  .forEach((file) => {
+    const sizes = compress(file);
+    original += sizes.original;
+    br += sizes.br;
+    gz += sizes.gz;
+  });
+console.log(`Compressed ${original} bytes of the build to ${br} (br) and ${gz} (gzip)`);
@@ -0,0 +1,60 @@
+package edu.ucsb.cs156.example.benchmarks;
+
+import java.util.UUID;
+
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+
+import edu.ucsb.cs156.example.config.AsyncHandlerConfig;
+import edu.ucsb.cs156.example.config.HibernateCacheConfig;
+import edu.ucsb.cs156.example.services.CurrentUserServiceImpl;
+import edu.ucsb.cs156.example.services.EntityExportServiceImpl;
+import edu.ucsb.cs156.example.services.GrantedAuthoritiesService;
+import edu.ucsb.cs156.example.services.InMemorySearchServiceImpl;
+import edu.ucsb.cs156.example.services.SystemInfoServiceImpl;
+
+/**
+ * The parts of ExampleApplication the benchmarks need: the repositories,
+ * caches (including the Hibernate second-level cache) and services, on
+ * an in-memory H2 database built by the Flyway migrations.  There is no
+ * component scan, so the mock services in the test sources stay out of
+ * the context, and no web server.  Controllers
+ * are created by the benchmarks themselves with create(), which wires
+ * them and wraps them in their @Transactional proxies (there is no
+ * method security, so @PreAuthorize is not checked).
+ */
+@SpringBootConfiguration
+@EnableAutoConfiguration
+@EnableCaching
+@EntityScan("edu.ucsb.cs156.example.entities")
+@EnableJpaRepositories("edu.ucsb.cs156.example.repositories")
+@Import({ HibernateCacheConfig.class, AsyncHandlerConfig.class, CurrentUserServiceImpl.class, GrantedAuthoritiesService.class, EntityExportServiceImpl.class,
+    InMemorySearchServiceImpl.class, SystemInfoServiceImpl.class })
+public class BenchmarkApplication {
+  public static final String ADMIN_EMAIL = "admin@ucsb.edu";
+
+  public static ConfigurableApplicationContext start() {
+    return new SpringApplicationBuilder(BenchmarkApplication.class)
+        .web(WebApplicationType.NONE)
+        .run(
+            "--spring.datasource.url=jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1",
+            "--spring.jpa.show-sql=false",
+            "--spring.main.banner-mode=off",
+            "--logging.level.root=WARN",
+            "--logging.level.sql=WARN",
+            "--logging.level.edu.ucsb.cs156=WARN",
+            "--logging.level.org.hibernate.type.descriptor.sql.BasicBinder=WARN",
+            "--app.admin.emails=" + ADMIN_EMAIL);
+  }
+
+  public static <T> T create(ConfigurableApplicationContext context, Class<T> beanClass) {
+    return context.getAutowireCapableBeanFactory().createBean(beanClass);
+  }
+}
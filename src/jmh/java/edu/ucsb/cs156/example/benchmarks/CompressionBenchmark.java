@@ -0,0 +1,83 @@
+package edu.ucsb.cs156.example.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import edu.ucsb.cs156.example.entities.Restaurant;
+
+/**
+ * The cost of gzipping an /all page of restaurants, as Tomcat does when
+ * server.compression.enabled is on, against the size it saves.  No
+ * database or Spring context: the page is built in memory and serialized
+ * with Spring's default ObjectMapper.  The sizes are printed by setup.
+ *
+ * Tomcat always uses the default deflate level (6); 1 and 9 are here to
+ * show what the other ends of the trade-off would cost.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class CompressionBenchmark {
+
+  @Param({ "10", "100", "1000" })
+  int rows;
+
+  @Param({ "1", "6", "9" })
+  int level;
+
+  byte[] json;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    List<Restaurant> restaurants = new ArrayList<>(rows);
+    for (int i = 0; i < rows; i++) {
+      restaurants.add(Restaurant.builder().id(i + 1).name("Restaurant " + i).cuisine("Cuisine " + (i % 20))
+          .roachCounter(i % 7).version(0L).build());
+    }
+    json = Jackson2ObjectMapperBuilder.json().build().writeValueAsBytes(restaurants);
+    System.out.printf("%n%d restaurants: %d bytes of JSON, %d bytes gzipped at level %d%n",
+        rows, json.length, gzip().length, level);
+  }
+
+  // the baseline: what it costs to send the bytes as they are
+  @Benchmark
+  public byte[] identity() {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(json.length);
+    out.writeBytes(json);
+    return out.toByteArray();
+  }
+
+  @Benchmark
+  public byte[] gzip() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(json.length / 4);
+    try (GZIPOutputStream gzip = new GZIPOutputStream(out) {
+      {
+        def.setLevel(level);
+      }
+    }) {
+      gzip.write(json);
+    }
+    return out.toByteArray();
+  }
+}
@@ -0,0 +1,107 @@
+package edu.ucsb.cs156.example.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+import org.springframework.security.oauth2.core.user.DefaultOAuth2User;
+
+import edu.ucsb.cs156.example.entities.User;
+import edu.ucsb.cs156.example.models.CurrentUser;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.CurrentUserService;
+import edu.ucsb.cs156.example.services.GrantedAuthoritiesService;
+
+/**
+ * The per-request user lookups: CurrentUserServiceImpl.getCurrentUser and
+ * GrantedAuthoritiesService.getAdmin, with the users table at a range of
+ * sizes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class CurrentUserBenchmark {
+
+  @Param({ "100", "1000", "10000" })
+  int tableSize;
+
+  ConfigurableApplicationContext context;
+  CurrentUserService currentUserService;
+  GrantedAuthoritiesService grantedAuthoritiesService;
+
+  private static String email(int i) {
+    return "user%d@ucsb.edu".formatted(i);
+  }
+
+  @Setup(Level.Trial)
+  public void setup() {
+    context = BenchmarkApplication.start();
+    currentUserService = context.getBean(CurrentUserService.class);
+    grantedAuthoritiesService = context.getBean(GrantedAuthoritiesService.class);
+
+    List<User> users = new ArrayList<>(tableSize);
+    for (int i = 0; i < tableSize; i++) {
+      users.add(User.builder().email(email(i)).googleSub("sub-" + i).fullName("User " + i).admin(i % 10 == 0).build());
+    }
+    context.getBean(UserRepository.class).saveAll(users);
+
+    // the benchmark threads are not the one running setup
+    SecurityContextHolder.setStrategyName(SecurityContextHolder.MODE_GLOBAL);
+    Map<String, Object> attributes = Map.of(
+        "sub", "sub-1",
+        "email", email(1),
+        "name", "User 1",
+        "email_verified", true);
+    DefaultOAuth2User principal = new DefaultOAuth2User(Set.of(new SimpleGrantedAuthority("ROLE_USER")), attributes, "sub");
+    SecurityContextHolder.getContext().setAuthentication(
+        new OAuth2AuthenticationToken(principal, principal.getAuthorities(), "google"));
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    SecurityContextHolder.clearContext();
+    context.close();
+  }
+
+  @Benchmark
+  public CurrentUser getCurrentUser() {
+    return currentUserService.getCurrentUser();
+  }
+
+  @Benchmark
+  public boolean getAdminFromAdminEmails() {
+    return grantedAuthoritiesService.getAdmin(BenchmarkApplication.ADMIN_EMAIL);
+  }
+
+  @Benchmark
+  public boolean getAdminFromDatabase() {
+    return grantedAuthoritiesService.getAdmin(email(tableSize / 2));
+  }
+
+  @Benchmark
+  public boolean getAdminUnknownUser() {
+    return grantedAuthoritiesService.getAdmin("nobody@ucsb.edu");
+  }
+}
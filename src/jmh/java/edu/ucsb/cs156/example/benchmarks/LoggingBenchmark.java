@@ -0,0 +1,193 @@
+package edu.ucsb.cs156.example.benchmarks;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.LoggerFactory;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+import org.springframework.security.oauth2.core.user.DefaultOAuth2User;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.FileAppender;
+import edu.ucsb.cs156.example.aop.ControllerMetricsAspect;
+import edu.ucsb.cs156.example.controllers.SystemInfoController;
+import edu.ucsb.cs156.example.controllers.UserInfoController;
+import edu.ucsb.cs156.example.entities.User;
+import edu.ucsb.cs156.example.models.CurrentUser;
+import edu.ucsb.cs156.example.models.SystemInfo;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.logstash.logback.appender.LoggingEventAsyncDisruptorAppender;
+import net.logstash.logback.encoder.LogstashEncoder;
+
+/**
+ * What logging costs GET /api/currentUser and GET /api/systemInfo: their
+ * controllers, wrapped in ControllerMetricsAspect, are called directly,
+ * and the log goes to target/logging-benchmark.log.
+ *
+ * <ul>
+ * <li>off: nothing is logged, for comparison</li>
+ * <li>before: the services' per-request statements at INFO, as they were
+ * (their loggers at DEBUG here, which logs the same lines), written as
+ * text by the calling thread</li>
+ * <li>after: as in production now: INFO, written as JSON through the ring
+ * buffer (logback-spring.xml), with 1 request in 100 in the request log</li>
+ * <li>afterEveryRequest: the same, with every request in the request log</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class LoggingBenchmark {
+
+  static final String LOG_FILE = "target/logging-benchmark.log";
+
+  @Param({ "off", "before", "after", "afterEveryRequest" })
+  String logging;
+
+  ConfigurableApplicationContext context;
+  Appender<ILoggingEvent> appender;
+  UserInfoController userInfoController;
+  SystemInfoController systemInfoController;
+  ServletRequestAttributes currentUserRequest;
+  ServletRequestAttributes systemInfoRequest;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    context = BenchmarkApplication.start();
+
+    double requestSampleRate = switch (logging) {
+      case "after" -> 0.01;
+      case "afterEveryRequest" -> 1.0;
+      default -> 0;
+    };
+    ControllerMetricsAspect aspect = new ControllerMetricsAspect(new SimpleMeterRegistry(), requestSampleRate);
+    userInfoController = proxy(BenchmarkApplication.create(context, UserInfoController.class), aspect);
+    systemInfoController = proxy(BenchmarkApplication.create(context, SystemInfoController.class), aspect);
+    currentUserRequest = new ServletRequestAttributes(new MockHttpServletRequest("GET", "/api/currentUser"));
+    systemInfoRequest = new ServletRequestAttributes(new MockHttpServletRequest("GET", "/api/systemInfo"));
+
+    // set up after the context has started, which configures logging
+    LoggerContext loggerContext = (LoggerContext) LoggerFactory.getILoggerFactory();
+    Logger root = loggerContext.getLogger(Logger.ROOT_LOGGER_NAME);
+    root.detachAndStopAllAppenders();
+    switch (logging) {
+      case "before" -> {
+        appender = textAppender(loggerContext);
+        loggerContext.getLogger("edu.ucsb.cs156").setLevel(ch.qos.logback.classic.Level.INFO);
+        loggerContext.getLogger("edu.ucsb.cs156.example.services").setLevel(ch.qos.logback.classic.Level.DEBUG);
+      }
+      case "after", "afterEveryRequest" -> {
+        appender = jsonAppender(loggerContext);
+        loggerContext.getLogger("edu.ucsb.cs156").setLevel(ch.qos.logback.classic.Level.INFO);
+      }
+      default -> loggerContext.getLogger("edu.ucsb.cs156").setLevel(ch.qos.logback.classic.Level.OFF);
+    }
+    if (appender != null) {
+      root.addAppender(appender);
+    }
+
+    context.getBean(UserRepository.class).save(
+        User.builder().email("user@ucsb.edu").googleSub("sub-1").fullName("User 1").build());
+    // the benchmark threads are not the one running setup
+    SecurityContextHolder.setStrategyName(SecurityContextHolder.MODE_GLOBAL);
+    Map<String, Object> attributes = Map.of(
+        "sub", "sub-1",
+        "email", "user@ucsb.edu",
+        "name", "User 1",
+        "email_verified", true);
+    DefaultOAuth2User principal = new DefaultOAuth2User(Set.of(new SimpleGrantedAuthority("ROLE_USER")), attributes, "sub");
+    SecurityContextHolder.getContext().setAuthentication(
+        new OAuth2AuthenticationToken(principal, principal.getAuthorities(), "google"));
+  }
+
+  private static <T> T proxy(T controller, ControllerMetricsAspect aspect) {
+    AspectJProxyFactory factory = new AspectJProxyFactory(controller);
+    factory.setProxyTargetClass(true);
+    factory.addAspect(aspect);
+    return factory.getProxy();
+  }
+
+  private static Appender<ILoggingEvent> textAppender(LoggerContext loggerContext) {
+    PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+    encoder.setContext(loggerContext);
+    // Spring Boot's console pattern, without the colors
+    encoder.setPattern("%d{yyyy-MM-dd HH:mm:ss.SSS} %5p --- [%15.15t] %-40.40logger{39} : %m%n");
+    encoder.start();
+    FileAppender<ILoggingEvent> file = new FileAppender<>();
+    file.setContext(loggerContext);
+    file.setFile(LOG_FILE);
+    file.setAppend(false);
+    file.setEncoder(encoder);
+    file.start();
+    return file;
+  }
+
+  private static Appender<ILoggingEvent> jsonAppender(LoggerContext loggerContext) {
+    LogstashEncoder encoder = new LogstashEncoder();
+    encoder.setContext(loggerContext);
+    encoder.start();
+    FileAppender<ILoggingEvent> file = new FileAppender<>();
+    file.setContext(loggerContext);
+    file.setFile(LOG_FILE);
+    file.setAppend(false);
+    file.setEncoder(encoder);
+    file.setImmediateFlush(false);
+    file.start();
+    LoggingEventAsyncDisruptorAppender async = new LoggingEventAsyncDisruptorAppender();
+    async.setContext(loggerContext);
+    async.setRingBufferSize(8192);
+    async.addAppender(file);
+    async.start();
+    return async;
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    if (appender != null) {
+      appender.stop();
+    }
+    SecurityContextHolder.clearContext();
+    context.close();
+  }
+
+  @Benchmark
+  public CurrentUser currentUser() {
+    RequestContextHolder.setRequestAttributes(currentUserRequest);
+    return userInfoController.getCurrentUser();
+  }
+
+  @Benchmark
+  public SystemInfo systemInfo() {
+    RequestContextHolder.setRequestAttributes(systemInfoRequest);
+    return systemInfoController.getSystemInfo();
+  }
+}
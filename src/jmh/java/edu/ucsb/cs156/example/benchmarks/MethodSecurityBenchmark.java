@@ -0,0 +1,179 @@
+package edu.ucsb.cs156.example.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.access.AccessDecisionVoter;
+import org.springframework.security.access.expression.method.DefaultMethodSecurityExpressionHandler;
+import org.springframework.security.access.expression.method.ExpressionBasedAnnotationAttributeFactory;
+import org.springframework.security.access.expression.method.ExpressionBasedPreInvocationAdvice;
+import org.springframework.security.access.expression.method.MethodSecurityExpressionHandler;
+import org.springframework.security.access.intercept.aopalliance.MethodSecurityInterceptor;
+import org.springframework.security.access.method.DelegatingMethodSecurityMetadataSource;
+import org.springframework.security.access.method.MethodSecurityMetadataSource;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.access.prepost.PreInvocationAuthorizationAdviceVoter;
+import org.springframework.security.access.prepost.PrePostAnnotationSecurityMetadataSource;
+import org.springframework.security.access.vote.AffirmativeBased;
+import org.springframework.security.access.vote.AuthenticatedVoter;
+import org.springframework.security.access.vote.RoleVoter;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+import org.springframework.security.oauth2.core.user.DefaultOAuth2User;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import edu.ucsb.cs156.example.config.RoleSetMethodSecurityExpressionHandler;
+import edu.ucsb.cs156.example.config.RoleSetMethodSecurityMetadataSource;
+import edu.ucsb.cs156.example.config.RoleSetVoter;
+import edu.ucsb.cs156.example.services.GrantedAuthoritiesService;
+
+/**
+ * What @PreAuthorize costs per call: methods that do nothing, behind a
+ * MethodSecurityInterceptor set up as MethodSecurityConfig sets it up,
+ * called by a logged in user whose authorities are kept in their session.
+ *
+ * <ul>
+ * <li>spel: Spring Security's defaults, every expression evaluated by
+ * SpEL with the roles looked up in the user's authorities</li>
+ * <li>roleSetSpel: the same, with the role checks read from the RoleSet
+ * (RoleSetMethodSecurityExpressionHandler)</li>
+ * <li>precompiled: as now: the expressions that only check for roles
+ * compiled at startup (RoleSetMethodSecurityMetadataSource, RoleSetVoter),
+ * the others as in roleSetSpel</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class MethodSecurityBenchmark {
+
+  @Param({ "spel", "roleSetSpel", "precompiled" })
+  String check;
+
+  public static class Secured {
+    @PreAuthorize("hasRole('ROLE_USER')")
+    public long hasRole(long id) {
+      return id;
+    }
+
+    @PreAuthorize("hasAnyRole('ROLE_MEMBER', 'ROLE_ADMIN')")
+    public long hasAnyRole(long id) {
+      return id;
+    }
+
+    @PreAuthorize("hasRole('ROLE_USER') and #id > 0")
+    public long expression(long id) {
+      return id;
+    }
+
+    public long unsecured(long id) {
+      return id;
+    }
+  }
+
+  ConfigurableApplicationContext context;
+  Secured secured;
+  ServletRequestAttributes request;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    context = BenchmarkApplication.start();
+
+    MethodSecurityExpressionHandler expressionHandler = check.equals("spel")
+        ? new DefaultMethodSecurityExpressionHandler()
+        : new RoleSetMethodSecurityExpressionHandler(context.getBeanProvider(GrantedAuthoritiesService.class));
+    ExpressionBasedPreInvocationAdvice advice = new ExpressionBasedPreInvocationAdvice();
+    advice.setExpressionHandler(expressionHandler);
+
+    List<MethodSecurityMetadataSource> sources = new ArrayList<>();
+    List<AccessDecisionVoter<?>> voters = new ArrayList<>();
+    if (check.equals("precompiled")) {
+      sources.add(new RoleSetMethodSecurityMetadataSource());
+      voters.add(new RoleSetVoter(context.getBeanProvider(GrantedAuthoritiesService.class)));
+    }
+    sources.add(new PrePostAnnotationSecurityMetadataSource(new ExpressionBasedAnnotationAttributeFactory(expressionHandler)));
+    voters.add(new PreInvocationAuthorizationAdviceVoter(advice));
+    voters.add(new RoleVoter());
+    voters.add(new AuthenticatedVoter());
+
+    MethodSecurityInterceptor interceptor = new MethodSecurityInterceptor();
+    interceptor.setSecurityMetadataSource(new DelegatingMethodSecurityMetadataSource(sources));
+    interceptor.setAccessDecisionManager(new AffirmativeBased(voters));
+    interceptor.setAuthenticationManager(authentication -> authentication);
+    interceptor.afterPropertiesSet();
+    ProxyFactory factory = new ProxyFactory(new Secured());
+    factory.setProxyTargetClass(true);
+    factory.addAdvice(interceptor);
+    secured = (Secured) factory.getProxy();
+
+    MockHttpServletRequest servletRequest = new MockHttpServletRequest("GET", "/api/restaurants");
+    servletRequest.getSession(true);
+    request = new ServletRequestAttributes(servletRequest);
+
+    // the benchmark threads are not the one running setup
+    SecurityContextHolder.setStrategyName(SecurityContextHolder.MODE_GLOBAL);
+    Map<String, Object> attributes = Map.of(
+        "sub", "sub-1",
+        "email", "user@ucsb.edu",
+        "name", "User 1",
+        "email_verified", true);
+    DefaultOAuth2User principal = new DefaultOAuth2User(
+        Set.of(new SimpleGrantedAuthority("ROLE_USER"), new SimpleGrantedAuthority("ROLE_MEMBER")), attributes, "sub");
+    SecurityContextHolder.getContext().setAuthentication(
+        new OAuth2AuthenticationToken(principal, principal.getAuthorities(), "google"));
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    SecurityContextHolder.clearContext();
+    context.close();
+  }
+
+  @Benchmark
+  public long hasRole() {
+    RequestContextHolder.setRequestAttributes(request);
+    return secured.hasRole(1);
+  }
+
+  @Benchmark
+  public long hasAnyRole() {
+    RequestContextHolder.setRequestAttributes(request);
+    return secured.hasAnyRole(1);
+  }
+
+  @Benchmark
+  public long expression() {
+    RequestContextHolder.setRequestAttributes(request);
+    return secured.expression(1);
+  }
+
+  @Benchmark
+  public long unsecured() {
+    RequestContextHolder.setRequestAttributes(request);
+    return secured.unsecured(1);
+  }
+}
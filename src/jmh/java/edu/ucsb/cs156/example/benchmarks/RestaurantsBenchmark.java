@@ -0,0 +1,122 @@
+package edu.ucsb.cs156.example.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import edu.ucsb.cs156.example.controllers.RestaurantsController;
+import edu.ucsb.cs156.example.entities.Restaurant;
+import edu.ucsb.cs156.example.repositories.RestaurantRepository;
+
+/**
+ * RestaurantsController against H2: the /all listing (query plus JSON),
+ * a conditional GET of it that is not modified, and the single row CRUD
+ * endpoints, for a range of table sizes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class RestaurantsBenchmark {
+
+  @Param({ "100", "1000", "10000" })
+  int tableSize;
+
+  ConfigurableApplicationContext context;
+  RestaurantsController controller;
+  ObjectMapper mapper;
+  long firstId;
+  List<Restaurant> page;
+  String etag;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    context = BenchmarkApplication.start();
+    controller = BenchmarkApplication.create(context, RestaurantsController.class);
+    mapper = context.getBean(ObjectMapper.class);
+
+    List<Restaurant> restaurants = new ArrayList<>(tableSize);
+    for (int i = 0; i < tableSize; i++) {
+      restaurants.add(Restaurant.builder().name("Restaurant " + i).cuisine("Cuisine " + (i % 20)).roachCounter(i % 7).build());
+    }
+    context.getBean(RestaurantRepository.class).saveAll(restaurants);
+    firstId = restaurants.get(0).getId();
+    ServletWebRequest first = request();
+    page = controller.allRestaurants(0L, 1000, first).getBody();
+    etag = first.getResponse().getHeader("ETag");
+  }
+
+  private static ServletWebRequest request() {
+    return new ServletWebRequest(new MockHttpServletRequest("GET", "/api/restaurants/all"), new MockHttpServletResponse());
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    context.close();
+  }
+
+  private long randomId() {
+    return firstId + ThreadLocalRandom.current().nextInt(tableSize);
+  }
+
+  @Benchmark
+  public byte[] allRestaurants() throws JsonProcessingException {
+    return mapper.writeValueAsBytes(controller.allRestaurants(0L, 1000, request()).getBody());
+  }
+
+  // a client polling with the ETag of the current version: 304, no query
+  @Benchmark
+  public Object allRestaurantsNotModified() {
+    ServletWebRequest request = request();
+    ((MockHttpServletRequest) request.getRequest()).addHeader("If-None-Match", etag);
+    return controller.allRestaurants(0L, 1000, request);
+  }
+
+  // JSON only, for the same (first) page
+  @Benchmark
+  public byte[] serializeAllRestaurants() throws JsonProcessingException {
+    return mapper.writeValueAsBytes(page);
+  }
+
+  @Benchmark
+  public Restaurant getById() {
+    return controller.getById(randomId());
+  }
+
+  @Benchmark
+  public Restaurant updateRestaurant() {
+    Restaurant incoming = Restaurant.builder().name("Updated").cuisine("Mexican").roachCounter(1).build();
+    return controller.updateRestaurant(randomId(), incoming);
+  }
+
+  // create and delete together, so the table stays the same size
+  @Benchmark
+  public Object postThenDeleteRestaurant() throws JsonProcessingException {
+    Restaurant created = controller.postRestaurant("New", "Thai", 0);
+    return controller.deleteRestaurant(created.getId());
+  }
+}
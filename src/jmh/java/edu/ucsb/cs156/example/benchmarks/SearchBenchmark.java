@@ -0,0 +1,93 @@
+package edu.ucsb.cs156.example.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+
+import edu.ucsb.cs156.example.models.SearchHit;
+import edu.ucsb.cs156.example.services.SearchIndex;
+import edu.ucsb.cs156.example.services.SearchService;
+
+/**
+ * First pages of /api/search from the in-memory SearchIndex, over
+ * synthetic restaurants, parks and schools named from small word lists,
+ * so that common words match many documents (as "park" or "mexican"
+ * would).  No database or Spring context.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class SearchBenchmark {
+
+  static final String[] ADJECTIVES = { "golden", "happy", "royal", "little", "coastal", "sunny", "hidden", "grand",
+      "rustic", "urban", "silver", "lucky", "quiet", "wild", "ancient", "modern" };
+  static final String[] NOUNS = { "dragon", "garden", "harbor", "canyon", "meadow", "lantern", "kitchen", "valley",
+      "summit", "orchard", "bridge", "falcon", "island", "forest", "village", "palace" };
+  static final String[] DETAILS = { "mexican", "italian", "thai", "california", "utah", "nevada", "goleta unified",
+      "santa barbara unified", "french", "japanese", "oregon", "arizona" };
+  static final String[] TYPES = { SearchService.RESTAURANT, SearchService.PARK, SearchService.SCHOOL };
+
+  @Param({ "100000", "1000000" })
+  int documents;
+
+  SearchIndex index;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    Random random = new Random(156);
+    index = new SearchIndex();
+    for (int i = 0; i < documents; i++) {
+      String name = "%s %s %d".formatted(ADJECTIVES[random.nextInt(ADJECTIVES.length)],
+          NOUNS[random.nextInt(NOUNS.length)], random.nextInt(1000));
+      index.update(new SearchHit(TYPES[i % 3], i, name, DETAILS[random.nextInt(DETAILS.length)], 0));
+    }
+    System.out.printf("%n%d documents: \"golden dragon\" matches %d%n", documents,
+        index.search("golden dragon", PageRequest.of(0, 20)).getTotalElements());
+  }
+
+  // a rare word: a number
+  @Benchmark
+  public Page<SearchHit> exactRare() {
+    return index.search("417", PageRequest.of(0, 20));
+  }
+
+  // a common word, in 1/16 of the names
+  @Benchmark
+  public Page<SearchHit> exactCommon() {
+    return index.search("dragon", PageRequest.of(0, 20));
+  }
+
+  // as typed: a common word and the start of another
+  @Benchmark
+  public Page<SearchHit> prefix() {
+    return index.search("golden dra", PageRequest.of(0, 20));
+  }
+
+  @Benchmark
+  public Page<SearchHit> typo() {
+    return index.search("golden dargon", PageRequest.of(0, 20));
+  }
+
+  // the worst case: a word in the detail of 1/12 of the documents
+  @Benchmark
+  public Page<SearchHit> detail() {
+    return index.search("mexican", PageRequest.of(0, 20));
+  }
+}
@@ -0,0 +1,39 @@
+package db.migration;
+
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+
+/**
+ * Creates the sequences the entities now take their ids from, in place of
+ * identity columns, so that Hibernate can batch inserts.
+ *
+ * Hibernate's pooled optimizer reserves ids in blocks of 50 and treats
+ * each value read from the sequence as the top of the next block, so each
+ * sequence increments by 50 and starts 50 past the largest id already in
+ * its table.  The start value depends on the data, which plain SQL cannot
+ * express in a way that works on both H2 and PostgreSQL, hence a Java
+ * migration.
+ */
+public class V6__Use_pooled_sequences_for_ids extends BaseJavaMigration {
+  static final int ALLOCATION_SIZE = 50;
+
+  static final String[] TABLES = { "users", "restaurants", "parks", "schools", "ucsbdates" };
+
+  @Override
+  public void migrate(Context context) throws Exception {
+    try (Statement statement = context.getConnection().createStatement()) {
+      for (String table : TABLES) {
+        long maxId;
+        try (ResultSet rs = statement.executeQuery("SELECT COALESCE(MAX(id), 0) FROM " + table)) {
+          rs.next();
+          maxId = rs.getLong(1);
+        }
+        statement.execute("CREATE SEQUENCE %s_seq START WITH %d INCREMENT BY %d"
+            .formatted(table, maxId + ALLOCATION_SIZE, ALLOCATION_SIZE));
+      }
+    }
+  }
+}
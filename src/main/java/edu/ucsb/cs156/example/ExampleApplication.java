@@ -2,8 +2,10 @@ package edu.ucsb.cs156.example;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.cache.annotation.EnableCaching;
 
 @SpringBootApplication
+@EnableCaching
 public class ExampleApplication {
 
   public static void main(String[] args) {
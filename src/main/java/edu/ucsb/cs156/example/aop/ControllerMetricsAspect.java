@@ -0,0 +1,189 @@
+package edu.ucsb.cs156.example.aop;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import reactor.core.publisher.Flux;
+
+import javax.servlet.http.HttpServletRequest;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static net.logstash.logback.argument.StructuredArguments.kv;
+
+/**
+ * Times every controller handler method and publishes, per handler:
+ *
+ * <ul>
+ * <li>controller.requests: a timer (latency histogram, see
+ * application.properties)</li>
+ * <li>controller.errors: a counter of calls that threw, tagged with the
+ * exception class</li>
+ * <li>controller.in.flight: a gauge of calls currently running</li>
+ * </ul>
+ *
+ * all tagged with the controller class and handler method names.  They are
+ * scraped from /actuator/prometheus.  The handler is logged at DEBUG.
+ *
+ * A share of the requests, app.logging.request-sample-rate (from 0, none,
+ * to 1, all), is also logged at INFO to edu.ucsb.cs156.example.requests
+ * once handled: the HTTP method and path, the handler, how long it took and
+ * its outcome, as key=value pairs (fields of their own in the JSON logs,
+ * see logback-spring.xml).
+ *
+ * The aspect runs outside the @PreAuthorize checks, so calls that are
+ * denied are timed and counted (as AccessDeniedException) too.  Handlers
+ * that return a CompletionStage are timed, and their errors counted, when
+ * the stage completes; those that return a Flux, when it completes, fails
+ * or is cancelled.
+ */
+@Slf4j
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class ControllerMetricsAspect {
+  // language=PointcutExpression
+  private static final String pointcut = """
+      @annotation(org.springframework.web.bind.annotation.RequestMapping) ||
+      @annotation(org.springframework.web.bind.annotation.GetMapping) ||
+      @annotation(org.springframework.web.bind.annotation.PostMapping) ||
+      @annotation(org.springframework.web.bind.annotation.PutMapping) ||
+      @annotation(org.springframework.web.bind.annotation.DeleteMapping) ||
+      @annotation(org.springframework.web.bind.annotation.PatchMapping)
+      """;
+
+  private static final Set<String> stoplist = Set.of(
+      "edu.ucsb.cs156.example.controllers.FrontendProxyController");
+
+  // stands in for the handlers in the stoplist, which are not instrumented
+  private static final HandlerMeters UNMETERED = new HandlerMeters(null, null, null);
+
+  private static final Logger requestLog = LoggerFactory.getLogger("edu.ucsb.cs156.example.requests");
+
+  private final MeterRegistry meterRegistry;
+
+  private final double requestSampleRate;
+
+  // the meters are looked up once per handler method, not once per call
+  private final Map<Method, HandlerMeters> handlers = new ConcurrentHashMap<>();
+
+  public ControllerMetricsAspect(MeterRegistry meterRegistry,
+      @Value("${app.logging.request-sample-rate:0}") double requestSampleRate) {
+    this.meterRegistry = meterRegistry;
+    this.requestSampleRate = requestSampleRate;
+  }
+
+  private record HandlerMeters(Tags tags, Timer timer, AtomicInteger inFlight) {
+  }
+
+  // what the request log says about a sampled request
+  private record SampledRequest(String method, String path, String handler) {
+  }
+
+  private HandlerMeters register(Method method) {
+    String declaringTypeName = method.getDeclaringClass().getName();
+    if (stoplist.contains(declaringTypeName)) {
+      return UNMETERED;
+    }
+    Tags tags = Tags.of("controller", method.getDeclaringClass().getSimpleName(), "method", method.getName());
+    Timer timer = Timer.builder("controller.requests")
+        .description("Time spent in controller handler methods")
+        .tags(tags)
+        .register(meterRegistry);
+    AtomicInteger inFlight = meterRegistry.gauge("controller.in.flight", tags, new AtomicInteger());
+    return new HandlerMeters(tags, timer, inFlight);
+  }
+
+  @Around(pointcut)
+  public Object instrumentControllers(ProceedingJoinPoint joinPoint) throws Throwable {
+    Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+    HandlerMeters handler = handlers.computeIfAbsent(method, this::register);
+    if (handler == UNMETERED) {
+      return joinPoint.proceed();
+    }
+
+    if (log.isDebugEnabled()) {
+      getCurrentHttpRequest().ifPresent(
+          request -> log.debug("===== {} {} handled by {} in {}", request.getMethod(), request.getRequestURI(),
+              method.getName(), method.getDeclaringClass().getName()));
+    }
+
+    SampledRequest sample = null;
+    if (requestSampleRate > 0 && ThreadLocalRandom.current().nextDouble() < requestSampleRate) {
+      sample = getCurrentHttpRequest()
+          .map(request -> new SampledRequest(request.getMethod(), request.getRequestURI(),
+              method.getDeclaringClass().getSimpleName() + "." + method.getName()))
+          .orElse(null);
+    }
+
+    handler.inFlight().incrementAndGet();
+    long start = System.nanoTime();
+    Object result;
+    try {
+      result = joinPoint.proceed();
+    } catch (Throwable t) {
+      finish(handler, start, sample, t);
+      throw t;
+    }
+    SampledRequest sampled = sample;
+    if (result instanceof CompletionStage<?> stage) {
+      // timed until the work it queued is done (see ApiController.async)
+      stage.whenComplete((value, t) -> finish(handler, start, sampled, t));
+    } else if (result instanceof Flux<?> flux) {
+      // timed until the last row is sent, or the client goes away
+      return flux.doOnComplete(() -> finish(handler, start, sampled, null))
+          .doOnError(t -> finish(handler, start, sampled, t))
+          .doOnCancel(() -> finish(handler, start, sampled, null));
+    } else {
+      finish(handler, start, sample, null);
+    }
+    return result;
+  }
+
+  private void finish(HandlerMeters handler, long start, SampledRequest sample, Throwable t) {
+    if (t instanceof CompletionException && t.getCause() != null) {
+      t = t.getCause();
+    }
+    if (t != null) {
+      meterRegistry.counter("controller.errors", handler.tags().and("exception", t.getClass().getSimpleName()))
+          .increment();
+    }
+    long duration = System.nanoTime() - start;
+    handler.timer().record(duration, TimeUnit.NANOSECONDS);
+    handler.inFlight().decrementAndGet();
+    if (sample != null) {
+      requestLog.info("{} {} {} {} {}", kv("method", sample.method()), kv("path", sample.path()),
+          kv("handler", sample.handler()), kv("durationMs", TimeUnit.NANOSECONDS.toMillis(duration)),
+          kv("outcome", t == null ? "ok" : t.getClass().getSimpleName()));
+    }
+  }
+
+  private static Optional<HttpServletRequest> getCurrentHttpRequest() {
+    return Optional.ofNullable(RequestContextHolder.getRequestAttributes())
+        .filter(ServletRequestAttributes.class::isInstance)
+        .map(ServletRequestAttributes.class::cast)
+        .map(ServletRequestAttributes::getRequest);
+  }
+}
@@ -0,0 +1,49 @@
+package edu.ucsb.cs156.example.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import edu.ucsb.cs156.example.services.HandlerExecutor;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Data;
+
+/**
+ * The HandlerExecutor for the handlers that return a CompletableFuture:
+ * the /query listings and /api/search, whose cost depends on what the
+ * client asks for.
+ *
+ * With app.async-handlers.enabled=false (the default) they run on the
+ * servlet container's threads, as every other handler does.  With true
+ * they run on a pool of app.async-handlers.threads threads, and up to
+ * app.async-handlers.queue-capacity more wait for one; the container
+ * threads are free meanwhile to serve the other requests.  Keep threads
+ * below spring.datasource.hikari.maximum-pool-size (DB_POOL_SIZE, 10 by default), so
+ * that the handlers which stay on the container threads can still get a
+ * connection when every pool thread is busy.
+ *
+ * The pool is not a bean of its own: a TaskExecutor bean would replace
+ * the applicationTaskExecutor that Spring Boot gives Spring MVC, which the
+ * ndjson exports stream on.
+ */
+@Configuration
+@EnableConfigurationProperties(AsyncHandlerConfig.AsyncHandlerProperties.class)
+public class AsyncHandlerConfig {
+
+  @Data
+  @ConfigurationProperties("app.async-handlers")
+  public static class AsyncHandlerProperties {
+    private boolean enabled = false;
+    private int threads = 8;
+    private int queueCapacity = 10_000;
+  }
+
+  @Bean
+  public HandlerExecutor handlerExecutor(AsyncHandlerProperties properties, MeterRegistry meterRegistry) {
+    if (!properties.getEnabled()) {
+      return HandlerExecutor.inline();
+    }
+    return HandlerExecutor.pooled(properties.getThreads(), properties.getQueueCapacity(), meterRegistry);
+  }
+}
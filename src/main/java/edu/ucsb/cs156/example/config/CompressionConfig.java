@@ -0,0 +1,33 @@
+package edu.ucsb.cs156.example.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.web.ServerProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+/**
+ * Makes server.compression.min-response-size hold for every response.
+ *
+ * Tomcat only compares the threshold with a response's Content-Length,
+ * and the JSON written by Spring MVC, like the ndjson exports, has none:
+ * it is sent chunked, and so was gzipped whatever its size.
+ * MinResponseSizeFilter holds back up to min-response-size bytes of each
+ * response, so that a shorter one is sent with its length.
+ */
+@Configuration
+@ConditionalOnProperty("server.compression.enabled")
+public class CompressionConfig {
+
+  @Bean
+  public FilterRegistrationBean<MinResponseSizeFilter> minResponseSizeFilter(ServerProperties serverProperties) {
+    int minResponseSize = (int) serverProperties.getCompression().getMinResponseSize().toBytes();
+    FilterRegistrationBean<MinResponseSizeFilter> registration = new FilterRegistrationBean<>(
+        new MinResponseSizeFilter(minResponseSize));
+    // outside Spring Session and Spring Security, so that the headers they
+    // add when the response is committed are held back with it
+    registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 10);
+    return registration;
+  }
+}
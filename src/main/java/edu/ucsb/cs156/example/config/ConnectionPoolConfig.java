@@ -0,0 +1,95 @@
+package edu.ucsb.cs156.example.config;
+
+import java.util.Optional;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcProperties;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.jdbc.DatabaseDriver;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Checks on startup that the connection pools of every instance of the
+ * app fit in the database's max_connections.
+ *
+ * Each instance opens up to spring.datasource.hikari.maximum-pool-size
+ * JDBC connections (for JPA) and spring.r2dbc.pool.max-size R2DBC
+ * connections (for the /stream endpoints, see R2dbcConfig).  With
+ * app.connection-pool.instances instances, and
+ * app.connection-pool.reserved-connections kept free for superusers and
+ * for connecting by hand, a warning is logged when they need more than
+ * PostgreSQL's max_connections; the connections that do not fit would be
+ * refused once the pools grow.  max_connections is also published as the
+ * db.connections.max gauge, next to the pools' own hikaricp_connections
+ * and r2dbc_pool metrics.  See docs/postgres-database.md.
+ */
+@Slf4j
+@Configuration
+@EnableConfigurationProperties(ConnectionPoolConfig.ConnectionPoolProperties.class)
+public class ConnectionPoolConfig {
+
+  @Data
+  @ConfigurationProperties("app.connection-pool")
+  public static class ConnectionPoolProperties {
+    private int instances = 1;
+    private int reservedConnections = 3;
+  }
+
+  @Autowired
+  ConnectionPoolProperties properties;
+
+  @Autowired
+  R2dbcProperties r2dbcProperties;
+
+  @Autowired
+  DataSource dataSource;
+
+  @Autowired
+  MeterRegistry meterRegistry;
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void checkConnectionBudget() {
+    if (!(dataSource instanceof HikariDataSource hikari)
+        || DatabaseDriver.fromJdbcUrl(hikari.getJdbcUrl()) != DatabaseDriver.POSTGRESQL) {
+      // H2 has no limit on connections
+      return;
+    }
+    int maxConnections = Integer.parseInt(
+        new JdbcTemplate(dataSource).queryForObject("SHOW max_connections", String.class));
+    Gauge.builder("db.connections.max", () -> maxConnections)
+        .description("The most connections the database accepts, for all instances together")
+        .register(meterRegistry);
+    overBudget(maxConnections, properties, hikari.getMaximumPoolSize(), r2dbcProperties.getPool().getMaxSize())
+        .ifPresent(log::warn);
+  }
+
+  /**
+   * A description of the problem when instances with pools of these
+   * sizes need more connections than maxConnections, or else empty.
+   */
+  static Optional<String> overBudget(int maxConnections, ConnectionPoolProperties properties, int jdbcPoolSize,
+      int r2dbcPoolSize) {
+    int needed = properties.getInstances() * (jdbcPoolSize + r2dbcPoolSize) + properties.getReservedConnections();
+    if (needed <= maxConnections) {
+      return Optional.empty();
+    }
+    return Optional.of(String.format(
+        "%d instances with pools of %d JDBC and %d R2DBC connections, and %d reserved connections, need %d connections;"
+            + " the database only accepts %d (max_connections)",
+        properties.getInstances(), jdbcPoolSize, r2dbcPoolSize, properties.getReservedConnections(), needed,
+        maxConnections));
+  }
+}
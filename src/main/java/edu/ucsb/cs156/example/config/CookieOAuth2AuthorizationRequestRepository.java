@@ -0,0 +1,64 @@
+package edu.ucsb.cs156.example.config;
+
+import java.time.Duration;
+
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.security.oauth2.client.web.AuthorizationRequestRepository;
+import org.springframework.security.oauth2.core.endpoint.OAuth2AuthorizationRequest;
+import org.springframework.web.util.WebUtils;
+
+import edu.ucsb.cs156.example.services.SessionTokenService;
+
+/**
+ * Keeps the OAuth2 authorization request of a login under way, between
+ * the redirect to Google and the redirect back, in a signed cookie
+ * (see SessionTokenService) instead of the HTTP session, so that with
+ * stateless sessions the redirect back can go to any instance.
+ */
+public class CookieOAuth2AuthorizationRequestRepository
+    implements AuthorizationRequestRepository<OAuth2AuthorizationRequest> {
+
+  static final String COOKIE_NAME = "OAUTH2_AUTHORIZATION_REQUEST";
+
+  private final SessionTokenService sessionTokenService;
+
+  public CookieOAuth2AuthorizationRequestRepository(SessionTokenService sessionTokenService) {
+    this.sessionTokenService = sessionTokenService;
+  }
+
+  @Override
+  public OAuth2AuthorizationRequest loadAuthorizationRequest(HttpServletRequest request) {
+    Cookie cookie = WebUtils.getCookie(request, COOKIE_NAME);
+    return cookie == null ? null : sessionTokenService.authorizationRequest(cookie.getValue());
+  }
+
+  @Override
+  public void saveAuthorizationRequest(OAuth2AuthorizationRequest authorizationRequest, HttpServletRequest request,
+      HttpServletResponse response) {
+    if (authorizationRequest == null) {
+      SessionTokenSecurityContextRepository.setCookie(request, response, COOKIE_NAME, "", Duration.ZERO);
+      return;
+    }
+    SessionTokenSecurityContextRepository.setCookie(request, response, COOKIE_NAME,
+        sessionTokenService.issue(authorizationRequest), SessionTokenService.AUTHORIZATION_REQUEST_TIME_TO_LIVE);
+  }
+
+  @Override
+  @Deprecated
+  public OAuth2AuthorizationRequest removeAuthorizationRequest(HttpServletRequest request) {
+    return loadAuthorizationRequest(request);
+  }
+
+  @Override
+  public OAuth2AuthorizationRequest removeAuthorizationRequest(HttpServletRequest request,
+      HttpServletResponse response) {
+    OAuth2AuthorizationRequest authorizationRequest = loadAuthorizationRequest(request);
+    if (authorizationRequest != null) {
+      SessionTokenSecurityContextRepository.setCookie(request, response, COOKIE_NAME, "", Duration.ZERO);
+    }
+    return authorizationRequest;
+  }
+}
@@ -0,0 +1,97 @@
+package edu.ucsb.cs156.example.config;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.UUID;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.spi.CachingProvider;
+
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cache.spi.RegionFactory;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+
+import lombok.Data;
+
+/**
+ * Hibernate second-level cache for the reference data entities
+ * (UCSBDiningCommons, Schools and Park), and the query cache for their
+ * /all listings, kept in Caffeine through JCache.
+ *
+ * Each region is created here from its app.hibernate-cache.regions.NAME
+ * properties, and Hibernate fails on startup if it needs a region that is
+ * not configured.  The cache is local to each instance.  Hibernate evicts
+ * for the writes made through this instance (save, delete and the bulk
+ * updateById/removeById queries); writes made through another instance
+ * bump the table's table_versions row, and the controllers drop the
+ * table's cached rows and queries when they read a new version (see
+ * TableCacheService).
+ *
+ * Hits and misses are published by the actuator as
+ * hibernate_second_level_cache_requests and hibernate_cache_query_requests.
+ */
+@Configuration
+@EnableConfigurationProperties(HibernateCacheConfig.HibernateCacheProperties.class)
+public class HibernateCacheConfig {
+
+  @Data
+  @ConfigurationProperties("app.hibernate-cache")
+  public static class HibernateCacheProperties {
+    private Map<String, Region> regions = new HashMap<>();
+
+    @Data
+    public static class Region {
+      private long maximumSize = 1000;
+      private Duration expireAfterWrite = Duration.ofHours(1);
+    }
+  }
+
+  private static CaffeineConfiguration<Object, Object> configuration() {
+    CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+    // Hibernate only caches immutable, disassembled entries, so there is
+    // no need to copy them in and out of the cache
+    configuration.setStoreByValue(false);
+    return configuration;
+  }
+
+  @Bean(destroyMethod = "close")
+  public CacheManager hibernateCacheManager(HibernateCacheProperties properties) {
+    CachingProvider provider = Caching.getCachingProvider(CaffeineCachingProvider.class.getName());
+    // not the provider's default cache manager, which is shared by every
+    // application context in the JVM (the tests start several)
+    CacheManager cacheManager = provider.getCacheManager(
+        URI.create("hibernate-" + UUID.randomUUID()), HibernateCacheConfig.class.getClassLoader());
+
+    properties.getRegions().forEach((name, region) -> {
+      CaffeineConfiguration<Object, Object> configuration = configuration();
+      configuration.setMaximumSize(OptionalLong.of(region.getMaximumSize()));
+      configuration.setExpireAfterWrite(OptionalLong.of(region.getExpireAfterWrite().toNanos()));
+      cacheManager.createCache(name, configuration);
+    });
+
+    // when each table last changed, used to tell whether a cached query
+    // result is stale; it has to outlive the query results, so it is
+    // neither bounded nor expired (it holds one entry per table)
+    cacheManager.createCache(RegionFactory.DEFAULT_UPDATE_TIMESTAMPS_REGION_UNQUALIFIED_NAME, configuration());
+    return cacheManager;
+  }
+
+  @Bean
+  public HibernatePropertiesCustomizer hibernateCacheCustomizer(CacheManager hibernateCacheManager) {
+    return hibernateProperties -> {
+      hibernateProperties.put(ConfigSettings.CACHE_MANAGER, hibernateCacheManager);
+      hibernateProperties.put(ConfigSettings.MISSING_CACHE_STRATEGY, "fail");
+    };
+  }
+}
@@ -0,0 +1,58 @@
+package edu.ucsb.cs156.example.config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.access.AccessDecisionManager;
+import org.springframework.security.access.AccessDecisionVoter;
+import org.springframework.security.access.expression.method.MethodSecurityExpressionHandler;
+import org.springframework.security.access.method.MethodSecurityMetadataSource;
+import org.springframework.security.access.vote.AbstractAccessDecisionManager;
+import org.springframework.security.access.vote.AffirmativeBased;
+import org.springframework.security.config.annotation.method.configuration.EnableGlobalMethodSecurity;
+import org.springframework.security.config.annotation.method.configuration.GlobalMethodSecurityConfiguration;
+
+import edu.ucsb.cs156.example.services.GrantedAuthoritiesService;
+
+/**
+ * Method security (@PreAuthorize), imported by SecurityConfig.
+ *
+ * The @PreAuthorize expressions that only check for roles, which is all
+ * of them in the controllers, are compiled once into the roles they grant
+ * access to (RoleSetMethodSecurityMetadataSource) and checked against the
+ * user's RoleSet by RoleSetVoter, which votes before the usual voters.
+ * The other expressions are evaluated by SpEL as usual, with their role
+ * checks also read from the RoleSet (RoleSetMethodSecurityExpressionHandler).
+ */
+@Configuration
+@EnableGlobalMethodSecurity(prePostEnabled = true)
+public class MethodSecurityConfig extends GlobalMethodSecurityConfiguration {
+
+  @Autowired
+  ObjectProvider<GrantedAuthoritiesService> grantedAuthoritiesService;
+
+  // static, and the service looked up when first needed: method security
+  // is set up before the other beans, and would create them too early
+  @Bean
+  static MethodSecurityExpressionHandler methodSecurityExpressionHandler(
+      ObjectProvider<GrantedAuthoritiesService> grantedAuthoritiesService) {
+    return new RoleSetMethodSecurityExpressionHandler(grantedAuthoritiesService);
+  }
+
+  @Override
+  protected MethodSecurityMetadataSource customMethodSecurityMetadataSource() {
+    return new RoleSetMethodSecurityMetadataSource();
+  }
+
+  @Override
+  protected AccessDecisionManager accessDecisionManager() {
+    List<AccessDecisionVoter<?>> voters = new ArrayList<>();
+    voters.add(new RoleSetVoter(grantedAuthoritiesService));
+    voters.addAll(((AbstractAccessDecisionManager) super.accessDecisionManager()).getDecisionVoters());
+    return new AffirmativeBased(voters);
+  }
+}
@@ -0,0 +1,262 @@
+package edu.ucsb.cs156.example.config;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.WebUtils;
+
+/**
+ * Holds back the first minResponseSize bytes of each response to a client
+ * that accepts gzip, so that server.compression.min-response-size holds
+ * for chunked responses too (see CompressionConfig).
+ *
+ * A body that ends within them is sent with its Content-Length, which
+ * Tomcat compares with the threshold and leaves uncompressed; a longer one
+ * is sent on as it is written, chunked, and Tomcat compresses it.  Flushes
+ * are held back with the bytes, so a streamed body shorter than the
+ * threshold is only sent once it ends.  With async handlers (the ndjson
+ * exports, the CompletableFuture handlers) the body ends with the async
+ * dispatch, which is filtered too, as are the error dispatches that write
+ * the error pages.  A body written without blocking, through a
+ * WriteListener, is sent on as it comes.
+ */
+public class MinResponseSizeFilter extends OncePerRequestFilter {
+
+  private final int minResponseSize;
+
+  public MinResponseSizeFilter(int minResponseSize) {
+    this.minResponseSize = minResponseSize;
+  }
+
+  @Override
+  protected boolean shouldNotFilterAsyncDispatch() {
+    return false;
+  }
+
+  // the error pages of sendError are written on an error dispatch
+  @Override
+  protected boolean shouldNotFilterErrorDispatch() {
+    return false;
+  }
+
+  @Override
+  protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+      throws ServletException, IOException {
+    // on an async dispatch, the response is the one wrapped before
+    HeldBackResponse held = WebUtils.getNativeResponse(response, HeldBackResponse.class);
+    if (held == null) {
+      String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+      if (acceptEncoding == null || !acceptEncoding.contains("gzip")) {
+        filterChain.doFilter(request, response);
+        return;
+      }
+      held = new HeldBackResponse(response, minResponseSize);
+      response = held;
+    }
+    filterChain.doFilter(request, response);
+    if (!request.isAsyncStarted()) {
+      held.release();
+    }
+  }
+
+  static class HeldBackResponse extends HttpServletResponseWrapper {
+
+    private final int limit;
+    private final ByteArrayOutputStream held = new ByteArrayOutputStream();
+    // true once the body goes straight to the response
+    private boolean passing = false;
+    private ServletOutputStream outputStream;
+    private PrintWriter writer;
+
+    HeldBackResponse(HttpServletResponse response, int limit) {
+      super(response);
+      this.limit = limit;
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+      if (writer != null) {
+        throw new IllegalStateException("getWriter() has already been called");
+      }
+      if (outputStream == null) {
+        outputStream = new HeldBackOutputStream();
+      }
+      return outputStream;
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+      if (outputStream != null && writer == null) {
+        throw new IllegalStateException("getOutputStream() has already been called");
+      }
+      if (writer == null) {
+        // as the response's own writer would, fixes the charset of the Content-Type
+        setCharacterEncoding(getCharacterEncoding());
+        outputStream = new HeldBackOutputStream();
+        writer = new PrintWriter(new OutputStreamWriter(outputStream, getCharacterEncoding()));
+      }
+      return writer;
+    }
+
+    // a length set by the handler is compared with the threshold by Tomcat
+    @Override
+    public void setContentLength(int len) {
+      super.setContentLength(len);
+      passThrough();
+    }
+
+    @Override
+    public void setContentLengthLong(long len) {
+      super.setContentLengthLong(len);
+      passThrough();
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+      if (passing) {
+        super.flushBuffer();
+      }
+    }
+
+    @Override
+    public void resetBuffer() {
+      super.resetBuffer();
+      held.reset();
+    }
+
+    @Override
+    public void reset() {
+      super.reset();
+      held.reset();
+    }
+
+    @Override
+    public void sendError(int sc, String msg) throws IOException {
+      held.reset();
+      passing = true;
+      super.sendError(sc, msg);
+    }
+
+    @Override
+    public void sendError(int sc) throws IOException {
+      held.reset();
+      passing = true;
+      super.sendError(sc);
+    }
+
+    @Override
+    public void sendRedirect(String location) throws IOException {
+      held.reset();
+      passing = true;
+      super.sendRedirect(location);
+    }
+
+    /**
+     * Sends what is held back, as a body of known length, when the body
+     * has ended within the limit
+     */
+    void release() throws IOException {
+      if (writer != null) {
+        writer.flush();
+      }
+      if (passing) {
+        return;
+      }
+      passing = true;
+      if (held.size() > 0) {
+        getResponse().setContentLength(held.size());
+        held.writeTo(getResponse().getOutputStream());
+        held.reset();
+      }
+    }
+
+    // the body is longer than the limit: send it on as it comes
+    private void passThrough() {
+      if (passing) {
+        return;
+      }
+      passing = true;
+      if (held.size() > 0) {
+        try {
+          held.writeTo(getResponse().getOutputStream());
+        } catch (IOException e) {
+          throw new IllegalStateException(e);
+        }
+        held.reset();
+      }
+    }
+
+    private class HeldBackOutputStream extends ServletOutputStream {
+
+      @Override
+      public void write(int b) throws IOException {
+        write(new byte[] { (byte) b }, 0, 1);
+      }
+
+      @Override
+      public void write(byte[] b, int off, int len) throws IOException {
+        if (!passing && held.size() + len > limit) {
+          held.writeTo(getResponse().getOutputStream());
+          held.reset();
+          passing = true;
+        }
+        if (passing) {
+          getResponse().getOutputStream().write(b, off, len);
+        } else {
+          held.write(b, off, len);
+        }
+      }
+
+      @Override
+      public void flush() throws IOException {
+        if (passing) {
+          getResponse().getOutputStream().flush();
+        }
+      }
+
+      // closing the body ends it
+      @Override
+      public void close() throws IOException {
+        release();
+        getResponse().getOutputStream().close();
+      }
+
+      // held-back writes never block
+      @Override
+      public boolean isReady() {
+        if (!passing) {
+          return true;
+        }
+        try {
+          return getResponse().getOutputStream().isReady();
+        } catch (IOException e) {
+          throw new IllegalStateException(e);
+        }
+      }
+
+      // non-blocking writes are not held back: what is held is sent first,
+      // while writes still block, and the listener goes to the response
+      @Override
+      public void setWriteListener(WriteListener writeListener) {
+        passThrough();
+        try {
+          getResponse().getOutputStream().setWriteListener(writeListener);
+        } catch (IOException e) {
+          throw new IllegalStateException(e);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,191 @@
+package edu.ucsb.cs156.example.config;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.persistence.Entity;
+
+import org.hibernate.boot.model.naming.CamelCaseToUnderscoresNamingStrategy;
+import org.hibernate.boot.model.naming.Identifier;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.actuate.metrics.r2dbc.ConnectionPoolMetrics;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mapping.model.Property;
+import org.springframework.data.mapping.model.SimpleTypeHolder;
+import org.springframework.data.r2dbc.convert.MappingR2dbcConverter;
+import org.springframework.data.r2dbc.convert.R2dbcCustomConversions;
+import org.springframework.data.r2dbc.core.DefaultReactiveDataAccessStrategy;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.data.r2dbc.dialect.DialectResolver;
+import org.springframework.data.r2dbc.dialect.R2dbcDialect;
+import org.springframework.data.r2dbc.mapping.R2dbcMappingContext;
+import org.springframework.data.relational.core.mapping.BasicRelationalPersistentProperty;
+import org.springframework.data.relational.core.mapping.NamingStrategy;
+import org.springframework.data.relational.core.mapping.RelationalPersistentEntity;
+import org.springframework.data.relational.core.mapping.RelationalPersistentProperty;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.util.StringUtils;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import io.r2dbc.spi.Option;
+import reactor.core.publisher.Flux;
+
+/**
+ * A second, non-blocking way to read the database that JPA writes: the
+ * R2dbcEntityTemplate used by the read repositories in
+ * repositories.reactive.
+ *
+ * It connects to spring.r2dbc.url if that is set, and otherwise to the
+ * database of spring.datasource.url, with the same user (see
+ * connectionOptions).  Connections come from a pool of their own,
+ * configured by spring.r2dbc.pool.* and published as the r2dbc.pool
+ * metrics named "reads".
+ *
+ * Spring Boot's R2dbcAutoConfiguration is excluded (see
+ * application.properties), and the pool is not a bean: Spring Boot only
+ * configures the JDBC DataSource, which JPA needs, when there is no
+ * ConnectionFactory bean.
+ *
+ * Entities are mapped as JPA maps them, so that they need no annotations
+ * of their own: the table is named after the @Entity name, columns after
+ * the fields by the same naming strategy as Hibernate, and the field
+ * annotated with javax.persistence.Id is the id.
+ */
+@Configuration
+@EnableConfigurationProperties(R2dbcProperties.class)
+public class R2dbcConfig implements DisposableBean {
+
+  // rows fetched per round trip; later rows are only fetched once the
+  // subscriber asks for them
+  public static final int FETCH_SIZE = 500;
+
+  private ConnectionPool pool;
+
+  @Bean
+  public R2dbcEntityTemplate r2dbcEntityTemplate(R2dbcProperties r2dbc, DataSourceProperties dataSource,
+      MeterRegistry meterRegistry) {
+    ConnectionFactoryOptions options = StringUtils.hasText(r2dbc.getUrl())
+        ? ConnectionFactoryOptions.parse(r2dbc.getUrl())
+        : connectionOptions(dataSource.determineUrl(), dataSource.determineUsername(),
+            dataSource.determinePassword());
+    R2dbcProperties.Pool properties = r2dbc.getPool();
+    pool = new ConnectionPool(ConnectionPoolConfiguration.builder(ConnectionFactories.get(options))
+        .initialSize(properties.getInitialSize())
+        .maxSize(properties.getMaxSize())
+        .maxIdleTime(properties.getMaxIdleTime())
+        .build());
+    new ConnectionPoolMetrics(pool, "reads", Tags.empty()).bindTo(meterRegistry);
+
+    R2dbcDialect dialect = DialectResolver.getDialect(pool);
+    DatabaseClient databaseClient = DatabaseClient.builder()
+        .connectionFactory(pool)
+        .bindMarkers(dialect.getBindMarkersFactory())
+        .executeFunction(statement -> Flux.from(statement.fetchSize(FETCH_SIZE).execute()))
+        .build();
+    R2dbcMappingContext mappingContext = new JpaMappingContext();
+    MappingR2dbcConverter converter = new MappingR2dbcConverter(mappingContext,
+        R2dbcCustomConversions.of(dialect));
+    return new R2dbcEntityTemplate(databaseClient, new DefaultReactiveDataAccessStrategy(dialect, converter));
+  }
+
+  /**
+   * The R2DBC connection options for a JDBC URL.  jdbc:h2:... becomes the
+   * same H2 URL for r2dbc-h2, which opens the same database when it runs
+   * in the same JVM.  Any other jdbc:driver://host:port/database?params
+   * becomes r2dbc:driver://host:port/database; of the params, user and
+   * password are used when no username or password is given, and sslmode
+   * (as in the JDBC_DATABASE_URL that Heroku sets) becomes sslMode.
+   */
+  static ConnectionFactoryOptions connectionOptions(String jdbcUrl, String username, String password) {
+    if (jdbcUrl.startsWith("jdbc:h2:")) {
+      ConnectionFactoryOptions.Builder options = ConnectionFactoryOptions.builder()
+          .option(ConnectionFactoryOptions.DRIVER, "h2")
+          .option(Option.valueOf("url"), jdbcUrl.substring("jdbc:h2:".length()));
+      if (StringUtils.hasText(username)) {
+        options.option(ConnectionFactoryOptions.USER, username);
+      }
+      if (password != null) {
+        options.option(ConnectionFactoryOptions.PASSWORD, password);
+      }
+      return options.build();
+    }
+    if (!jdbcUrl.startsWith("jdbc:")) {
+      throw new IllegalArgumentException("not a JDBC URL: " + jdbcUrl);
+    }
+    String url = jdbcUrl.substring("jdbc:".length());
+    Map<String, String> params = new LinkedHashMap<>();
+    int query = url.indexOf('?');
+    if (query >= 0) {
+      for (String param : url.substring(query + 1).split("&")) {
+        String[] nameValue = param.split("=", 2);
+        params.put(nameValue[0], nameValue.length == 2 ? nameValue[1] : "");
+      }
+      url = url.substring(0, query);
+    }
+    ConnectionFactoryOptions.Builder options = ConnectionFactoryOptions.parse("r2dbc:" + url).mutate();
+    String user = StringUtils.hasText(username) ? username : params.get("user");
+    if (user != null) {
+      options.option(ConnectionFactoryOptions.USER, user);
+    }
+    String secret = StringUtils.hasText(password) ? password : params.get("password");
+    if (secret != null) {
+      options.option(ConnectionFactoryOptions.PASSWORD, secret);
+    }
+    if (params.containsKey("sslmode")) {
+      options.option(Option.valueOf("sslMode"), params.get("sslmode"));
+    }
+    return options.build();
+  }
+
+  @Override
+  public void destroy() {
+    if (pool != null) {
+      pool.dispose();
+    }
+  }
+
+  private static class JpaNamingStrategy implements NamingStrategy {
+    private final CamelCaseToUnderscoresNamingStrategy hibernate = new CamelCaseToUnderscoresNamingStrategy();
+
+    @Override
+    public String getTableName(Class<?> type) {
+      Entity entity = type.getAnnotation(Entity.class);
+      String name = entity != null && !entity.name().isEmpty() ? entity.name() : type.getSimpleName();
+      return hibernate.toPhysicalTableName(Identifier.toIdentifier(name), null).getText();
+    }
+
+    @Override
+    public String getColumnName(RelationalPersistentProperty property) {
+      return hibernate.toPhysicalColumnName(Identifier.toIdentifier(property.getName()), null).getText();
+    }
+  }
+
+  private static class JpaMappingContext extends R2dbcMappingContext {
+    JpaMappingContext() {
+      super(new JpaNamingStrategy());
+    }
+
+    @Override
+    protected RelationalPersistentProperty createPersistentProperty(Property property,
+        RelationalPersistentEntity<?> owner, SimpleTypeHolder simpleTypeHolder) {
+      BasicRelationalPersistentProperty persistentProperty = new BasicRelationalPersistentProperty(property, owner,
+          simpleTypeHolder, this) {
+        @Override
+        public boolean isIdProperty() {
+          return super.isIdProperty() || isAnnotationPresent(javax.persistence.Id.class);
+        }
+      };
+      persistentProperty.setForceQuote(isForceQuote());
+      return persistentProperty;
+    }
+  }
+}
@@ -0,0 +1,167 @@
+package edu.ucsb.cs156.example.config;
+
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.security.access.expression.method.DefaultMethodSecurityExpressionHandler;
+import org.springframework.security.access.expression.method.MethodSecurityExpressionOperations;
+import org.springframework.security.core.Authentication;
+
+import edu.ucsb.cs156.example.models.RoleSet;
+import edu.ucsb.cs156.example.models.RoleSet.Role;
+import edu.ucsb.cs156.example.services.GrantedAuthoritiesService;
+
+/**
+ * Answers the role checks of @PreAuthorize expressions (hasRole and
+ * hasAnyRole, and hasAuthority and hasAnyAuthority of ROLE_ names) for
+ * the Roles from the user's RoleSet, worked out once per session by
+ * GrantedAuthoritiesService, instead of from a set built from their
+ * authorities on every call.  The RoleSet also reflects admin flags
+ * changed since login.  Everything else, including other roles, is
+ * answered as usual.  (The expressions that are nothing but a role check
+ * do not get here: see RoleSetMethodSecurityMetadataSource.)
+ */
+public class RoleSetMethodSecurityExpressionHandler extends DefaultMethodSecurityExpressionHandler {
+
+  private final ObjectProvider<GrantedAuthoritiesService> grantedAuthoritiesService;
+
+  public RoleSetMethodSecurityExpressionHandler(ObjectProvider<GrantedAuthoritiesService> grantedAuthoritiesService) {
+    this.grantedAuthoritiesService = grantedAuthoritiesService;
+  }
+
+  @Override
+  protected MethodSecurityExpressionOperations createSecurityExpressionRoot(Authentication authentication,
+      MethodInvocation invocation) {
+    return new RoleSetExpressionRoot(super.createSecurityExpressionRoot(authentication, invocation),
+        grantedAuthoritiesService.getObject().getRoles(authentication));
+  }
+
+  /**
+   * The root object of the expressions: the usual one, with the role
+   * checks answered from a RoleSet.
+   */
+  public static class RoleSetExpressionRoot implements MethodSecurityExpressionOperations {
+    private final MethodSecurityExpressionOperations root;
+    private final RoleSet roles;
+
+    // as in SecurityExpressionRoot, for expressions such as "permitAll"
+    public final boolean permitAll = true;
+    public final boolean denyAll = false;
+
+    public RoleSetExpressionRoot(MethodSecurityExpressionOperations root, RoleSet roles) {
+      this.root = root;
+      this.roles = roles;
+    }
+
+    // hasRole("ADMIN") and hasRole("ROLE_ADMIN") both mean ROLE_ADMIN
+    @Override
+    public boolean hasRole(String role) {
+      Role known = RoleSet.role(role);
+      return known != null ? roles.has(known) : root.hasRole(role);
+    }
+
+    @Override
+    public boolean hasAnyRole(String... roles) {
+      for (String role : roles) {
+        if (hasRole(role)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    // hasAuthority("ADMIN") does not mean ROLE_ADMIN
+    @Override
+    public boolean hasAuthority(String authority) {
+      Role known = authority.startsWith("ROLE_") ? RoleSet.role(authority) : null;
+      return known != null ? roles.has(known) : root.hasAuthority(authority);
+    }
+
+    @Override
+    public boolean hasAnyAuthority(String... authorities) {
+      for (String authority : authorities) {
+        if (hasAuthority(authority)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    public RoleSet getRoles() {
+      return roles;
+    }
+
+    public Object getPrincipal() {
+      return getAuthentication().getPrincipal();
+    }
+
+    @Override
+    public Authentication getAuthentication() {
+      return root.getAuthentication();
+    }
+
+    @Override
+    public boolean permitAll() {
+      return root.permitAll();
+    }
+
+    @Override
+    public boolean denyAll() {
+      return root.denyAll();
+    }
+
+    @Override
+    public boolean isAnonymous() {
+      return root.isAnonymous();
+    }
+
+    @Override
+    public boolean isAuthenticated() {
+      return root.isAuthenticated();
+    }
+
+    @Override
+    public boolean isRememberMe() {
+      return root.isRememberMe();
+    }
+
+    @Override
+    public boolean isFullyAuthenticated() {
+      return root.isFullyAuthenticated();
+    }
+
+    @Override
+    public boolean hasPermission(Object target, Object permission) {
+      return root.hasPermission(target, permission);
+    }
+
+    @Override
+    public boolean hasPermission(Object targetId, String targetType, Object permission) {
+      return root.hasPermission(targetId, targetType, permission);
+    }
+
+    @Override
+    public void setFilterObject(Object filterObject) {
+      root.setFilterObject(filterObject);
+    }
+
+    @Override
+    public Object getFilterObject() {
+      return root.getFilterObject();
+    }
+
+    @Override
+    public void setReturnObject(Object returnObject) {
+      root.setReturnObject(returnObject);
+    }
+
+    @Override
+    public Object getReturnObject() {
+      return root.getReturnObject();
+    }
+
+    @Override
+    public Object getThis() {
+      return root.getThis();
+    }
+  }
+}
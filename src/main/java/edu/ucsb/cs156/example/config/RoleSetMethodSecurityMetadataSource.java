@@ -0,0 +1,101 @@
+package edu.ucsb.cs156.example.config;
+
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.security.access.ConfigAttribute;
+import org.springframework.security.access.method.AbstractFallbackMethodSecurityMetadataSource;
+import org.springframework.security.access.prepost.PostAuthorize;
+import org.springframework.security.access.prepost.PostFilter;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.access.prepost.PreFilter;
+
+import edu.ucsb.cs156.example.models.RoleSet;
+import edu.ucsb.cs156.example.models.RoleSet.Role;
+
+/**
+ * Compiles the @PreAuthorize expressions that only check for roles, such
+ * as hasRole('ROLE_ADMIN') or hasAnyRole('MEMBER', 'ADMIN'), into a
+ * RoleSetAttribute holding the roles that grant access, which RoleSetVoter
+ * checks against the user's RoleSet.  Method security asks for a method's
+ * attributes once, when it creates the proxy, and keeps them, so at run
+ * time such a check is a mask of two ints instead of an evaluation of the
+ * expression.
+ *
+ * Any other expression, a role that is not one of the Roles, a method
+ * that also has @PostAuthorize, @PreFilter or @PostFilter, and
+ * @PreAuthorize on a class are left to the usual (SpEL) metadata source.
+ */
+public class RoleSetMethodSecurityMetadataSource extends AbstractFallbackMethodSecurityMetadataSource {
+
+  private static final Pattern ROLE_CHECK = Pattern.compile("\\s*has(Any)?Role\\((.*)\\)\\s*");
+  private static final Pattern ROLE_NAME = Pattern.compile("\\s*'(\\w+)'\\s*");
+
+  /**
+   * The roles of a compiled @PreAuthorize expression, any one of which
+   * grants access.  Not a role name itself, so the other voters leave it
+   * alone.
+   */
+  public record RoleSetAttribute(RoleSet anyOf, String expression) implements ConfigAttribute {
+    @Override
+    public String getAttribute() {
+      return null;
+    }
+
+    public boolean grants(RoleSet roles) {
+      return (roles.bits() & anyOf.bits()) != 0;
+    }
+  }
+
+  /**
+   * The roles any of which an expression checks for, or null if it is not
+   * a simple hasRole or hasAnyRole of Roles.
+   */
+  static RoleSet compile(String expression) {
+    Matcher check = ROLE_CHECK.matcher(expression);
+    if (!check.matches()) {
+      return null;
+    }
+    String[] names = check.group(2).split(",", -1);
+    if (check.group(1) == null && names.length != 1) {
+      return null;
+    }
+    RoleSet anyOf = RoleSet.NONE;
+    for (String name : names) {
+      Matcher quoted = ROLE_NAME.matcher(name);
+      Role role = quoted.matches() ? RoleSet.role(quoted.group(1)) : null;
+      if (role == null) {
+        return null;
+      }
+      anyOf = anyOf.with(role);
+    }
+    return anyOf;
+  }
+
+  @Override
+  protected Collection<ConfigAttribute> findAttributes(Method method, Class<?> targetClass) {
+    PreAuthorize preAuthorize = AnnotationUtils.findAnnotation(method, PreAuthorize.class);
+    if (preAuthorize == null
+        || AnnotationUtils.findAnnotation(method, PostAuthorize.class) != null
+        || AnnotationUtils.findAnnotation(method, PreFilter.class) != null
+        || AnnotationUtils.findAnnotation(method, PostFilter.class) != null) {
+      return null;
+    }
+    RoleSet anyOf = compile(preAuthorize.value());
+    return anyOf == null ? null : List.of(new RoleSetAttribute(anyOf, preAuthorize.value()));
+  }
+
+  @Override
+  protected Collection<ConfigAttribute> findAttributes(Class<?> clazz) {
+    return null;
+  }
+
+  @Override
+  public Collection<ConfigAttribute> getAllConfigAttributes() {
+    return null;
+  }
+}
@@ -0,0 +1,49 @@
+package edu.ucsb.cs156.example.config;
+
+import java.util.Collection;
+
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.security.access.AccessDecisionVoter;
+import org.springframework.security.access.ConfigAttribute;
+import org.springframework.security.core.Authentication;
+
+import edu.ucsb.cs156.example.config.RoleSetMethodSecurityMetadataSource.RoleSetAttribute;
+import edu.ucsb.cs156.example.services.GrantedAuthoritiesService;
+
+/**
+ * Grants or denies the calls to methods whose @PreAuthorize was compiled
+ * into a RoleSetAttribute, from the user's RoleSet (kept in the session by
+ * GrantedAuthoritiesService), and abstains on every other call.
+ */
+public class RoleSetVoter implements AccessDecisionVoter<MethodInvocation> {
+
+  private final ObjectProvider<GrantedAuthoritiesService> grantedAuthoritiesService;
+
+  public RoleSetVoter(ObjectProvider<GrantedAuthoritiesService> grantedAuthoritiesService) {
+    this.grantedAuthoritiesService = grantedAuthoritiesService;
+  }
+
+  @Override
+  public boolean supports(ConfigAttribute attribute) {
+    return attribute instanceof RoleSetAttribute;
+  }
+
+  @Override
+  public boolean supports(Class<?> clazz) {
+    return MethodInvocation.class.isAssignableFrom(clazz);
+  }
+
+  @Override
+  public int vote(Authentication authentication, MethodInvocation invocation,
+      Collection<ConfigAttribute> attributes) {
+    for (ConfigAttribute attribute : attributes) {
+      if (attribute instanceof RoleSetAttribute roleSetAttribute) {
+        return roleSetAttribute.grants(grantedAuthoritiesService.getObject().getRoles(authentication))
+            ? ACCESS_GRANTED
+            : ACCESS_DENIED;
+      }
+    }
+    return ACCESS_ABSTAIN;
+  }
+}
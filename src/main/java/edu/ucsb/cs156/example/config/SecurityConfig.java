@@ -4,102 +4,71 @@ import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
-import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Map;
-import java.util.Optional;
-import java.util.Set;
 import java.util.regex.Pattern;
 
 import javax.servlet.http.HttpServletRequest;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.security.config.annotation.method.configuration.EnableGlobalMethodSecurity;
+import org.springframework.context.annotation.Import;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.builders.WebSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
-import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
-import org.springframework.security.core.authority.mapping.GrantedAuthoritiesMapper;
-import org.springframework.security.oauth2.core.user.OAuth2UserAuthority;
+import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.web.authentication.Http403ForbiddenEntryPoint;
 import org.springframework.security.web.csrf.CookieCsrfTokenRepository;
 import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
 import org.springframework.security.web.util.matcher.RequestMatcher;
 
-import edu.ucsb.cs156.example.entities.User;
-import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.GrantedAuthoritiesService;
 import lombok.extern.slf4j.Slf4j;
 
 @Configuration
 @EnableWebSecurity
-@EnableGlobalMethodSecurity(prePostEnabled = true)
+@Import(MethodSecurityConfig.class)
 @Slf4j
 public class SecurityConfig extends WebSecurityConfigurerAdapter {
 
-  @Value("${app.admin.emails}")
-  private final List<String> adminEmails = new ArrayList<String>();
-
   @Autowired
-  UserRepository userRepository;
+  GrantedAuthoritiesService grantedAuthoritiesService;
+
+  // only with app.session-token.enabled=true, see SessionTokenConfig
+  @Autowired(required = false)
+  SessionTokenSecurityContextRepository sessionTokens;
+
+  @Autowired(required = false)
+  CookieOAuth2AuthorizationRequestRepository authorizationRequests;
 
   @Override
   protected void configure(HttpSecurity http) throws Exception {
     http.authorizeRequests(authorize -> authorize
+        // per-handler latencies, error counts, pool and session sizes
+        .antMatchers("/actuator/prometheus").hasRole("ADMIN")
         .anyRequest().permitAll())
         .exceptionHandling(handlingConfigurer -> handlingConfigurer
             .authenticationEntryPoint(new Http403ForbiddenEntryPoint()))
         .oauth2Login(
-            oauth2 -> oauth2.userInfoEndpoint(userInfo -> userInfo.userAuthoritiesMapper(this.userAuthoritiesMapper())))
+            oauth2 -> oauth2.userInfoEndpoint(userInfo -> userInfo.userAuthoritiesMapper(grantedAuthoritiesService::mapAuthorities)))
         .csrf(csrf -> csrf
             .csrfTokenRepository(CookieCsrfTokenRepository.withHttpOnlyFalse()))
         .logout(logout -> logout
             .logoutRequestMatcher(new AntPathRequestMatcher("/logout"))
             .logoutSuccessUrl("/"));
+
+    if (sessionTokens != null) {
+      // stateless sessions: the user is in a signed cookie, not the HTTP session
+      http.sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+          .securityContext(securityContext -> securityContext.securityContextRepository(sessionTokens))
+          .oauth2Login(oauth2 -> oauth2
+              .authorizationEndpoint(authorization -> authorization.authorizationRequestRepository(authorizationRequests))
+              .successHandler(sessionTokens))
+          .logout(logout -> logout.deleteCookies(sessionTokens.getCookieName()));
+    }
   }
 
   @Override
   public void configure(WebSecurity web) throws Exception {
     web.ignoring().antMatchers("/h2-console/**");
   }
-
-  private GrantedAuthoritiesMapper userAuthoritiesMapper() {
-    return (authorities) -> {
-      Set<GrantedAuthority> mappedAuthorities = new HashSet<>();
-
-      authorities.forEach(authority -> {
-        log.info("********** authority={}", authority);
-        mappedAuthorities.add(authority);
-        if (OAuth2UserAuthority.class.isInstance(authority)) {
-          OAuth2UserAuthority oauth2UserAuthority = (OAuth2UserAuthority) authority;
-
-          Map<String, Object> userAttributes = oauth2UserAuthority.getAttributes();
-          log.info("********** userAttributes={}", userAttributes);
-
-          String email = (String) userAttributes.get("email");
-          if (getAdmin(email)) {
-            mappedAuthorities.add(new SimpleGrantedAuthority("ROLE_ADMIN"));
-          }
-
-          if (email.endsWith("@ucsb.edu")) {
-            mappedAuthorities.add(new SimpleGrantedAuthority("ROLE_MEMBER"));
-          }
-        }
-
-      });
-      return mappedAuthorities;
-    };
-  }
-
-  public boolean getAdmin(String email) {
-    if (adminEmails.contains(email)) {
-      return true;
-    }
-    Optional<User> u = userRepository.findByEmail(email);
-    return u.isPresent() && u.get().getAdmin();
-  }
-}
\ No newline at end of file
+}
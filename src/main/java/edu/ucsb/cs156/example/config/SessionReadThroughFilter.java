@@ -0,0 +1,48 @@
+package edu.ucsb.cs156.example.config;
+
+import java.io.IOException;
+import java.util.Set;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import edu.ucsb.cs156.example.repositories.NearCachingSessionRepository;
+
+/**
+ * Has the requests that change something (any method but GET, HEAD,
+ * OPTIONS and TRACE) read their session from the database rather than
+ * the near-cache (see SessionStoreConfig), so that a session deleted
+ * through another instance, by a logout or an admin, cannot be used here
+ * to change anything, even while a copy of it is still cached.  Runs
+ * before Spring Session's SessionRepositoryFilter, which reads the
+ * session.
+ */
+public class SessionReadThroughFilter extends OncePerRequestFilter {
+
+  static final Set<String> SAFE_METHODS = Set.of("GET", "HEAD", "OPTIONS", "TRACE");
+
+  private final NearCachingSessionRepository repository;
+
+  public SessionReadThroughFilter(NearCachingSessionRepository repository) {
+    this.repository = repository;
+  }
+
+  @Override
+  protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+      throws ServletException, IOException {
+    if (SAFE_METHODS.contains(request.getMethod())) {
+      filterChain.doFilter(request, response);
+      return;
+    }
+    repository.setReadThrough(true);
+    try {
+      filterChain.doFilter(request, response);
+    } finally {
+      repository.setReadThrough(false);
+    }
+  }
+}
@@ -0,0 +1,126 @@
+package edu.ucsb.cs156.example.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.session.SessionProperties;
+import org.springframework.boot.autoconfigure.web.ServerProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.convert.support.GenericConversionService;
+import org.springframework.core.serializer.support.DeserializingConverter;
+import org.springframework.core.serializer.support.SerializingConverter;
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.annotation.SchedulingConfigurer;
+import org.springframework.session.config.annotation.web.http.EnableSpringHttpSession;
+import org.springframework.session.jdbc.JdbcIndexedSessionRepository;
+import org.springframework.session.web.http.SessionRepositoryFilter;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import edu.ucsb.cs156.example.repositories.NearCachingSessionRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.Data;
+
+/**
+ * HTTP sessions kept in the database, shared by every instance of the
+ * app, when spring.session.store-type=jdbc (SESSION_STORE); otherwise
+ * (none) they are kept by the servlet container, in the heap of the
+ * instance that created them.
+ *
+ * The sessions are kept by Spring Session's JdbcIndexedSessionRepository,
+ * on the app's DataSource and the tables created by the V11 migration,
+ * and read and written through a NearCachingSessionRepository around it.
+ * (This takes the place of the repository Spring Boot would set up, so
+ * the spring.session.jdbc properties do not apply; the timeout is still
+ * spring.session.timeout, or else server.servlet.session.timeout.)  Each
+ * instance keeps the sessions it has used for
+ * app.session-store.near-cache-time-to-live (0 turns the near-cache
+ * off), and writes their last access times every
+ * app.session-store.last-access-flush-interval, in one batch.  Changes
+ * made through one instance are seen by the others within the
+ * near-cache's time to live, with one exception: the requests that change
+ * something read their session from the database (SessionReadThroughFilter).
+ * So a session that is deleted through another instance, by a logout
+ * or by an admin, can still be used on this instance to read data until
+ * the cached copy expires, but it cannot be used to change anything.  A
+ * login is seen at once, because it changes the session id.
+ *
+ * Expired sessions are deleted every app.session-store.cleanup-interval,
+ * cleanup-batch-size at a time and at most cleanup-max-batches per run,
+ * rather than all in one statement as Spring Session's own cleanup
+ * would.  The near-cache's hits and misses are published as
+ * cache_gets{cache="sessions"}.  See docs/postgres-database.md.
+ */
+@Configuration
+@EnableScheduling
+@EnableSpringHttpSession
+@ConditionalOnProperty(name = "spring.session.store-type", havingValue = "jdbc")
+@EnableConfigurationProperties(SessionStoreConfig.SessionStoreProperties.class)
+public class SessionStoreConfig {
+
+  @Data
+  @ConfigurationProperties("app.session-store")
+  public static class SessionStoreProperties {
+    private Duration nearCacheTimeToLive = Duration.ofSeconds(10);
+    private long nearCacheMaximumSize = 10000;
+    private Duration lastAccessFlushInterval = Duration.ofSeconds(5);
+    private Duration cleanupInterval = Duration.ofMinutes(1);
+    private int cleanupBatchSize = 500;
+    private int cleanupMaxBatches = 20;
+  }
+
+  // what is left to write is written before the DataSource closes
+  @Bean(destroyMethod = "flushLastAccessTimes")
+  public NearCachingSessionRepository nearCachingSessionRepository(JdbcOperations jdbcOperations,
+      PlatformTransactionManager transactionManager, SessionProperties sessionProperties,
+      ServerProperties serverProperties, SessionStoreProperties properties, MeterRegistry meterRegistry) {
+    // as Spring Session's own configuration sets it up
+    TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+    transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    JdbcIndexedSessionRepository sessions = new JdbcIndexedSessionRepository(jdbcOperations, transactionTemplate);
+    Duration timeout = sessionProperties.determineTimeout(() -> serverProperties.getServlet().getSession().getTimeout());
+    if (timeout != null) {
+      sessions.setDefaultMaxInactiveInterval((int) timeout.getSeconds());
+    }
+    // attributes are read with the class loader of the app's classes (with
+    // devtools, the restart class loader)
+    GenericConversionService conversionService = new GenericConversionService();
+    conversionService.addConverter(Object.class, byte[].class, new SerializingConverter());
+    conversionService.addConverter(byte[].class, Object.class,
+        new DeserializingConverter(SessionStoreConfig.class.getClassLoader()));
+    sessions.setConversionService(conversionService);
+
+    NearCachingSessionRepository repository = new NearCachingSessionRepository(sessions, jdbcOperations,
+        properties.getNearCacheTimeToLive(), properties.getNearCacheMaximumSize());
+    CaffeineCacheMetrics.monitor(meterRegistry, repository.getCache(), "sessions");
+    return repository;
+  }
+
+  @Bean
+  public FilterRegistrationBean<SessionReadThroughFilter> sessionReadThroughFilter(
+      NearCachingSessionRepository repository) {
+    FilterRegistrationBean<SessionReadThroughFilter> registration = new FilterRegistrationBean<>(
+        new SessionReadThroughFilter(repository));
+    registration.setOrder(SessionRepositoryFilter.DEFAULT_ORDER - 1);
+    return registration;
+  }
+
+  @Bean
+  public SchedulingConfigurer sessionStoreTasks(NearCachingSessionRepository repository,
+      SessionStoreProperties properties) {
+    return registrar -> {
+      registrar.addFixedDelayTask(repository::flushLastAccessTimes,
+          properties.getLastAccessFlushInterval().toMillis());
+      registrar.addFixedDelayTask(
+          () -> repository.deleteExpiredSessions(properties.getCleanupBatchSize(), properties.getCleanupMaxBatches()),
+          properties.getCleanupInterval().toMillis());
+    };
+  }
+}
@@ -0,0 +1,79 @@
+package edu.ucsb.cs156.example.config;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import edu.ucsb.cs156.example.services.CurrentUserService;
+import edu.ucsb.cs156.example.services.GrantedAuthoritiesService;
+import edu.ucsb.cs156.example.services.SessionTokenService;
+import lombok.Data;
+
+/**
+ * Stateless sessions, off unless app.session-token.enabled=true.
+ *
+ * Normally the logged in user is kept in the servlet container's HTTP
+ * session, in the heap of the instance that handled the login, so a
+ * load balancer has to send each user back to that instance.  With
+ * stateless sessions, SecurityConfig keeps no HTTP session: the login
+ * sets a cookie holding a token signed with app.session-token.secret
+ * (SessionTokenService) that carries the user's id, email and roles, and
+ * each request is authenticated by checking that signature, without
+ * looking anything up (SessionTokenSecurityContextRepository).  Even the
+ * OAuth2 login's own state goes in a signed cookie rather than the
+ * session (CookieOAuth2AuthorizationRequestRepository), so any instance
+ * can take any request, login callbacks included.
+ *
+ * Every instance needs the same secret, of at least 32 bytes.  A token is
+ * good for app.session-token.time-to-live after the login, and then the
+ * user logs in again; the roles in it are those at login, so an admin
+ * flag changed meanwhile only counts from the next login.  Logging out
+ * deletes the cookie but cannot revoke a copied token before it expires.
+ * See docs/oauth.md.
+ */
+@Configuration
+@EnableConfigurationProperties(SessionTokenConfig.SessionTokenProperties.class)
+public class SessionTokenConfig {
+
+  @Data
+  @ConfigurationProperties("app.session-token")
+  public static class SessionTokenProperties {
+    private boolean enabled = false;
+    private String secret = "";
+    private Duration timeToLive = Duration.ofHours(8);
+    private String cookieName = "SESSION_TOKEN";
+  }
+
+  @Bean
+  @ConditionalOnProperty("app.session-token.enabled")
+  public SessionTokenService sessionTokenService(SessionTokenProperties properties) {
+    byte[] secret = properties.getSecret().getBytes(StandardCharsets.UTF_8);
+    if (secret.length < 32) {
+      throw new IllegalStateException(
+          "app.session-token.secret (SESSION_TOKEN_SECRET) must be at least 32 bytes with app.session-token.enabled=true");
+    }
+    return new SessionTokenService(secret, properties.getTimeToLive(), Clock.systemUTC());
+  }
+
+  @Bean
+  @ConditionalOnProperty("app.session-token.enabled")
+  public SessionTokenSecurityContextRepository sessionTokenSecurityContextRepository(
+      SessionTokenService sessionTokenService, CurrentUserService currentUserService,
+      GrantedAuthoritiesService grantedAuthoritiesService, SessionTokenProperties properties) {
+    return new SessionTokenSecurityContextRepository(sessionTokenService, currentUserService,
+        grantedAuthoritiesService, properties.getCookieName());
+  }
+
+  @Bean
+  @ConditionalOnProperty("app.session-token.enabled")
+  public CookieOAuth2AuthorizationRequestRepository cookieOAuth2AuthorizationRequestRepository(
+      SessionTokenService sessionTokenService) {
+    return new CookieOAuth2AuthorizationRequestRepository(sessionTokenService);
+  }
+}
@@ -0,0 +1,107 @@
+package edu.ucsb.cs156.example.config;
+
+import java.io.IOException;
+import java.time.Duration;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseCookie;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+import org.springframework.security.web.authentication.AuthenticationSuccessHandler;
+import org.springframework.security.web.authentication.SavedRequestAwareAuthenticationSuccessHandler;
+import org.springframework.security.web.context.HttpRequestResponseHolder;
+import org.springframework.security.web.context.SecurityContextRepository;
+import org.springframework.web.util.WebUtils;
+
+import edu.ucsb.cs156.example.entities.User;
+import edu.ucsb.cs156.example.services.CurrentUserService;
+import edu.ucsb.cs156.example.services.GrantedAuthoritiesService;
+import edu.ucsb.cs156.example.services.SessionTokenService;
+import edu.ucsb.cs156.example.services.SessionTokenService.SessionTokenAuthentication;
+
+/**
+ * Keeps the logged in user of stateless sessions (see SessionTokenConfig)
+ * in a cookie holding their session token instead of the HTTP session.
+ *
+ * As the OAuth2 login's success handler, it saves the user (as the first
+ * /api/currentUser otherwise would) and sets the cookie, before the usual
+ * redirect.  On each later request, loadContext checks the token's
+ * signature and expiry, and the user is the SessionTokenAuthentication it
+ * stands for.  saveContext does nothing: the token does not change until
+ * the next login.
+ */
+public class SessionTokenSecurityContextRepository implements SecurityContextRepository, AuthenticationSuccessHandler {
+
+  private final SessionTokenService sessionTokenService;
+  private final CurrentUserService currentUserService;
+  private final GrantedAuthoritiesService grantedAuthoritiesService;
+  private final String cookieName;
+  private final AuthenticationSuccessHandler redirect = new SavedRequestAwareAuthenticationSuccessHandler();
+
+  public SessionTokenSecurityContextRepository(SessionTokenService sessionTokenService,
+      CurrentUserService currentUserService, GrantedAuthoritiesService grantedAuthoritiesService,
+      String cookieName) {
+    this.sessionTokenService = sessionTokenService;
+    this.currentUserService = currentUserService;
+    this.grantedAuthoritiesService = grantedAuthoritiesService;
+    this.cookieName = cookieName;
+  }
+
+  public String getCookieName() {
+    return cookieName;
+  }
+
+  @Override
+  public SecurityContext loadContext(HttpRequestResponseHolder requestResponseHolder) {
+    SecurityContext context = SecurityContextHolder.createEmptyContext();
+    Cookie cookie = WebUtils.getCookie(requestResponseHolder.getRequest(), cookieName);
+    if (cookie != null) {
+      SessionTokenAuthentication authentication = sessionTokenService.authentication(cookie.getValue());
+      if (authentication != null) {
+        context.setAuthentication(authentication);
+      }
+    }
+    return context;
+  }
+
+  @Override
+  public void saveContext(SecurityContext context, HttpServletRequest request, HttpServletResponse response) {
+  }
+
+  @Override
+  public boolean containsContext(HttpServletRequest request) {
+    return WebUtils.getCookie(request, cookieName) != null;
+  }
+
+  @Override
+  public void onAuthenticationSuccess(HttpServletRequest request, HttpServletResponse response,
+      Authentication authentication) throws IOException, ServletException {
+    // the login filter has already put authentication in the SecurityContextHolder
+    User user = currentUserService.getUser();
+    String token = sessionTokenService.issue((OAuth2AuthenticationToken) authentication, user.getId(),
+        user.getEmail(), grantedAuthoritiesService.getRoles(authentication));
+    setCookie(request, response, cookieName, token, sessionTokenService.getTimeToLive());
+    redirect.onAuthenticationSuccess(request, response, authentication);
+  }
+
+  // HttpOnly, and SameSite=Lax so that it comes with the redirect back
+  // from Google but not with requests from other sites' pages
+  static void setCookie(HttpServletRequest request, HttpServletResponse response, String name, String value,
+      Duration maxAge) {
+    ResponseCookie cookie = ResponseCookie.from(name, value)
+        .path("/")
+        .maxAge(maxAge)
+        .httpOnly(true)
+        .secure(request.isSecure())
+        .sameSite("Lax")
+        .build();
+    response.addHeader(HttpHeaders.SET_COOKIE, cookie.toString());
+  }
+}
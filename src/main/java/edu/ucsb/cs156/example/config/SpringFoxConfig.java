@@ -1,14 +1,31 @@
 package edu.ucsb.cs156.example.config;
 
+import java.lang.reflect.Field;
 import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.config.BeanPostProcessor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.ReflectionUtils;
+import org.springframework.web.servlet.mvc.method.RequestMappingInfoHandlerMapping;
+
+import com.fasterxml.classmate.TypeResolver;
 
+import reactor.core.publisher.Flux;
+
+import springfox.documentation.schema.AlternateTypeRules;
+import springfox.documentation.schema.WildcardType;
 import springfox.documentation.service.Contact;
 import springfox.documentation.builders.RequestHandlerSelectors;
 import springfox.documentation.service.ApiInfo;
 import springfox.documentation.spi.DocumentationType;
 import springfox.documentation.spring.web.plugins.Docket;
+import springfox.documentation.spring.web.plugins.WebMvcRequestHandlerProvider;
 import springfox.documentation.swagger.web.SecurityConfiguration;
 import springfox.documentation.swagger.web.SecurityConfigurationBuilder;
 
@@ -26,12 +43,23 @@ import static springfox.documentation.builders.PathSelectors.regex;
 public class SpringFoxConfig {
     @Bean
     public Docket api() {
+        TypeResolver typeResolver = new TypeResolver();
         return new Docket(DocumentationType.SWAGGER_2)
                 .apiInfo(apiInfo())
                 .select()
                 .apis(RequestHandlerSelectors.any())
                 .paths(regex("/api/.*|/csrf"))
-                .build();
+                .build()
+                // document the handlers that return CompletableFuture<ResponseEntity<T>> (see
+                // ApiController.async) as returning T, as if they returned ResponseEntity<T>
+                .alternateTypeRules(AlternateTypeRules.newRule(
+                        typeResolver.resolve(CompletableFuture.class,
+                                typeResolver.resolve(ResponseEntity.class, WildcardType.class)),
+                        typeResolver.resolve(WildcardType.class)),
+                        // and the /stream handlers that return Flux<T> as returning a list of T
+                        AlternateTypeRules.newRule(
+                                typeResolver.resolve(Flux.class, WildcardType.class),
+                                typeResolver.resolve(List.class, WildcardType.class)));
 
     }
 
@@ -42,6 +70,40 @@ public class SpringFoxConfig {
           .build();
     }
 
+    /**
+     * Springfox 3 only understands handler mappings that use the ant path
+     * matcher.  The actuator endpoints (/actuator/prometheus) are mapped with
+     * a PathPatternParser whatever spring.mvc.pathmatch.matching-strategy
+     * says, and springfox fails on startup with a NullPointerException when
+     * it sees them.  They are not under /api anyway, so leave them out.
+     *
+     * @see <a href="https://github.com/springfox/springfox/issues/3462">springfox issue 3462</a>
+     */
+    @Bean
+    public static BeanPostProcessor springfoxHandlerProviderBeanPostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+                if (bean instanceof WebMvcRequestHandlerProvider) {
+                    List<RequestMappingInfoHandlerMapping> mappings = getHandlerMappings(bean);
+                    List<RequestMappingInfoHandlerMapping> antPathMappings = mappings.stream()
+                            .filter(mapping -> mapping.getPatternParser() == null)
+                            .collect(Collectors.toList());
+                    mappings.clear();
+                    mappings.addAll(antPathMappings);
+                }
+                return bean;
+            }
+
+            @SuppressWarnings("unchecked")
+            private List<RequestMappingInfoHandlerMapping> getHandlerMappings(Object bean) {
+                Field field = ReflectionUtils.findField(bean.getClass(), "handlerMappings");
+                ReflectionUtils.makeAccessible(field);
+                return (List<RequestMappingInfoHandlerMapping>) ReflectionUtils.getField(field, bean);
+            }
+        };
+    }
+
     private ApiInfo apiInfo() {
         return new ApiInfo("demo-spring-react-example-v2", "<a href=\"/\">home</a>", null, null, null, null, null, Collections.EMPTY_LIST);
     }
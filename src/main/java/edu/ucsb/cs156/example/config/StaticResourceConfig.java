@@ -0,0 +1,79 @@
+package edu.ucsb.cs156.example.config;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.CacheControl;
+import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.resource.EncodedResourceResolver;
+import org.springframework.web.servlet.resource.VersionResourceResolver;
+
+/**
+ * Serving and caching of the production frontend build, which is copied
+ * to classpath:/public by the production Maven profile.
+ *
+ * Files whose names contain a hash of their content never change, so they
+ * are sent with a far-future, immutable Cache-Control:
+ * <ul>
+ * <li>/static/** is named by the React build (main.1a2b3c4d.js)</li>
+ * <li>the other files at the top level (favicon.ico, manifest.json, ...)
+ * are versioned by Spring (favicon-&lt;md5&gt;.ico); FrontendController
+ * rewrites the links in index.html to these names</li>
+ * </ul>
+ * Requests for the unversioned names may be cached for
+ * app.frontend.max-age.  index.html itself is served by
+ * FrontendController.
+ *
+ * Every handler serves the .br or .gz sibling of a file when there is one
+ * and the client accepts it; they are written by the postbuild script in
+ * frontend/package.json.
+ */
+@Configuration
+public class StaticResourceConfig implements WebMvcConfigurer {
+
+  public static final String FRONTEND_LOCATION = "classpath:/public/";
+
+  static final long ONE_YEAR_SECONDS = 365L * 24 * 60 * 60;
+
+  // CacheControl has no immutable directive before Spring 6
+  static final CacheControl IMMUTABLE = new CacheControl() {
+    @Override
+    public String getHeaderValue() {
+      return "max-age=" + ONE_YEAR_SECONDS + ", public, immutable";
+    }
+  };
+
+  // a top level file name with the md5 added by VersionResourceResolver,
+  // e.g. /favicon-0123456789abcdef0123456789abcdef.ico
+  static final String VERSIONED_FILE_PATTERN = "/*-" + "?".repeat(32) + ".*";
+
+  @Value("${app.frontend.max-age:1m}")
+  private Duration maxAge;
+
+  @Override
+  public void addResourceHandlers(ResourceHandlerRegistry registry) {
+    registry.addResourceHandler("/static/**")
+        .addResourceLocations(FRONTEND_LOCATION + "static/")
+        .setCacheControl(IMMUTABLE)
+        .resourceChain(true)
+        .addResolver(new EncodedResourceResolver());
+
+    registry.addResourceHandler(VERSIONED_FILE_PATTERN)
+        .addResourceLocations(FRONTEND_LOCATION)
+        .setCacheControl(IMMUTABLE)
+        .resourceChain(true)
+        .addResolver(new EncodedResourceResolver())
+        .addResolver(new VersionResourceResolver().addContentVersionStrategy("/**"));
+
+    // replaces Spring Boot's default /** handler; the version resolver is
+    // what lets FrontendController look up the versioned names
+    registry.addResourceHandler("/**")
+        .addResourceLocations(FRONTEND_LOCATION)
+        .setCacheControl(CacheControl.maxAge(maxAge).cachePublic())
+        .resourceChain(true)
+        .addResolver(new EncodedResourceResolver())
+        .addResolver(new VersionResourceResolver().addContentVersionStrategy("/**"));
+  }
+}
@@ -1,23 +1,58 @@
 package edu.ucsb.cs156.example.controllers;
 
+import edu.ucsb.cs156.example.entities.TableVersion;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.errors.InvalidBatchException;
+import edu.ucsb.cs156.example.errors.InvalidQueryException;
+import edu.ucsb.cs156.example.errors.ServerBusyException;
 import net.bytebuddy.implementation.bytecode.Throw;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import edu.ucsb.cs156.example.models.CurrentUser;
 import edu.ucsb.cs156.example.services.CurrentUserService;
+import edu.ucsb.cs156.example.services.HandlerExecutor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.context.request.NativeWebRequest;
 
+import javax.servlet.http.HttpServletResponse;
+import javax.validation.ConstraintViolationException;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 @Slf4j
 public abstract class ApiController {
+  public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+  public static final String TOTAL_COUNT_HEADER = "X-Total-Count";
+  public static final int DEFAULT_PAGE_SIZE = 1000;
+  public static final int MAX_BATCH_SIZE = 1000;
+
   @Autowired
   private CurrentUserService currentUserService;
 
+  @Autowired
+  private HandlerExecutor handlerExecutor;
+
   protected CurrentUser getCurrentUser() {
     return currentUserService.getCurrentUser();
   }
@@ -26,6 +61,216 @@ public abstract class ApiController {
     return Map.of("message", message);
   }
 
+  /**
+   * Clamps a client supplied page size to 1..DEFAULT_PAGE_SIZE
+   */
+  protected int pageSize(int limit) {
+    return Math.max(1, Math.min(limit, DEFAULT_PAGE_SIZE));
+  }
+
+  /**
+   * What an /all listing loads: every row, as before it was paged, unless
+   * the client asks for pages by sending a limit or an "after" cursor; then
+   * pageSize(limit) rows (DEFAULT_PAGE_SIZE without a limit), and one more
+   * to tell whether another page follows.
+   */
+  protected Pageable keysetPageable(Integer limit, Object after) {
+    if (limit == null && after == null) {
+      return Pageable.unpaged();
+    }
+    return PageRequest.ofSize(pageSize(limit == null ? DEFAULT_PAGE_SIZE : limit) + 1);
+  }
+
+  /**
+   * Turns a keyset query result, loaded as asked by keysetPageable, into a
+   * page response.  If the extra row came back, it is dropped and the key
+   * of the last returned row is sent in the X-Next-Cursor header, to be
+   * passed back as the "after" parameter.
+   */
+  protected <T> ResponseEntity<List<T>> keysetPage(List<T> rows, Pageable pageable, Function<T, ?> key) {
+    if (pageable.isUnpaged() || rows.size() < pageable.getPageSize()) {
+      return ResponseEntity.ok(rows);
+    }
+    int pageSize = pageable.getPageSize() - 1;
+    List<T> page = rows.subList(0, pageSize);
+    return ResponseEntity.ok()
+        .header(NEXT_CURSOR_HEADER, String.valueOf(key.apply(page.get(pageSize - 1))))
+        .body(page);
+  }
+
+  /**
+   * Parses the sort parameter of a /query listing: a property name,
+   * optionally followed by ",asc" or ",desc".  Only the given properties
+   * (the id and the indexed columns) may be sorted on.  Rows
+   * that sort equal are ordered by id, so that pages do not overlap.
+   */
+  protected Sort sort(String sort, Set<String> properties) {
+    String[] parts = sort.split(",", 2);
+    if (!properties.contains(parts[0])) {
+      throw new InvalidQueryException("cannot sort by %s; use one of %s".formatted(parts[0], properties));
+    }
+    Sort.Direction direction = Sort.Direction.ASC;
+    if (parts.length > 1) {
+      direction = Sort.Direction.fromOptionalString(parts[1])
+          .orElseThrow(() -> new InvalidQueryException("sort direction must be asc or desc, not " + parts[1]));
+    }
+    Sort result = Sort.by(direction, parts[0]);
+    return parts[0].equals("id") ? result : result.and(Sort.by("id"));
+  }
+
+  /**
+   * The page of a /query listing to load: page numbers start at 0, and
+   * limit is clamped as by pageSize
+   */
+  protected PageRequest pageRequest(int page, int limit, Sort sort) {
+    if (page < 0) {
+      throw new InvalidQueryException("page must not be negative");
+    }
+    return PageRequest.of(page, pageSize(limit), sort);
+  }
+
+  /**
+   * Turns a page of a /query listing into a response, with the number of
+   * rows matching the filters in the X-Total-Count header.  (Spring Data
+   * only runs the count query when the page is full, or not the first.)
+   */
+  protected <T> ResponseEntity<List<T>> page(Page<T> page) {
+    return ResponseEntity.ok()
+        .header(TOTAL_COUNT_HEADER, String.valueOf(page.getTotalElements()))
+        .body(page.getContent());
+  }
+
+  /**
+   * Runs the work of a handler on the HandlerExecutor (see
+   * AsyncHandlerConfig), for handlers whose cost depends on what the client
+   * asks for.  Check the request parameters before calling this, so that a
+   * bad request is refused without waiting for a thread.  The work must not
+   * rely on a transaction started by the handler method: it may run on
+   * another thread.  Throws ServerBusyException (503) if too many requests
+   * are already waiting.
+   */
+  protected <T> CompletableFuture<T> async(Supplier<T> work) {
+    return handlerExecutor.supply(work);
+  }
+
+  /**
+   * Answers a conditional GET from the version row of the table being
+   * listed.  Sets the ETag and Last-Modified headers, and returns true if
+   * the client already has this version; the response is then a 304 and
+   * the handler should return null without loading anything.  Without a
+   * version row the request is handled as an unconditional one.
+   */
+  protected boolean checkNotModified(NativeWebRequest request, Optional<TableVersion> tableVersion) {
+    if (tableVersion.isEmpty()) {
+      return false;
+    }
+    TableVersion version = tableVersion.get();
+    HttpServletResponse response = request.getNativeResponse(HttpServletResponse.class);
+    if (response != null) {
+      // clients may keep the response, but must revalidate it every time
+      response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.noCache().cachePrivate().getHeaderValue());
+    }
+    // the time is part of the tag so that a recreated table, whose
+    // counter starts again from 0, does not reuse old tags
+    String etag = "\"%d-%d\"".formatted(version.getVersion(), version.getLastModified().toEpochMilli());
+    return request.checkNotModified(etag, version.getLastModified().toEpochMilli());
+  }
+
+  /**
+   * Rejects an empty batch, or one with more than MAX_BATCH_SIZE items
+   */
+  protected void checkBatch(List<?> rows) {
+    if (rows.isEmpty() || rows.size() > MAX_BATCH_SIZE) {
+      throw new InvalidBatchException("a batch must have between 1 and %d items".formatted(MAX_BATCH_SIZE));
+    }
+  }
+
+  /**
+   * As checkBatch(rows), and also rejects items whose key is missing or
+   * appears more than once in the batch
+   */
+  protected <T> void checkBatch(List<T> rows, Function<T, ?> key) {
+    checkBatch(rows);
+    Set<Object> seen = new HashSet<>();
+    for (T row : rows) {
+      Object k = key.apply(row);
+      if (k == null || !seen.add(k)) {
+        throw new InvalidBatchException("%s is missing or repeated in the batch".formatted(k));
+      }
+    }
+  }
+
+  /**
+   * Loads the rows for a batch in one query and indexes them by key.
+   * Throws EntityNotFoundException for the first key that does not exist,
+   * so that a transactional caller rolls the whole batch back.
+   */
+  protected <T, K> Map<K, T> findBatch(Function<Iterable<K>, Iterable<T>> findAllById, List<K> keys,
+      Function<T, K> key, Class<T> entityType) {
+    Map<K, T> found = new LinkedHashMap<>();
+    findAllById.apply(keys).forEach(row -> found.put(key.apply(row), row));
+    for (K k : keys) {
+      if (!found.containsKey(k)) {
+        throw new EntityNotFoundException(entityType, k);
+      }
+    }
+    return found;
+  }
+
+  /**
+   * Checks the row count returned by a single row update query.  No rows
+   * changed means either the row does not exist (EntityNotFoundException)
+   * or the client sent a stale version (ObjectOptimisticLockingFailureException).
+   * Telling the two apart takes another query, but only when the update failed.
+   */
+  protected <K> void checkUpdated(int rows, Class<?> entityType, K id, Predicate<K> existsById) {
+    if (rows > 0) {
+      return;
+    }
+    if (!existsById.test(id)) {
+      throw new EntityNotFoundException(entityType, id);
+    }
+    throw new ObjectOptimisticLockingFailureException(entityType, id);
+  }
+
+  /**
+   * Throws ObjectOptimisticLockingFailureException if the client sent a
+   * version and it is not the current one
+   */
+  protected void checkVersion(Long sent, Long current, Class<?> entityType, Object id) {
+    if (sent != null && !sent.equals(current)) {
+      throw new ObjectOptimisticLockingFailureException(entityType, id);
+    }
+  }
+
+  @ExceptionHandler({ ObjectOptimisticLockingFailureException.class, DataIntegrityViolationException.class })
+  @ResponseStatus(HttpStatus.CONFLICT)
+  public Object handleConflict(Throwable e) {
+    return Map.of(
+      "type", e.getClass().getSimpleName(),
+      "message", e.getMessage()
+    );
+  }
+
+  @ExceptionHandler({ InvalidBatchException.class, InvalidQueryException.class, ConstraintViolationException.class })
+  @ResponseStatus(HttpStatus.BAD_REQUEST)
+  public Object handleBadRequest(Throwable e) {
+    return Map.of(
+      "type", e.getClass().getSimpleName(),
+      "message", e.getMessage()
+    );
+  }
+
+  @ExceptionHandler({ ServerBusyException.class })
+  @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+  public Object handleServerBusy(Throwable e, HttpServletResponse response) {
+    response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+    return Map.of(
+      "type", e.getClass().getSimpleName(),
+      "message", e.getMessage()
+    );
+  }
+
   @ExceptionHandler({ EntityNotFoundException.class })
   @ResponseStatus(HttpStatus.NOT_FOUND)
   public Object handleGenericException(Throwable e) {
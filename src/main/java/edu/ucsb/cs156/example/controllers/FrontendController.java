@@ -1,16 +1,66 @@
 package edu.ucsb.cs156.example.controllers;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
+import org.springframework.util.DigestUtils;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.servlet.resource.ResourceUrlProvider;
+
+import edu.ucsb.cs156.example.config.StaticResourceConfig;
 
+/**
+ * Serves index.html for every path the React router handles.  The page is
+ * read once, with its links rewritten to the versioned names of the files
+ * it refers to (see StaticResourceConfig), and then served from memory.
+ * Browsers keep it for app.frontend.max-age and then revalidate it with
+ * its ETag, so a new deployment is picked up within that time.
+ */
 @Profile("!development")
 @Controller
 public class FrontendController {
-  @GetMapping("/**/{path:[^\\.]*}")
-  public String index() {
-    return "forward:/index.html";
+
+  // href="/favicon.ico", src="/static/js/main.1a2b3c4d.js"
+  private static final Pattern LINK = Pattern.compile("(href|src)=\"(/[^\"]*)\"");
+
+  record IndexPage(byte[] body, String etag) {
+  }
+
+  @Autowired
+  ResourceLoader resourceLoader;
+
+  @Autowired
+  ResourceUrlProvider resourceUrlProvider;
+
+  @Value("${app.frontend.max-age:1m}")
+  Duration maxAge;
+
+  private volatile IndexPage indexPage;
+
+  @GetMapping({ "/", "/index.html", "/**/{path:[^\\.]*}" })
+  public ResponseEntity<byte[]> index() throws IOException {
+    IndexPage page = indexPage();
+    if (page == null) {
+      return ResponseEntity.notFound().build();
+    }
+    return ResponseEntity.ok()
+        .contentType(MediaType.TEXT_HTML)
+        .cacheControl(CacheControl.maxAge(maxAge).mustRevalidate())
+        .eTag(page.etag())
+        .body(page.body());
   }
 
   @GetMapping("/csrf")
@@ -18,4 +68,32 @@ public class FrontendController {
     return ResponseEntity.notFound().build();
   }
 
+  private IndexPage indexPage() throws IOException {
+    // two requests may both load it the first time; either copy will do
+    if (indexPage == null) {
+      Resource resource = resourceLoader.getResource(StaticResourceConfig.FRONTEND_LOCATION + "index.html");
+      if (!resource.exists()) {
+        return null;
+      }
+      String html;
+      try (InputStream in = resource.getInputStream()) {
+        html = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+      }
+      byte[] body = versionLinks(html).getBytes(StandardCharsets.UTF_8);
+      indexPage = new IndexPage(body, "\"" + DigestUtils.md5DigestAsHex(body) + "\"");
+    }
+    return indexPage;
+  }
+
+  private String versionLinks(String html) {
+    Matcher matcher = LINK.matcher(html);
+    StringBuilder result = new StringBuilder(html.length());
+    while (matcher.find()) {
+      String url = resourceUrlProvider.getForLookupPath(matcher.group(2));
+      String link = matcher.group(1) + "=\"" + (url != null ? url : matcher.group(2)) + "\"";
+      matcher.appendReplacement(result, Matcher.quoteReplacement(link));
+    }
+    matcher.appendTail(result);
+    return result.toString();
+  }
 }
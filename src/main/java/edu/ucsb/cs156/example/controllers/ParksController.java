@@ -2,17 +2,31 @@ package edu.ucsb.cs156.example.controllers;
 
 import edu.ucsb.cs156.example.entities.Park;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.repositories.Filters;
 import edu.ucsb.cs156.example.repositories.ParkRepository;
+import edu.ucsb.cs156.example.repositories.TableVersionRepository;
+import edu.ucsb.cs156.example.repositories.reactive.ParkReadRepository;
+import edu.ucsb.cs156.example.services.EntityExportService;
+import edu.ucsb.cs156.example.services.SearchService;
+import edu.ucsb.cs156.example.services.TableCacheService;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
 import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -21,24 +35,91 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
 @Api(description = "Park")
 @RequestMapping("/api/parks")
 @RestController
+@Validated
 @Slf4j
 public class ParksController extends ApiController {
 
+    // the properties /query can sort by; each has an index (see V9__Add_filter_indexes.sql)
+    static final Set<String> SORTABLE = Set.of("id", "state", "acres");
+
+    // the table_versions row bumped by every write, so that the other
+    // instances drop the parks they have cached (see TableCacheService)
+    static final String TABLE = "parks";
+
     @Autowired
     ParkRepository parkRepository;
 
-    @ApiOperation(value = "List all parks")
+    @Autowired
+    TableVersionRepository tableVersionRepository;
+
+    @Autowired
+    TableCacheService tableCacheService;
+
+    @Autowired
+    EntityExportService entityExportService;
+
+    @Autowired
+    ParkReadRepository parkReadRepository;
+
+    @Autowired
+    SearchService searchService;
+
+    @ApiOperation(value = "List all parks ordered by id, in pages if a limit or cursor is given")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("/all")
-    public Iterable<Park> allParks() {
-        Iterable<Park> parks = parkRepository.findAll();
-        return parks;
+    public ResponseEntity<List<Park>> allParks(
+            @ApiParam("only return parks whose id is greater than this cursor (X-Next-Cursor of the previous page)") @RequestParam(required = false) Long after,
+            @ApiParam("maximum number of parks to return (at most 1000); without a limit or a cursor, all of them are") @RequestParam(required = false) Integer limit) {
+        // the page may come from the query cache
+        tableCacheService.checkVersion(tableVersionRepository.findById(TABLE), Park.class);
+        Pageable pageable = keysetPageable(limit, after);
+        List<Park> parks = parkRepository.findByIdGreaterThanOrderByIdAsc(after == null ? 0 : after, pageable);
+        return keysetPage(parks, pageable, Park::getId);
+    }
+
+    @ApiOperation(value = "Export all parks as newline delimited JSON")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping(value = "/all", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportParks() {
+        return entityExportService.ndjson(parkRepository::streamAllByOrderByIdAsc);
+    }
+
+    @ApiOperation(value = "Stream all parks in order as newline delimited JSON, read without blocking (see ReadRepository)")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<Park> streamParks(
+            @ApiParam("only return parks whose id is greater than this (the id of the last one received, to resume)") @RequestParam(defaultValue = "0") long after) {
+        return parkReadRepository.findByIdGreaterThanOrderByIdAsc(after);
+    }
+
+    @ApiOperation(value = "List the parks matching the given filters, in pages sorted as asked")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/query")
+    public CompletableFuture<ResponseEntity<List<Park>>> queryParks(
+            @ApiParam("only parks in this state") @RequestParam(required = false) String state,
+            @ApiParam("only parks of at least this many acres") @RequestParam(required = false) Integer minAcres,
+            @ApiParam("only parks of at most this many acres") @RequestParam(required = false) Integer maxAcres,
+            @ApiParam("property to sort by (id, state or acres), optionally followed by ,asc or ,desc") @RequestParam(defaultValue = "id") String sort,
+            @ApiParam("page number, starting at 0") @RequestParam(defaultValue = "0") int page,
+            @ApiParam("maximum number of parks to return (at most 1000)") @RequestParam(defaultValue = "1000") int limit) {
+        Specification<Park> filters = Specification.<Park>where(Filters.equal("state", state))
+                .and(Filters.between("acres", minAcres, maxAcres));
+        PageRequest pageRequest = pageRequest(page, limit, sort(sort, SORTABLE));
+        return async(() -> page(parkRepository.findAll(filters, pageRequest)));
     }
 
     @ApiOperation(value = "Get a single park")
@@ -46,6 +127,8 @@ public class ParksController extends ApiController {
     @GetMapping("")
     public Park getById(
             @ApiParam("id") @RequestParam Long id) {
+        // the row may come from the second-level cache
+        tableCacheService.checkVersion(tableVersionRepository.findById(TABLE), Park.class);
         Park park = parkRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException(Park.class, id));
 
@@ -54,6 +137,7 @@ public class ParksController extends ApiController {
 
     @ApiOperation(value = "Create a new park")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @Transactional
     @PostMapping("/post")
     public Park postPark(
             @ApiParam("name") @RequestParam String name,
@@ -67,38 +151,101 @@ public class ParksController extends ApiController {
         park.setAcres(acres);
 
         Park savedPark = parkRepository.save(park);
+        searchService.update(savedPark);
+        tableVersionRepository.bump(TABLE);
 
         return savedPark;
     }
 
     @ApiOperation(value = "Delete a Park")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @Transactional
     @DeleteMapping("")
     public Object deletePark(
             @ApiParam("id") @RequestParam Long id) {
-        Park park = parkRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(Park.class, id));
-
-        parkRepository.delete(park);
+        if (parkRepository.removeById(id) == 0) {
+            throw new EntityNotFoundException(Park.class, id);
+        }
+        searchService.remove(SearchService.PARK, id);
+        tableVersionRepository.bump(TABLE);
         return genericMessage("Park with id %s deleted".formatted(id));
     }
 
     @ApiOperation(value = "Update a single park")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @Transactional
     @PutMapping("")
     public Park updatePark(
             @ApiParam("id") @RequestParam Long id,
             @RequestBody @Valid Park incoming) {
 
+        int updated = parkRepository.updateById(id, incoming.getVersion(), incoming.getName(), incoming.getState(), incoming.getAcres());
+        checkUpdated(updated, Park.class, id, parkRepository::existsById);
+        tableVersionRepository.bump(TABLE);
+
+        // the row as it is now stored, with the version the update gave it
         Park park = parkRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException(Park.class, id));
+        searchService.update(park);
+        return park;
+    }
 
-        park.setName(incoming.getName());
-        park.setState(incoming.getState());
-        park.setAcres(incoming.getAcres());
+    @ApiOperation(value = "Create many parks in one transaction")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @Transactional
+    @PostMapping("/batch")
+    public Iterable<Park> postParksBatch(
+            @ApiParam("parks to create; any ids are ignored") @RequestBody List<@Valid Park> incoming) {
+        checkBatch(incoming);
+        // ids are assigned by the database, as for /post
+        incoming.forEach(park -> {
+            park.setId(0);
+            park.setVersion(null);
+        });
+        Iterable<Park> saved = parkRepository.saveAll(incoming);
+        saved.forEach(searchService::update);
+        tableVersionRepository.bump(TABLE);
+        return saved;
+    }
 
-        parkRepository.save(park);
+    @ApiOperation(value = "Update many parks in one transaction")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @Transactional
+    @PutMapping("/batch")
+    public List<Park> updateParksBatch(
+            @ApiParam("parks to update, identified by id") @RequestBody List<@Valid Park> incoming) {
+        checkBatch(incoming, Park::getId);
+        List<Long> ids = incoming.stream().map(Park::getId).toList();
+        Map<Long, Park> existing = findBatch(parkRepository::findAllById, ids, Park::getId, Park.class);
+
+        List<Park> updated = new ArrayList<>();
+        for (Park in : incoming) {
+            Park park = existing.get(in.getId());
+            checkVersion(in.getVersion(), park.getVersion(), Park.class, in.getId());
+            park.setName(in.getName());
+            park.setState(in.getState());
+            park.setAcres(in.getAcres());
+            updated.add(park);
+        }
+
+        parkRepository.saveAll(updated);
+        updated.forEach(searchService::update);
+        tableVersionRepository.bump(TABLE);
+        return updated;
+    }
 
-        return park;
+    @ApiOperation(value = "Delete many parks in one transaction")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @Transactional
+    @DeleteMapping("/batch")
+    public Object deleteParksBatch(
+            @ApiParam("ids of the parks to delete") @RequestBody List<Long> ids) {
+        checkBatch(ids, Function.identity());
+        Map<Long, Park> existing = findBatch(parkRepository::findAllById, ids, Park::getId, Park.class);
+
+        parkRepository.deleteAll(existing.values());
+        ids.forEach(id -> searchService.remove(SearchService.PARK, id));
+        tableVersionRepository.bump(TABLE);
+        return genericMessage("%d parks deleted".formatted(ids.size()));
     }
 }
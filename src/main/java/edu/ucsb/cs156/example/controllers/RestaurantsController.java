@@ -2,16 +2,29 @@ package edu.ucsb.cs156.example.controllers;
 
 import edu.ucsb.cs156.example.entities.Restaurant;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.repositories.Filters;
 import edu.ucsb.cs156.example.repositories.RestaurantRepository;
+import edu.ucsb.cs156.example.repositories.TableVersionRepository;
+import edu.ucsb.cs156.example.repositories.reactive.RestaurantReadRepository;
+import edu.ucsb.cs156.example.services.EntityExportService;
+import edu.ucsb.cs156.example.services.SearchService;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
 import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -20,24 +33,90 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
 @Api(description = "Restaurants")
 @RequestMapping("/api/restaurants")
 @RestController
+@Validated
 @Slf4j
 public class RestaurantsController extends ApiController {
 
+    // the properties /query can sort by; each has an index (see V9__Add_filter_indexes.sql)
+    static final Set<String> SORTABLE = Set.of("id", "cuisine", "roachCounter");
+
+    // the table_versions row bumped by every write, for conditional GETs of /all
+    static final String TABLE = "restaurants";
+
     @Autowired
     RestaurantRepository restaurantRepository;
 
-    @ApiOperation(value = "List all restaurants")
+    @Autowired
+    TableVersionRepository tableVersionRepository;
+
+    @Autowired
+    EntityExportService entityExportService;
+
+    @Autowired
+    RestaurantReadRepository restaurantReadRepository;
+
+    @Autowired
+    SearchService searchService;
+
+    @ApiOperation(value = "List all restaurants ordered by id, in pages if a limit or cursor is given")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("/all")
-    public Iterable<Restaurant> allRestaurants() {
-        Iterable<Restaurant> restaurants = restaurantRepository.findAll();
-        return restaurants;
+    public ResponseEntity<List<Restaurant>> allRestaurants(
+            @ApiParam("only return restaurants whose id is greater than this cursor (X-Next-Cursor of the previous page)") @RequestParam(required = false) Long after,
+            @ApiParam("maximum number of restaurants to return (at most 1000); without a limit or a cursor, all of them are") @RequestParam(required = false) Integer limit,
+            NativeWebRequest request) {
+        if (checkNotModified(request, tableVersionRepository.findById(TABLE))) {
+            return null;
+        }
+        Pageable pageable = keysetPageable(limit, after);
+        List<Restaurant> restaurants = restaurantRepository.findByIdGreaterThanOrderByIdAsc(after == null ? 0 : after, pageable);
+        return keysetPage(restaurants, pageable, Restaurant::getId);
+    }
+
+    @ApiOperation(value = "Export all restaurants as newline delimited JSON")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping(value = "/all", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportRestaurants() {
+        return entityExportService.ndjson(restaurantRepository::streamAllByOrderByIdAsc);
+    }
+
+    @ApiOperation(value = "Stream all restaurants in order as newline delimited JSON, read without blocking (see ReadRepository)")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<Restaurant> streamRestaurants(
+            @ApiParam("only return restaurants whose id is greater than this (the id of the last one received, to resume)") @RequestParam(defaultValue = "0") long after) {
+        return restaurantReadRepository.findByIdGreaterThanOrderByIdAsc(after);
+    }
+
+    @ApiOperation(value = "List the restaurants matching the given filters, in pages sorted as asked")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/query")
+    public CompletableFuture<ResponseEntity<List<Restaurant>>> queryRestaurants(
+            @ApiParam("only restaurants with this cuisine") @RequestParam(required = false) String cuisine,
+            @ApiParam("only restaurants with at least this many roaches") @RequestParam(required = false) Integer minRoachCounter,
+            @ApiParam("only restaurants with at most this many roaches") @RequestParam(required = false) Integer maxRoachCounter,
+            @ApiParam("property to sort by (id, cuisine or roachCounter), optionally followed by ,asc or ,desc") @RequestParam(defaultValue = "id") String sort,
+            @ApiParam("page number, starting at 0") @RequestParam(defaultValue = "0") int page,
+            @ApiParam("maximum number of restaurants to return (at most 1000)") @RequestParam(defaultValue = "1000") int limit) {
+        Specification<Restaurant> filters = Specification.<Restaurant>where(Filters.equal("cuisine", cuisine))
+                .and(Filters.between("roachCounter", minRoachCounter, maxRoachCounter));
+        PageRequest pageRequest = pageRequest(page, limit, sort(sort, SORTABLE));
+        return async(() -> page(restaurantRepository.findAll(filters, pageRequest)));
     }
 
     @ApiOperation(value = "Get a single restaurant")
@@ -53,6 +132,7 @@ public class RestaurantsController extends ApiController {
 
     @ApiOperation(value = "Create a new restaurant")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @Transactional
     @PostMapping("/post")
     public Restaurant postRestaurant(
             @ApiParam("name") @RequestParam String name,
@@ -66,39 +146,101 @@ public class RestaurantsController extends ApiController {
         restaurant.setRoachCounter(roachCounter);
 
         Restaurant savedRestaurant = restaurantRepository.save(restaurant);
+        searchService.update(savedRestaurant);
+        tableVersionRepository.bump(TABLE);
 
         return savedRestaurant;
     }
 
     @ApiOperation(value = "Delete a Restaurant")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @Transactional
     @DeleteMapping("")
     public Object deleteRestaurant(
             @ApiParam("id") @RequestParam Long id) {
-        Restaurant restaurant = restaurantRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(Restaurant.class, id));
-
-        restaurantRepository.delete(restaurant);
+        if (restaurantRepository.removeById(id) == 0) {
+            throw new EntityNotFoundException(Restaurant.class, id);
+        }
+        searchService.remove(SearchService.RESTAURANT, id);
+        tableVersionRepository.bump(TABLE);
         return genericMessage("Restaurant with id %s deleted".formatted(id));
     }
 
     @ApiOperation(value = "Update a single restaurant")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @Transactional
     @PutMapping("")
     public Restaurant updateRestaurant(
             @ApiParam("id") @RequestParam Long id,
             @RequestBody @Valid Restaurant incoming) {
 
+        int updated = restaurantRepository.updateById(id, incoming.getVersion(), incoming.getName(), incoming.getCuisine(), incoming.getRoachCounter());
+        checkUpdated(updated, Restaurant.class, id, restaurantRepository::existsById);
+        tableVersionRepository.bump(TABLE);
+
+        // the row as it is now stored, with the version the update gave it
         Restaurant restaurant = restaurantRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException(Restaurant.class, id));
+        searchService.update(restaurant);
+        return restaurant;
+    }
 
-        
-        restaurant.setName(incoming.getName());
-        restaurant.setCuisine(incoming.getCuisine());
-        restaurant.setRoachCounter(incoming.getRoachCounter());
+    @ApiOperation(value = "Create many restaurants in one transaction")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @Transactional
+    @PostMapping("/batch")
+    public Iterable<Restaurant> postRestaurantsBatch(
+            @ApiParam("restaurants to create; any ids are ignored") @RequestBody List<@Valid Restaurant> incoming) {
+        checkBatch(incoming);
+        // ids are assigned by the database, as for /post
+        incoming.forEach(restaurant -> {
+            restaurant.setId(0);
+            restaurant.setVersion(null);
+        });
+        Iterable<Restaurant> saved = restaurantRepository.saveAll(incoming);
+        saved.forEach(searchService::update);
+        tableVersionRepository.bump(TABLE);
+        return saved;
+    }
 
-        restaurantRepository.save(restaurant);
+    @ApiOperation(value = "Update many restaurants in one transaction")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @Transactional
+    @PutMapping("/batch")
+    public List<Restaurant> updateRestaurantsBatch(
+            @ApiParam("restaurants to update, identified by id") @RequestBody List<@Valid Restaurant> incoming) {
+        checkBatch(incoming, Restaurant::getId);
+        List<Long> ids = incoming.stream().map(Restaurant::getId).toList();
+        Map<Long, Restaurant> existing = findBatch(restaurantRepository::findAllById, ids, Restaurant::getId, Restaurant.class);
+
+        List<Restaurant> updated = new ArrayList<>();
+        for (Restaurant in : incoming) {
+            Restaurant restaurant = existing.get(in.getId());
+            checkVersion(in.getVersion(), restaurant.getVersion(), Restaurant.class, in.getId());
+            restaurant.setName(in.getName());
+            restaurant.setCuisine(in.getCuisine());
+            restaurant.setRoachCounter(in.getRoachCounter());
+            updated.add(restaurant);
+        }
+
+        restaurantRepository.saveAll(updated);
+        updated.forEach(searchService::update);
+        tableVersionRepository.bump(TABLE);
+        return updated;
+    }
 
-        return restaurant;
+    @ApiOperation(value = "Delete many restaurants in one transaction")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @Transactional
+    @DeleteMapping("/batch")
+    public Object deleteRestaurantsBatch(
+            @ApiParam("ids of the restaurants to delete") @RequestBody List<Long> ids) {
+        checkBatch(ids, Function.identity());
+        Map<Long, Restaurant> existing = findBatch(restaurantRepository::findAllById, ids, Restaurant::getId, Restaurant.class);
+
+        restaurantRepository.deleteAll(existing.values());
+        ids.forEach(id -> searchService.remove(SearchService.RESTAURANT, id));
+        tableVersionRepository.bump(TABLE);
+        return genericMessage("%d restaurants deleted".formatted(ids.size()));
     }
 }
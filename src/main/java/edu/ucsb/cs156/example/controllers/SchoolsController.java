@@ -2,16 +2,30 @@ package edu.ucsb.cs156.example.controllers;
 
 import edu.ucsb.cs156.example.entities.Schools;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.repositories.Filters;
 import edu.ucsb.cs156.example.repositories.SchoolsRepository;
+import edu.ucsb.cs156.example.repositories.TableVersionRepository;
+import edu.ucsb.cs156.example.repositories.reactive.SchoolsReadRepository;
+import edu.ucsb.cs156.example.services.EntityExportService;
+import edu.ucsb.cs156.example.services.SearchService;
+import edu.ucsb.cs156.example.services.TableCacheService;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
 import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -20,25 +34,89 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
 
 @Api(description = "Schools")
 @RequestMapping("/api/schools")
 @RestController
+@Validated
 @Slf4j
 public class SchoolsController extends ApiController {
 
+    // the properties /query can sort by; each has an index (see V9__Add_filter_indexes.sql)
+    static final Set<String> SORTABLE = Set.of("id", "district");
+
+    // the table_versions row bumped by every write, so that the other
+    // instances drop the schools they have cached (see TableCacheService)
+    static final String TABLE = "schools";
+
     @Autowired
     SchoolsRepository schoolsRepository;
 
-    @ApiOperation(value = "List all schools")
+    @Autowired
+    TableVersionRepository tableVersionRepository;
+
+    @Autowired
+    TableCacheService tableCacheService;
+
+    @Autowired
+    EntityExportService entityExportService;
+
+    @Autowired
+    SchoolsReadRepository schoolsReadRepository;
+
+    @Autowired
+    SearchService searchService;
+
+    @ApiOperation(value = "List all schools ordered by id, in pages if a limit or cursor is given")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("/all")
-    public Iterable<Schools> allSchools() {
-        Iterable<Schools> schools = schoolsRepository.findAll();
-        return schools;
+    public ResponseEntity<List<Schools>> allSchools(
+            @ApiParam("only return schools whose id is greater than this cursor (X-Next-Cursor of the previous page)") @RequestParam(required = false) Long after,
+            @ApiParam("maximum number of schools to return (at most 1000); without a limit or a cursor, all of them are") @RequestParam(required = false) Integer limit) {
+        // the page may come from the query cache
+        tableCacheService.checkVersion(tableVersionRepository.findById(TABLE), Schools.class);
+        Pageable pageable = keysetPageable(limit, after);
+        List<Schools> schools = schoolsRepository.findByIdGreaterThanOrderByIdAsc(after == null ? 0 : after, pageable);
+        return keysetPage(schools, pageable, Schools::getId);
+    }
+
+    @ApiOperation(value = "Export all schools as newline delimited JSON")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping(value = "/all", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportSchools() {
+        return entityExportService.ndjson(schoolsRepository::streamAllByOrderByIdAsc);
+    }
+
+    @ApiOperation(value = "Stream all schools in order as newline delimited JSON, read without blocking (see ReadRepository)")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<Schools> streamSchools(
+            @ApiParam("only return schools whose id is greater than this (the id of the last one received, to resume)") @RequestParam(defaultValue = "0") long after) {
+        return schoolsReadRepository.findByIdGreaterThanOrderByIdAsc(after);
+    }
+
+    @ApiOperation(value = "List the schools matching the given filters, in pages sorted as asked")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/query")
+    public CompletableFuture<ResponseEntity<List<Schools>>> querySchools(
+            @ApiParam("only schools in this district") @RequestParam(required = false) String district,
+            @ApiParam("property to sort by (id or district), optionally followed by ,asc or ,desc") @RequestParam(defaultValue = "id") String sort,
+            @ApiParam("page number, starting at 0") @RequestParam(defaultValue = "0") int page,
+            @ApiParam("maximum number of schools to return (at most 1000)") @RequestParam(defaultValue = "1000") int limit) {
+        Specification<Schools> filters = Filters.equal("district", district);
+        PageRequest pageRequest = pageRequest(page, limit, sort(sort, SORTABLE));
+        return async(() -> page(schoolsRepository.findAll(filters, pageRequest)));
     }
 
     @ApiOperation(value = "Get a single school")
@@ -46,6 +124,8 @@ public class SchoolsController extends ApiController {
     @GetMapping("")
     public Schools getById(
             @ApiParam("id") @RequestParam Long id) {
+        // the row may come from the second-level cache
+        tableCacheService.checkVersion(tableVersionRepository.findById(TABLE), Schools.class);
         Schools school = schoolsRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException(Schools.class, id));
 
@@ -54,6 +134,7 @@ public class SchoolsController extends ApiController {
 
     @ApiOperation(value = "Create a new school")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @Transactional
     @PostMapping("/post")
     public Schools postSchool(
             @ApiParam("name") @RequestParam String name,
@@ -68,38 +149,101 @@ public class SchoolsController extends ApiController {
         school.setGradeRange(gradeRange);
 
         Schools savedSchools = schoolsRepository.save(school);
+        searchService.update(savedSchools);
+        tableVersionRepository.bump(TABLE);
 
         return savedSchools;
     }
 
     @ApiOperation(value = "Delete a School")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @Transactional
     @DeleteMapping("")
     public Object deleteSchool(
             @ApiParam("id") @RequestParam Long id) {
-        Schools school = schoolsRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(Schools.class, id));
-
-        schoolsRepository.delete(school);
+        if (schoolsRepository.removeById(id) == 0) {
+            throw new EntityNotFoundException(Schools.class, id);
+        }
+        searchService.remove(SearchService.SCHOOL, id);
+        tableVersionRepository.bump(TABLE);
         return genericMessage("School with id %s deleted".formatted(id));
     }
 
     @ApiOperation(value = "Update a single school")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @Transactional
     @PutMapping("")
     public Schools updateSchool(
             @ApiParam("id") @RequestParam Long id,
             @RequestBody @Valid Schools incoming) {
 
+        int updated = schoolsRepository.updateById(id, incoming.getVersion(), incoming.getName(), incoming.getDistrict(), incoming.getGradeRange());
+        checkUpdated(updated, Schools.class, id, schoolsRepository::existsById);
+        tableVersionRepository.bump(TABLE);
+
+        // the row as it is now stored, with the version the update gave it
         Schools school = schoolsRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException(Schools.class, id));
+        searchService.update(school);
+        return school;
+    }
 
-        school.setName(incoming.getName());
-        school.setDistrict(incoming.getDistrict());
-        school.setGradeRange(incoming.getGradeRange());
+    @ApiOperation(value = "Create many schools in one transaction")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @Transactional
+    @PostMapping("/batch")
+    public Iterable<Schools> postSchoolsBatch(
+            @ApiParam("schools to create; any ids are ignored") @RequestBody List<@Valid Schools> incoming) {
+        checkBatch(incoming);
+        // ids are assigned by the database, as for /post
+        incoming.forEach(school -> {
+            school.setId(0);
+            school.setVersion(null);
+        });
+        Iterable<Schools> saved = schoolsRepository.saveAll(incoming);
+        saved.forEach(searchService::update);
+        tableVersionRepository.bump(TABLE);
+        return saved;
+    }
 
-        schoolsRepository.save(school);
+    @ApiOperation(value = "Update many schools in one transaction")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @Transactional
+    @PutMapping("/batch")
+    public List<Schools> updateSchoolsBatch(
+            @ApiParam("schools to update, identified by id") @RequestBody List<@Valid Schools> incoming) {
+        checkBatch(incoming, Schools::getId);
+        List<Long> ids = incoming.stream().map(Schools::getId).toList();
+        Map<Long, Schools> existing = findBatch(schoolsRepository::findAllById, ids, Schools::getId, Schools.class);
+
+        List<Schools> updated = new ArrayList<>();
+        for (Schools in : incoming) {
+            Schools school = existing.get(in.getId());
+            checkVersion(in.getVersion(), school.getVersion(), Schools.class, in.getId());
+            school.setName(in.getName());
+            school.setDistrict(in.getDistrict());
+            school.setGradeRange(in.getGradeRange());
+            updated.add(school);
+        }
+
+        schoolsRepository.saveAll(updated);
+        updated.forEach(searchService::update);
+        tableVersionRepository.bump(TABLE);
+        return updated;
+    }
 
-        return school;
+    @ApiOperation(value = "Delete many schools in one transaction")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @Transactional
+    @DeleteMapping("/batch")
+    public Object deleteSchoolsBatch(
+            @ApiParam("ids of the schools to delete") @RequestBody List<Long> ids) {
+        checkBatch(ids, Function.identity());
+        Map<Long, Schools> existing = findBatch(schoolsRepository::findAllById, ids, Schools::getId, Schools.class);
+
+        schoolsRepository.deleteAll(existing.values());
+        ids.forEach(id -> searchService.remove(SearchService.SCHOOL, id));
+        tableVersionRepository.bump(TABLE);
+        return genericMessage("%d schools deleted".formatted(ids.size()));
     }
 }
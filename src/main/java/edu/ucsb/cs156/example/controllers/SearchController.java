@@ -0,0 +1,47 @@
+package edu.ucsb.cs156.example.controllers;
+
+import edu.ucsb.cs156.example.errors.InvalidQueryException;
+import edu.ucsb.cs156.example.models.SearchHit;
+import edu.ucsb.cs156.example.services.SearchService;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiParam;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+@Api(description = "Search")
+@RequestMapping("/api/search")
+@RestController
+public class SearchController extends ApiController {
+
+    static final int MAX_QUERY_LENGTH = 200;
+
+    @Autowired
+    SearchService searchService;
+
+    @ApiOperation(value = "Search restaurants (by name and cuisine), parks (by name and state) and schools (by name and district), best matches first")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("")
+    public CompletableFuture<ResponseEntity<List<SearchHit>>> search(
+            @ApiParam("words to search for; the last one may be the start of a word") @RequestParam String q,
+            @ApiParam("page number, starting at 0") @RequestParam(defaultValue = "0") int page,
+            @ApiParam("maximum number of hits to return (at most 1000)") @RequestParam(defaultValue = "20") int limit) {
+        if (q.length() > MAX_QUERY_LENGTH || SearchService.words(q).isEmpty()) {
+            throw new InvalidQueryException("q must contain a letter or a digit, and be at most %d characters".formatted(MAX_QUERY_LENGTH));
+        }
+        // hits are ranked by the search itself
+        PageRequest pageRequest = pageRequest(page, limit, Sort.unsorted());
+        return async(() -> page(searchService.search(q, pageRequest)));
+    }
+}
@@ -2,17 +2,28 @@ package edu.ucsb.cs156.example.controllers;
 
 import edu.ucsb.cs156.example.entities.UCSBDate;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.repositories.Filters;
 import edu.ucsb.cs156.example.repositories.UCSBDateRepository;
+import edu.ucsb.cs156.example.repositories.reactive.UCSBDateReadRepository;
+import edu.ucsb.cs156.example.services.EntityExportService;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
 import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -21,26 +32,77 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 
 @Api(description = "UCSBDates")
 @RequestMapping("/api/ucsbdates")
 @RestController
+@Validated
 @Slf4j
 public class UCSBDatesController extends ApiController {
 
+    // the properties /query can sort by; each has an index (see V9__Add_filter_indexes.sql)
+    static final Set<String> SORTABLE = Set.of("id", "quarterYYYYQ", "localDateTime");
+
     @Autowired
     UCSBDateRepository ucsbDateRepository;
 
-    @ApiOperation(value = "List all ucsb dates")
+    @Autowired
+    EntityExportService entityExportService;
+
+    @Autowired
+    UCSBDateReadRepository ucsbDateReadRepository;
+
+    @ApiOperation(value = "List all ucsb dates ordered by id, in pages if a limit or cursor is given")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("/all")
-    public Iterable<UCSBDate> allUCSBDates() {
-        Iterable<UCSBDate> dates = ucsbDateRepository.findAll();
-        return dates;
+    public ResponseEntity<List<UCSBDate>> allUCSBDates(
+            @ApiParam("only return dates whose id is greater than this cursor (X-Next-Cursor of the previous page)") @RequestParam(required = false) Long after,
+            @ApiParam("maximum number of dates to return (at most 1000); without a limit or a cursor, all of them are") @RequestParam(required = false) Integer limit) {
+        Pageable pageable = keysetPageable(limit, after);
+        List<UCSBDate> dates = ucsbDateRepository.findByIdGreaterThanOrderByIdAsc(after == null ? 0 : after, pageable);
+        return keysetPage(dates, pageable, UCSBDate::getId);
+    }
+
+    @ApiOperation(value = "Export all ucsb dates as newline delimited JSON")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping(value = "/all", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportUCSBDates() {
+        return entityExportService.ndjson(ucsbDateRepository::streamAllByOrderByIdAsc);
+    }
+
+    @ApiOperation(value = "Stream all ucsb dates in order as newline delimited JSON, read without blocking (see ReadRepository)")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<UCSBDate> streamUCSBDates(
+            @ApiParam("only return dates whose id is greater than this (the id of the last one received, to resume)") @RequestParam(defaultValue = "0") long after) {
+        return ucsbDateReadRepository.findByIdGreaterThanOrderByIdAsc(after);
+    }
+
+    @ApiOperation(value = "List the dates matching the given filters, in pages sorted as asked")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/query")
+    public CompletableFuture<ResponseEntity<List<UCSBDate>>> queryUCSBDates(
+            @ApiParam("only dates in this quarter (e.g. 20231 for Winter 2023)") @RequestParam(required = false) String quarterYYYYQ,
+            @ApiParam("only dates at or after this time (in iso format, e.g. 2023-01-09T00:00:00)") @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @ApiParam("only dates at or before this time (in iso format, e.g. 2023-03-17T23:59:59)") @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @ApiParam("property to sort by (id, quarterYYYYQ or localDateTime), optionally followed by ,asc or ,desc") @RequestParam(defaultValue = "id") String sort,
+            @ApiParam("page number, starting at 0") @RequestParam(defaultValue = "0") int page,
+            @ApiParam("maximum number of dates to return (at most 1000)") @RequestParam(defaultValue = "1000") int limit) {
+        Specification<UCSBDate> filters = Specification.<UCSBDate>where(Filters.equal("quarterYYYYQ", quarterYYYYQ))
+                .and(Filters.between("localDateTime", from, to));
+        PageRequest pageRequest = pageRequest(page, limit, sort(sort, SORTABLE));
+        return async(() -> page(ucsbDateRepository.findAll(filters, pageRequest)));
     }
 
     @ApiOperation(value = "Get a single date")
@@ -66,7 +128,7 @@ public class UCSBDatesController extends ApiController {
         // For an explanation of @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
         // See: https://www.baeldung.com/spring-date-parameters
 
-        log.info("localDateTime={}", localDateTime);
+        log.debug("localDateTime={}", localDateTime);
 
         UCSBDate ucsbDate = new UCSBDate();
         ucsbDate.setQuarterYYYYQ(quarterYYYYQ);
@@ -83,10 +145,9 @@ public class UCSBDatesController extends ApiController {
     @DeleteMapping("")
     public Object deleteUCSBDate(
             @ApiParam("id") @RequestParam Long id) {
-        UCSBDate ucsbDate = ucsbDateRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(UCSBDate.class, id));
-
-        ucsbDateRepository.delete(ucsbDate);
+        if (ucsbDateRepository.removeById(id) == 0) {
+            throw new EntityNotFoundException(UCSBDate.class, id);
+        }
         return genericMessage("UCSBDate with id %s deleted".formatted(id));
     }
 
@@ -97,15 +158,64 @@ public class UCSBDatesController extends ApiController {
             @ApiParam("id") @RequestParam Long id,
             @RequestBody @Valid UCSBDate incoming) {
 
+        int updated = ucsbDateRepository.updateById(id, incoming.getVersion(), incoming.getQuarterYYYYQ(), incoming.getName(), incoming.getLocalDateTime());
+        checkUpdated(updated, UCSBDate.class, id, ucsbDateRepository::existsById);
+
+        // the row as it is now stored, with the version the update gave it
         UCSBDate ucsbDate = ucsbDateRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException(UCSBDate.class, id));
+        return ucsbDate;
+    }
 
-        ucsbDate.setQuarterYYYYQ(incoming.getQuarterYYYYQ());
-        ucsbDate.setName(incoming.getName());
-        ucsbDate.setLocalDateTime(incoming.getLocalDateTime());
+    @ApiOperation(value = "Create many dates in one transaction")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @Transactional
+    @PostMapping("/batch")
+    public Iterable<UCSBDate> postUCSBDatesBatch(
+            @ApiParam("dates to create; any ids are ignored") @RequestBody List<@Valid UCSBDate> incoming) {
+        checkBatch(incoming);
+        // ids are assigned by the database, as for /post
+        incoming.forEach(ucsbDate -> {
+            ucsbDate.setId(0);
+            ucsbDate.setVersion(null);
+        });
+        return ucsbDateRepository.saveAll(incoming);
+    }
 
-        ucsbDateRepository.save(ucsbDate);
+    @ApiOperation(value = "Update many dates in one transaction")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @Transactional
+    @PutMapping("/batch")
+    public List<UCSBDate> updateUCSBDatesBatch(
+            @ApiParam("dates to update, identified by id") @RequestBody List<@Valid UCSBDate> incoming) {
+        checkBatch(incoming, UCSBDate::getId);
+        List<Long> ids = incoming.stream().map(UCSBDate::getId).toList();
+        Map<Long, UCSBDate> existing = findBatch(ucsbDateRepository::findAllById, ids, UCSBDate::getId, UCSBDate.class);
+
+        List<UCSBDate> updated = new ArrayList<>();
+        for (UCSBDate in : incoming) {
+            UCSBDate ucsbDate = existing.get(in.getId());
+            checkVersion(in.getVersion(), ucsbDate.getVersion(), UCSBDate.class, in.getId());
+            ucsbDate.setQuarterYYYYQ(in.getQuarterYYYYQ());
+            ucsbDate.setName(in.getName());
+            ucsbDate.setLocalDateTime(in.getLocalDateTime());
+            updated.add(ucsbDate);
+        }
+
+        ucsbDateRepository.saveAll(updated);
+        return updated;
+    }
 
-        return ucsbDate;
+    @ApiOperation(value = "Delete many dates in one transaction")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @Transactional
+    @DeleteMapping("/batch")
+    public Object deleteUCSBDatesBatch(
+            @ApiParam("ids of the dates to delete") @RequestBody List<Long> ids) {
+        checkBatch(ids, Function.identity());
+        Map<Long, UCSBDate> existing = findBatch(ucsbDateRepository::findAllById, ids, UCSBDate::getId, UCSBDate.class);
+
+        ucsbDateRepository.deleteAll(existing.values());
+        return genericMessage("%d dates deleted".formatted(ids.size()));
     }
 }
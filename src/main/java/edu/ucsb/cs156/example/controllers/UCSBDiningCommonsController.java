@@ -1,15 +1,30 @@
 package edu.ucsb.cs156.example.controllers;
 
+import edu.ucsb.cs156.example.entities.TableVersion;
 import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.errors.InvalidBatchException;
+import edu.ucsb.cs156.example.errors.InvalidQueryException;
+import edu.ucsb.cs156.example.repositories.TableVersionRepository;
 import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsRepository;
+import edu.ucsb.cs156.example.repositories.reactive.UCSBDiningCommonsReadRepository;
+import edu.ucsb.cs156.example.services.EntityExportService;
+import edu.ucsb.cs156.example.services.NearestDiningCommonsService;
+import edu.ucsb.cs156.example.services.SpatialIndex;
+import edu.ucsb.cs156.example.services.TableCacheService;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
 import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -18,25 +33,91 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+
 
 @Api(description = "UCSBDiningCommons")
 @RequestMapping("/api/ucsbdiningcommons")
 @RestController
+@Validated
 @Slf4j
 public class UCSBDiningCommonsController extends ApiController {
 
+    // the table_versions row bumped by every write, for conditional GETs of /all
+    static final String TABLE = "ucsbdiningcommons";
+
     @Autowired
     UCSBDiningCommonsRepository ucsbDiningCommonsRepository;
 
-    @ApiOperation(value = "List all ucsb dining commons")
+    @Autowired
+    TableVersionRepository tableVersionRepository;
+
+    @Autowired
+    EntityExportService entityExportService;
+
+    @Autowired
+    UCSBDiningCommonsReadRepository ucsbDiningCommonsReadRepository;
+
+    @Autowired
+    NearestDiningCommonsService nearestDiningCommonsService;
+
+    @Autowired
+    TableCacheService tableCacheService;
+
+    @ApiOperation(value = "List all ucsb dining commons ordered by code, in pages if a limit or cursor is given")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("/all")
-    public Iterable<UCSBDiningCommons> allCommonss() {
-        Iterable<UCSBDiningCommons> commons = ucsbDiningCommonsRepository.findAll();
-        return commons;
+    public ResponseEntity<List<UCSBDiningCommons>> allCommonss(
+            @ApiParam("only return commons whose code is greater than this cursor (X-Next-Cursor of the previous page)") @RequestParam(required = false) String after,
+            @ApiParam("maximum number of commons to return (at most 1000); without a limit or a cursor, all of them are") @RequestParam(required = false) Integer limit,
+            NativeWebRequest request) {
+        Optional<TableVersion> version = tableVersionRepository.findById(TABLE);
+        if (checkNotModified(request, version)) {
+            return null;
+        }
+        // the page may come from the query cache, which must not be older
+        // than the version in the ETag
+        tableCacheService.checkVersion(version, UCSBDiningCommons.class);
+        Pageable pageable = keysetPageable(limit, after);
+        List<UCSBDiningCommons> commons = ucsbDiningCommonsRepository.findByCodeGreaterThanOrderByCodeAsc(after == null ? "" : after, pageable);
+        return keysetPage(commons, pageable, UCSBDiningCommons::getCode);
+    }
+
+    @ApiOperation(value = "Export all ucsb dining commons as newline delimited JSON")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping(value = "/all", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportCommons() {
+        return entityExportService.ndjson(ucsbDiningCommonsRepository::streamAllByOrderByCodeAsc);
+    }
+
+    @ApiOperation(value = "Stream all ucsb dining commons in order as newline delimited JSON, read without blocking (see ReadRepository)")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<UCSBDiningCommons> streamCommons(
+            @ApiParam("only return dining commons whose code sorts after this (the code of the last one received, to resume)") @RequestParam(defaultValue = "") String after) {
+        return ucsbDiningCommonsReadRepository.findByIdGreaterThanOrderByIdAsc(after);
+    }
+
+    @ApiOperation(value = "List the k dining commons nearest to a location, nearest first, each with its distance in metres")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/nearest")
+    public List<SpatialIndex.Neighbor<UCSBDiningCommons>> nearestCommons(
+            @ApiParam("latitude, in degrees") @RequestParam double lat,
+            @ApiParam("longitude, in degrees") @RequestParam double lon,
+            @ApiParam("number of commons to return (at most 1000)") @RequestParam(defaultValue = "5") int k) {
+        if (!(Math.abs(lat) <= 90 && Math.abs(lon) <= 180)) {
+            throw new InvalidQueryException("lat must be between -90 and 90, and lon between -180 and 180");
+        }
+        return nearestDiningCommonsService.nearest(lat, lon, pageSize(k));
     }
 
     @ApiOperation(value = "Get a single commons")
@@ -44,6 +125,8 @@ public class UCSBDiningCommonsController extends ApiController {
     @GetMapping("")
     public UCSBDiningCommons getById(
             @ApiParam("code") @RequestParam String code) {
+        // the row may come from the second-level cache, as for /all
+        tableCacheService.checkVersion(tableVersionRepository.findById(TABLE), UCSBDiningCommons.class);
         UCSBDiningCommons commons = ucsbDiningCommonsRepository.findById(code)
                 .orElseThrow(() -> new EntityNotFoundException(UCSBDiningCommons.class, code));
 
@@ -52,6 +135,7 @@ public class UCSBDiningCommonsController extends ApiController {
 
     @ApiOperation(value = "Create a new commons")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @Transactional
     @PostMapping("/post")
     public UCSBDiningCommons postCommons(
         @ApiParam("code") @RequestParam String code,
@@ -74,42 +158,101 @@ public class UCSBDiningCommonsController extends ApiController {
         commons.setLongitude(longitude);
 
         UCSBDiningCommons savedCommons = ucsbDiningCommonsRepository.save(commons);
+        tableVersionRepository.bump(TABLE);
 
         return savedCommons;
     }
 
     @ApiOperation(value = "Delete a UCSBDiningCommons")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @Transactional
     @DeleteMapping("")
     public Object deleteCommons(
             @ApiParam("code") @RequestParam String code) {
-        UCSBDiningCommons commons = ucsbDiningCommonsRepository.findById(code)
-                .orElseThrow(() -> new EntityNotFoundException(UCSBDiningCommons.class, code));
-
-        ucsbDiningCommonsRepository.delete(commons);
+        if (ucsbDiningCommonsRepository.removeByCode(code) == 0) {
+            throw new EntityNotFoundException(UCSBDiningCommons.class, code);
+        }
+        tableVersionRepository.bump(TABLE);
         return genericMessage("UCSBDiningCommons with id %s deleted".formatted(code));
     }
 
     @ApiOperation(value = "Update a single commons")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @Transactional
     @PutMapping("")
     public UCSBDiningCommons updateCommons(
             @ApiParam("code") @RequestParam String code,
             @RequestBody @Valid UCSBDiningCommons incoming) {
 
+        int updated = ucsbDiningCommonsRepository.updateByCode(code, incoming.getVersion(), incoming.getName(), incoming.getHasSackMeal(), incoming.getHasTakeOutMeal(), incoming.getHasDiningCam(), incoming.getLatitude(), incoming.getLongitude());
+        checkUpdated(updated, UCSBDiningCommons.class, code, ucsbDiningCommonsRepository::existsById);
+        tableVersionRepository.bump(TABLE);
+
+        // the row as it is now stored, with the version the update gave it
         UCSBDiningCommons commons = ucsbDiningCommonsRepository.findById(code)
                 .orElseThrow(() -> new EntityNotFoundException(UCSBDiningCommons.class, code));
+        return commons;
+    }
 
+    @ApiOperation(value = "Create many commons in one transaction")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @Transactional
+    @PostMapping("/batch")
+    public Iterable<UCSBDiningCommons> postCommonsBatch(
+            @ApiParam("commons to create, each with a unique code") @RequestBody List<@Valid UCSBDiningCommons> incoming) {
+        checkBatch(incoming, UCSBDiningCommons::getCode);
+        // the codes are ids, so an existing one would only fail at commit
+        List<String> codes = incoming.stream().map(UCSBDiningCommons::getCode).toList();
+        List<String> taken = new ArrayList<>();
+        ucsbDiningCommonsRepository.findAllById(codes).forEach(commons -> taken.add(commons.getCode()));
+        if (!taken.isEmpty()) {
+            throw new InvalidBatchException("commons %s already exist".formatted(taken));
+        }
+        incoming.forEach(commons -> commons.setVersion(null));
+        Iterable<UCSBDiningCommons> saved = ucsbDiningCommonsRepository.saveAll(incoming);
+        tableVersionRepository.bump(TABLE);
+        return saved;
+    }
 
-        commons.setName(incoming.getName());  
-        commons.setHasSackMeal(incoming.getHasSackMeal());
-        commons.setHasTakeOutMeal(incoming.getHasTakeOutMeal());
-        commons.setHasDiningCam(incoming.getHasDiningCam());
-        commons.setLatitude(incoming.getLatitude());
-        commons.setLongitude(incoming.getLongitude());
+    @ApiOperation(value = "Update many commons in one transaction")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @Transactional
+    @PutMapping("/batch")
+    public List<UCSBDiningCommons> updateCommonsBatch(
+            @ApiParam("commons to update, identified by code") @RequestBody List<@Valid UCSBDiningCommons> incoming) {
+        checkBatch(incoming, UCSBDiningCommons::getCode);
+        List<String> codes = incoming.stream().map(UCSBDiningCommons::getCode).toList();
+        Map<String, UCSBDiningCommons> existing = findBatch(ucsbDiningCommonsRepository::findAllById, codes, UCSBDiningCommons::getCode, UCSBDiningCommons.class);
 
-        ucsbDiningCommonsRepository.save(commons);
+        List<UCSBDiningCommons> updated = new ArrayList<>();
+        for (UCSBDiningCommons in : incoming) {
+            UCSBDiningCommons commons = existing.get(in.getCode());
+            checkVersion(in.getVersion(), commons.getVersion(), UCSBDiningCommons.class, in.getCode());
+            commons.setName(in.getName());
+            commons.setHasSackMeal(in.getHasSackMeal());
+            commons.setHasTakeOutMeal(in.getHasTakeOutMeal());
+            commons.setHasDiningCam(in.getHasDiningCam());
+            commons.setLatitude(in.getLatitude());
+            commons.setLongitude(in.getLongitude());
+            updated.add(commons);
+        }
 
-        return commons;
+        ucsbDiningCommonsRepository.saveAll(updated);
+        tableVersionRepository.bump(TABLE);
+        return updated;
+    }
+
+    @ApiOperation(value = "Delete many commons in one transaction")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @Transactional
+    @DeleteMapping("/batch")
+    public Object deleteCommonsBatch(
+            @ApiParam("codes of the commons to delete") @RequestBody List<String> codes) {
+        checkBatch(codes, Function.identity());
+        Map<String, UCSBDiningCommons> existing = findBatch(ucsbDiningCommonsRepository::findAllById, codes, UCSBDiningCommons::getCode, UCSBDiningCommons.class);
+
+        ucsbDiningCommonsRepository.deleteAll(existing.values());
+        tableVersionRepository.bump(TABLE);
+        return genericMessage("%d commons deleted".formatted(codes.size()));
     }
 }
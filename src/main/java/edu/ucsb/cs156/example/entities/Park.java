@@ -1,9 +1,16 @@
 package edu.ucsb.cs156.example.entities;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Entity;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.SequenceGenerator;
 import javax.persistence.GeneratedValue;
+import javax.persistence.Version;
+import javax.validation.constraints.NotBlank;
+
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -15,12 +22,20 @@ import lombok.Builder;
 @NoArgsConstructor
 @Builder
 @Entity(name = "parks")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "parks") // see HibernateCacheConfig
 public class Park {
   @Id
-  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  // pooled ids so inserts can be batched; see db.migration.V6__Use_pooled_sequences_for_ids
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "parks_seq")
+  @SequenceGenerator(name = "parks_seq", allocationSize = 50)
   private long id;
 
+  @NotBlank
   private String name;
   private String state;
   private int acres;
+
+  @Version
+  private Long version;
 }
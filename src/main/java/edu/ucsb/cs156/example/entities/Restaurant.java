@@ -4,6 +4,9 @@ import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Version;
+import javax.validation.constraints.NotBlank;
 
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -17,10 +20,16 @@ import lombok.Builder;
 @Entity(name = "restaurants")
 public class Restaurant {
   @Id
-  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  // pooled ids so inserts can be batched; see db.migration.V6__Use_pooled_sequences_for_ids
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "restaurants_seq")
+  @SequenceGenerator(name = "restaurants_seq", allocationSize = 50)
   private long id;
 
+  @NotBlank
   private String name;
   private String cuisine;
   private int roachCounter; //keeps track of how many cockroaches are in the restaurant
-}
\ No newline at end of file
+
+  @Version
+  private Long version;
+}
@@ -1,10 +1,17 @@
 package edu.ucsb.cs156.example.entities;
 
 
+import javax.persistence.Cacheable;
 import javax.persistence.Entity;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.SequenceGenerator;
 import javax.persistence.GeneratedValue;
+import javax.persistence.Version;
+import javax.validation.constraints.NotBlank;
+
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -16,12 +23,20 @@ import lombok.Builder;
 @NoArgsConstructor
 @Builder
 @Entity(name = "schools")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "schools") // see HibernateCacheConfig
 public class Schools {
   @Id
-  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  // pooled ids so inserts can be batched; see db.migration.V6__Use_pooled_sequences_for_ids
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "schools_seq")
+  @SequenceGenerator(name = "schools_seq", allocationSize = 50)
   private long id;
 
+  @NotBlank
   private String name;  
   private String district;
   private String gradeRange;
-}
\ No newline at end of file
+
+  @Version
+  private Long version;
+}
@@ -0,0 +1,25 @@
+package edu.ucsb.cs156.example.entities;
+
+import java.time.Instant;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+
+// How many times a table has been written through the API, and when it
+// was last written; see TableVersionRepository
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Entity(name = "table_versions")
+public class TableVersion {
+  @Id
+  private String tableName;
+  private long version;
+  private Instant lastModified;
+}
@@ -5,7 +5,10 @@ import java.time.LocalDateTime;
 import javax.persistence.Entity;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.SequenceGenerator;
 import javax.persistence.GeneratedValue;
+import javax.persistence.Version;
+import javax.validation.constraints.NotBlank;
 
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -19,10 +22,16 @@ import lombok.Builder;
 @Entity(name = "ucsbdates")
 public class UCSBDate {
   @Id
-  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  // pooled ids so inserts can be batched; see db.migration.V6__Use_pooled_sequences_for_ids
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "ucsbdates_seq")
+  @SequenceGenerator(name = "ucsbdates_seq", allocationSize = 50)
   private long id;
 
   private String quarterYYYYQ;
+  @NotBlank
   private String name;  
   private LocalDateTime localDateTime;
-}
\ No newline at end of file
+
+  @Version
+  private Long version;
+}
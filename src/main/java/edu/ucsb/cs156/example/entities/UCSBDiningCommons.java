@@ -1,7 +1,13 @@
 package edu.ucsb.cs156.example.entities;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Entity;
 import javax.persistence.Id;
+import javax.persistence.Version;
+import javax.validation.constraints.NotBlank;
+
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -13,13 +19,20 @@ import lombok.Builder;
 @NoArgsConstructor
 @Builder
 @Entity(name = "ucsbdiningcommons")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "ucsbdiningcommons") // see HibernateCacheConfig
 public class UCSBDiningCommons {
   @Id
+  @NotBlank
   private String code;
+  @NotBlank
   private String name;
   private boolean hasSackMeal;
   private boolean hasTakeOutMeal;
   private boolean hasDiningCam;
   private Double latitude;
   private Double longitude;
-}
\ No newline at end of file
+
+  @Version
+  private Long version;
+}
@@ -6,18 +6,27 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.AccessLevel;
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
 import javax.persistence.Id;
+import javax.persistence.SequenceGenerator;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 
+import edu.ucsb.cs156.example.services.GrantedAuthoritiesService;
+
 @Data
 @AllArgsConstructor
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
-@Builder
+// toBuilder copies the users shared through the users cache (see UserRepository)
+@Builder(toBuilder = true)
 @Entity(name = "users")
+// sessions work out their authorities again when a user changes
+@EntityListeners(GrantedAuthoritiesService.UserListener.class)
 public class User {
   @Id
-  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  // pooled ids so inserts can be batched; see db.migration.V6__Use_pooled_sequences_for_ids
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "users_seq")
+  @SequenceGenerator(name = "users_seq", allocationSize = 50)
   private long id;
   private String email;
   private String googleSub;
@@ -0,0 +1,7 @@
+package edu.ucsb.cs156.example.errors;
+
+public class InvalidBatchException extends RuntimeException {
+  public InvalidBatchException(String message) {
+    super(message);
+  }
+}
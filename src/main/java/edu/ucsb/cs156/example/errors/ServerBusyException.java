@@ -0,0 +1,7 @@
+package edu.ucsb.cs156.example.errors;
+
+public class ServerBusyException extends RuntimeException {
+  public ServerBusyException(String message) {
+    super(message);
+  }
+}
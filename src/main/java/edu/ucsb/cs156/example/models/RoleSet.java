@@ -0,0 +1,62 @@
+package edu.ucsb.cs156.example.models;
+
+import java.io.Serializable;
+import java.util.Collection;
+
+import org.springframework.security.core.GrantedAuthority;
+
+/**
+ * The roles the app checks for (ROLE_USER, ROLE_MEMBER and ROLE_ADMIN)
+ * that a user has, as one bit per Role, so that checking for a role
+ * masks an int instead of scanning the user's authorities.  Immutable;
+ * worked out once per session by GrantedAuthoritiesService.
+ */
+public record RoleSet(int bits) implements Serializable {
+
+  public enum Role {
+    USER, MEMBER, ADMIN;
+
+    public String authority() {
+      return "ROLE_" + name();
+    }
+  }
+
+  public static final RoleSet NONE = new RoleSet(0);
+
+  /**
+   * The role named by a role (ADMIN) or authority (ROLE_ADMIN) name, or
+   * null if it is not one of the Roles.
+   */
+  public static Role role(String name) {
+    return switch (name) {
+      case "USER", "ROLE_USER" -> Role.USER;
+      case "MEMBER", "ROLE_MEMBER" -> Role.MEMBER;
+      case "ADMIN", "ROLE_ADMIN" -> Role.ADMIN;
+      default -> null;
+    };
+  }
+
+  public static RoleSet of(Collection<? extends GrantedAuthority> authorities) {
+    int bits = 0;
+    for (GrantedAuthority authority : authorities) {
+      Role role = authority.getAuthority() == null ? null : role(authority.getAuthority());
+      // only the ROLE_ names, as hasRole("ADMIN") means ROLE_ADMIN
+      if (role != null && authority.getAuthority().equals(role.authority())) {
+        bits |= 1 << role.ordinal();
+      }
+    }
+    return new RoleSet(bits);
+  }
+
+  public boolean has(Role role) {
+    return (bits & (1 << role.ordinal())) != 0;
+  }
+
+  public RoleSet with(Role role) {
+    return new RoleSet(bits | (1 << role.ordinal()));
+  }
+
+  public RoleSet without(Role role) {
+    return new RoleSet(bits & ~(1 << role.ordinal()));
+  }
+}
@@ -0,0 +1,14 @@
+package edu.ucsb.cs156.example.models;
+
+/**
+ * A restaurant, park or school found by /api/search.  type is one of
+ * SearchService.RESTAURANT, PARK or SCHOOL, and id is its id in that
+ * table; detail is its cuisine, state or district.  Higher scores are
+ * better matches; scores are only comparable within one search.
+ */
+public record SearchHit(String type, long id, String name, String detail, double score) {
+
+  public SearchHit withScore(double score) {
+    return new SearchHit(type, id, name, detail, score);
+  }
+}
@@ -0,0 +1,9 @@
+package edu.ucsb.cs156.example.models;
+
+// Projection of the users table used for admin checks, so that only
+// these two columns are read.  See UserRepository.findAdminStatusByEmail
+
+public interface UserAdminStatus {
+  Long getId();
+  Boolean getAdmin();
+}
@@ -0,0 +1,41 @@
+package edu.ucsb.cs156.example.repositories;
+
+import org.springframework.data.jpa.domain.Specification;
+
+/**
+ * Optional conditions for the /query listings, combined with
+ * Specification.where(...).and(...).  A condition whose value is null
+ * adds nothing to the query, so that the SQL only tests the columns the
+ * client filtered on and can use their index (see
+ * V9__Add_filter_indexes.sql).
+ */
+public final class Filters {
+
+  private Filters() {
+  }
+
+  /**
+   * attribute = value, or no condition if value is null
+   */
+  public static <T> Specification<T> equal(String attribute, Object value) {
+    return (root, query, cb) -> value == null ? null : cb.equal(root.get(attribute), value);
+  }
+
+  /**
+   * min &lt;= attribute &lt;= max; either bound may be null
+   */
+  public static <T, Y extends Comparable<? super Y>> Specification<T> between(String attribute, Y min, Y max) {
+    return (root, query, cb) -> {
+      if (min != null && max != null) {
+        return cb.between(root.get(attribute), min, max);
+      }
+      if (min != null) {
+        return cb.greaterThanOrEqualTo(root.get(attribute), min);
+      }
+      if (max != null) {
+        return cb.lessThanOrEqualTo(root.get(attribute), max);
+      }
+      return null;
+    };
+  }
+}
@@ -0,0 +1,328 @@
+package edu.ucsb.cs156.example.repositories;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.session.FindByIndexNameSessionRepository;
+import org.springframework.session.MapSession;
+import org.springframework.session.Session;
+import org.springframework.session.jdbc.JdbcIndexedSessionRepository;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The HTTP sessions kept in the database by Spring Session's
+ * JdbcIndexedSessionRepository (see SessionStoreConfig), with a copy of
+ * each session this instance has used kept in a near-cache for
+ * timeToLive, so that a request does not read the session's rows.
+ *
+ * Every request sets the session's last access time, which would be an
+ * UPDATE per request; when that is all that changed, the time is only
+ * noted, and flushLastAccessTimes writes the times noted since the last
+ * flush in one JDBC batch.  Any other change (attributes, the timeout or
+ * the session id) is written through at once: the stored session is
+ * read, the attributes this request changed are applied to it, and it
+ * is saved, so changes made through other instances meanwhile are kept.
+ *
+ * Other instances' changes are seen here once the cached copy expires, a
+ * logout through another instance included, except by the requests that
+ * read through (see setReadThrough and SessionReadThroughFilter), which
+ * always read the stored session.  The last access times
+ * noted but not yet flushed are lost if the instance stops without
+ * flushing; the sessions then expire that much earlier.
+ */
+@Slf4j
+public class NearCachingSessionRepository implements FindByIndexNameSessionRepository<Session> {
+
+  // only moves the last access time forward, and the expiry time with it
+  // (sessions with a negative timeout do not expire)
+  static final String UPDATE_LAST_ACCESS_TIME = """
+      UPDATE SPRING_SESSION SET LAST_ACCESS_TIME = ?,
+        EXPIRY_TIME = CASE WHEN MAX_INACTIVE_INTERVAL < 0 THEN EXPIRY_TIME
+          ELSE ? + 1000 * CAST(MAX_INACTIVE_INTERVAL AS BIGINT) END
+      WHERE SESSION_ID = ? AND LAST_ACCESS_TIME < ?""";
+
+  // the attributes go with them (ON DELETE CASCADE)
+  static final String DELETE_EXPIRED_SESSIONS = """
+      DELETE FROM SPRING_SESSION WHERE PRIMARY_ID IN (
+        SELECT PRIMARY_ID FROM SPRING_SESSION WHERE EXPIRY_TIME < ? LIMIT ?)""";
+
+  private final FindByIndexNameSessionRepository<Session> delegate;
+  private final JdbcOperations jdbcOperations;
+  private final Cache<String, MapSession> cache;
+  // session id -> last access time (epoch millis) not yet written
+  private final Map<String, Long> lastAccessTimes = new ConcurrentHashMap<>();
+  // true while this thread's request is to read the stored session
+  private final ThreadLocal<Boolean> readThrough = new ThreadLocal<>();
+
+  @SuppressWarnings("unchecked")
+  public NearCachingSessionRepository(JdbcIndexedSessionRepository delegate, JdbcOperations jdbcOperations,
+      Duration timeToLive, long maximumSize) {
+    // JdbcSession is not public, but the Session methods take any of them
+    this.delegate = (FindByIndexNameSessionRepository<Session>) (FindByIndexNameSessionRepository<?>) delegate;
+    this.jdbcOperations = jdbcOperations;
+    this.cache = Caffeine.newBuilder()
+        .expireAfterWrite(timeToLive)
+        .maximumSize(maximumSize)
+        .recordStats()
+        .build();
+  }
+
+  public Cache<String, MapSession> getCache() {
+    return cache;
+  }
+
+  /**
+   * With true, findById on this thread reads the stored session, and
+   * refreshes the near-cache with it, until it is set to false again
+   */
+  public void setReadThrough(boolean value) {
+    if (value) {
+      readThrough.set(true);
+    } else {
+      readThrough.remove();
+    }
+  }
+
+  @Override
+  public Session createSession() {
+    return delegate.createSession();
+  }
+
+  @Override
+  public Session findById(String id) {
+    Long noted = lastAccessTimes.get(id);
+    MapSession cached = readThrough.get() == null ? cache.getIfPresent(id) : null;
+    if (cached != null) {
+      MapSession copy = new MapSession(cached);
+      if (noted != null && noted > copy.getLastAccessedTime().toEpochMilli()) {
+        copy.setLastAccessedTime(Instant.ofEpochMilli(noted));
+      }
+      if (!copy.isExpired()) {
+        return new CachedSession(copy);
+      }
+    }
+    if (noted != null) {
+      // or the stored session could be taken for expired, and deleted
+      flushLastAccessTime(id);
+    }
+    Session stored = delegate.findById(id);
+    if (stored == null) {
+      cache.invalidate(id);
+      return null;
+    }
+    MapSession copy = new MapSession(stored);
+    cache.put(id, copy);
+    return new CachedSession(new MapSession(copy));
+  }
+
+  @Override
+  public void save(Session session) {
+    if (!(session instanceof CachedSession cached)) {
+      // new, so written at once
+      delegate.save(session);
+      cache.put(session.getId(), new MapSession(session));
+      return;
+    }
+    if (!cached.changedOtherThanLastAccessTime()) {
+      // the cached copy is left as it is, so that it still expires
+      // timeToLive after it was read
+      if (cached.lastAccessTimeChanged) {
+        lastAccessTimes.merge(cached.getId(), cached.getLastAccessedTime().toEpochMilli(), Math::max);
+      }
+      return;
+    }
+
+    Session stored = cached.stored != null ? cached.stored : delegate.findById(cached.originalId);
+    cache.invalidate(cached.originalId);
+    if (stored == null) {
+      // deleted meanwhile (a logout through another instance)
+      return;
+    }
+    cached.changedAttributes.forEach(name -> stored.setAttribute(name, cached.getAttribute(name)));
+    if (cached.maxInactiveIntervalChanged) {
+      stored.setMaxInactiveInterval(cached.getMaxInactiveInterval());
+    }
+    Long noted = lastAccessTimes.remove(cached.originalId);
+    long lastAccessTime = Math.max(cached.getLastAccessedTime().toEpochMilli(), noted == null ? 0 : noted);
+    if (lastAccessTime > stored.getLastAccessedTime().toEpochMilli()) {
+      stored.setLastAccessedTime(Instant.ofEpochMilli(lastAccessTime));
+    }
+    delegate.save(stored);
+    cache.put(stored.getId(), new MapSession(stored));
+  }
+
+  @Override
+  public void deleteById(String id) {
+    cache.invalidate(id);
+    lastAccessTimes.remove(id);
+    delegate.deleteById(id);
+  }
+
+  @Override
+  public Map<String, Session> findByIndexNameAndIndexValue(String indexName, String indexValue) {
+    return delegate.findByIndexNameAndIndexValue(indexName, indexValue);
+  }
+
+  /**
+   * Writes the last access times noted since the last flush, in one
+   * batch; a time older than the one stored (written through another
+   * instance) is not written.
+   *
+   * @return the number of last access times written
+   */
+  public int flushLastAccessTimes() {
+    List<Object[]> batch = new ArrayList<>();
+    for (String id : new ArrayList<>(lastAccessTimes.keySet())) {
+      Long time = lastAccessTimes.remove(id);
+      if (time != null) {
+        batch.add(new Object[] { time, time, id, time });
+      }
+    }
+    if (batch.isEmpty()) {
+      return 0;
+    }
+    int written = 0;
+    for (int rows : jdbcOperations.batchUpdate(UPDATE_LAST_ACCESS_TIME, batch)) {
+      // some drivers only report that a statement succeeded
+      written += rows < 0 ? 1 : rows;
+    }
+    log.debug("lastAccessTimes={} written={}", batch.size(), written);
+    return written;
+  }
+
+  private void flushLastAccessTime(String id) {
+    Long time = lastAccessTimes.remove(id);
+    if (time != null) {
+      jdbcOperations.update(UPDATE_LAST_ACCESS_TIME, time, time, id, time);
+    }
+  }
+
+  /**
+   * Deletes the sessions that have expired, batchSize at a time, each
+   * batch a statement of its own, so that no statement holds many rows
+   * locked; stops after maxBatches, leaving the rest for the next run.
+   *
+   * @return the number of sessions deleted
+   */
+  public int deleteExpiredSessions(int batchSize, int maxBatches) {
+    long now = System.currentTimeMillis();
+    int deleted = 0;
+    for (int i = 0; i < maxBatches; i++) {
+      int rows = jdbcOperations.update(DELETE_EXPIRED_SESSIONS, now, batchSize);
+      deleted += rows;
+      if (rows < batchSize) {
+        break;
+      }
+    }
+    if (deleted > 0) {
+      log.debug("expired sessions deleted={}", deleted);
+    }
+    return deleted;
+  }
+
+  /**
+   * A copy of a cached session, noting what the request changes, so that
+   * save can tell whether there is more to write than the last access
+   * time, and write only that.
+   */
+  class CachedSession implements Session {
+    private final MapSession session;
+    private final String originalId;
+    private final Set<String> changedAttributes = new HashSet<>();
+    private boolean maxInactiveIntervalChanged;
+    private boolean lastAccessTimeChanged;
+    // the stored session, once its id has been changed
+    private Session stored;
+
+    CachedSession(MapSession session) {
+      this.session = session;
+      this.originalId = session.getId();
+    }
+
+    boolean changedOtherThanLastAccessTime() {
+      return !changedAttributes.isEmpty() || maxInactiveIntervalChanged || stored != null;
+    }
+
+    @Override
+    public String getId() {
+      return stored != null ? stored.getId() : session.getId();
+    }
+
+    @Override
+    public String changeSessionId() {
+      // the new id is chosen by the stored session, saved with it in save
+      if (stored == null) {
+        stored = delegate.findById(originalId);
+        if (stored == null) {
+          return session.changeSessionId();
+        }
+      }
+      return stored.changeSessionId();
+    }
+
+    @Override
+    public <T> T getAttribute(String attributeName) {
+      return session.getAttribute(attributeName);
+    }
+
+    @Override
+    public Set<String> getAttributeNames() {
+      return session.getAttributeNames();
+    }
+
+    @Override
+    public void setAttribute(String attributeName, Object attributeValue) {
+      session.setAttribute(attributeName, attributeValue);
+      changedAttributes.add(attributeName);
+    }
+
+    @Override
+    public void removeAttribute(String attributeName) {
+      session.removeAttribute(attributeName);
+      changedAttributes.add(attributeName);
+    }
+
+    @Override
+    public Instant getCreationTime() {
+      return session.getCreationTime();
+    }
+
+    @Override
+    public void setLastAccessedTime(Instant lastAccessedTime) {
+      session.setLastAccessedTime(lastAccessedTime);
+      lastAccessTimeChanged = true;
+    }
+
+    @Override
+    public Instant getLastAccessedTime() {
+      return session.getLastAccessedTime();
+    }
+
+    @Override
+    public void setMaxInactiveInterval(Duration interval) {
+      session.setMaxInactiveInterval(interval);
+      maxInactiveIntervalChanged = true;
+    }
+
+    @Override
+    public Duration getMaxInactiveInterval() {
+      return session.getMaxInactiveInterval();
+    }
+
+    @Override
+    public boolean isExpired() {
+      return session.isExpired();
+    }
+  }
+}
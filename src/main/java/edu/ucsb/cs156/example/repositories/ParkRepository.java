@@ -2,10 +2,49 @@ package edu.ucsb.cs156.example.repositories;
 
 import edu.ucsb.cs156.example.entities.Park;
 
-import org.springframework.data.repository.CrudRepository;
+import java.util.List;
+import java.util.stream.Stream;
+
+import javax.persistence.QueryHint;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import static org.hibernate.jpa.QueryHints.HINT_CACHEABLE;
+import static org.hibernate.jpa.QueryHints.HINT_CACHE_MODE;
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
 
 @Repository
-public interface ParkRepository extends CrudRepository<Park, Long> {
+public interface ParkRepository extends PagingAndSortingRepository<Park, Long>, JpaSpecificationExecutor<Park> {
+  @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
+  List<Park> findByIdGreaterThanOrderByIdAsc(long after, Pageable pageable);
+
+  // must be called in a (read-only) transaction and closed when done
+  @QueryHints({
+      @QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+      @QueryHint(name = HINT_READONLY, value = "true"),
+      // an export reads every row; keep it from filling the second-level cache
+      @QueryHint(name = HINT_CACHE_MODE, value = "IGNORE") })
+  Stream<Park> streamAllByOrderByIdAsc();
+
+  // return the number of rows changed: 0 if there is no such row, or if a
+  // version is given and it is no longer the current one
+  @Transactional
+  @Modifying
+  @Query("update parks p set p.name = :name, p.state = :state, p.acres = :acres, p.version = p.version + 1 "
+      + "where p.id = :id and (:version is null or p.version = :version)")
+  int updateById(@Param("id") long id, @Param("version") Long version, @Param("name") String name, @Param("state") String state, @Param("acres") int acres);
 
+  @Transactional
+  @Modifying
+  @Query("delete from parks p where p.id = :id")
+  int removeById(@Param("id") long id);
 }
@@ -2,10 +2,45 @@ package edu.ucsb.cs156.example.repositories;
 
 import edu.ucsb.cs156.example.entities.Restaurant;
 
-import org.springframework.data.repository.CrudRepository;
+import java.util.List;
+import java.util.stream.Stream;
+
+import javax.persistence.QueryHint;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
 
 
 @Repository
-public interface RestaurantRepository extends CrudRepository<Restaurant, Long> {
+public interface RestaurantRepository extends PagingAndSortingRepository<Restaurant, Long>, JpaSpecificationExecutor<Restaurant> {
+  List<Restaurant> findByIdGreaterThanOrderByIdAsc(long after, Pageable pageable);
+
+  // must be called in a (read-only) transaction and closed when done
+  @QueryHints({
+      @QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+      @QueryHint(name = HINT_READONLY, value = "true") })
+  Stream<Restaurant> streamAllByOrderByIdAsc();
+
+  // return the number of rows changed: 0 if there is no such row, or if a
+  // version is given and it is no longer the current one
+  @Transactional
+  @Modifying
+  @Query("update restaurants r set r.name = :name, r.cuisine = :cuisine, r.roachCounter = :roachCounter, r.version = r.version + 1 "
+      + "where r.id = :id and (:version is null or r.version = :version)")
+  int updateById(@Param("id") long id, @Param("version") Long version, @Param("name") String name, @Param("cuisine") String cuisine, @Param("roachCounter") int roachCounter);
+
+  @Transactional
+  @Modifying
+  @Query("delete from restaurants r where r.id = :id")
+  int removeById(@Param("id") long id);
 }
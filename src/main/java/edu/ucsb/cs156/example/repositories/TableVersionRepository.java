@@ -0,0 +1,26 @@
+package edu.ucsb.cs156.example.repositories;
+
+import edu.ucsb.cs156.example.entities.TableVersion;
+
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+// The rows are kept in the database rather than in memory so that every
+// instance of the app sees the writes made through the others.
+@Repository
+public interface TableVersionRepository extends CrudRepository<TableVersion, String> {
+
+  // must be called in the transaction that writes the table, so that the
+  // new version and the data it stands for commit together; the time
+  // comes from the database so all instances agree on it
+  @Transactional(propagation = Propagation.MANDATORY)
+  @Modifying
+  @Query("update table_versions t set t.version = t.version + 1, t.lastModified = current_timestamp "
+      + "where t.tableName = :tableName")
+  int bump(@Param("tableName") String tableName);
+}
@@ -2,11 +2,47 @@ package edu.ucsb.cs156.example.repositories;
 
 import edu.ucsb.cs156.example.entities.UCSBDate;
 
-import org.springframework.data.repository.CrudRepository;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+import javax.persistence.QueryHint;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
 
 
 @Repository
-public interface UCSBDateRepository extends CrudRepository<UCSBDate, Long> {
+public interface UCSBDateRepository extends PagingAndSortingRepository<UCSBDate, Long>, JpaSpecificationExecutor<UCSBDate> {
   Iterable<UCSBDate> findAllByQuarterYYYYQ(String quarterYYYYQ);
-}
\ No newline at end of file
+  List<UCSBDate> findByIdGreaterThanOrderByIdAsc(long after, Pageable pageable);
+
+  // must be called in a (read-only) transaction and closed when done
+  @QueryHints({
+      @QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+      @QueryHint(name = HINT_READONLY, value = "true") })
+  Stream<UCSBDate> streamAllByOrderByIdAsc();
+
+  // return the number of rows changed: 0 if there is no such row, or if a
+  // version is given and it is no longer the current one
+  @Transactional
+  @Modifying
+  @Query("update ucsbdates d set d.quarterYYYYQ = :quarterYYYYQ, d.name = :name, d.localDateTime = :localDateTime, d.version = d.version + 1 "
+      + "where d.id = :id and (:version is null or d.version = :version)")
+  int updateById(@Param("id") long id, @Param("version") Long version, @Param("quarterYYYYQ") String quarterYYYYQ, @Param("name") String name, @Param("localDateTime") LocalDateTime localDateTime);
+
+  @Transactional
+  @Modifying
+  @Query("delete from ucsbdates d where d.id = :id")
+  int removeById(@Param("id") long id);
+}
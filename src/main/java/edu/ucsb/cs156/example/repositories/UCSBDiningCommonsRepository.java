@@ -2,12 +2,50 @@ package edu.ucsb.cs156.example.repositories;
 
 import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
 
+import java.util.List;
+import java.util.stream.Stream;
+
+import javax.persistence.QueryHint;
+
 import org.springframework.beans.propertyeditors.StringArrayPropertyEditor;
-import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import static org.hibernate.jpa.QueryHints.HINT_CACHEABLE;
+import static org.hibernate.jpa.QueryHints.HINT_CACHE_MODE;
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
 
 
 @Repository
-public interface UCSBDiningCommonsRepository extends CrudRepository<UCSBDiningCommons, String> {
- 
-}
\ No newline at end of file
+public interface UCSBDiningCommonsRepository extends PagingAndSortingRepository<UCSBDiningCommons, String> {
+  @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
+  List<UCSBDiningCommons> findByCodeGreaterThanOrderByCodeAsc(String after, Pageable pageable);
+
+  // must be called in a (read-only) transaction and closed when done
+  @QueryHints({
+      @QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+      @QueryHint(name = HINT_READONLY, value = "true"),
+      // an export reads every row; keep it from filling the second-level cache
+      @QueryHint(name = HINT_CACHE_MODE, value = "IGNORE") })
+  Stream<UCSBDiningCommons> streamAllByOrderByCodeAsc();
+
+  // return the number of rows changed: 0 if there is no such row, or if a
+  // version is given and it is no longer the current one
+  @Transactional
+  @Modifying
+  @Query("update ucsbdiningcommons c set c.name = :name, c.hasSackMeal = :hasSackMeal, c.hasTakeOutMeal = :hasTakeOutMeal, c.hasDiningCam = :hasDiningCam, c.latitude = :latitude, c.longitude = :longitude, c.version = c.version + 1 "
+      + "where c.code = :code and (:version is null or c.version = :version)")
+  int updateByCode(@Param("code") String code, @Param("version") Long version, @Param("name") String name, @Param("hasSackMeal") boolean hasSackMeal, @Param("hasTakeOutMeal") boolean hasTakeOutMeal, @Param("hasDiningCam") boolean hasDiningCam, @Param("latitude") Double latitude, @Param("longitude") Double longitude);
+
+  @Transactional
+  @Modifying
+  @Query("delete from ucsbdiningcommons c where c.code = :code")
+  int removeByCode(@Param("code") String code);
+}
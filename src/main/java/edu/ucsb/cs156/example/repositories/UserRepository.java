@@ -1,12 +1,46 @@
 package edu.ucsb.cs156.example.repositories;
 
 import edu.ucsb.cs156.example.entities.User;
+import edu.ucsb.cs156.example.models.UserAdminStatus;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.Optional;
 
+import javax.persistence.QueryHint;
+
+import static org.hibernate.jpa.QueryHints.HINT_FLUSH_MODE;
+
 @Repository
 public interface UserRepository extends CrudRepository<User, Long> {
+  // looked up on every authenticated request by CurrentUserServiceImpl; the
+  // cached User is shared by those requests, so is copied before it is changed
+  @Cacheable(cacheNames = "users", key = "#p0", unless = "#result == null")
   Optional<User> findByEmail(String email);
+
+  // read by GrantedAuthoritiesService.getAdmin on every login; unknown emails are cached
+  // too, since saving the new user evicts the entry
+  @Cacheable(cacheNames = "admins", key = "#p0")
+  @Query("select u.id as id, u.admin as admin from users u where u.email = :email")
+  Optional<UserAdminStatus> findAdminStatusByEmail(@Param("email") String email);
+
+  // the email stored for a user, without flushing changes not yet saved;
+  // read by save, to evict the entries of an email the save changes
+  @QueryHints(@QueryHint(name = HINT_FLUSH_MODE, value = "COMMIT"))
+  @Query("select u.email from users u where u.id = :id")
+  Optional<String> findEmailById(@Param("id") long id);
+
+  @Override
+  @Caching(evict = {
+      @CacheEvict(cacheNames = { "users", "admins" }, key = "@userRepository.findEmailById(#p0.id).orElse('')",
+          condition = "#p0.id != 0", beforeInvocation = true),
+      @CacheEvict(cacheNames = "users", key = "#p0.email"),
+      @CacheEvict(cacheNames = "admins", key = "#p0.email") })
+  <S extends User> S save(S user);
 }
@@ -0,0 +1,45 @@
+package edu.ucsb.cs156.example.repositories.reactive;
+
+import static org.springframework.data.relational.core.query.Criteria.where;
+import static org.springframework.data.relational.core.query.Query.query;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.data.r2dbc.core.R2dbcEntityOperations;
+import org.springframework.data.relational.core.query.Query;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Reads the table of one JPA entity over R2DBC (see R2dbcConfig), without
+ * blocking a thread while the database works.  Rows are fetched as the
+ * subscriber asks for them, R2dbcConfig.FETCH_SIZE at a time.
+ *
+ * There are no writes here: they go through the JPA repositories, and are
+ * seen by these reads once committed.
+ */
+public abstract class ReadRepository<T, ID> {
+
+  private final R2dbcEntityOperations operations;
+  private final Class<T> type;
+  private final String id;
+
+  protected ReadRepository(R2dbcEntityOperations operations, Class<T> type) {
+    this.operations = operations;
+    this.type = type;
+    this.id = operations.getConverter().getMappingContext().getRequiredPersistentEntity(type)
+        .getRequiredIdProperty().getName();
+  }
+
+  public Flux<T> findByIdGreaterThanOrderByIdAsc(ID after) {
+    return operations.select(query(where(id).greaterThan(after)).sort(Sort.by(id)), type);
+  }
+
+  public Mono<T> findById(ID key) {
+    return operations.selectOne(query(where(id).is(key)), type);
+  }
+
+  public Mono<Long> count() {
+    return operations.count(Query.empty(), type);
+  }
+}
@@ -0,0 +1,13 @@
+package edu.ucsb.cs156.example.repositories.reactive;
+
+import org.springframework.data.r2dbc.core.R2dbcEntityOperations;
+import org.springframework.stereotype.Repository;
+
+import edu.ucsb.cs156.example.entities.Restaurant;
+
+@Repository
+public class RestaurantReadRepository extends ReadRepository<Restaurant, Long> {
+  public RestaurantReadRepository(R2dbcEntityOperations operations) {
+    super(operations, Restaurant.class);
+  }
+}
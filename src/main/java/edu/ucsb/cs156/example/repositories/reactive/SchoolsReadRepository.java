@@ -0,0 +1,13 @@
+package edu.ucsb.cs156.example.repositories.reactive;
+
+import org.springframework.data.r2dbc.core.R2dbcEntityOperations;
+import org.springframework.stereotype.Repository;
+
+import edu.ucsb.cs156.example.entities.Schools;
+
+@Repository
+public class SchoolsReadRepository extends ReadRepository<Schools, Long> {
+  public SchoolsReadRepository(R2dbcEntityOperations operations) {
+    super(operations, Schools.class);
+  }
+}
@@ -0,0 +1,13 @@
+package edu.ucsb.cs156.example.repositories.reactive;
+
+import org.springframework.data.r2dbc.core.R2dbcEntityOperations;
+import org.springframework.stereotype.Repository;
+
+import edu.ucsb.cs156.example.entities.UCSBDate;
+
+@Repository
+public class UCSBDateReadRepository extends ReadRepository<UCSBDate, Long> {
+  public UCSBDateReadRepository(R2dbcEntityOperations operations) {
+    super(operations, UCSBDate.class);
+  }
+}
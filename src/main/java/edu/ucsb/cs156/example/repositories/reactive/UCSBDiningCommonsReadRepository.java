@@ -0,0 +1,13 @@
+package edu.ucsb.cs156.example.repositories.reactive;
+
+import org.springframework.data.r2dbc.core.R2dbcEntityOperations;
+import org.springframework.stereotype.Repository;
+
+import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
+
+@Repository
+public class UCSBDiningCommonsReadRepository extends ReadRepository<UCSBDiningCommons, String> {
+  public UCSBDiningCommonsReadRepository(R2dbcEntityOperations operations) {
+    super(operations, UCSBDiningCommons.class);
+  }
+}
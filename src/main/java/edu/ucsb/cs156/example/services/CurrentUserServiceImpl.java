@@ -38,7 +38,7 @@ public class CurrentUserServiceImpl extends CurrentUserService {
       .user(this.getUser())
       .roles(this.getRoles())
       .build();
-    log.info("getCurrentUser returns {}",cu);
+    log.debug("getCurrentUser returns {}",cu);
     return cu;
   }
 
@@ -51,18 +51,21 @@ public class CurrentUserServiceImpl extends CurrentUserService {
     String fullName = oAuthUser.getAttribute("name");
     String givenName = oAuthUser.getAttribute("given_name");
     String familyName = oAuthUser.getAttribute("family_name");
-    boolean emailVerified = oAuthUser.getAttribute("email_verified");
+    // not in a session token, see SessionTokenService
+    boolean emailVerified = Boolean.TRUE.equals(oAuthUser.getAttribute("email_verified"));
     String locale = oAuthUser.getAttribute("locale");
     String hostedDomain = oAuthUser.getAttribute("hd");
 
     java.util.Map<java.lang.String,java.lang.Object> attrs = oAuthUser.getAttributes();
-    log.info("attrs={}",attrs);
+    log.trace("attrs={}",attrs);
 
     Optional<User> ou = userRepository.findByEmail(email);
     if (ou.isPresent()) {
-      User u = ou.get();
+      // a copy: the cached user is shared with the other requests
+      User u = ou.get().toBuilder().build();
       if (adminEmails.contains(email) && !u.getAdmin()) {
         u.setAdmin(true);
+        // also evicts the cached admin flag read by GrantedAuthoritiesService.getAdmin
         userRepository.save(u);
       }
       return u;
@@ -0,0 +1,49 @@
+package edu.ucsb.cs156.example.services;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+public abstract class EntityExportService {
+  // flush to the socket every FLUSH_EVERY rows so that memory use is bounded
+  protected static final int FLUSH_EVERY = 500;
+
+  @Autowired
+  private ObjectMapper mapper;
+
+  /**
+   * Returns a response that writes each row of the stream as one line of
+   * JSON (application/x-ndjson) as it is read.  The supplier is only
+   * invoked once the response starts streaming.
+   */
+  public abstract <T> ResponseEntity<StreamingResponseBody> ndjson(Supplier<Stream<T>> rows);
+
+  protected <T> void writeNdjson(Stream<T> rows, OutputStream out, Consumer<T> afterWrite) throws IOException {
+    // the mapper would otherwise flush after every row
+    ObjectWriter writer = mapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    JsonGenerator generator = mapper.getFactory().createGenerator(out);
+    generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    generator.setRootValueSeparator(null);
+    int written = 0;
+    for (T row : (Iterable<T>) rows::iterator) {
+      writer.writeValue(generator, row);
+      generator.writeRaw('\n');
+      afterWrite.accept(row);
+      if (++written % FLUSH_EVERY == 0) {
+        generator.flush();
+      }
+    }
+    generator.close();
+  }
+}
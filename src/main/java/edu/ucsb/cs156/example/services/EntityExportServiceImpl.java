@@ -0,0 +1,50 @@
+package edu.ucsb.cs156.example.services;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import javax.persistence.EntityManager;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import lombok.extern.slf4j.Slf4j;
+
+// Spring Data Stream<T> queries need an open transaction for as long as the
+// stream is read, and every entity read stays in the persistence context
+// unless it is detached; both are taken care of here.
+
+@Slf4j
+@Service("entityExport")
+public class EntityExportServiceImpl extends EntityExportService {
+
+  @Autowired
+  private PlatformTransactionManager transactionManager;
+
+  @Autowired
+  private EntityManager entityManager;
+
+  public <T> ResponseEntity<StreamingResponseBody> ndjson(Supplier<Stream<T>> rows) {
+    TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+    readOnly.setReadOnly(true);
+
+    StreamingResponseBody body = out -> readOnly.executeWithoutResult(status -> {
+      try (Stream<T> stream = rows.get()) {
+        writeNdjson(stream, out, entityManager::detach);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    });
+
+    return ResponseEntity.ok()
+        .contentType(MediaType.APPLICATION_NDJSON)
+        .body(body);
+  }
+}
@@ -1,25 +1,205 @@
 package edu.ucsb.cs156.example.services;
 
+import java.io.Serializable;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+import javax.servlet.http.HttpSession;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.convert.DurationStyle;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+import org.springframework.security.oauth2.core.user.OAuth2UserAuthority;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
 
+import edu.ucsb.cs156.example.entities.User;
+import edu.ucsb.cs156.example.models.RoleSet;
+import edu.ucsb.cs156.example.models.RoleSet.Role;
+import edu.ucsb.cs156.example.models.UserAdminStatus;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.SessionTokenService.SessionTokenAuthentication;
 import lombok.extern.slf4j.Slf4j;
 
+/**
+ * The authorities of the logged in user, and the roles among them as a
+ * RoleSet, which the @PreAuthorize role checks read (see
+ * RoleSetMethodSecurityExpressionHandler).
+ *
+ * They are worked out at login by mapAuthorities, the OAuth2 login's
+ * GrantedAuthoritiesMapper (see SecurityConfig), and then kept in the
+ * HTTP session.  Once any user has been saved (see UserListener), each
+ * session works them out again on its next request, from the authorities
+ * of its login and the user's admin flag as it is now: a user made an
+ * admin, or no longer one, does not have to log in again.  Users saved
+ * through another instance are not counted here, so the authorities are
+ * also worked out again once they are as old as the cached admin flags
+ * (app.users.cache-time-to-live), by when those have expired.  Without
+ * a session (in tests, or on a HandlerExecutor thread) they are worked
+ * out on every call.  When the sessions are shared by several instances,
+ * those that have counted fewer users saved than the session's work them
+ * out on every request.  With stateless sessions (see SessionTokenConfig)
+ * they are those of the session token, as they were at login.
+ */
 @Slf4j
 @Service("grantedAuthorities")
 public class GrantedAuthoritiesService {
 
+    static final String SESSION_ATTRIBUTE = GrantedAuthoritiesService.class.getName() + ".authorities";
+
+    // counts the users saved; authorities worked out at a lower count are
+    // worked out again
+    private static final AtomicLong userChanges = new AtomicLong();
+
+    @Value("${app.admin.emails}")
+    private final Set<String> adminEmails = new HashSet<String>();
+
+    @Autowired
+    UserRepository userRepository;
+
+    private long maxAgeMillis;
+
+    @Value("${app.users.cache-time-to-live:30s}")
+    void setMaxAge(String maxAge) {
+        maxAgeMillis = DurationStyle.detectAndParse(maxAge).toMillis();
+    }
+
+    // what is kept in the session: the authorities of the user named name,
+    // as of userChanges, and when they were worked out (epoch millis)
+    record SessionAuthorities(String name, long userChanges, Set<GrantedAuthority> authorities, RoleSet roles,
+            long workedOutAt) implements Serializable {
+    }
+
     public Collection<? extends GrantedAuthority> getGrantedAuthorities() {
-        SecurityContext securityContext = SecurityContextHolder.getContext();
-        Authentication authentication = securityContext.getAuthentication();
-        Collection<? extends GrantedAuthority> authorities = authentication.getAuthorities();
-        log.info("authorities={}", authorities);
-        return authorities;
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication == null ? Set.of() : sessionAuthorities(authentication).authorities();
+    }
+
+    public RoleSet getRoles() {
+        return getRoles(SecurityContextHolder.getContext().getAuthentication());
+    }
+
+    public RoleSet getRoles(Authentication authentication) {
+        return authentication == null ? RoleSet.NONE : sessionAuthorities(authentication).roles();
     }
 
+    private SessionAuthorities sessionAuthorities(Authentication authentication) {
+        long changes = userChanges.get();
+        long now = System.currentTimeMillis();
+        if (authentication instanceof SessionTokenAuthentication token) {
+            // worked out at login, and signed into the token
+            return new SessionAuthorities(token.getName(), changes, Set.copyOf(token.getAuthorities()),
+                    token.getRoles(), now);
+        }
+        HttpSession session = currentSession();
+        SessionAuthorities kept = null;
+        if (session != null && session.getAttribute(SESSION_ATTRIBUTE) instanceof SessionAuthorities found
+                && found.name().equals(authentication.getName())) {
+            if (found.userChanges() == changes && now - found.workedOutAt() < maxAgeMillis) {
+                return found;
+            }
+            kept = found;
+        }
+
+        Set<GrantedAuthority> authorities = new HashSet<>(authentication.getAuthorities());
+        if (authentication instanceof OAuth2AuthenticationToken token) {
+            // the admin flag may have changed since login
+            String email = token.getPrincipal().getAttribute("email");
+            GrantedAuthority admin = new SimpleGrantedAuthority(Role.ADMIN.authority());
+            if (getAdmin(email)) {
+                authorities.add(admin);
+            } else {
+                authorities.remove(admin);
+            }
+        }
+        log.debug("authorities={}", authorities);
+        Set<GrantedAuthority> immutable = Set.copyOf(authorities);
+        // with the sessions in the database (see SessionStoreConfig), each
+        // instance counts the users saved through it; the session keeps the
+        // highest count, and the other instances only write it when the
+        // authorities change or have grown old, rather than on each request
+        long keptChanges = kept == null ? changes : Math.max(kept.userChanges(), changes);
+        SessionAuthorities worked = new SessionAuthorities(authentication.getName(), keptChanges, immutable,
+                RoleSet.of(immutable), now);
+        if (session != null && (kept == null || kept.userChanges() < changes
+                || !kept.authorities().equals(immutable) || now - kept.workedOutAt() >= maxAgeMillis)) {
+            session.setAttribute(SESSION_ATTRIBUTE, worked);
+        }
+        return worked;
+    }
+
+    private static HttpSession currentSession() {
+        if (RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes) {
+            return attributes.getRequest().getSession(false);
+        }
+        return null;
+    }
+
+    public Set<GrantedAuthority> mapAuthorities(Collection<? extends GrantedAuthority> authorities) {
+        Set<GrantedAuthority> mappedAuthorities = new HashSet<>();
+
+        authorities.forEach(authority -> {
+            log.debug("authority={}", authority);
+            mappedAuthorities.add(authority);
+            if (authority instanceof OAuth2UserAuthority oauth2UserAuthority) {
+                Map<String, Object> userAttributes = oauth2UserAuthority.getAttributes();
+                log.trace("userAttributes={}", userAttributes);
+
+                String email = (String) userAttributes.get("email");
+                if (getAdmin(email)) {
+                    mappedAuthorities.add(new SimpleGrantedAuthority(Role.ADMIN.authority()));
+                }
+
+                if (email.endsWith("@ucsb.edu")) {
+                    mappedAuthorities.add(new SimpleGrantedAuthority(Role.MEMBER.authority()));
+                }
+            }
+        });
+        return mappedAuthorities;
+    }
+
+    public boolean getAdmin(String email) {
+        if (adminEmails.contains(email)) {
+            return true;
+        }
+        // cached, see UserRepository
+        Optional<UserAdminStatus> u = userRepository.findAdminStatusByEmail(email);
+        return u.isPresent() && u.get().getAdmin();
+    }
+
+    /**
+     * Counts the users saved or deleted, once their transaction commits.
+     */
+    public static class UserListener {
+        @PostPersist
+        @PostUpdate
+        @PostRemove
+        public void userChanged(User user) {
+            if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+                userChanges.incrementAndGet();
+                return;
+            }
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    userChanges.incrementAndGet();
+                }
+            });
+        }
+    }
 }
@@ -0,0 +1,80 @@
+package edu.ucsb.cs156.example.services;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.concurrent.DelegatingSecurityContextExecutor;
+
+import edu.ucsb.cs156.example.errors.ServerBusyException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+
+/**
+ * Runs the work of controller handlers that return a CompletableFuture
+ * (see ApiController.async), either on the calling thread (inline) or on
+ * a fixed pool of threads with a bounded queue (see AsyncHandlerConfig).
+ *
+ * With the pool, the servlet container thread is released as soon as the
+ * work is queued, and at most `threads` handlers use the database at once,
+ * however many requests are waiting.  When the queue is full the request
+ * is refused at once with ServerBusyException (a 503) rather than queued
+ * without bound.  The security context of the request is passed on to the
+ * pool thread.  The pool is published as the executor metrics named
+ * "handlers" (executor_active_threads, executor_queued_tasks and so on).
+ */
+public class HandlerExecutor implements DisposableBean {
+
+  private final ThreadPoolExecutor pool;
+  private final Executor executor;
+
+  private HandlerExecutor(ThreadPoolExecutor pool) {
+    this.pool = pool;
+    this.executor = pool == null ? null : new DelegatingSecurityContextExecutor(pool);
+  }
+
+  /**
+   * Runs every handler on the thread that calls it, as if it were not
+   * asynchronous
+   */
+  public static HandlerExecutor inline() {
+    return new HandlerExecutor(null);
+  }
+
+  public static HandlerExecutor pooled(int threads, int queueCapacity, MeterRegistry meterRegistry) {
+    ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("handler-"));
+    new ExecutorServiceMetrics(pool, "handlers", Tags.empty()).bindTo(meterRegistry);
+    return new HandlerExecutor(pool);
+  }
+
+  public <T> CompletableFuture<T> supply(Supplier<T> work) {
+    if (executor == null) {
+      try {
+        return CompletableFuture.completedFuture(work.get());
+      } catch (RuntimeException e) {
+        return CompletableFuture.failedFuture(e);
+      }
+    }
+    try {
+      return CompletableFuture.supplyAsync(work, executor);
+    } catch (RejectedExecutionException e) {
+      throw new ServerBusyException("too many requests are waiting; try again later");
+    }
+  }
+
+  @Override
+  public void destroy() throws InterruptedException {
+    if (pool != null) {
+      pool.shutdown();
+      pool.awaitTermination(30, TimeUnit.SECONDS);
+    }
+  }
+}
@@ -0,0 +1,120 @@
+package edu.ucsb.cs156.example.services;
+
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import javax.persistence.EntityManager;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import edu.ucsb.cs156.example.models.SearchHit;
+import edu.ucsb.cs156.example.repositories.ParkRepository;
+import edu.ucsb.cs156.example.repositories.RestaurantRepository;
+import edu.ucsb.cs156.example.repositories.SchoolsRepository;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * SearchService over a SearchIndex in this instance's memory, used
+ * outside production (see PostgresSearchServiceImpl).  The index is
+ * loaded from the tables by the first search, and then kept up to date
+ * by the controllers' calls to update and remove, which are applied when
+ * the transaction making the change commits (and dropped if it rolls
+ * back).  Changes made through another instance are not seen.
+ */
+@Slf4j
+@Service
+@Profile("!production")
+public class InMemorySearchServiceImpl implements SearchService {
+
+  @Autowired
+  RestaurantRepository restaurantRepository;
+
+  @Autowired
+  ParkRepository parkRepository;
+
+  @Autowired
+  SchoolsRepository schoolsRepository;
+
+  @Autowired
+  PlatformTransactionManager transactionManager;
+
+  @Autowired
+  EntityManager entityManager;
+
+  private final SearchIndex index = new SearchIndex();
+  private volatile boolean loaded;
+
+  @Override
+  public Page<SearchHit> search(String query, Pageable pageable) {
+    if (!loaded) {
+      load();
+    }
+    return index.search(query, pageable);
+  }
+
+  @Override
+  public void update(SearchHit document) {
+    afterCommit(() -> index.update(document));
+  }
+
+  @Override
+  public void remove(String type, long id) {
+    afterCommit(() -> index.remove(type, id));
+  }
+
+  // changes wait while the index loads, and are dropped before it
+  // loads: they were committed before the load, which reads them from
+  // the tables
+  private void afterCommit(Runnable change) {
+    Runnable apply = () -> {
+      synchronized (this) {
+        if (loaded) {
+          change.run();
+        }
+      }
+    };
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      apply.run();
+      return;
+    }
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+      @Override
+      public void afterCommit() {
+        apply.run();
+      }
+    });
+  }
+
+  private synchronized void load() {
+    if (loaded) {
+      return;
+    }
+    TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+    readOnly.setReadOnly(true);
+    readOnly.executeWithoutResult(status -> {
+      load(restaurantRepository.streamAllByOrderByIdAsc(), SearchService::document);
+      load(parkRepository.streamAllByOrderByIdAsc(), SearchService::document);
+      load(schoolsRepository.streamAllByOrderByIdAsc(), SearchService::document);
+    });
+    loaded = true;
+    log.info("loaded the search index: {} documents", index.size());
+  }
+
+  private <T> void load(Stream<T> rows, Function<T, SearchHit> document) {
+    try (rows) {
+      // detached once indexed, so the persistence context stays small
+      rows.forEach(row -> {
+        index.update(document.apply(row));
+        entityManager.detach(row);
+      });
+    }
+  }
+}
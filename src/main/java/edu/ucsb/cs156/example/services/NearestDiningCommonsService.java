@@ -0,0 +1,58 @@
+package edu.ucsb.cs156.example.services;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import edu.ucsb.cs156.example.entities.TableVersion;
+import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
+import edu.ucsb.cs156.example.repositories.TableVersionRepository;
+import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsRepository;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * k-nearest searches over the dining commons, in a SpatialIndex kept in
+ * memory.  The index is rebuilt from the table when its table_versions row
+ * has changed since the index was built, so writes made through any
+ * instance are seen by the next search; that check is a primary key
+ * lookup, and the search itself reads nothing from the database.
+ */
+@Slf4j
+@Service
+public class NearestDiningCommonsService {
+
+  // the table_versions row bumped by every write to ucsbdiningcommons
+  static final String TABLE = "ucsbdiningcommons";
+
+  record Snapshot(Optional<TableVersion> version, SpatialIndex<UCSBDiningCommons> index) {
+  }
+
+  @Autowired
+  UCSBDiningCommonsRepository ucsbDiningCommonsRepository;
+
+  @Autowired
+  TableVersionRepository tableVersionRepository;
+
+  private volatile Snapshot snapshot;
+
+  public List<SpatialIndex.Neighbor<UCSBDiningCommons>> nearest(double latitude, double longitude, int k) {
+    return index().nearest(latitude, longitude, k);
+  }
+
+  private SpatialIndex<UCSBDiningCommons> index() {
+    // read before the rows, so that a write in between makes the next
+    // search rebuild again rather than keep a stale index
+    Optional<TableVersion> version = tableVersionRepository.findById(TABLE);
+    Snapshot current = snapshot;
+    if (current != null && version.isPresent() && current.version().equals(version)) {
+      return current.index();
+    }
+    SpatialIndex<UCSBDiningCommons> index = new SpatialIndex<>(ucsbDiningCommonsRepository.findAll(),
+        UCSBDiningCommons::getLatitude, UCSBDiningCommons::getLongitude);
+    log.debug("rebuilt the dining commons index at {}: {} commons", version, index.size());
+    snapshot = new Snapshot(version, index);
+    return index;
+  }
+}
@@ -0,0 +1,103 @@
+package edu.ucsb.cs156.example.services;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import edu.ucsb.cs156.example.models.SearchHit;
+
+/**
+ * SearchService for production, on Postgres full text search.  Each table
+ * has a GIN index on the tsvector of its name and detail (see
+ * db/vendor/postgresql/V10__Add_search_indexes.sql), which the database
+ * keeps up to date itself, so update and remove do nothing.  Every word
+ * of the query is matched as a prefix; hits are ranked by ts_rank, with
+ * words in the name weighted above words in the detail.  Unlike
+ * InMemorySearchServiceImpl, typos are not corrected.
+ *
+ * Only the first MAX_MATCHES matches of each table, as the index finds
+ * them, are ranked and counted, so that a query matching most of a large
+ * table (a one-letter prefix) reads a bounded number of rows.  When a
+ * table has more, its best hits may be missing, the total is the number
+ * ranked, and the pages end there.
+ */
+@Service
+@Profile("production")
+public class PostgresSearchServiceImpl implements SearchService {
+
+  static final int MAX_MATCHES = 1000;
+
+  // the WHERE expressions must be the indexed ones for the index to be
+  // used; the LIMITs stop the scans before any row is ranked
+  static final String SEARCH = """
+      WITH query AS (SELECT to_tsquery('simple', :query) AS q)
+      SELECT type, id, name, detail, score, count(*) OVER () AS total FROM (
+        SELECT 'restaurant' AS type, r.id, r.name, r.cuisine AS detail,
+               ts_rank(setweight(to_tsvector('simple', coalesce(r.name, '')), 'A')
+                    || setweight(to_tsvector('simple', coalesce(r.cuisine, '')), 'B'), query.q) AS score
+          FROM (SELECT id, name, cuisine FROM restaurants, query
+                 WHERE to_tsvector('simple', coalesce(name, '') || ' ' || coalesce(cuisine, '')) @@ query.q
+                 LIMIT :matches) r, query
+        UNION ALL
+        SELECT 'park', p.id, p.name, p.state,
+               ts_rank(setweight(to_tsvector('simple', coalesce(p.name, '')), 'A')
+                    || setweight(to_tsvector('simple', coalesce(p.state, '')), 'B'), query.q)
+          FROM (SELECT id, name, state FROM parks, query
+                 WHERE to_tsvector('simple', coalesce(name, '') || ' ' || coalesce(state, '')) @@ query.q
+                 LIMIT :matches) p, query
+        UNION ALL
+        SELECT 'school', s.id, s.name, s.district,
+               ts_rank(setweight(to_tsvector('simple', coalesce(s.name, '')), 'A')
+                    || setweight(to_tsvector('simple', coalesce(s.district, '')), 'B'), query.q)
+          FROM (SELECT id, name, district FROM schools, query
+                 WHERE to_tsvector('simple', coalesce(name, '') || ' ' || coalesce(district, '')) @@ query.q
+                 LIMIT :matches) s, query
+      ) hits
+      ORDER BY score DESC, lower(name), type, id
+      LIMIT :limit OFFSET :offset
+      """;
+
+  @Autowired
+  NamedParameterJdbcTemplate jdbcTemplate;
+
+  @Override
+  public Page<SearchHit> search(String query, Pageable pageable) {
+    List<String> words = SearchService.words(query);
+    if (words.isEmpty()) {
+      return Page.empty(pageable);
+    }
+    // words are letters and digits only, so they cannot change the
+    // meaning of the tsquery
+    String tsquery = words.stream().map(word -> word + ":*").collect(Collectors.joining(" & "));
+    MapSqlParameterSource parameters = new MapSqlParameterSource()
+        .addValue("query", tsquery)
+        .addValue("matches", MAX_MATCHES)
+        .addValue("limit", pageable.getPageSize())
+        .addValue("offset", pageable.getOffset());
+
+    long[] total = { 0 };
+    List<SearchHit> hits = jdbcTemplate.query(SEARCH, parameters, (rs, rowNum) -> {
+      total[0] = rs.getLong("total");
+      return new SearchHit(rs.getString("type"), rs.getLong("id"), rs.getString("name"), rs.getString("detail"),
+          rs.getDouble("score"));
+    });
+    // (past the last page there is no row to read the total from, so it is 0)
+    return new PageImpl<>(hits, pageable, total[0]);
+  }
+
+  @Override
+  public void update(SearchHit document) {
+  }
+
+  @Override
+  public void remove(String type, long id) {
+  }
+}
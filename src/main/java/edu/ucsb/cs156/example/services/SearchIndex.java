@@ -0,0 +1,445 @@
+package edu.ucsb.cs156.example.services;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+
+import edu.ucsb.cs156.example.models.SearchHit;
+
+/**
+ * An inverted index over the names and details of SearchHits, kept in
+ * memory and updated one document at a time.  Safe for concurrent use:
+ * searches share a read lock, updates take the write lock.
+ *
+ * A document matches when each word of the query matches one of its
+ * words, either exactly, as a prefix (the last word only, so that results
+ * follow the user's typing), or with one typo (one letter added, dropped,
+ * changed, or two letters swapped; words of FUZZY_MIN_LENGTH letters or
+ * more).  Its score is the sum, over the query's words, of the best match:
+ * EXACT, PREFIX scaled by how much of the word was typed, or FUZZY, halved
+ * when the match is in the detail rather than the name.
+ *
+ * Documents are numbered in the order they are added; replacing or
+ * removing one leaves its number dead in the postings until dead numbers
+ * outnumber live ones, when the index is rebuilt.  Each word's postings
+ * are therefore in document order, so a search merges them in one pass
+ * each, and keeps only the best page's worth of hits while ranking.
+ */
+public final class SearchIndex {
+
+  static final double EXACT = 1.0;
+  static final double PREFIX = 0.9;
+  static final double FUZZY = 0.6;
+  static final double DETAIL = 0.5;
+  static final int FUZZY_MIN_LENGTH = 4;
+  // the most prefix or fuzzy matches tried for one query word
+  static final int MAX_EXPANSIONS = 64;
+  // dead document numbers tolerated before a rebuild is considered
+  static final int COMPACT_MIN_DEAD = 10_000;
+
+  // best first; names compare as lower case, as in PostgresSearchServiceImpl
+  static final Comparator<SearchHit> RANKING = Comparator.comparingDouble(SearchHit::score).reversed()
+      .thenComparing(hit -> sortKey(hit.name()), Comparator.nullsLast(Comparator.naturalOrder()))
+      .thenComparing(SearchHit::type)
+      .thenComparingLong(SearchHit::id);
+
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  // by document number; null once replaced or removed
+  private final List<SearchHit> documents = new ArrayList<>();
+  // sortKey(name) by document number, so that ranking does not lower case
+  // the name of every hit, and its first four chars packed into a long,
+  // so that most hits are ranked without reading their names at all
+  private final List<String> sortKeys = new ArrayList<>();
+  private long[] sortPrefixes = new long[16];
+  private final Map<String, Integer> numbers = new HashMap<>();
+  // word -> postings: document number << 1, | 1 if the word is in the name
+  private final TreeMap<String, Postings> words = new TreeMap<>();
+  // a word with one letter dropped -> the words it came from, for typos
+  private final Map<String, List<String>> deletions = new HashMap<>();
+  private int dead;
+
+  public void update(SearchHit document) {
+    lock.writeLock().lock();
+    try {
+      kill(numbers.remove(key(document.type(), document.id())));
+      add(document);
+      compactIfNeeded();
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  public void remove(String type, long id) {
+    lock.writeLock().lock();
+    try {
+      kill(numbers.remove(key(type, id)));
+      compactIfNeeded();
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  public int size() {
+    lock.readLock().lock();
+    try {
+      return numbers.size();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  public Page<SearchHit> search(String query, Pageable pageable) {
+    List<String> queryWords = List.copyOf(new LinkedHashSet<>(SearchService.words(query)));
+    lock.readLock().lock();
+    try {
+      Scores scores = null;
+      for (int i = 0; i < queryWords.size() && (scores == null || scores.size > 0); i++) {
+        scores = match(queryWords.get(i), i == queryWords.size() - 1, scores);
+      }
+      if (scores == null || scores.size == 0) {
+        return Page.empty(pageable);
+      }
+      return new PageImpl<>(top(scores, pageable), pageable, scores.size);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  // the documents matching word (and already in previous, if given), in
+  // document order, with their previous score plus the score of their best
+  // match for word
+  private Scores match(String word, boolean last, Scores previous) {
+    List<Match> matches = new ArrayList<>();
+    Postings exact = words.get(word);
+    if (exact != null) {
+      matches.add(new Match(exact, EXACT));
+    }
+    if (last) {
+      int expansions = 0;
+      for (Map.Entry<String, Postings> entry : words.tailMap(word, false).entrySet()) {
+        if (!entry.getKey().startsWith(word) || expansions++ == MAX_EXPANSIONS) {
+          break;
+        }
+        matches.add(new Match(entry.getValue(), PREFIX * word.length() / entry.getKey().length()));
+      }
+    }
+    if (word.length() >= FUZZY_MIN_LENGTH) {
+      int expansions = 0;
+      for (String typo : typos(word)) {
+        if (expansions++ == MAX_EXPANSIONS) {
+          break;
+        }
+        matches.add(new Match(words.get(typo), FUZZY));
+      }
+    }
+
+    // postings are in document order, so the matches are merged, in pairs
+    // until one is left, rather than collected in a hash table
+    List<Scores> runs = new ArrayList<>(matches.size());
+    for (Match match : matches) {
+      runs.add(score(match.postings(), match.weight()));
+    }
+    while (runs.size() > 1) {
+      List<Scores> merged = new ArrayList<>((runs.size() + 1) / 2);
+      for (int i = 0; i < runs.size(); i += 2) {
+        merged.add(i + 1 < runs.size() ? Scores.union(runs.get(i), runs.get(i + 1)) : runs.get(i));
+      }
+      runs = merged;
+    }
+    Scores scores = runs.isEmpty() ? new Scores(0) : runs.get(0);
+    return previous != null ? Scores.intersection(scores, previous) : scores;
+  }
+
+  private Scores score(Postings postings, double weight) {
+    Scores scores = new Scores(postings.size);
+    for (int i = 0; i < postings.size; i++) {
+      int posting = postings.entries[i];
+      int number = posting >>> 1;
+      if (documents.get(number) != null) {
+        scores.add(number, (posting & 1) == 1 ? weight : weight * DETAIL, sortPrefixes[number]);
+      }
+    }
+    return scores;
+  }
+
+  // the words in the index one typo away from word
+  private Set<String> typos(String word) {
+    Set<String> candidates = new LinkedHashSet<>();
+    // word has a letter too many
+    for (String deleted : deleted(word)) {
+      if (words.containsKey(deleted)) {
+        candidates.add(deleted);
+      }
+      // a letter changed, or two swapped
+      candidates.addAll(deletions.getOrDefault(deleted, List.of()));
+    }
+    // word is missing a letter
+    candidates.addAll(deletions.getOrDefault(word, List.of()));
+    candidates.remove(word);
+    candidates.removeIf(candidate -> !oneTypoApart(word, candidate));
+    return candidates;
+  }
+
+  private List<SearchHit> top(Scores scores, Pageable pageable) {
+    if (pageable.getOffset() >= scores.size) {
+      return List.of();
+    }
+    int wanted = (int) Math.min(scores.size, pageable.getOffset() + pageable.getPageSize());
+    // the indexes in scores of the best `wanted` hits so far, as a heap
+    // with the worst on top; hits are only made for these
+    int[] best = new int[wanted];
+    int size = 0;
+    for (int i = 0; i < scores.size; i++) {
+      if (size < wanted) {
+        best[size] = i;
+        siftUp(scores, best, size++);
+      } else if (compare(scores, i, best[0]) < 0) {
+        best[0] = i;
+        siftDown(scores, best, size);
+      }
+    }
+    List<SearchHit> ranked = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      ranked.add(documents.get(scores.documents[best[i]]).withScore(scores.values[best[i]]));
+    }
+    ranked.sort(RANKING);
+    return ranked.subList((int) pageable.getOffset(), ranked.size());
+  }
+
+  private void siftUp(Scores scores, int[] heap, int i) {
+    while (i > 0 && compare(scores, heap[i], heap[(i - 1) / 2]) > 0) {
+      swap(heap, i, (i - 1) / 2);
+      i = (i - 1) / 2;
+    }
+  }
+
+  private void siftDown(Scores scores, int[] heap, int size) {
+    int i = 0;
+    while (2 * i + 1 < size) {
+      int child = 2 * i + 1;
+      if (child + 1 < size && compare(scores, heap[child + 1], heap[child]) > 0) {
+        child++;
+      }
+      if (compare(scores, heap[child], heap[i]) <= 0) {
+        return;
+      }
+      swap(heap, i, child);
+      i = child;
+    }
+  }
+
+  private static void swap(int[] heap, int i, int j) {
+    int t = heap[i];
+    heap[i] = heap[j];
+    heap[j] = t;
+  }
+
+  // RANKING, on two hits in scores
+  private int compare(Scores scores, int a, int b) {
+    int c = Double.compare(scores.values[b], scores.values[a]);
+    if (c != 0) {
+      return c;
+    }
+    int x = scores.documents[a];
+    int y = scores.documents[b];
+    c = Long.compareUnsigned(scores.prefixes[a], scores.prefixes[b]);
+    if (c != 0) {
+      return c;
+    }
+    String xKey = sortKeys.get(x);
+    String yKey = sortKeys.get(y);
+    if (xKey != yKey) {
+      c = xKey == null ? 1 : yKey == null ? -1 : xKey.compareTo(yKey);
+      if (c != 0) {
+        return c;
+      }
+    }
+    c = documents.get(x).type().compareTo(documents.get(y).type());
+    return c != 0 ? c : Long.compare(documents.get(x).id(), documents.get(y).id());
+  }
+
+  private void add(SearchHit document) {
+    int number = documents.size();
+    documents.add(document);
+    sortKeys.add(sortKey(document.name()));
+    if (number == sortPrefixes.length) {
+      sortPrefixes = Arrays.copyOf(sortPrefixes, number * 2);
+    }
+    sortPrefixes[number] = sortPrefix(sortKeys.get(number));
+    numbers.put(key(document.type(), document.id()), number);
+    Set<String> nameWords = new LinkedHashSet<>(SearchService.words(document.name()));
+    nameWords.forEach(word -> post(word, number << 1 | 1));
+    for (String word : new LinkedHashSet<>(SearchService.words(document.detail()))) {
+      if (!nameWords.contains(word)) {
+        post(word, number << 1);
+      }
+    }
+  }
+
+  private void post(String word, int posting) {
+    words.computeIfAbsent(word, w -> {
+      // words with digits (numbers, codes) are not corrected
+      if (w.length() >= FUZZY_MIN_LENGTH && w.chars().noneMatch(Character::isDigit)) {
+        deleted(w).forEach(deleted -> deletions.computeIfAbsent(deleted, d -> new ArrayList<>(2)).add(w));
+      }
+      return new Postings();
+    }).add(posting);
+  }
+
+  private void kill(Integer number) {
+    if (number != null) {
+      documents.set(number, null);
+      sortKeys.set(number, null);
+      dead++;
+    }
+  }
+
+  private void compactIfNeeded() {
+    if (dead < COMPACT_MIN_DEAD || dead < documents.size() / 2) {
+      return;
+    }
+    List<SearchHit> live = documents.stream().filter(d -> d != null).toList();
+    documents.clear();
+    sortKeys.clear();
+    sortPrefixes = new long[Math.max(16, live.size())];
+    numbers.clear();
+    words.clear();
+    deletions.clear();
+    dead = 0;
+    live.forEach(this::add);
+  }
+
+  private static String key(String type, long id) {
+    return type + ":" + id;
+  }
+
+  private static String sortKey(String name) {
+    return name == null ? null : name.toLowerCase(Locale.ROOT);
+  }
+
+  // ordered as the keys are, except that keys which share their first four
+  // chars (or are shorter, or null) may tie
+  private static long sortPrefix(String key) {
+    if (key == null) {
+      return -1L;
+    }
+    long prefix = 0;
+    for (int i = 0; i < 4; i++) {
+      prefix = prefix << 16 | (i < key.length() ? key.charAt(i) : 0);
+    }
+    return prefix;
+  }
+
+  private static Set<String> deleted(String word) {
+    Set<String> deleted = new LinkedHashSet<>();
+    for (int i = 0; i < word.length(); i++) {
+      deleted.add(word.substring(0, i) + word.substring(i + 1));
+    }
+    return deleted;
+  }
+
+  // optimal string alignment distance of exactly 1
+  static boolean oneTypoApart(String a, String b) {
+    if (Math.abs(a.length() - b.length()) > 1 || a.equals(b)) {
+      return false;
+    }
+    int i = 0;
+    while (i < a.length() && i < b.length() && a.charAt(i) == b.charAt(i)) {
+      i++;
+    }
+    if (a.length() == b.length()) {
+      // one letter changed, or two neighbours swapped
+      return a.substring(i + 1).equals(b.substring(i + 1))
+          || (i + 1 < a.length() && a.charAt(i) == b.charAt(i + 1) && a.charAt(i + 1) == b.charAt(i)
+              && a.substring(i + 2).equals(b.substring(i + 2)));
+    }
+    // one letter added or dropped
+    return a.length() > b.length() ? a.substring(i + 1).equals(b.substring(i)) : b.substring(i + 1).equals(a.substring(i));
+  }
+
+  private record Match(Postings postings, double weight) {
+  }
+
+  // a growable list of postings
+  private static final class Postings {
+    int[] entries = new int[4];
+    int size;
+
+    void add(int posting) {
+      if (size == entries.length) {
+        entries = Arrays.copyOf(entries, size * 2);
+      }
+      entries[size++] = posting;
+    }
+  }
+
+  // document numbers, in increasing order, with their scores and the sort
+  // prefixes of their documents (copied here as the postings are read in
+  // document order, rather than read at random while ranking)
+  private static final class Scores {
+    final int[] documents;
+    final double[] values;
+    final long[] prefixes;
+    int size;
+
+    Scores(int capacity) {
+      documents = new int[capacity];
+      values = new double[capacity];
+      prefixes = new long[capacity];
+    }
+
+    void add(int document, double value, long prefix) {
+      documents[size] = document;
+      values[size] = value;
+      prefixes[size] = prefix;
+      size++;
+    }
+
+    // the documents in either, with the higher score
+    static Scores union(Scores a, Scores b) {
+      Scores union = new Scores(a.size + b.size);
+      int i = 0;
+      int j = 0;
+      while (i < a.size || j < b.size) {
+        if (j == b.size || (i < a.size && a.documents[i] < b.documents[j])) {
+          union.add(a.documents[i], a.values[i], a.prefixes[i++]);
+        } else if (i == a.size || b.documents[j] < a.documents[i]) {
+          union.add(b.documents[j], b.values[j], b.prefixes[j++]);
+        } else {
+          union.add(a.documents[i], Math.max(a.values[i], b.values[j++]), a.prefixes[i++]);
+        }
+      }
+      return union;
+    }
+
+    // the documents in both, with the sum of their scores
+    static Scores intersection(Scores a, Scores b) {
+      Scores intersection = new Scores(Math.min(a.size, b.size));
+      int i = 0;
+      int j = 0;
+      while (i < a.size && j < b.size) {
+        if (a.documents[i] < b.documents[j]) {
+          i++;
+        } else if (b.documents[j] < a.documents[i]) {
+          j++;
+        } else {
+          intersection.add(a.documents[i], a.values[i] + b.values[j++], a.prefixes[i++]);
+        }
+      }
+      return intersection;
+    }
+  }
+}
@@ -0,0 +1,83 @@
+package edu.ucsb.cs156.example.services;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+
+import edu.ucsb.cs156.example.entities.Park;
+import edu.ucsb.cs156.example.entities.Restaurant;
+import edu.ucsb.cs156.example.entities.Schools;
+import edu.ucsb.cs156.example.models.SearchHit;
+
+/**
+ * Search by name over restaurants (name and cuisine), parks (name and
+ * state) and schools (name and district), for /api/search.
+ *
+ * The controllers call update and remove from their write paths; an
+ * implementation that keeps its own index applies them once the
+ * surrounding transaction, if any, has committed.
+ */
+public interface SearchService {
+  String RESTAURANT = "restaurant";
+  String PARK = "park";
+  String SCHOOL = "school";
+
+  /**
+   * The hits for every word of the query, best first.  The last word may
+   * be the start of a word (as it is while the user is typing).
+   */
+  Page<SearchHit> search(String query, Pageable pageable);
+
+  void update(SearchHit document);
+
+  void remove(String type, long id);
+
+  default void update(Restaurant restaurant) {
+    update(document(restaurant));
+  }
+
+  default void update(Park park) {
+    update(document(park));
+  }
+
+  default void update(Schools school) {
+    update(document(school));
+  }
+
+  static SearchHit document(Restaurant restaurant) {
+    return new SearchHit(RESTAURANT, restaurant.getId(), restaurant.getName(), restaurant.getCuisine(), 0);
+  }
+
+  static SearchHit document(Park park) {
+    return new SearchHit(PARK, park.getId(), park.getName(), park.getState(), 0);
+  }
+
+  static SearchHit document(Schools school) {
+    return new SearchHit(SCHOOL, school.getId(), school.getName(), school.getDistrict(), 0);
+  }
+
+  /**
+   * The words of a query or a name: runs of letters and digits, in lower
+   * case.  This is also how the 'simple' Postgres text search
+   * configuration splits them.
+   */
+  static List<String> words(String text) {
+    List<String> words = new ArrayList<>();
+    if (text == null) {
+      return words;
+    }
+    int start = -1;
+    for (int i = 0; i <= text.length(); i++) {
+      boolean letterOrDigit = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+      if (letterOrDigit && start < 0) {
+        start = i;
+      } else if (!letterOrDigit && start >= 0) {
+        words.add(text.substring(start, i).toLowerCase());
+        start = -1;
+      }
+    }
+    return words;
+  }
+}
@@ -0,0 +1,178 @@
+package edu.ucsb.cs156.example.services;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+import org.springframework.security.oauth2.core.endpoint.OAuth2AuthorizationRequest;
+import org.springframework.security.oauth2.core.user.DefaultOAuth2User;
+import org.springframework.security.oauth2.jose.jws.MacAlgorithm;
+import org.springframework.security.oauth2.jwt.JwsHeader;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtClaimsSet;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtEncoder;
+import org.springframework.security.oauth2.jwt.JwtEncoderParameters;
+import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.security.oauth2.jwt.JwtTimestampValidator;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+import org.springframework.security.oauth2.jwt.NimbusJwtEncoder;
+
+import com.nimbusds.jose.jwk.source.ImmutableSecret;
+
+import edu.ucsb.cs156.example.models.RoleSet;
+import edu.ucsb.cs156.example.models.RoleSet.Role;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Issues and checks the signed tokens of stateless sessions (see
+ * SessionTokenConfig): JWTs signed with HMAC-SHA256.  A session token
+ * carries the user's Google sub (the principal's name), users.id, email
+ * and roles, and the OAuth2 client they logged in with, and is good for
+ * timeToLive.  The OAuth2 authorization request of a login under way is
+ * also kept in such a token, good for AUTHORIZATION_REQUEST_TIME_TO_LIVE.
+ */
+@Slf4j
+public class SessionTokenService {
+
+  public static final Duration AUTHORIZATION_REQUEST_TIME_TO_LIVE = Duration.ofMinutes(5);
+
+  private final JwtEncoder encoder;
+  private final NimbusJwtDecoder decoder;
+  private final Duration timeToLive;
+  private final Clock clock;
+
+  /**
+   * The authentication of a request that came with a good session token:
+   * an OAuth2AuthenticationToken whose principal has the sub, uid and
+   * email attributes, and whose authorities are its roles.
+   */
+  public static class SessionTokenAuthentication extends OAuth2AuthenticationToken {
+    private final RoleSet roles;
+
+    public SessionTokenAuthentication(DefaultOAuth2User principal, String authorizedClientRegistrationId,
+        RoleSet roles) {
+      super(principal, principal.getAuthorities(), authorizedClientRegistrationId);
+      this.roles = roles;
+    }
+
+    public RoleSet getRoles() {
+      return roles;
+    }
+  }
+
+  public SessionTokenService(byte[] secret, Duration timeToLive, Clock clock) {
+    SecretKey key = new SecretKeySpec(secret, "HmacSHA256");
+    this.encoder = new NimbusJwtEncoder(new ImmutableSecret<>(key));
+    this.decoder = NimbusJwtDecoder.withSecretKey(key).macAlgorithm(MacAlgorithm.HS256).build();
+    JwtTimestampValidator validator = new JwtTimestampValidator(Duration.ZERO);
+    validator.setClock(clock);
+    this.decoder.setJwtValidator(validator);
+    this.timeToLive = timeToLive;
+    this.clock = clock;
+  }
+
+  public Duration getTimeToLive() {
+    return timeToLive;
+  }
+
+  public String issue(OAuth2AuthenticationToken authentication, long userId, String email, RoleSet roles) {
+    List<String> roleNames = new ArrayList<>();
+    for (Role role : Role.values()) {
+      if (roles.has(role)) {
+        roleNames.add(role.name());
+      }
+    }
+    return encode(JwtClaimsSet.builder()
+        .subject(authentication.getName())
+        .claim("uid", userId)
+        .claim("email", email)
+        .claim("roles", roleNames)
+        .claim("client", authentication.getAuthorizedClientRegistrationId()), timeToLive);
+  }
+
+  /**
+   * The authentication a session token stands for, or null if it is not
+   * one this service issued, or has expired.
+   */
+  public SessionTokenAuthentication authentication(String token) {
+    Jwt jwt = decode(token);
+    if (jwt == null || jwt.getClaimAsStringList("roles") == null) {
+      return null;
+    }
+    RoleSet roles = RoleSet.NONE;
+    Set<GrantedAuthority> authorities = new HashSet<>();
+    for (String name : jwt.getClaimAsStringList("roles")) {
+      Role role = Role.valueOf(name);
+      roles = roles.with(role);
+      authorities.add(new SimpleGrantedAuthority(role.authority()));
+    }
+    Map<String, Object> attributes = Map.of(
+        "sub", jwt.getSubject(),
+        "uid", jwt.getClaim("uid"),
+        "email", jwt.getClaimAsString("email"));
+    return new SessionTokenAuthentication(new DefaultOAuth2User(authorities, attributes, "sub"),
+        jwt.getClaimAsString("client"), roles);
+  }
+
+  public String issue(OAuth2AuthorizationRequest request) {
+    return encode(JwtClaimsSet.builder()
+        .claim("authorizationUri", request.getAuthorizationUri())
+        .claim("clientId", request.getClientId())
+        .claim("redirectUri", request.getRedirectUri())
+        .claim("scopes", List.copyOf(request.getScopes()))
+        .claim("state", request.getState())
+        .claim("additionalParameters", request.getAdditionalParameters())
+        .claim("attributes", request.getAttributes())
+        .claim("authorizationRequestUri", request.getAuthorizationRequestUri()),
+        AUTHORIZATION_REQUEST_TIME_TO_LIVE);
+  }
+
+  /**
+   * The OAuth2 authorization request in a token, or null if it is not one
+   * this service issued, or has expired.
+   */
+  public OAuth2AuthorizationRequest authorizationRequest(String token) {
+    Jwt jwt = decode(token);
+    if (jwt == null || jwt.getClaimAsString("authorizationUri") == null) {
+      return null;
+    }
+    return OAuth2AuthorizationRequest.authorizationCode()
+        .authorizationUri(jwt.getClaimAsString("authorizationUri"))
+        .clientId(jwt.getClaimAsString("clientId"))
+        .redirectUri(jwt.getClaimAsString("redirectUri"))
+        .scopes(Set.copyOf(jwt.getClaimAsStringList("scopes")))
+        .state(jwt.getClaimAsString("state"))
+        .additionalParameters(jwt.getClaimAsMap("additionalParameters"))
+        .attributes(jwt.getClaimAsMap("attributes"))
+        .authorizationRequestUri(jwt.getClaimAsString("authorizationRequestUri"))
+        .build();
+  }
+
+  private String encode(JwtClaimsSet.Builder claims, Duration goodFor) {
+    Instant now = clock.instant();
+    JwsHeader header = JwsHeader.with(MacAlgorithm.HS256).build();
+    return encoder.encode(JwtEncoderParameters.from(header, claims.issuedAt(now).expiresAt(now.plus(goodFor)).build()))
+        .getTokenValue();
+  }
+
+  private Jwt decode(String token) {
+    try {
+      return decoder.decode(token);
+    } catch (JwtException e) {
+      log.debug("rejected token: {}", e.getMessage());
+      return null;
+    }
+  }
+}
@@ -0,0 +1,135 @@
+package edu.ucsb.cs156.example.services;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Function;
+
+/**
+ * An immutable k-d tree for k-nearest searches by latitude and longitude.
+ *
+ * Points are stored as unit vectors on the sphere, so that the straight
+ * line (chord) distance between two of them grows with their great circle
+ * distance everywhere, including across the antimeridian and near the
+ * poles; the tree is searched by chord distance and the results are
+ * converted to metres on the surface.  A search visits O(log n) nodes for
+ * evenly spread points, instead of computing the distance to every point.
+ */
+public final class SpatialIndex<T> {
+
+  /** mean radius of the Earth */
+  public static final double EARTH_RADIUS_METERS = 6_371_008.8;
+
+  public record Neighbor<T>(T item, double distanceMeters) {
+  }
+
+  private final List<T> items;
+  // x, y, z of items.get(i) at 3i; ordered as an implicit tree: the root
+  // of the range [lo, hi) is at (lo + hi) / 2, split on axis depth % 3
+  private final double[] points;
+
+  /**
+   * Indexes the items that have both a latitude and a longitude (in
+   * degrees); the others are left out.
+   */
+  public SpatialIndex(Iterable<T> items, Function<T, Double> latitude, Function<T, Double> longitude) {
+    List<T> located = new ArrayList<>();
+    List<double[]> vectors = new ArrayList<>();
+    for (T item : items) {
+      Double lat = latitude.apply(item);
+      Double lon = longitude.apply(item);
+      if (lat != null && lon != null) {
+        located.add(item);
+        vectors.add(vector(lat, lon));
+      }
+    }
+
+    Integer[] order = new Integer[located.size()];
+    Arrays.setAll(order, i -> i);
+    build(order, vectors, 0, order.length, 0);
+
+    this.items = new ArrayList<>(order.length);
+    this.points = new double[3 * order.length];
+    for (int i = 0; i < order.length; i++) {
+      this.items.add(located.get(order[i]));
+      System.arraycopy(vectors.get(order[i]), 0, points, 3 * i, 3);
+    }
+  }
+
+  public int size() {
+    return items.size();
+  }
+
+  /**
+   * The k items nearest to the given point, nearest first
+   */
+  public List<Neighbor<T>> nearest(double latitude, double longitude, int k) {
+    if (k <= 0 || items.isEmpty()) {
+      return List.of();
+    }
+    double[] query = vector(latitude, longitude);
+    // the k best so far, farthest first, as {index, squared chord}
+    PriorityQueue<double[]> best = new PriorityQueue<>(k + 1, Comparator.comparingDouble((double[] n) -> n[1]).reversed());
+    search(query, k, best, 0, items.size(), 0);
+
+    List<Neighbor<T>> result = new ArrayList<>(best.size());
+    while (!best.isEmpty()) {
+      double[] n = best.poll();
+      result.add(new Neighbor<>(items.get((int) n[0]), meters(Math.sqrt(n[1]))));
+    }
+    Collections.reverse(result);
+    return result;
+  }
+
+  private void search(double[] query, int k, PriorityQueue<double[]> best, int lo, int hi, int depth) {
+    if (lo >= hi) {
+      return;
+    }
+    int mid = (lo + hi) >>> 1;
+    double dx = query[0] - points[3 * mid];
+    double dy = query[1] - points[3 * mid + 1];
+    double dz = query[2] - points[3 * mid + 2];
+    double distance = dx * dx + dy * dy + dz * dz;
+    if (best.size() < k) {
+      best.add(new double[] { mid, distance });
+    } else if (distance < best.peek()[1]) {
+      best.poll();
+      best.add(new double[] { mid, distance });
+    }
+
+    int axis = depth % 3;
+    double split = query[axis] - points[3 * mid + axis];
+    boolean left = split < 0;
+    search(query, k, best, left ? lo : mid + 1, left ? mid : hi, depth + 1);
+    // the other side can only hold something nearer if the splitting
+    // plane is nearer than the farthest of the k best
+    if (best.size() < k || split * split < best.peek()[1]) {
+      search(query, k, best, left ? mid + 1 : lo, left ? hi : mid, depth + 1);
+    }
+  }
+
+  private static void build(Integer[] order, List<double[]> vectors, int lo, int hi, int depth) {
+    if (hi - lo <= 1) {
+      return;
+    }
+    int axis = depth % 3;
+    Arrays.sort(order, lo, hi, Comparator.comparingDouble(i -> vectors.get(i)[axis]));
+    int mid = (lo + hi) >>> 1;
+    build(order, vectors, lo, mid, depth + 1);
+    build(order, vectors, mid + 1, hi, depth + 1);
+  }
+
+  private static double[] vector(double latitude, double longitude) {
+    double lat = Math.toRadians(latitude);
+    double lon = Math.toRadians(longitude);
+    return new double[] { Math.cos(lat) * Math.cos(lon), Math.cos(lat) * Math.sin(lon), Math.sin(lat) };
+  }
+
+  // great circle distance for a chord of the unit sphere
+  private static double meters(double chord) {
+    return 2 * Math.asin(Math.min(1, chord / 2)) * EARTH_RADIUS_METERS;
+  }
+}
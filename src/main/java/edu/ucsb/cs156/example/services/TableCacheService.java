@@ -0,0 +1,67 @@
+package edu.ucsb.cs156.example.services;
+
+import java.io.Serializable;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.Session;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import edu.ucsb.cs156.example.entities.TableVersion;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Keeps this instance's Hibernate caches of a table (the second-level
+ * cache of its entities and the query cache of its listings, see
+ * HibernateCacheConfig) in step with the table's table_versions row.
+ *
+ * Hibernate only invalidates those caches for the writes made through
+ * this instance.  A write through another instance bumps the version
+ * row, so when a request reads a version other than the last one seen
+ * here, the table's cached queries and entities are dropped before it
+ * reads the rows: a listing answered with a table version's ETag is
+ * never one cached before that version.  The query results are dropped
+ * the way Hibernate drops them after a write, by marking the table as
+ * updated now, so that a result still being read from before is not
+ * cached as a current one either.
+ */
+@Slf4j
+@Service
+public class TableCacheService {
+
+  @Autowired
+  EntityManagerFactory entityManagerFactory;
+
+  // table name -> the last version read by this instance
+  private final Map<String, TableVersion> seen = new ConcurrentHashMap<>();
+
+  /**
+   * Drops the cached rows and queries of entityType if version is not the
+   * last one seen for its table.  Call it after reading the version row,
+   * and before reading the rows it stands for.
+   */
+  public void checkVersion(Optional<TableVersion> version, Class<?> entityType) {
+    if (version.isEmpty()) {
+      return;
+    }
+    TableVersion current = version.get();
+    TableVersion previous = seen.put(current.getTableName(), current);
+    if (current.equals(previous)) {
+      return;
+    }
+    SessionFactoryImplementor sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+    Serializable[] spaces = sessionFactory.getMetamodel().entityPersister(entityType).getQuerySpaces();
+    try (Session session = sessionFactory.openSession()) {
+      sessionFactory.getCache().getTimestampsCache().invalidate(spaces, (SharedSessionContractImplementor) session);
+    }
+    sessionFactory.getCache().evictEntityData(entityType);
+    log.debug("{} changed from {} to {}: cached rows and queries dropped", current.getTableName(), previous,
+        current);
+  }
+}
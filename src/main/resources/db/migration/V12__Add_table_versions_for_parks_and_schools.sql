@@ -0,0 +1,5 @@
+-- parks and schools are kept in the second-level cache of each instance
+-- (see HibernateCacheConfig); a write through one instance bumps these so
+-- that the others drop their cached rows (see TableCacheService)
+INSERT INTO table_versions (table_name, version, last_modified) VALUES ('parks', 0, CURRENT_TIMESTAMP);
+INSERT INTO table_versions (table_name, version, last_modified) VALUES ('schools', 0, CURRENT_TIMESTAMP);
@@ -0,0 +1,60 @@
+-- Tables as they were before Flyway was wired in (previously created by
+-- spring.jpa.hibernate.ddl-auto).  Existing databases are baselined at
+-- version 4 (see spring.flyway.baseline-version) and skip this script.
+
+CREATE TABLE users (
+  id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+  email VARCHAR(255),
+  email_verified BOOLEAN NOT NULL,
+  family_name VARCHAR(255),
+  full_name VARCHAR(255),
+  given_name VARCHAR(255),
+  google_sub VARCHAR(255),
+  hosted_domain VARCHAR(255),
+  locale VARCHAR(255),
+  picture_url VARCHAR(255),
+  PRIMARY KEY (id)
+);
+
+CREATE TABLE restaurants (
+  id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+  cuisine VARCHAR(255),
+  name VARCHAR(255),
+  roach_counter INTEGER NOT NULL,
+  PRIMARY KEY (id)
+);
+
+CREATE TABLE parks (
+  id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+  acres INTEGER NOT NULL,
+  name VARCHAR(255),
+  state VARCHAR(255),
+  PRIMARY KEY (id)
+);
+
+CREATE TABLE schools (
+  id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+  district VARCHAR(255),
+  grade_range VARCHAR(255),
+  name VARCHAR(255),
+  PRIMARY KEY (id)
+);
+
+CREATE TABLE ucsbdates (
+  id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+  local_date_time TIMESTAMP,
+  name VARCHAR(255),
+  quarteryyyyq VARCHAR(255),
+  PRIMARY KEY (id)
+);
+
+CREATE TABLE ucsbdiningcommons (
+  code VARCHAR(255) NOT NULL,
+  has_dining_cam BOOLEAN NOT NULL,
+  has_sack_meal BOOLEAN NOT NULL,
+  has_take_out_meal BOOLEAN NOT NULL,
+  latitude DOUBLE PRECISION,
+  longitude DOUBLE PRECISION,
+  name VARCHAR(255),
+  PRIMARY KEY (code)
+);
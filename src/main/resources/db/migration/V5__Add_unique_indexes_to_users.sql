@@ -0,0 +1,16 @@
+-- nothing made emails unique before, and two first logins at once could
+-- each save the user; keep the first row of each email (then of each
+-- google_sub), an admin if any of its copies was, and delete the others,
+-- so that the indexes can be created.  Nothing else references users.
+UPDATE users SET admin = TRUE
+WHERE EXISTS (SELECT 1 FROM users d WHERE d.email = users.email AND d.id <> users.id AND d.admin = TRUE);
+DELETE FROM users
+WHERE EXISTS (SELECT 1 FROM users d WHERE d.email = users.email AND d.id < users.id);
+UPDATE users SET admin = TRUE
+WHERE EXISTS (SELECT 1 FROM users d WHERE d.google_sub = users.google_sub AND d.id <> users.id AND d.admin = TRUE);
+DELETE FROM users
+WHERE EXISTS (SELECT 1 FROM users d WHERE d.google_sub = users.google_sub AND d.id < users.id);
+
+-- users are looked up by email on every login and admin check
+CREATE UNIQUE INDEX users_email_idx ON users (email);
+CREATE UNIQUE INDEX users_google_sub_idx ON users (google_sub);
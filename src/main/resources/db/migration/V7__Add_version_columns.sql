@@ -0,0 +1,6 @@
+-- optimistic locking (@Version) for the entities edited through the API
+ALTER TABLE restaurants ADD version BIGINT DEFAULT 0 NOT NULL;
+ALTER TABLE parks ADD version BIGINT DEFAULT 0 NOT NULL;
+ALTER TABLE schools ADD version BIGINT DEFAULT 0 NOT NULL;
+ALTER TABLE ucsbdates ADD version BIGINT DEFAULT 0 NOT NULL;
+ALTER TABLE ucsbdiningcommons ADD version BIGINT DEFAULT 0 NOT NULL;
@@ -0,0 +1,11 @@
+-- a counter per table, bumped by every write made through the API, so
+-- that the /all endpoints can answer conditional GETs (ETag and
+-- Last-Modified) without reading the table itself
+CREATE TABLE table_versions (
+  table_name VARCHAR(255) NOT NULL PRIMARY KEY,
+  version BIGINT NOT NULL,
+  last_modified TIMESTAMP NOT NULL
+);
+
+INSERT INTO table_versions (table_name, version, last_modified) VALUES ('restaurants', 0, CURRENT_TIMESTAMP);
+INSERT INTO table_versions (table_name, version, last_modified) VALUES ('ucsbdiningcommons', 0, CURRENT_TIMESTAMP);
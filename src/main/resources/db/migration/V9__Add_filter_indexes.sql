@@ -0,0 +1,10 @@
+-- indexes for the filters of the /query listings (see Filters.java).  The
+-- two column indexes also serve a filter on their first column alone, and
+-- a range on the second column within one value of the first.
+CREATE INDEX restaurants_cuisine_roach_counter_idx ON restaurants (cuisine, roach_counter);
+CREATE INDEX restaurants_roach_counter_idx ON restaurants (roach_counter);
+CREATE INDEX parks_state_acres_idx ON parks (state, acres);
+CREATE INDEX parks_acres_idx ON parks (acres);
+CREATE INDEX schools_district_idx ON schools (district);
+CREATE INDEX ucsbdates_quarteryyyyq_local_date_time_idx ON ucsbdates (quarteryyyyq, local_date_time);
+CREATE INDEX ucsbdates_local_date_time_idx ON ucsbdates (local_date_time);
@@ -0,0 +1,253 @@
+package edu.ucsb.cs156.example.aop;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+class ControllerMetricsAspectTests {
+
+  static class ExampleController {
+    MeterRegistry meterRegistry;
+    double inFlightDuringCall;
+
+    @GetMapping("/api/example")
+    public String example() {
+      inFlightDuringCall = meterRegistry.get("controller.in.flight")
+          .tags("controller", "ExampleController", "method", "example").gauge().value();
+      return "example";
+    }
+
+    @GetMapping("/api/example/fail")
+    public String fail() {
+      throw new IllegalStateException("fail");
+    }
+
+    @GetMapping("/api/example/async")
+    public CompletableFuture<String> async() {
+      return pending;
+    }
+
+    CompletableFuture<String> pending;
+
+    @GetMapping("/api/example/stream")
+    public Flux<String> stream() {
+      return rows.asFlux();
+    }
+
+    Sinks.Many<String> rows;
+
+    public String notAHandler() {
+      return "not a handler";
+    }
+  }
+
+  MeterRegistry meterRegistry;
+  ExampleController target;
+  ExampleController controller;
+
+  Logger requestLog = (Logger) LoggerFactory.getLogger("edu.ucsb.cs156.example.requests");
+  ListAppender<ILoggingEvent> requestLogEvents = new ListAppender<>();
+
+  @BeforeEach
+  void setup() {
+    meterRegistry = new SimpleMeterRegistry();
+    target = new ExampleController();
+    target.meterRegistry = meterRegistry;
+    controller = proxy(0);
+    requestLogEvents.start();
+    requestLog.addAppender(requestLogEvents);
+  }
+
+  @AfterEach
+  void cleanup() {
+    requestLog.detachAppender(requestLogEvents);
+    RequestContextHolder.resetRequestAttributes();
+  }
+
+  private ExampleController proxy(double requestSampleRate) {
+    AspectJProxyFactory factory = new AspectJProxyFactory(target);
+    factory.setProxyTargetClass(true);
+    factory.addAspect(new ControllerMetricsAspect(meterRegistry, requestSampleRate));
+    return factory.getProxy();
+  }
+
+  private void request(String method, String path) {
+    RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest(method, path)));
+  }
+
+  private Timer timer(String method) {
+    return meterRegistry.get("controller.requests").tags("controller", "ExampleController", "method", method).timer();
+  }
+
+  @Test
+  void handler_calls_are_timed() {
+    // act
+    controller.example();
+    controller.example();
+
+    // assert
+    assertEquals(2, timer("example").count());
+    assertEquals(1.0, target.inFlightDuringCall);
+    assertEquals(0.0, meterRegistry.get("controller.in.flight").tags("method", "example").gauge().value());
+  }
+
+  @Test
+  void handler_errors_are_counted_and_timed() {
+    // act
+    assertThrows(IllegalStateException.class, () -> controller.fail());
+
+    // assert
+    assertEquals(1, timer("fail").count());
+    assertEquals(1.0, meterRegistry.get("controller.errors")
+        .tags("controller", "ExampleController", "method", "fail", "exception", "IllegalStateException")
+        .counter().count());
+    assertEquals(0.0, meterRegistry.get("controller.in.flight").tags("method", "fail").gauge().value());
+  }
+
+  @Test
+  void async_handlers_are_timed_when_their_work_completes() {
+    // arrange
+    target.pending = new CompletableFuture<>();
+
+    // act
+    CompletableFuture<String> result = controller.async();
+
+    // assert
+    assertEquals(0, timer("async").count());
+    assertEquals(1.0, meterRegistry.get("controller.in.flight").tags("method", "async").gauge().value());
+    target.pending.complete("done");
+    assertEquals("done", result.join());
+    assertEquals(1, timer("async").count());
+    assertEquals(0.0, meterRegistry.get("controller.in.flight").tags("method", "async").gauge().value());
+  }
+
+  @Test
+  void async_handler_errors_are_counted() {
+    // arrange
+    target.pending = new CompletableFuture<>();
+
+    // act
+    controller.async();
+    target.pending.completeExceptionally(new CompletionException(new IllegalStateException("fail")));
+
+    // assert
+    assertEquals(1, timer("async").count());
+    assertEquals(1.0, meterRegistry.get("controller.errors")
+        .tags("controller", "ExampleController", "method", "async", "exception", "IllegalStateException")
+        .counter().count());
+  }
+
+  @Test
+  void streaming_handlers_are_timed_until_the_stream_completes() {
+    // arrange
+    target.rows = Sinks.many().unicast().onBackpressureBuffer();
+    List<String> received = new ArrayList<>();
+
+    // act
+    controller.stream().subscribe(received::add);
+    target.rows.tryEmitNext("row");
+
+    // assert
+    assertEquals(List.of("row"), received);
+    assertEquals(0, timer("stream").count());
+    target.rows.tryEmitComplete();
+    assertEquals(1, timer("stream").count());
+    assertEquals(0.0, meterRegistry.get("controller.in.flight").tags("method", "stream").gauge().value());
+  }
+
+  @Test
+  void streaming_handlers_are_timed_when_the_client_goes_away() {
+    // arrange
+    target.rows = Sinks.many().unicast().onBackpressureBuffer();
+
+    // act
+    controller.stream().subscribe().dispose();
+
+    // assert
+    assertEquals(1, timer("stream").count());
+    assertEquals(0.0, meterRegistry.get("controller.in.flight").tags("method", "stream").gauge().value());
+  }
+
+  @Test
+  void methods_that_are_not_handlers_are_not_timed() {
+    // act
+    controller.notAHandler();
+
+    // assert
+    assertNull(meterRegistry.find("controller.requests").tags("method", "notAHandler").timer());
+  }
+
+  @Test
+  void requests_are_not_logged_by_default() {
+    // arrange
+    request("GET", "/api/example");
+
+    // act
+    controller.example();
+
+    // assert
+    assertEquals(List.of(), requestLogEvents.list);
+  }
+
+  @Test
+  void sampled_requests_are_logged_once_handled() {
+    // arrange
+    ExampleController sampled = proxy(1.0);
+    request("GET", "/api/example/fail");
+
+    // act
+    assertThrows(IllegalStateException.class, () -> sampled.fail());
+
+    // assert
+    assertEquals(1, requestLogEvents.list.size());
+    ILoggingEvent event = requestLogEvents.list.get(0);
+    assertEquals(Level.INFO, event.getLevel());
+    assertTrue(event.getFormattedMessage().matches(
+        "method=GET path=/api/example/fail handler=ExampleController.fail durationMs=\\d+ outcome=IllegalStateException"),
+        event.getFormattedMessage());
+  }
+
+  @Test
+  void sampled_async_requests_are_logged_when_their_work_completes() {
+    // arrange
+    ExampleController sampled = proxy(1.0);
+    request("GET", "/api/example/async");
+    target.pending = new CompletableFuture<>();
+
+    // act
+    sampled.async();
+
+    // assert
+    assertEquals(List.of(), requestLogEvents.list);
+    target.pending.complete("done");
+    assertEquals(1, requestLogEvents.list.size());
+    assertTrue(requestLogEvents.list.get(0).getFormattedMessage().endsWith("outcome=ok"));
+  }
+}
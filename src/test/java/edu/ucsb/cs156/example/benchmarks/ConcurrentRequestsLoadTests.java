@@ -0,0 +1,281 @@
+package edu.ucsb.cs156.example.benchmarks;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.servlet.http.HttpSession;
+
+import org.h2.tools.Server;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.AutoConfigurationPackage;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.context.TypeExcludeFilter;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.ComponentScan.Filter;
+import org.springframework.context.annotation.FilterType;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.web.context.HttpSessionSecurityContextRepository;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import edu.ucsb.cs156.example.ExampleApplication;
+import edu.ucsb.cs156.example.entities.Restaurant;
+import edu.ucsb.cs156.example.repositories.RestaurantRepository;
+
+// Holds CONNECTIONS connections open against the running application,
+// each sending one request after another, and counts the responses in
+// the SECONDS seconds after WARMUP_SECONDS seconds of warm up: one in four
+// connections lists /api/restaurants/query (slow: a count and a sorted
+// page over half of a large table), the others fetch single
+// restaurants by id (fast).  Prints the throughput and latency of each
+// kind.  Run it once in each mode, with
+//
+//   mvn test -Dtest=ConcurrentRequestsLoadTests -Dbenchmarks=true -Dapp.async-handlers.enabled=false
+//   mvn test -Dtest=ConcurrentRequestsLoadTests -Dbenchmarks=true -Dapp.async-handlers.enabled=true
+//
+// H2 runs as a TCP server on localhost, as in InsertThroughputBenchmarkTests.
+// The client runs in a JVM of its own, so that its sockets do not count
+// against this JVM's open file limit.  Results are recorded in
+// docs/benchmarks.md.
+
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+@SpringBootTest(classes = ConcurrentRequestsLoadTests.LoadTestApplication.class, webEnvironment = WebEnvironment.RANDOM_PORT, properties = {
+    "server.tomcat.max-connections=12000",
+    "server.tomcat.accept-count=4096",
+    "logging.level.sql=WARN",
+    "logging.level.org.hibernate.type.descriptor.sql.BasicBinder=WARN" })
+class ConcurrentRequestsLoadTests {
+
+  static final int ROWS = 100_000;
+  static final int CONNECTIONS = Integer.getInteger("connections", 10_000);
+  static final int WARMUP_SECONDS = Integer.getInteger("warmup", 60);
+  static final int SECONDS = Integer.getInteger("seconds", 120);
+
+  static final String SLOW = "/api/restaurants/query?maxRoachCounter=5&sort=cuisine,desc&page=10&limit=100";
+  static final String FAST = "/api/restaurants?id=";
+
+  static Server h2;
+
+  @DynamicPropertySource
+  static void database(DynamicPropertyRegistry registry) throws SQLException {
+    h2 = Server.createTcpServer("-tcpPort", "0", "-ifNotExists").start();
+    registry.add("spring.datasource.url", () -> "jdbc:h2:tcp://localhost:%d/mem:load".formatted(h2.getPort()));
+  }
+
+  @AfterAll
+  static void stopDatabase() {
+    h2.stop();
+  }
+
+  // a session for the client, as OAuth2 login would leave it
+  @RequestMapping("/test")
+  @ResponseBody
+  static class LoginController {
+    @GetMapping("/login")
+    public String login(HttpSession session) {
+      SecurityContext context = SecurityContextHolder.createEmptyContext();
+      context.setAuthentication(new TestingAuthenticationToken("load", null, "ROLE_USER"));
+      session.setAttribute(HttpSessionSecurityContextRepository.SPRING_SECURITY_CONTEXT_KEY, context);
+      return "ok";
+    }
+  }
+
+  // ExampleApplication, without the mocks in testconfig that its component
+  // scan would pick up from the test classes
+  @SpringBootConfiguration
+  @EnableAutoConfiguration
+  @AutoConfigurationPackage(basePackageClasses = ExampleApplication.class)
+  @EnableCaching
+  @ComponentScan(basePackageClasses = ExampleApplication.class, excludeFilters = {
+      @Filter(type = FilterType.CUSTOM, classes = TypeExcludeFilter.class),
+      @Filter(type = FilterType.ASSIGNABLE_TYPE, classes = ExampleApplication.class),
+      @Filter(type = FilterType.REGEX, pattern = "edu\\.ucsb\\.cs156\\.example\\.testconfig\\..*") })
+  static class LoadTestApplication {
+    @Bean
+    LoginController loginController() {
+      return new LoginController();
+    }
+  }
+
+  @LocalServerPort
+  int port;
+
+  @Value("${app.async-handlers.enabled}")
+  boolean asyncHandlers;
+
+  @Autowired
+  RestaurantRepository restaurantRepository;
+
+  @Autowired
+  PlatformTransactionManager transactionManager;
+
+  private long[] seed() {
+    Random random = new Random(156);
+    List<Long> ids = new ArrayList<>(ROWS);
+    for (int i = 0; i < ROWS; i += 10_000) {
+      List<Restaurant> restaurants = new ArrayList<>(10_000);
+      for (int j = 0; j < 10_000; j++) {
+        restaurants.add(Restaurant.builder().name("Restaurant " + (i + j)).cuisine("Cuisine " + random.nextInt(20))
+            .roachCounter(random.nextInt(20)).build());
+      }
+      new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+        restaurantRepository.saveAll(restaurants).forEach(restaurant -> ids.add(restaurant.getId()));
+      });
+    }
+    return ids.stream().mapToLong(Long::longValue).toArray();
+  }
+
+  @Test
+  void concurrent_requests() throws Exception {
+    long[] ids = seed();
+    String base = "http://localhost:" + port;
+    HttpResponse<String> login = HttpClient.newHttpClient().send(
+        HttpRequest.newBuilder(URI.create(base + "/test/login")).build(), HttpResponse.BodyHandlers.ofString());
+    String cookie = login.headers().allValues("Set-Cookie").stream()
+        .filter(header -> header.startsWith("JSESSIONID=")).findFirst().orElseThrow().split(";")[0];
+
+    System.out.printf("async handlers %s, %d connections, %d rows%n", asyncHandlers ? "enabled" : "disabled",
+        CONNECTIONS, ROWS);
+    String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+    Process client = new ProcessBuilder(java, "-Xmx1g", "-cp", System.getProperty("java.class.path"),
+        Client.class.getName(), base, cookie, String.valueOf(CONNECTIONS), String.valueOf(WARMUP_SECONDS),
+        String.valueOf(SECONDS), String.valueOf(ids[0]), String.valueOf(ids[ids.length - 1]))
+        .redirectErrorStream(true)
+        .start();
+    try (BufferedReader output = new BufferedReader(new InputStreamReader(client.getInputStream()))) {
+      output.lines().forEach(System.out::println);
+    }
+    if (client.waitFor() != 0) {
+      throw new IllegalStateException("load client failed");
+    }
+  }
+
+  // args: base URL, session cookie, connections, warmup seconds,
+  // measured seconds, lowest and highest restaurant id.  Counts the
+  // responses that arrive during the measured seconds, however long ago
+  // their requests were sent.
+  static class Client {
+
+    final HttpClient http = HttpClient.newBuilder()
+        .version(HttpClient.Version.HTTP_1_1)
+        .connectTimeout(Duration.ofSeconds(300))
+        .executor(Executors.newFixedThreadPool(2))
+        .build();
+
+    final String base;
+    final String cookie;
+    final long firstId;
+    final long lastId;
+    final long measureFrom;
+    final long measureTo;
+
+    final Map<String, ConcurrentLinkedQueue<Long>> latencies = new ConcurrentHashMap<>();
+    final Map<String, LongAdder> outcomes = new ConcurrentHashMap<>();
+
+    Client(String base, String cookie, long firstId, long lastId, int warmup, int seconds) {
+      this.base = base;
+      this.cookie = cookie;
+      this.firstId = firstId;
+      this.lastId = lastId;
+      this.measureFrom = System.nanoTime() + TimeUnit.SECONDS.toNanos(warmup);
+      this.measureTo = measureFrom + TimeUnit.SECONDS.toNanos(seconds);
+    }
+
+    public static void main(String[] args) throws Exception {
+      int connections = Integer.parseInt(args[2]);
+      int warmup = Integer.parseInt(args[3]);
+      int seconds = Integer.parseInt(args[4]);
+      Client client = new Client(args[0], args[1], Long.parseLong(args[5]), Long.parseLong(args[6]), warmup, seconds);
+      for (int i = 0; i < connections; i++) {
+        client.next(i % 4 == 0 ? "slow" : "fast");
+        // open the connections over a second or so, not all at once
+        if (i % 100 == 99) {
+          Thread.sleep(10);
+        }
+      }
+      TimeUnit.NANOSECONDS.sleep(client.measureTo - System.nanoTime());
+      client.report(seconds);
+      System.exit(0);
+    }
+
+    void next(String kind) {
+      long start = System.nanoTime();
+      String path = kind.equals("slow") ? SLOW : FAST + ThreadLocalRandom.current().nextLong(firstId, lastId + 1);
+      HttpRequest request = HttpRequest.newBuilder(URI.create(base + path))
+          .header("Cookie", cookie)
+          .timeout(Duration.ofSeconds(300))
+          .build();
+      http.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, e) -> {
+        long end = System.nanoTime();
+        if (end >= measureFrom && end < measureTo) {
+          String outcome = e != null ? e.getClass().getSimpleName() : String.valueOf(response.statusCode());
+          outcomes.computeIfAbsent(kind + " " + outcome, k -> new LongAdder()).increment();
+          if (e == null && response.statusCode() == 200) {
+            latencies.computeIfAbsent(kind, k -> new ConcurrentLinkedQueue<>()).add(end - start);
+          }
+        }
+        if (end < measureTo) {
+          next(kind);
+        }
+      });
+    }
+
+    void report(int seconds) {
+      for (String kind : List.of("slow", "fast")) {
+        long[] nanos = latencies.getOrDefault(kind, new ConcurrentLinkedQueue<>()).stream()
+            .mapToLong(Long::longValue).toArray();
+        Arrays.sort(nanos);
+        System.out.printf("%s: %.1f responses/s, p50 %.0f ms, p99 %.0f ms, max %.0f ms%n", kind,
+            (double) nanos.length / seconds, percentile(nanos, 0.50), percentile(nanos, 0.99),
+            percentile(nanos, 1.0));
+      }
+      Map<String, Long> counts = new TreeMap<>();
+      outcomes.forEach((outcome, count) -> counts.put(outcome, count.sum()));
+      System.out.println("outcomes: " + counts);
+    }
+
+    static double percentile(long[] sorted, double p) {
+      if (sorted.length == 0) {
+        return Double.NaN;
+      }
+      int index = (int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1);
+      return sorted[Math.max(0, index)] / 1e6;
+    }
+  }
+}
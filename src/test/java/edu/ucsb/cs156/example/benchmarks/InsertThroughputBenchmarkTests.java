@@ -0,0 +1,117 @@
+package edu.ucsb.cs156.example.benchmarks;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import org.h2.tools.Server;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase.Replace;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import edu.ucsb.cs156.example.entities.Restaurant;
+import edu.ucsb.cs156.example.repositories.RestaurantRepository;
+
+// Measures how fast a batch of restaurants can be inserted through
+// RestaurantRepository.saveAll.  H2 runs as a TCP server on localhost so
+// that every JDBC round trip goes over a socket, as it would to
+// PostgreSQL; with an embedded database round trips are nearly free and
+// batching makes little difference.  Not part of the normal build; run
+// it with
+//
+//   mvn test -Dtest=InsertThroughputBenchmarkTests -Dbenchmarks=true
+//
+// Results are recorded in docs/benchmarks.md.
+
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+@DataJpaTest(showSql = false, properties = {
+    "spring.jpa.properties.hibernate.generate_statistics=true",
+    "logging.level.sql=WARN",
+    "logging.level.org.hibernate=WARN",
+    "logging.level.org.hibernate.type.descriptor.sql.BasicBinder=WARN" })
+@AutoConfigureTestDatabase(replace = Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class InsertThroughputBenchmarkTests {
+
+  static final int ROWS = 10_000;
+  static final int WARMUP = 3;
+  static final int ITERATIONS = 5;
+
+  static Server h2;
+
+  @DynamicPropertySource
+  static void database(DynamicPropertyRegistry registry) throws SQLException {
+    h2 = Server.createTcpServer("-tcpPort", "0", "-ifNotExists").start();
+    registry.add("spring.datasource.url", () -> "jdbc:h2:tcp://localhost:%d/mem:benchmark".formatted(h2.getPort()));
+  }
+
+  @AfterAll
+  static void stopDatabase() {
+    h2.stop();
+  }
+
+  @Autowired
+  RestaurantRepository restaurantRepository;
+
+  @Autowired
+  EntityManager entityManager;
+
+  @Autowired
+  EntityManagerFactory entityManagerFactory;
+
+  @Autowired
+  PlatformTransactionManager transactionManager;
+
+  private List<Restaurant> restaurants() {
+    List<Restaurant> restaurants = new ArrayList<>(ROWS);
+    for (int i = 0; i < ROWS; i++) {
+      restaurants.add(Restaurant.builder().name("Restaurant " + i).cuisine("Cuisine " + (i % 20)).roachCounter(i % 7).build());
+    }
+    return restaurants;
+  }
+
+  private long insertAll() {
+    List<Restaurant> restaurants = restaurants();
+    long start = System.nanoTime();
+    new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+      restaurantRepository.saveAll(restaurants);
+      entityManager.flush();
+      entityManager.clear();
+    });
+    return System.nanoTime() - start;
+  }
+
+  @Test
+  void insert_throughput() {
+    Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+    for (int i = 0; i < WARMUP; i++) {
+      insertAll();
+    }
+
+    statistics.clear();
+    long nanos = 0;
+    for (int i = 0; i < ITERATIONS; i++) {
+      nanos += insertAll();
+    }
+
+    double seconds = nanos / 1e9;
+    System.out.printf("inserted %d restaurants %d times: %.0f rows/s, %d JDBC statements prepared%n",
+        ROWS, ITERATIONS, ROWS * ITERATIONS / seconds, statistics.getPrepareStatementCount());
+  }
+}
@@ -0,0 +1,33 @@
+package edu.ucsb.cs156.example.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+
+import edu.ucsb.cs156.example.config.ConnectionPoolConfig.ConnectionPoolProperties;
+
+class ConnectionPoolConfigTests {
+
+  ConnectionPoolProperties properties = new ConnectionPoolProperties();
+
+  @Test
+  void test_pools_that_fit_are_not_reported() {
+    properties.setInstances(6);
+    properties.setReservedConnections(3);
+
+    assertEquals(Optional.empty(), ConnectionPoolConfig.overBudget(100, properties, 10, 5));
+    assertEquals(Optional.empty(), ConnectionPoolConfig.overBudget(93, properties, 10, 5));
+  }
+
+  @Test
+  void test_pools_that_do_not_fit_are_reported() {
+    properties.setInstances(7);
+    properties.setReservedConnections(3);
+
+    assertEquals(Optional.of("7 instances with pools of 10 JDBC and 5 R2DBC connections, and 3 reserved connections,"
+        + " need 108 connections; the database only accepts 100 (max_connections)"),
+        ConnectionPoolConfig.overBudget(100, properties, 10, 5));
+  }
+}
@@ -0,0 +1,34 @@
+package edu.ucsb.cs156.example.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.security.access.method.MethodSecurityMetadataSource;
+
+import edu.ucsb.cs156.example.ControllerTestCase;
+import edu.ucsb.cs156.example.config.RoleSetMethodSecurityMetadataSource.RoleSetAttribute;
+import edu.ucsb.cs156.example.controllers.UsersController;
+import edu.ucsb.cs156.example.models.RoleSet;
+import edu.ucsb.cs156.example.models.RoleSet.Role;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+
+@WebMvcTest(controllers = UsersController.class)
+class MethodSecurityConfigTests extends ControllerTestCase {
+
+  @MockBean
+  UserRepository userRepository;
+
+  @Autowired
+  MethodSecurityMetadataSource methodSecurityMetadataSource;
+
+  @Test
+  void test_controller_role_checks_are_compiled() throws Exception {
+    assertEquals(List.of(new RoleSetAttribute(RoleSet.NONE.with(Role.ADMIN), "hasRole('ROLE_ADMIN')")),
+        methodSecurityMetadataSource.getAttributes(UsersController.class.getMethod("users"), UsersController.class));
+  }
+}
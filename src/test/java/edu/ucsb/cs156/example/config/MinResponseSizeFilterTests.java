@@ -0,0 +1,257 @@
+package edu.ucsb.cs156.example.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import edu.ucsb.cs156.example.config.MinResponseSizeFilter.HeldBackResponse;
+
+class MinResponseSizeFilterTests {
+
+  private final MinResponseSizeFilter filter = new MinResponseSizeFilter(10);
+
+  private MockHttpServletRequest request(String acceptEncoding) {
+    MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/restaurants/all");
+    request.addHeader("Accept-Encoding", acceptEncoding);
+    return request;
+  }
+
+  private interface Body {
+    void write(ServletResponse response) throws IOException;
+  }
+
+  // a chain that writes body, then checks the response is not yet committed
+  private MockFilterChain chain(Body body, boolean[] committed) {
+    return new MockFilterChain(new HttpServlet() {
+      @Override
+      protected void service(HttpServletRequest req, HttpServletResponse res) throws IOException {
+        body.write(res);
+        committed[0] = res.isCommitted();
+      }
+    });
+  }
+
+  @Test
+  void test_short_body_is_sent_with_its_length() throws Exception {
+    // arrange
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    boolean[] committed = { true };
+    MockFilterChain chain = chain(res -> {
+      res.getOutputStream().write("{\"a\":1}".getBytes(StandardCharsets.UTF_8));
+      // as the JSON converter does
+      res.getOutputStream().flush();
+      res.flushBuffer();
+    }, committed);
+
+    // act
+    filter.doFilter(request("gzip, deflate"), response, chain);
+
+    // assert
+    assertFalse(committed[0]);
+    assertEquals("{\"a\":1}", response.getContentAsString());
+    assertEquals("7", response.getHeader("Content-Length"));
+  }
+
+  @Test
+  void test_long_body_is_sent_on_without_a_length() throws Exception {
+    // arrange
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    boolean[] committed = { false };
+    MockFilterChain chain = chain(res -> {
+      res.getOutputStream().write("0123456".getBytes(StandardCharsets.UTF_8));
+      res.getOutputStream().write("789abc".getBytes(StandardCharsets.UTF_8));
+      res.getOutputStream().flush();
+    }, committed);
+
+    // act
+    filter.doFilter(request("gzip"), response, chain);
+
+    // assert
+    assertTrue(committed[0]);
+    assertEquals("0123456789abc", response.getContentAsString());
+    assertNull(response.getHeader("Content-Length"));
+  }
+
+  @Test
+  void test_body_of_the_limit_is_sent_with_its_length() throws Exception {
+    // arrange
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    MockFilterChain chain = chain(res -> res.getOutputStream().write("0123456789".getBytes(StandardCharsets.UTF_8)),
+        new boolean[1]);
+
+    // act
+    filter.doFilter(request("gzip"), response, chain);
+
+    // assert
+    assertEquals("0123456789", response.getContentAsString());
+    assertEquals("10", response.getHeader("Content-Length"));
+  }
+
+  @Test
+  void test_writer() throws Exception {
+    // arrange
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    response.setCharacterEncoding("UTF-8");
+    MockFilterChain chain = chain(res -> res.getWriter().write("héllo"), new boolean[1]);
+
+    // act
+    filter.doFilter(request("gzip"), response, chain);
+
+    // assert
+    assertEquals("héllo", response.getContentAsString());
+    assertEquals("6", response.getHeader("Content-Length"));
+  }
+
+  @Test
+  void test_response_is_not_wrapped_without_gzip() throws Exception {
+    // arrange
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    MockFilterChain chain = new MockFilterChain();
+
+    // act
+    filter.doFilter(request("identity"), response, chain);
+
+    // assert
+    assertSame(response, chain.getResponse());
+  }
+
+  @Test
+  void test_error_is_not_held_back() throws Exception {
+    // arrange
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    MockFilterChain chain = chain(res -> {
+      res.getOutputStream().write("partial".getBytes(StandardCharsets.UTF_8));
+      ((HttpServletResponse) res).sendError(403);
+    }, new boolean[1]);
+
+    // act
+    filter.doFilter(request("gzip"), response, chain);
+
+    // assert
+    assertEquals(403, response.getStatus());
+    assertEquals("", response.getContentAsString());
+    assertNull(response.getHeader("Content-Length"));
+  }
+
+  @Test
+  void test_async_body_is_released_by_the_async_dispatch() throws Exception {
+    // arrange
+    MockHttpServletRequest request = request("gzip");
+    request.setAsyncSupported(true);
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    MockFilterChain first = new MockFilterChain() {
+      @Override
+      public void doFilter(ServletRequest req, ServletResponse res) throws IOException, ServletException {
+        super.doFilter(req, res);
+        req.startAsync(req, res);
+        res.getOutputStream().write("[1,".getBytes(StandardCharsets.UTF_8));
+      }
+    };
+    filter.doFilter(request, response, first);
+    ServletResponse wrapped = first.getResponse();
+    String beforeDispatch = response.getContentAsString();
+
+    // act
+    request.setAsyncStarted(false);
+    request.setDispatcherType(DispatcherType.ASYNC);
+    MockFilterChain second = chain(res -> res.getOutputStream().write("2]".getBytes(StandardCharsets.UTF_8)),
+        new boolean[1]);
+    filter.doFilter(request, wrapped, second);
+
+    // assert
+    assertTrue(wrapped instanceof HeldBackResponse);
+    assertEquals("", beforeDispatch);
+    assertEquals("[1,2]", response.getContentAsString());
+    assertEquals("5", response.getHeader("Content-Length"));
+  }
+
+  // a response whose output stream takes a WriteListener, as Tomcat's does
+  private static class NonBlockingResponse extends HttpServletResponseWrapper {
+
+    private final List<String> calls = new ArrayList<>();
+    private final ServletOutputStream outputStream;
+
+    NonBlockingResponse(MockHttpServletResponse response) throws IOException {
+      super(response);
+      ServletOutputStream delegate = response.getOutputStream();
+      outputStream = new ServletOutputStream() {
+        @Override
+        public void write(int b) throws IOException {
+          delegate.write(b);
+        }
+
+        @Override
+        public boolean isReady() {
+          calls.add("isReady");
+          return false;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+          calls.add("setWriteListener");
+        }
+      };
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() {
+      return outputStream;
+    }
+  }
+
+  @Test
+  void test_write_listener_is_set_on_the_response_after_what_is_held() throws Exception {
+    // arrange
+    MockHttpServletResponse mock = new MockHttpServletResponse();
+    NonBlockingResponse response = new NonBlockingResponse(mock);
+    WriteListener listener = new WriteListener() {
+      @Override
+      public void onWritePossible() {
+      }
+
+      @Override
+      public void onError(Throwable t) {
+      }
+    };
+    boolean[] ready = new boolean[2];
+    MockFilterChain chain = chain(res -> {
+      res.getOutputStream().write("[1,".getBytes(StandardCharsets.UTF_8));
+      ready[0] = res.getOutputStream().isReady();
+      res.getOutputStream().setWriteListener(listener);
+      ready[1] = res.getOutputStream().isReady();
+    }, new boolean[1]);
+
+    // act
+    filter.doFilter(request("gzip"), response, chain);
+
+    // assert
+    assertTrue(ready[0]);
+    assertFalse(ready[1]);
+    assertEquals(List.of("setWriteListener", "isReady"), response.calls);
+    assertEquals("[1,", mock.getContentAsString());
+    assertNull(mock.getHeader("Content-Length"));
+  }
+}
@@ -0,0 +1,81 @@
+package edu.ucsb.cs156.example.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.expression.EvaluationContext;
+import org.springframework.security.access.expression.ExpressionUtils;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.util.SimpleMethodInvocation;
+
+import edu.ucsb.cs156.example.models.RoleSet;
+import edu.ucsb.cs156.example.models.RoleSet.Role;
+import edu.ucsb.cs156.example.services.GrantedAuthoritiesService;
+
+class RoleSetMethodSecurityExpressionHandlerTests {
+
+  GrantedAuthoritiesService grantedAuthoritiesService = mock(GrantedAuthoritiesService.class);
+  RoleSetMethodSecurityExpressionHandler handler;
+
+  @BeforeEach
+  @SuppressWarnings("unchecked")
+  void setup() {
+    ObjectProvider<GrantedAuthoritiesService> provider = mock(ObjectProvider.class);
+    when(provider.getObject()).thenReturn(grantedAuthoritiesService);
+    handler = new RoleSetMethodSecurityExpressionHandler(provider);
+  }
+
+  private boolean evaluate(String expression, Authentication authentication) throws Exception {
+    EvaluationContext context = handler.createEvaluationContext(authentication,
+        new SimpleMethodInvocation(this, Object.class.getMethod("toString")));
+    return ExpressionUtils.evaluateAsBoolean(handler.getExpressionParser().parseExpression(expression), context);
+  }
+
+  @Test
+  void test_roles_are_read_from_the_role_set() throws Exception {
+    // arrange: made an admin since logging in
+    Authentication authentication = new TestingAuthenticationToken("user", null, "ROLE_USER");
+    when(grantedAuthoritiesService.getRoles(authentication)).thenReturn(RoleSet.NONE.with(Role.USER).with(Role.ADMIN));
+
+    // act and assert
+    assertTrue(evaluate("hasRole('ROLE_ADMIN')", authentication));
+    assertTrue(evaluate("hasRole('ADMIN')", authentication));
+    assertTrue(evaluate("hasAnyRole('MEMBER', 'ADMIN')", authentication));
+    assertFalse(evaluate("hasRole('ROLE_MEMBER')", authentication));
+    assertTrue(evaluate("hasAuthority('ROLE_ADMIN')", authentication));
+    assertFalse(evaluate("hasAuthority('ADMIN')", authentication));
+    assertFalse(evaluate("hasAnyAuthority('ADMIN', 'ROLE_MEMBER')", authentication));
+  }
+
+  @Test
+  void test_other_roles_and_expressions_work_as_usual() throws Exception {
+    // arrange
+    Authentication authentication = new TestingAuthenticationToken("user", null, "ROLE_USER", "ROLE_TA", "SCOPE_email");
+    when(grantedAuthoritiesService.getRoles(authentication)).thenReturn(RoleSet.NONE.with(Role.USER));
+
+    // act and assert
+    assertTrue(evaluate("hasRole('TA')", authentication));
+    assertTrue(evaluate("hasAuthority('SCOPE_email')", authentication));
+    assertFalse(evaluate("hasRole('GRADER')", authentication));
+    assertTrue(evaluate("isAuthenticated() and !isAnonymous()", authentication));
+    assertTrue(evaluate("principal == 'user' and authentication.name == 'user'", authentication));
+    assertTrue(evaluate("permitAll", authentication));
+    assertTrue(evaluate("roles.has(T(edu.ucsb.cs156.example.models.RoleSet.Role).USER)", authentication));
+  }
+
+  @Test
+  void test_role_sets_only_hold_the_roles_the_app_checks() {
+    RoleSet roles = RoleSet.of(new TestingAuthenticationToken("user", null, "ROLE_USER", "ADMIN", "ROLE_TA")
+        .getAuthorities());
+
+    assertEquals(RoleSet.NONE.with(Role.USER), roles);
+    assertEquals(RoleSet.NONE, roles.without(Role.USER));
+  }
+}
@@ -0,0 +1,105 @@
+package edu.ucsb.cs156.example.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.aopalliance.intercept.MethodInvocation;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.security.access.AccessDecisionVoter;
+import org.springframework.security.access.ConfigAttribute;
+import org.springframework.security.access.SecurityConfig;
+import org.springframework.security.access.prepost.PostAuthorize;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.Authentication;
+
+import edu.ucsb.cs156.example.config.RoleSetMethodSecurityMetadataSource.RoleSetAttribute;
+import edu.ucsb.cs156.example.models.RoleSet;
+import edu.ucsb.cs156.example.models.RoleSet.Role;
+import edu.ucsb.cs156.example.services.GrantedAuthoritiesService;
+
+class RoleSetMethodSecurityMetadataSourceTests {
+
+  static final RoleSet ADMIN = RoleSet.NONE.with(Role.ADMIN);
+
+  RoleSetMethodSecurityMetadataSource source = new RoleSetMethodSecurityMetadataSource();
+
+  static class Secured {
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    public void admin() {
+    }
+
+    @PreAuthorize("hasRole('ROLE_ADMIN') and #id > 0")
+    public void complex(long id) {
+    }
+
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PostAuthorize("returnObject != null")
+    public Object postAuthorized() {
+      return this;
+    }
+
+    public void unsecured() {
+    }
+  }
+
+  private Collection<ConfigAttribute> attributes(String method, Class<?>... parameterTypes) throws Exception {
+    return source.getAttributes(Secured.class.getMethod(method, parameterTypes), Secured.class);
+  }
+
+  @Test
+  void test_compile_role_checks() {
+    assertEquals(ADMIN, RoleSetMethodSecurityMetadataSource.compile("hasRole('ROLE_ADMIN')"));
+    assertEquals(ADMIN, RoleSetMethodSecurityMetadataSource.compile(" hasRole( 'ADMIN' ) "));
+    assertEquals(ADMIN.with(Role.MEMBER),
+        RoleSetMethodSecurityMetadataSource.compile("hasAnyRole('ROLE_MEMBER', 'ADMIN')"));
+    assertEquals(RoleSet.NONE.with(Role.USER), RoleSetMethodSecurityMetadataSource.compile("hasAnyRole('USER')"));
+  }
+
+  @Test
+  void test_compile_leaves_other_expressions_to_spel() {
+    assertNull(RoleSetMethodSecurityMetadataSource.compile("hasRole('ROLE_TA')"));
+    assertNull(RoleSetMethodSecurityMetadataSource.compile("hasRole('ROLE_USER', 'ROLE_ADMIN')"));
+    assertNull(RoleSetMethodSecurityMetadataSource.compile("hasAnyRole('ROLE_USER', )"));
+    assertNull(RoleSetMethodSecurityMetadataSource.compile("hasRole('ROLE_USER') or hasRole('ROLE_ADMIN')"));
+    assertNull(RoleSetMethodSecurityMetadataSource.compile("hasAuthority('ROLE_USER')"));
+    assertNull(RoleSetMethodSecurityMetadataSource.compile("hasRole(#role)"));
+    assertNull(RoleSetMethodSecurityMetadataSource.compile("isAuthenticated()"));
+  }
+
+  @Test
+  void test_attributes_of_methods() throws Exception {
+    assertEquals(List.of(new RoleSetAttribute(ADMIN, "hasRole('ROLE_ADMIN')")), attributes("admin"));
+    assertEquals(List.of(), attributes("complex", long.class));
+    assertEquals(List.of(), attributes("postAuthorized"));
+    assertEquals(List.of(), attributes("unsecured"));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void test_voter() {
+    // arrange
+    GrantedAuthoritiesService grantedAuthoritiesService = mock(GrantedAuthoritiesService.class);
+    ObjectProvider<GrantedAuthoritiesService> provider = mock(ObjectProvider.class);
+    when(provider.getObject()).thenReturn(grantedAuthoritiesService);
+    Authentication user = new TestingAuthenticationToken("user", null, "ROLE_USER");
+    Authentication admin = new TestingAuthenticationToken("admin", null, "ROLE_USER", "ROLE_ADMIN");
+    when(grantedAuthoritiesService.getRoles(user)).thenReturn(RoleSet.NONE.with(Role.USER));
+    when(grantedAuthoritiesService.getRoles(admin)).thenReturn(RoleSet.NONE.with(Role.USER).with(Role.ADMIN));
+    RoleSetVoter voter = new RoleSetVoter(provider);
+    MethodInvocation invocation = mock(MethodInvocation.class);
+    List<ConfigAttribute> adminOnly = List.of(new RoleSetAttribute(ADMIN, "hasRole('ROLE_ADMIN')"));
+
+    // act and assert
+    assertEquals(AccessDecisionVoter.ACCESS_GRANTED, voter.vote(admin, invocation, adminOnly));
+    assertEquals(AccessDecisionVoter.ACCESS_DENIED, voter.vote(user, invocation, adminOnly));
+    assertEquals(AccessDecisionVoter.ACCESS_ABSTAIN,
+        voter.vote(user, invocation, List.of(new SecurityConfig("ROLE_ADMIN"))));
+  }
+}
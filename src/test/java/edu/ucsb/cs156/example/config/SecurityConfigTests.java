@@ -0,0 +1,46 @@
+package edu.ucsb.cs156.example.config;
+
+import edu.ucsb.cs156.example.ControllerTestCase;
+import edu.ucsb.cs156.example.controllers.UserInfoController;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.testconfig.TestConfig;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.test.context.support.WithMockUser;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+// The actuator endpoints are not mapped in this test slice, so a request
+// that gets past the security filters is answered with 404.
+
+@WebMvcTest(controllers = UserInfoController.class)
+@Import(TestConfig.class)
+public class SecurityConfigTests extends ControllerTestCase {
+
+  @MockBean
+  UserRepository userRepository;
+
+  @Test
+  public void prometheus__logged_out() throws Exception {
+    mockMvc.perform(get("/actuator/prometheus"))
+        .andExpect(status().is(403));
+  }
+
+  @WithMockUser(roles = { "USER" })
+  @Test
+  public void prometheus__logged_in_regular_user() throws Exception {
+    mockMvc.perform(get("/actuator/prometheus"))
+        .andExpect(status().is(403));
+  }
+
+  @WithMockUser(roles = { "ADMIN", "USER" })
+  @Test
+  public void prometheus__admin() throws Exception {
+    mockMvc.perform(get("/actuator/prometheus"))
+        .andExpect(status().isNotFound());
+  }
+}
@@ -0,0 +1,69 @@
+package edu.ucsb.cs156.example.config;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import edu.ucsb.cs156.example.repositories.NearCachingSessionRepository;
+
+class SessionReadThroughFilterTests {
+
+  private final NearCachingSessionRepository repository = mock(NearCachingSessionRepository.class);
+  private final SessionReadThroughFilter filter = new SessionReadThroughFilter(repository);
+
+  @Test
+  void test_post_reads_through_the_near_cache() throws Exception {
+    // arrange
+    MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/restaurants/post");
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    FilterChain chain = mock(FilterChain.class);
+
+    // act
+    filter.doFilter(request, response, chain);
+
+    // assert
+    InOrder inOrder = inOrder(repository, chain);
+    inOrder.verify(repository).setReadThrough(true);
+    inOrder.verify(chain).doFilter(request, response);
+    inOrder.verify(repository).setReadThrough(false);
+  }
+
+  @Test
+  void test_get_uses_the_near_cache() throws Exception {
+    // arrange
+    MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/restaurants/all");
+    FilterChain chain = mock(FilterChain.class);
+
+    // act
+    filter.doFilter(request, new MockHttpServletResponse(), chain);
+
+    // assert
+    verify(repository, never()).setReadThrough(anyBoolean());
+  }
+
+  @Test
+  void test_read_through_ends_with_the_request_when_it_fails() throws Exception {
+    // arrange
+    MockHttpServletRequest request = new MockHttpServletRequest("DELETE", "/api/restaurants");
+    FilterChain chain = (req, res) -> {
+      throw new ServletException("failed");
+    };
+
+    // act
+    assertThrows(ServletException.class, () -> filter.doFilter(request, new MockHttpServletResponse(), chain));
+
+    // assert
+    verify(repository).setReadThrough(false);
+  }
+}
@@ -0,0 +1,75 @@
+package edu.ucsb.cs156.example.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.session.SessionProperties;
+import org.springframework.boot.autoconfigure.web.ServerProperties;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.scheduling.annotation.SchedulingConfigurer;
+import org.springframework.scheduling.config.IntervalTask;
+import org.springframework.scheduling.config.ScheduledTaskRegistrar;
+import org.springframework.session.web.http.SessionRepositoryFilter;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import edu.ucsb.cs156.example.repositories.NearCachingSessionRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class SessionStoreConfigTests {
+
+  private ApplicationContextRunner contextRunner() {
+    return new ApplicationContextRunner()
+        .withUserConfiguration(SessionStoreConfig.class)
+        .withBean(JdbcOperations.class, () -> mock(JdbcOperations.class))
+        .withBean(PlatformTransactionManager.class, () -> mock(PlatformTransactionManager.class))
+        .withBean(SessionProperties.class, SessionProperties::new)
+        .withBean(ServerProperties.class, ServerProperties::new)
+        .withBean(MeterRegistry.class, SimpleMeterRegistry::new);
+  }
+
+  @Test
+  void test_session_store_is_off_by_default() {
+    contextRunner().run(context -> assertTrue(context.getBeansOfType(NearCachingSessionRepository.class).isEmpty()));
+  }
+
+  @Test
+  void test_session_store_is_on_with_store_type_jdbc() {
+    contextRunner()
+        .withPropertyValues("spring.session.store-type=jdbc")
+        .run(context -> {
+          assertEquals(1, context.getBeansOfType(NearCachingSessionRepository.class).size());
+          assertNotNull(context.getBean(MeterRegistry.class).find("cache.gets").tag("cache", "sessions").meter());
+          // before the SessionRepositoryFilter reads the session
+          assertEquals(SessionRepositoryFilter.DEFAULT_ORDER - 1,
+              context.getBean("sessionReadThroughFilter", FilterRegistrationBean.class).getOrder());
+        });
+  }
+
+  @Test
+  void test_flush_and_cleanup_are_scheduled_at_their_intervals() {
+    contextRunner()
+        .withPropertyValues("spring.session.store-type=jdbc", "app.session-store.last-access-flush-interval=2s",
+            "app.session-store.cleanup-interval=5m")
+        .run(context -> {
+          // arrange
+          ScheduledTaskRegistrar registrar = new ScheduledTaskRegistrar();
+
+          // act
+          context.getBean("sessionStoreTasks", SchedulingConfigurer.class).configureTasks(registrar);
+
+          // assert
+          List<IntervalTask> tasks = registrar.getFixedDelayTaskList();
+          assertEquals(2, tasks.size());
+          assertEquals(2000, tasks.get(0).getInterval());
+          assertEquals(300000, tasks.get(1).getInterval());
+        });
+  }
+}
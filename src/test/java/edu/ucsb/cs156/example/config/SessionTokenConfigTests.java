@@ -0,0 +1,128 @@
+package edu.ucsb.cs156.example.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.servlet.http.Cookie;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+import org.springframework.security.oauth2.core.user.DefaultOAuth2User;
+import org.springframework.test.web.servlet.MvcResult;
+
+import edu.ucsb.cs156.example.ControllerTestCase;
+import edu.ucsb.cs156.example.controllers.UserInfoController;
+import edu.ucsb.cs156.example.models.RoleSet;
+import edu.ucsb.cs156.example.models.RoleSet.Role;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.CurrentUserService;
+import edu.ucsb.cs156.example.services.GrantedAuthoritiesService;
+import edu.ucsb.cs156.example.services.SessionTokenService;
+
+@WebMvcTest(controllers = UserInfoController.class, properties = {
+    "app.session-token.enabled=true",
+    "app.session-token.secret=a secret of at least 32 bytes!!!" })
+@Import(SessionTokenConfig.class)
+class SessionTokenConfigTests extends ControllerTestCase {
+
+  @MockBean
+  UserRepository userRepository;
+
+  @Autowired
+  SessionTokenService sessionTokenService;
+
+  private String token(RoleSet roles) {
+    DefaultOAuth2User principal = new DefaultOAuth2User(Set.of(new SimpleGrantedAuthority("ROLE_USER")),
+        Map.of("sub", "sub-1", "email", "user@ucsb.edu"), "sub");
+    return sessionTokenService.issue(new OAuth2AuthenticationToken(principal, principal.getAuthorities(), "google"),
+        7L, "user@ucsb.edu", roles);
+  }
+
+  private ApplicationContextRunner contextRunner() {
+    return new ApplicationContextRunner()
+        .withUserConfiguration(SessionTokenConfig.class)
+        .withBean(UserRepository.class, () -> mock(UserRepository.class))
+        .withBean(CurrentUserService.class, () -> mock(CurrentUserService.class))
+        .withBean(GrantedAuthoritiesService.class, () -> mock(GrantedAuthoritiesService.class));
+  }
+
+  @Test
+  void test_requests_are_authenticated_by_their_session_token() throws Exception {
+    // act
+    MvcResult response = mockMvc.perform(get("/api/currentUser")
+        .cookie(new Cookie("SESSION_TOKEN", token(RoleSet.NONE.with(Role.USER).with(Role.MEMBER)))))
+        .andExpect(status().isOk()).andReturn();
+
+    // assert
+    Map<String, Object> json = responseToJson(response);
+    assertEquals(List.of("ROLE_MEMBER", "ROLE_USER"),
+        ((List<?>) json.get("roles")).stream().map(role -> ((Map<?, ?>) role).get("authority")).sorted().toList());
+    assertNull(response.getRequest().getSession(false));
+  }
+
+  @Test
+  void test_requests_without_a_session_token_are_not() throws Exception {
+    mockMvc.perform(get("/api/currentUser"))
+        .andExpect(status().is(403));
+    mockMvc.perform(get("/api/currentUser").cookie(new Cookie("SESSION_TOKEN", "forged")))
+        .andExpect(status().is(403));
+  }
+
+  @Test
+  void test_login_keeps_its_state_in_a_cookie() throws Exception {
+    // act
+    MvcResult response = mockMvc.perform(get("/oauth2/authorization/google"))
+        .andExpect(status().is3xxRedirection()).andReturn();
+
+    // assert
+    assertTrue(response.getResponse().getRedirectedUrl().startsWith("https://accounts.google.com/"));
+    assertTrue(response.getResponse().getHeaders(HttpHeaders.SET_COOKIE).stream()
+        .anyMatch(cookie -> cookie.startsWith(CookieOAuth2AuthorizationRequestRepository.COOKIE_NAME + "=")));
+    assertNull(response.getRequest().getSession(false));
+  }
+
+  @Test
+  void test_logout_deletes_the_cookie() throws Exception {
+    MvcResult response = mockMvc.perform(get("/logout")
+        .cookie(new Cookie("SESSION_TOKEN", token(RoleSet.NONE.with(Role.USER)))))
+        .andExpect(status().is3xxRedirection()).andReturn();
+
+    assertEquals(0, response.getResponse().getCookie("SESSION_TOKEN").getMaxAge());
+  }
+
+  @Test
+  void test_session_tokens_are_on_with_a_good_secret() {
+    contextRunner()
+        .withPropertyValues("app.session-token.enabled=true", "app.session-token.secret=a secret of at least 32 bytes!!!")
+        .run(context -> assertEquals(1, context.getBeansOfType(SessionTokenSecurityContextRepository.class).size()));
+  }
+
+  @Test
+  void test_session_tokens_are_off_by_default() {
+    contextRunner().run(context -> assertTrue(context.getBeansOfType(SessionTokenService.class).isEmpty()));
+  }
+
+  @Test
+  void test_short_secrets_are_refused() {
+    contextRunner()
+        .withPropertyValues("app.session-token.enabled=true", "app.session-token.secret=too short")
+        .run(context -> assertTrue(NestedExceptionUtils.getMostSpecificCause(context.getStartupFailure()).getMessage()
+            .startsWith("app.session-token.secret (SESSION_TOKEN_SECRET) must be at least 32 bytes")));
+  }
+}
@@ -0,0 +1,136 @@
+package edu.ucsb.cs156.example.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+
+import javax.servlet.http.Cookie;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+import org.springframework.security.oauth2.core.endpoint.OAuth2AuthorizationRequest;
+import org.springframework.security.oauth2.core.endpoint.OAuth2ParameterNames;
+import org.springframework.security.oauth2.core.user.DefaultOAuth2User;
+import org.springframework.security.web.context.HttpRequestResponseHolder;
+
+import edu.ucsb.cs156.example.entities.User;
+import edu.ucsb.cs156.example.models.RoleSet;
+import edu.ucsb.cs156.example.models.RoleSet.Role;
+import edu.ucsb.cs156.example.services.CurrentUserService;
+import edu.ucsb.cs156.example.services.GrantedAuthoritiesService;
+import edu.ucsb.cs156.example.services.SessionTokenService;
+import edu.ucsb.cs156.example.services.SessionTokenService.SessionTokenAuthentication;
+
+class SessionTokenSecurityContextRepositoryTests {
+
+  SessionTokenService sessionTokenService = new SessionTokenService(
+      "a secret of at least 32 bytes!!!".getBytes(StandardCharsets.UTF_8), Duration.ofHours(8), Clock.systemUTC());
+  CurrentUserService currentUserService = mock(CurrentUserService.class);
+  GrantedAuthoritiesService grantedAuthoritiesService = mock(GrantedAuthoritiesService.class);
+  SessionTokenSecurityContextRepository repository = new SessionTokenSecurityContextRepository(sessionTokenService,
+      currentUserService, grantedAuthoritiesService, "SESSION_TOKEN");
+  CookieOAuth2AuthorizationRequestRepository authorizationRequests = new CookieOAuth2AuthorizationRequestRepository(
+      sessionTokenService);
+
+  MockHttpServletRequest request = new MockHttpServletRequest();
+  MockHttpServletResponse response = new MockHttpServletResponse();
+
+  private static OAuth2AuthenticationToken login() {
+    DefaultOAuth2User principal = new DefaultOAuth2User(Set.of(new SimpleGrantedAuthority("ROLE_USER")),
+        Map.of("sub", "sub-1", "email", "user@ucsb.edu"), "sub");
+    return new OAuth2AuthenticationToken(principal, principal.getAuthorities(), "google");
+  }
+
+  private SecurityContext load() {
+    return repository.loadContext(new HttpRequestResponseHolder(request, response));
+  }
+
+  @Test
+  void test_login_sets_the_session_token_cookie() throws Exception {
+    // arrange
+    OAuth2AuthenticationToken login = login();
+    when(currentUserService.getUser()).thenReturn(User.builder().id(7L).email("user@ucsb.edu").build());
+    when(grantedAuthoritiesService.getRoles(login)).thenReturn(RoleSet.NONE.with(Role.USER).with(Role.ADMIN));
+
+    // act
+    repository.onAuthenticationSuccess(request, response, login);
+
+    // assert
+    assertEquals("/", response.getRedirectedUrl());
+    String setCookie = response.getHeader(HttpHeaders.SET_COOKIE);
+    assertTrue(setCookie.startsWith("SESSION_TOKEN="));
+    assertTrue(setCookie.contains("Max-Age=28800"));
+    assertTrue(setCookie.contains("HttpOnly"));
+    assertTrue(setCookie.contains("SameSite=Lax"));
+    String token = setCookie.substring("SESSION_TOKEN=".length(), setCookie.indexOf(';'));
+    SessionTokenAuthentication authentication = sessionTokenService.authentication(token);
+    assertEquals(7L, authentication.getPrincipal().<Long>getAttribute("uid"));
+    assertTrue(authentication.getRoles().has(Role.ADMIN));
+  }
+
+  @Test
+  void test_requests_with_a_session_token_are_authenticated() {
+    // arrange
+    String token = sessionTokenService.issue(login(), 7L, "user@ucsb.edu", RoleSet.NONE.with(Role.USER));
+    request.setCookies(new Cookie("SESSION_TOKEN", token));
+
+    // act
+    SecurityContext context = load();
+
+    // assert
+    assertTrue(repository.containsContext(request));
+    assertEquals("sub-1", context.getAuthentication().getName());
+    assertTrue(context.getAuthentication().isAuthenticated());
+    assertNull(request.getSession(false));
+  }
+
+  @Test
+  void test_requests_without_a_good_session_token_are_not() {
+    assertFalse(repository.containsContext(request));
+    assertNull(load().getAuthentication());
+
+    request.setCookies(new Cookie("SESSION_TOKEN", "forged"));
+    assertNull(load().getAuthentication());
+  }
+
+  @Test
+  void test_authorization_requests_are_kept_in_a_cookie() {
+    // arrange
+    OAuth2AuthorizationRequest authorizationRequest = OAuth2AuthorizationRequest.authorizationCode()
+        .authorizationUri("https://accounts.google.com/o/oauth2/v2/auth")
+        .clientId("client-id")
+        .redirectUri("http://localhost:8080/login/oauth2/code/google")
+        .state("state-1")
+        .attributes(Map.of(OAuth2ParameterNames.REGISTRATION_ID, "google"))
+        .build();
+
+    // act
+    authorizationRequests.saveAuthorizationRequest(authorizationRequest, request, response);
+    String setCookie = response.getHeader(HttpHeaders.SET_COOKIE);
+    MockHttpServletRequest callback = new MockHttpServletRequest();
+    callback.setCookies(new Cookie(CookieOAuth2AuthorizationRequestRepository.COOKIE_NAME,
+        setCookie.substring(setCookie.indexOf('=') + 1, setCookie.indexOf(';'))));
+    MockHttpServletResponse callbackResponse = new MockHttpServletResponse();
+    OAuth2AuthorizationRequest removed = authorizationRequests.removeAuthorizationRequest(callback, callbackResponse);
+
+    // assert
+    assertEquals("state-1", removed.getState());
+    assertEquals("google", removed.getAttribute(OAuth2ParameterNames.REGISTRATION_ID));
+    assertTrue(callbackResponse.getHeader(HttpHeaders.SET_COOKIE).contains("Max-Age=0"));
+    assertNull(request.getSession(false));
+  }
+}
@@ -0,0 +1,132 @@
+package edu.ucsb.cs156.example.controllers;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.test.web.servlet.MvcResult;
+
+import edu.ucsb.cs156.example.ControllerTestCase;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+
+// The frontend build used here is in src/test/resources/public; it is
+// served by StaticResourceConfig, which @WebMvcTest picks up.
+
+@WebMvcTest(controllers = FrontendController.class)
+public class FrontendControllerTests extends ControllerTestCase {
+
+        // md5 of src/test/resources/public/favicon.ico
+        static final String FAVICON = "/favicon-d02a42d9cb3dec9320e5f550278911c7.ico";
+
+        static final String IMMUTABLE = "max-age=31536000, public, immutable";
+
+        @MockBean
+        UserRepository userRepository;
+
+        @Test
+        public void index_is_served_for_react_routes_with_a_short_ttl() throws Exception {
+                // act
+                MvcResult response = mockMvc.perform(get("/restaurants/edit/7"))
+                                .andExpect(status().isOk())
+                                .andExpect(content().contentType("text/html"))
+                                .andExpect(header().string("Cache-Control", "max-age=60, must-revalidate"))
+                                .andExpect(header().exists("ETag"))
+                                .andReturn();
+
+                // assert
+                String html = response.getResponse().getContentAsString();
+                assertTrue(html.contains("<div id=\"root\"></div>"));
+                assertEquals(html, mockMvc.perform(get("/")).andReturn().getResponse().getContentAsString());
+                assertEquals(html, mockMvc.perform(get("/index.html")).andReturn().getResponse().getContentAsString());
+        }
+
+        @Test
+        public void index_links_are_rewritten_to_versioned_names() throws Exception {
+                // act
+                String html = mockMvc.perform(get("/"))
+                                .andExpect(status().isOk())
+                                .andReturn().getResponse().getContentAsString();
+
+                // assert
+                assertTrue(html.contains("href=\"" + FAVICON + "\""));
+                // already named by their content, or not in the build
+                assertTrue(html.contains("src=\"/static/js/main.0123abcd.js\""));
+                assertTrue(html.contains("href=\"/manifest.json\""));
+        }
+
+        @Test
+        public void index_is_not_modified_when_the_etag_matches() throws Exception {
+                // arrange
+                String etag = mockMvc.perform(get("/")).andReturn().getResponse().getHeader("ETag");
+
+                // act
+                MvcResult response = mockMvc.perform(get("/").header("If-None-Match", etag))
+                                .andExpect(status().isNotModified())
+                                .andReturn();
+
+                // assert
+                assertEquals(0, response.getResponse().getContentLength());
+        }
+
+        @Test
+        public void hashed_static_files_are_immutable() throws Exception {
+                mockMvc.perform(get("/static/js/main.0123abcd.js"))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("Cache-Control", IMMUTABLE))
+                                .andExpect(content().string("console.log(\"main\");\n"));
+        }
+
+        @Test
+        public void static_files_are_served_from_their_gzip_sibling() throws Exception {
+                // arrange
+                byte[] gzipped = new ClassPathResource("public/static/js/main.0123abcd.js.gz")
+                                .getInputStream().readAllBytes();
+
+                // act
+                MvcResult response = mockMvc.perform(get("/static/js/main.0123abcd.js")
+                                .header("Accept-Encoding", "gzip, deflate, br"))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("Content-Encoding", "gzip"))
+                                .andExpect(header().string("Vary", "Accept-Encoding"))
+                                .andExpect(header().string("Cache-Control", IMMUTABLE))
+                                .andReturn();
+
+                // assert
+                assertArrayEquals(gzipped, response.getResponse().getContentAsByteArray());
+        }
+
+        @Test
+        public void versioned_files_are_immutable() throws Exception {
+                mockMvc.perform(get(FAVICON))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("Cache-Control", IMMUTABLE))
+                                .andExpect(content().string("favicon"));
+        }
+
+        @Test
+        public void unversioned_files_are_cached_for_max_age() throws Exception {
+                mockMvc.perform(get("/favicon.ico"))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("Cache-Control", "max-age=60, public"))
+                                .andExpect(content().string("favicon"));
+        }
+
+        @Test
+        public void a_wrong_version_is_not_found() throws Exception {
+                MvcResult response = mockMvc.perform(get("/favicon-00000000000000000000000000000000.ico"))
+                                .andExpect(status().isNotFound())
+                                .andReturn();
+
+                // Spring Security's default no-cache header, not ours
+                assertFalse(response.getResponse().getHeader("Cache-Control").contains("immutable"));
+        }
+}
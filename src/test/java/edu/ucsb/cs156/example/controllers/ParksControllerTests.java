@@ -1,21 +1,36 @@
 package edu.ucsb.cs156.example.controllers;
 
 import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.SearchService;
+import edu.ucsb.cs156.example.entities.TableVersion;
+import edu.ucsb.cs156.example.repositories.TableVersionRepository;
+import edu.ucsb.cs156.example.services.TableCacheService;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
 import edu.ucsb.cs156.example.ControllerTestCase;
 import edu.ucsb.cs156.example.entities.Park;
 import edu.ucsb.cs156.example.repositories.ParkRepository;
+import edu.ucsb.cs156.example.repositories.reactive.ParkReadRepository;
 
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
 import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MvcResult;
+import reactor.core.publisher.Flux;
 
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -25,9 +40,13 @@ import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.when;
 
 @WebMvcTest(controllers = ParksController.class)
@@ -37,9 +56,21 @@ public class ParksControllerTests extends ControllerTestCase {
         @MockBean
         ParkRepository parkRepository;
 
+        @MockBean
+        ParkReadRepository parkReadRepository;
+
         @MockBean
         UserRepository userRepository;
 
+        @MockBean
+        SearchService searchService;
+
+        @MockBean
+        TableVersionRepository tableVersionRepository;
+
+        @MockBean
+        TableCacheService tableCacheService;
+
         // Authorization tests for /api/parks/admin/all
 
         @Test
@@ -144,7 +175,7 @@ public class ParksControllerTests extends ControllerTestCase {
                 ArrayList<Park> expectedDates = new ArrayList<>();
                 expectedDates.addAll(Arrays.asList(park1, park2));
 
-                when(parkRepository.findAll()).thenReturn(expectedDates);
+                when(parkRepository.findByIdGreaterThanOrderByIdAsc(eq(0L), eq(Pageable.unpaged()))).thenReturn(expectedDates);
 
                 // act
                 MvcResult response = mockMvc.perform(get("/api/parks/all"))
@@ -152,12 +183,161 @@ public class ParksControllerTests extends ControllerTestCase {
 
                 // assert
 
-                verify(parkRepository, times(1)).findAll();
+                verify(parkRepository, times(1)).findByIdGreaterThanOrderByIdAsc(eq(0L), eq(Pageable.unpaged()));
                 String expectedJson = mapper.writeValueAsString(expectedDates);
                 String responseString = response.getResponse().getContentAsString();
                 assertEquals(expectedJson, responseString);
         }
 
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_gets_next_cursor_when_more_parks_remain() throws Exception {
+
+                // arrange
+
+                Park first = Park.builder().id(4L).name("Yosemite").state("CA").acres(759620).build();
+                Park second = Park.builder().id(9L).name("Zion").state("UT").acres(146597).build();
+
+                when(parkRepository.findByIdGreaterThanOrderByIdAsc(eq(3L), eq(PageRequest.ofSize(2))))
+                                .thenReturn(new ArrayList<>(Arrays.asList(first, second)));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/parks/all?after=3&limit=1"))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("X-Next-Cursor", "4"))
+                                .andReturn();
+
+                // assert
+
+                verify(parkRepository, times(1)).findByIdGreaterThanOrderByIdAsc(eq(3L), eq(PageRequest.ofSize(2)));
+                String expectedJson = mapper.writeValueAsString(Arrays.asList(first));
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_gets_a_page_of_the_default_size_for_a_cursor_without_a_limit() throws Exception {
+
+                // arrange
+
+                Park first = Park.builder().id(4L).name("Yosemite").state("CA").acres(759620).build();
+                Park second = Park.builder().id(9L).name("Zion").state("UT").acres(146597).build();
+
+                when(parkRepository.findByIdGreaterThanOrderByIdAsc(eq(3L), eq(PageRequest.ofSize(1001))))
+                                .thenReturn(new ArrayList<>(Arrays.asList(first, second)));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/parks/all?after=3"))
+                                .andExpect(status().isOk())
+                                .andExpect(header().doesNotExist("X-Next-Cursor"))
+                                .andReturn();
+
+                // assert
+
+                verify(parkRepository, times(1)).findByIdGreaterThanOrderByIdAsc(eq(3L), eq(PageRequest.ofSize(1001)));
+                String expectedJson = mapper.writeValueAsString(Arrays.asList(first, second));
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void all_parks_checks_the_table_version_before_reading() throws Exception {
+                // arrange
+                Optional<TableVersion> version = Optional.of(TableVersion.builder().tableName("parks").version(3L)
+                                .lastModified(Instant.parse("2023-05-01T10:15:30Z")).build());
+                when(tableVersionRepository.findById(eq("parks"))).thenReturn(version);
+                when(parkRepository.findByIdGreaterThanOrderByIdAsc(eq(0L), eq(Pageable.unpaged()))).thenReturn(new ArrayList<>());
+
+                // act
+                mockMvc.perform(get("/api/parks/all"))
+                                .andExpect(status().isOk());
+
+                // assert
+                InOrder inOrder = inOrder(tableCacheService, parkRepository);
+                inOrder.verify(tableCacheService).checkVersion(version, Park.class);
+                inOrder.verify(parkRepository).findByIdGreaterThanOrderByIdAsc(0L, Pageable.unpaged());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void get_by_id_checks_the_table_version_before_reading() throws Exception {
+                // arrange
+                Optional<TableVersion> version = Optional.of(TableVersion.builder().tableName("parks").version(3L)
+                                .lastModified(Instant.parse("2023-05-01T10:15:30Z")).build());
+                when(tableVersionRepository.findById(eq("parks"))).thenReturn(version);
+                when(parkRepository.findById(eq(7L))).thenReturn(Optional.of(Park.builder().id(7L).name("Zion").build()));
+
+                // act
+                mockMvc.perform(get("/api/parks?id=7"))
+                                .andExpect(status().isOk());
+
+                // assert
+                InOrder inOrder = inOrder(tableCacheService, parkRepository);
+                inOrder.verify(tableCacheService).checkVersion(version, Park.class);
+                inOrder.verify(parkRepository).findById(7L);
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_export_all_parks_as_ndjson() throws Exception {
+
+                // arrange
+
+                Park first = Park.builder().id(4L).name("Yosemite").state("CA").acres(759620).build();
+                Park second = Park.builder().id(9L).name("Zion").state("UT").acres(146597).build();
+
+                when(parkRepository.streamAllByOrderByIdAsc()).thenReturn(Stream.of(first, second));
+
+                // act
+                MvcResult started = mockMvc.perform(get("/api/parks/all").accept(MediaType.APPLICATION_NDJSON))
+                                .andExpect(request().asyncStarted()).andReturn();
+                MvcResult response = mockMvc.perform(asyncDispatch(started))
+                                .andExpect(status().isOk())
+                                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                                .andReturn();
+
+                // assert
+
+                verify(parkRepository, times(1)).streamAllByOrderByIdAsc();
+                String expectedNdjson = mapper.writeValueAsString(first) + "\n" + mapper.writeValueAsString(second) + "\n";
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedNdjson, responseString);
+        }
+
+        @Test
+        public void logged_out_users_cannot_stream_all_parks() throws Exception {
+                mockMvc.perform(get("/api/parks/stream").accept(MediaType.APPLICATION_NDJSON))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_stream_all_parks_as_ndjson() throws Exception {
+
+                // arrange
+
+                Park first = Park.builder().id(4L).name("Yosemite").state("CA").acres(759620).build();
+                Park second = Park.builder().id(9L).name("Zion").state("UT").acres(146597).build();
+
+                when(parkReadRepository.findByIdGreaterThanOrderByIdAsc(3L)).thenReturn(Flux.just(first, second));
+
+                // act
+                MvcResult started = mockMvc.perform(get("/api/parks/stream?after=3").accept(MediaType.APPLICATION_NDJSON))
+                                .andExpect(request().asyncStarted()).andReturn();
+                MvcResult response = mockMvc.perform(asyncDispatch(started))
+                                .andExpect(status().isOk())
+                                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                                .andReturn();
+
+                // assert
+
+                verify(parkReadRepository, times(1)).findByIdGreaterThanOrderByIdAsc(3L);
+                String expectedNdjson = mapper.writeValueAsString(first) + "\n" + mapper.writeValueAsString(second) + "\n";
+                assertEquals(expectedNdjson, response.getResponse().getContentAsString());
+        }
+
         @WithMockUser(roles = { "ADMIN", "USER" })
         @Test
         public void an_admin_user_can_post_a_new_park() throws Exception {
@@ -179,6 +359,8 @@ public class ParksControllerTests extends ControllerTestCase {
 
                 // assert
                 verify(parkRepository, times(1)).save(park1);
+                verify(tableVersionRepository, times(1)).bump("parks");
+                verify(searchService, times(1)).update(park1);
                 String expectedJson = mapper.writeValueAsString(park1);
                 String responseString = response.getResponse().getContentAsString();
                 assertEquals(expectedJson, responseString);
@@ -189,13 +371,7 @@ public class ParksControllerTests extends ControllerTestCase {
         public void admin_can_delete_a_park() throws Exception {
                 // arrange
 
-                Park park1 = Park.builder()
-                                .name("Yosemite National Park")
-                                .state("California")
-                                .acres(761747)
-                                .build();
-
-                when(parkRepository.findById(eq(15L))).thenReturn(Optional.of(park1));
+                when(parkRepository.removeById(eq(15L))).thenReturn(1);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -204,8 +380,9 @@ public class ParksControllerTests extends ControllerTestCase {
                                 .andExpect(status().isOk()).andReturn();
 
                 // assert
-                verify(parkRepository, times(1)).findById(15L);
-                verify(parkRepository, times(1)).delete(any());
+                verify(parkRepository, times(1)).removeById(15L);
+                verify(tableVersionRepository, times(1)).bump("parks");
+                verify(searchService, times(1)).remove(SearchService.PARK, 15L);
 
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("Park with id 15 deleted", json.get("message"));
@@ -217,7 +394,7 @@ public class ParksControllerTests extends ControllerTestCase {
                         throws Exception {
                 // arrange
 
-                when(parkRepository.findById(eq(15L))).thenReturn(Optional.empty());
+                when(parkRepository.removeById(eq(15L))).thenReturn(0);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -226,7 +403,9 @@ public class ParksControllerTests extends ControllerTestCase {
                                 .andExpect(status().isNotFound()).andReturn();
 
                 // assert
-                verify(parkRepository, times(1)).findById(15L);
+                verify(parkRepository, times(1)).removeById(15L);
+                verify(tableVersionRepository, never()).bump(any());
+                verify(searchService, never()).remove(any(), anyLong());
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("Park with id 15 not found", json.get("message"));
         }
@@ -236,13 +415,7 @@ public class ParksControllerTests extends ControllerTestCase {
         public void admin_can_edit_an_existing_park() throws Exception {
                 // arrange
 
-                Park parkOrig = Park.builder()
-                                .name("Yosemite")
-                                .state("CA")
-                                .acres(0)
-                                .build();
-
-                Park parkEdited = Park.builder()
+                Park parkEdited = Park.builder().id(67L)
                                 .name("Yosemite National Park")
                                 .state("California")
                                 .acres(761747)
@@ -250,7 +423,12 @@ public class ParksControllerTests extends ControllerTestCase {
 
                 String requestBody = mapper.writeValueAsString(parkEdited);
 
-                when(parkRepository.findById(eq(67L))).thenReturn(Optional.of(parkOrig));
+                when(parkRepository.updateById(eq(67L), isNull(), eq(parkEdited.getName()), eq(parkEdited.getState()), eq(parkEdited.getAcres()))).thenReturn(1);
+
+                // as stored: the update gave it version 1, though no version was sent
+                Park stored = mapper.readValue(requestBody, Park.class);
+                stored.setVersion(1L);
+                when(parkRepository.findById(eq(67L))).thenReturn(Optional.of(stored));
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -262,10 +440,11 @@ public class ParksControllerTests extends ControllerTestCase {
                                 .andExpect(status().isOk()).andReturn();
 
                 // assert
-                verify(parkRepository, times(1)).findById(67L);
-                verify(parkRepository, times(1)).save(parkEdited); // should be saved with correct user
+                verify(parkRepository, times(1)).updateById(67L, null, parkEdited.getName(), parkEdited.getState(), parkEdited.getAcres());
+                verify(tableVersionRepository, times(1)).bump("parks");
                 String responseString = response.getResponse().getContentAsString();
-                assertEquals(requestBody, responseString);
+                verify(parkRepository, times(1)).findById(67L);
+                assertEquals(mapper.writeValueAsString(stored), responseString);
         }
 
         @WithMockUser(roles = { "ADMIN", "USER" })
@@ -281,7 +460,7 @@ public class ParksControllerTests extends ControllerTestCase {
 
                 String requestBody = mapper.writeValueAsString(editedPark);
 
-                when(parkRepository.findById(eq(67L))).thenReturn(Optional.empty());
+                when(parkRepository.existsById(eq(67L))).thenReturn(false);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -293,9 +472,518 @@ public class ParksControllerTests extends ControllerTestCase {
                                 .andExpect(status().isNotFound()).andReturn();
 
                 // assert
-                verify(parkRepository, times(1)).findById(67L);
+                verify(parkRepository, times(1)).existsById(67L);
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("Park with id 67 not found", json.get("message"));
 
         }
+
+        @Test
+        public void logged_out_users_cannot_post_a_batch() throws Exception {
+                mockMvc.perform(post("/api/parks/batch"))
+                                .andExpect(status().is(403)); // logged out users can't post
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_regular_users_cannot_delete_a_batch() throws Exception {
+                mockMvc.perform(delete("/api/parks/batch"))
+                                .andExpect(status().is(403)); // only admins can delete
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_post_a_batch_of_parks() throws Exception {
+                // arrange
+
+                // ids sent by the client are ignored, as for /post
+                Park incoming1 = Park.builder()
+                                .id(5L)
+                                .name("Yosemite National Park")
+                                .state("California")
+                                .acres(761747)
+                                .build();
+
+                Park incoming2 = Park.builder()
+                                .id(6L)
+                                .name("Zion National Park")
+                                .state("Utah")
+                                .acres(146597)
+                                .build();
+
+                Park row1 = Park.builder()
+                                .name("Yosemite National Park")
+                                .state("California")
+                                .acres(761747)
+                                .build();
+
+                Park row2 = Park.builder()
+                                .name("Zion National Park")
+                                .state("Utah")
+                                .acres(146597)
+                                .build();
+
+                List<Park> rows = List.of(row1, row2);
+                String requestBody = mapper.writeValueAsString(List.of(incoming1, incoming2));
+
+                when(parkRepository.saveAll(eq(rows))).thenReturn(rows);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                post("/api/parks/batch")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(requestBody)
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(parkRepository, times(1)).saveAll(rows);
+                verify(tableVersionRepository, times(1)).bump("parks");
+                String expectedJson = mapper.writeValueAsString(rows);
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_cannot_post_an_empty_batch_of_parks() throws Exception {
+                // act
+                MvcResult response = mockMvc.perform(
+                                post("/api/parks/batch")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content("[]")
+                                                .with(csrf()))
+                                .andExpect(status().isBadRequest()).andReturn();
+
+                // assert
+                verify(parkRepository, never()).saveAll(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("a batch must have between 1 and 1000 items", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_edit_a_batch_of_parks() throws Exception {
+                // arrange
+
+                Park orig1 = Park.builder()
+                                .id(1L)
+                                .name("Yosemite National Park")
+                                .state("California")
+                                .acres(761747)
+                                .build();
+
+                Park orig2 = Park.builder()
+                                .id(2L)
+                                .name("Zion National Park")
+                                .state("Utah")
+                                .acres(146597)
+                                .build();
+
+                Park edited1 = Park.builder()
+                                .id(1L)
+                                .name("Yosemite")
+                                .state("CA")
+                                .acres(761748)
+                                .build();
+
+                Park edited2 = Park.builder()
+                                .id(2L)
+                                .name("Zion")
+                                .state("UT")
+                                .acres(146598)
+                                .build();
+
+                List<Park> edited = List.of(edited1, edited2);
+                String requestBody = mapper.writeValueAsString(edited);
+
+                when(parkRepository.findAllById(eq(List.of(1L, 2L)))).thenReturn(List.of(orig1, orig2));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                put("/api/parks/batch")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(requestBody)
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(parkRepository, times(1)).findAllById(List.of(1L, 2L));
+                verify(tableVersionRepository, times(1)).bump("parks");
+                verify(parkRepository, times(1)).saveAll(edited);
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(requestBody, responseString);
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_cannot_edit_a_batch_with_a_missing_park() throws Exception {
+                // arrange
+
+                Park orig1 = Park.builder()
+                                .id(1L)
+                                .name("Yosemite National Park")
+                                .state("California")
+                                .acres(761747)
+                                .build();
+
+                Park edited1 = Park.builder()
+                                .id(1L)
+                                .name("Yosemite")
+                                .state("CA")
+                                .acres(761748)
+                                .build();
+
+                Park edited2 = Park.builder()
+                                .id(2L)
+                                .name("Zion")
+                                .state("UT")
+                                .acres(146598)
+                                .build();
+
+                String requestBody = mapper.writeValueAsString(List.of(edited1, edited2));
+
+                when(parkRepository.findAllById(eq(List.of(1L, 2L)))).thenReturn(List.of(orig1));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                put("/api/parks/batch")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(requestBody)
+                                                .with(csrf()))
+                                .andExpect(status().isNotFound()).andReturn();
+
+                // assert
+                verify(parkRepository, never()).saveAll(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("Park with id 2 not found", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_cannot_edit_a_batch_with_a_repeated_id() throws Exception {
+                // arrange
+
+                Park edited1 = Park.builder()
+                                .id(1L)
+                                .name("Yosemite")
+                                .state("CA")
+                                .acres(761748)
+                                .build();
+
+                String requestBody = mapper.writeValueAsString(List.of(edited1, edited1));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                put("/api/parks/batch")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(requestBody)
+                                                .with(csrf()))
+                                .andExpect(status().isBadRequest()).andReturn();
+
+                // assert
+                verify(parkRepository, never()).findAllById(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("1 is missing or repeated in the batch", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_cannot_post_a_batch_with_an_invalid_park() throws Exception {
+                // arrange
+
+                Park row1 = Park.builder()
+                                .id(1L)
+                                .name("Yosemite")
+                                .state("CA")
+                                .acres(761748)
+                                .build();
+
+                Park row2 = Park.builder()
+                                .id(2L)
+                                .name("")
+                                .state("CA")
+                                .acres(761748)
+                                .build();
+
+                String requestBody = mapper.writeValueAsString(List.of(row1, row2));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                post("/api/parks/batch")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(requestBody)
+                                                .with(csrf()))
+                                .andExpect(status().isBadRequest()).andReturn();
+
+                // assert
+                verify(parkRepository, never()).saveAll(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("postParksBatch.incoming[1].name: must not be blank", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_cannot_edit_a_batch_with_an_invalid_park() throws Exception {
+                // arrange
+
+                Park edited1 = Park.builder()
+                                .id(1L)
+                                .name("Yosemite")
+                                .state("CA")
+                                .acres(761748)
+                                .build();
+
+                Park edited2 = Park.builder()
+                                .id(2L)
+                                .name("")
+                                .state("CA")
+                                .acres(761748)
+                                .build();
+
+                String requestBody = mapper.writeValueAsString(List.of(edited1, edited2));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                put("/api/parks/batch")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(requestBody)
+                                                .with(csrf()))
+                                .andExpect(status().isBadRequest()).andReturn();
+
+                // assert
+                verify(parkRepository, never()).findAllById(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("updateParksBatch.incoming[1].name: must not be blank", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_delete_a_batch_of_parks() throws Exception {
+                // arrange
+
+                Park row1 = Park.builder()
+                                .id(1L)
+                                .name("Yosemite National Park")
+                                .state("California")
+                                .acres(761747)
+                                .build();
+
+                Park row2 = Park.builder()
+                                .id(2L)
+                                .name("Zion National Park")
+                                .state("Utah")
+                                .acres(146597)
+                                .build();
+
+                when(parkRepository.findAllById(eq(List.of(1L, 2L)))).thenReturn(List.of(row1, row2));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                delete("/api/parks/batch")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content("[1, 2]")
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(parkRepository, times(1)).findAllById(List.of(1L, 2L));
+                verify(tableVersionRepository, times(1)).bump("parks");
+                verify(parkRepository, times(1)).deleteAll(any());
+                verify(searchService, times(1)).remove(SearchService.PARK, 1L);
+                verify(searchService, times(1)).remove(SearchService.PARK, 2L);
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("2 parks deleted", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_cannot_delete_a_batch_with_a_missing_park() throws Exception {
+                // arrange
+
+                Park row1 = Park.builder()
+                                .id(1L)
+                                .name("Yosemite National Park")
+                                .state("California")
+                                .acres(761747)
+                                .build();
+
+                when(parkRepository.findAllById(eq(List.of(1L, 2L)))).thenReturn(List.of(row1));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                delete("/api/parks/batch")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content("[1, 2]")
+                                                .with(csrf()))
+                                .andExpect(status().isNotFound()).andReturn();
+
+                // assert
+                verify(parkRepository, never()).deleteAll(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("Park with id 2 not found", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_edit_a_park_with_the_current_version() throws Exception {
+                // arrange
+
+                Park edited = Park.builder()
+                                .id(67L)
+                                .name("Yosemite")
+                                .state("CA")
+                                .acres(761748)
+                                .version(3L)
+                                .build();
+
+                String requestBody = mapper.writeValueAsString(edited);
+
+                when(parkRepository.updateById(eq(67L), eq(3L), eq(edited.getName()), eq(edited.getState()), eq(edited.getAcres()))).thenReturn(1);
+
+                // as stored, with the version the update gave it
+                Park stored = mapper.readValue(requestBody, Park.class);
+                stored.setVersion(4L);
+                when(parkRepository.findById(eq(67L))).thenReturn(Optional.of(stored));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                put("/api/parks?id=67")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(requestBody)
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                edited.setVersion(4L);
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(mapper.writeValueAsString(edited), responseString);
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_cannot_edit_a_park_with_a_stale_version() throws Exception {
+                // arrange
+
+                Park edited = Park.builder()
+                                .id(67L)
+                                .name("Yosemite")
+                                .state("CA")
+                                .acres(761748)
+                                .version(3L)
+                                .build();
+
+                String requestBody = mapper.writeValueAsString(edited);
+
+                when(parkRepository.updateById(eq(67L), eq(3L), eq(edited.getName()), eq(edited.getState()), eq(edited.getAcres()))).thenReturn(0);
+                when(parkRepository.existsById(eq(67L))).thenReturn(true);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                put("/api/parks?id=67")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(requestBody)
+                                                .with(csrf()))
+                                .andExpect(status().isConflict()).andReturn();
+
+                // assert
+                verify(parkRepository, times(1)).existsById(67L);
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("Object of class [edu.ucsb.cs156.example.entities.Park] with identifier [67]: optimistic locking failed", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_cannot_edit_a_batch_with_a_stale_version() throws Exception {
+                // arrange
+
+                Park current = Park.builder()
+                                .id(67L)
+                                .name("Yosemite")
+                                .state("CA")
+                                .acres(761748)
+                                .version(4L)
+                                .build();
+
+                Park edited = Park.builder()
+                                .id(67L)
+                                .name("Yosemite")
+                                .state("CA")
+                                .acres(761748)
+                                .version(3L)
+                                .build();
+
+                String requestBody = mapper.writeValueAsString(List.of(edited));
+
+                when(parkRepository.findAllById(eq(List.of(67L)))).thenReturn(List.of(current));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                put("/api/parks/batch")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(requestBody)
+                                                .with(csrf()))
+                                .andExpect(status().isConflict()).andReturn();
+
+                // assert
+                verify(parkRepository, never()).saveAll(any());
+        }
+
+        // Tests for /query
+
+        @Test
+        public void logged_out_users_cannot_query() throws Exception {
+                mockMvc.perform(get("/api/parks/query"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_query_parks() throws Exception {
+
+                // arrange
+                Park row = Park.builder().id(7).name("Yosemite National Park").state("California").acres(761747).build();
+                PageRequest pageRequest = PageRequest.of(2, 10, Sort.by(Sort.Direction.DESC, "acres").and(Sort.by("id")));
+                when(parkRepository.findAll(any(Specification.class), eq(pageRequest)))
+                                .thenReturn(new PageImpl<>(List.of(row), pageRequest, 21));
+
+                // act
+                MvcResult started = mockMvc.perform(get("/api/parks/query?state=California&minAcres=1000&sort=acres,desc&page=2&limit=10"))
+                                .andExpect(request().asyncStarted())
+                                .andReturn();
+                MvcResult response = mockMvc.perform(asyncDispatch(started))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string(ApiController.TOTAL_COUNT_HEADER, "21"))
+                                .andReturn();
+
+                // assert
+                verify(parkRepository, times(1)).findAll(any(Specification.class), eq(pageRequest));
+                assertEquals(mapper.writeValueAsString(List.of(row)), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void query_cannot_sort_by_an_unindexed_property() throws Exception {
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/parks/query?sort=name"))
+                                .andExpect(status().isBadRequest()).andReturn();
+
+                // assert
+                verify(parkRepository, never()).findAll(any(Specification.class), any(Pageable.class));
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("InvalidQueryException", json.get("type"));
+        }
 }
@@ -1,21 +1,34 @@
 package edu.ucsb.cs156.example.controllers;
 
+import edu.ucsb.cs156.example.repositories.TableVersionRepository;
 import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.SearchService;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
 import edu.ucsb.cs156.example.ControllerTestCase;
+import edu.ucsb.cs156.example.entities.TableVersion;
 import edu.ucsb.cs156.example.entities.Restaurant;
 import edu.ucsb.cs156.example.repositories.RestaurantRepository;
+import edu.ucsb.cs156.example.repositories.reactive.RestaurantReadRepository;
 
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MvcResult;
+import reactor.core.publisher.Flux;
 
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -25,7 +38,10 @@ import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -37,9 +53,18 @@ public class RestaurantsControllerTests extends ControllerTestCase {
         @MockBean
         RestaurantRepository restaurantRepository;
 
+        @MockBean
+        RestaurantReadRepository restaurantReadRepository;
+
         @MockBean
         UserRepository userRepository;
 
+        @MockBean
+        SearchService searchService;
+
+        @MockBean
+        TableVersionRepository tableVersionRepository;
+
         // Authorization tests for /api/phones/admin/all
 
         @Test
@@ -146,7 +171,7 @@ public class RestaurantsControllerTests extends ControllerTestCase {
                 ArrayList<Restaurant> expectedRestaurants = new ArrayList<>();
                 expectedRestaurants.addAll(Arrays.asList(restaurant1, restaurant2));
 
-                when(restaurantRepository.findAll()).thenReturn(expectedRestaurants);
+                when(restaurantRepository.findByIdGreaterThanOrderByIdAsc(eq(0L), eq(Pageable.unpaged()))).thenReturn(expectedRestaurants);
 
                 // act
                 MvcResult response = mockMvc.perform(get("/api/restaurants/all"))
@@ -154,12 +179,196 @@ public class RestaurantsControllerTests extends ControllerTestCase {
 
                 // assert
 
-                verify(restaurantRepository, times(1)).findAll();
+                verify(restaurantRepository, times(1)).findByIdGreaterThanOrderByIdAsc(eq(0L), eq(Pageable.unpaged()));
                 String expectedJson = mapper.writeValueAsString(expectedRestaurants);
                 String responseString = response.getResponse().getContentAsString();
                 assertEquals(expectedJson, responseString);
         }
 
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_gets_next_cursor_when_more_restaurants_remain() throws Exception {
+
+                // arrange
+
+                Restaurant first = Restaurant.builder().id(4L).name("Taco Bell").cuisine("Mexican").roachCounter(69).build();
+                Restaurant second = Restaurant.builder().id(9L).name("McDonalds").cuisine("American").roachCounter(699).build();
+
+                when(restaurantRepository.findByIdGreaterThanOrderByIdAsc(eq(3L), eq(PageRequest.ofSize(2))))
+                                .thenReturn(new ArrayList<>(Arrays.asList(first, second)));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/restaurants/all?after=3&limit=1"))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("X-Next-Cursor", "4"))
+                                .andReturn();
+
+                // assert
+
+                verify(restaurantRepository, times(1)).findByIdGreaterThanOrderByIdAsc(eq(3L), eq(PageRequest.ofSize(2)));
+                String expectedJson = mapper.writeValueAsString(Arrays.asList(first));
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_gets_a_page_of_the_default_size_for_a_cursor_without_a_limit() throws Exception {
+
+                // arrange
+
+                Restaurant first = Restaurant.builder().id(4L).name("Taco Bell").cuisine("Mexican").roachCounter(69).build();
+                Restaurant second = Restaurant.builder().id(9L).name("McDonalds").cuisine("American").roachCounter(699).build();
+
+                when(restaurantRepository.findByIdGreaterThanOrderByIdAsc(eq(3L), eq(PageRequest.ofSize(1001))))
+                                .thenReturn(new ArrayList<>(Arrays.asList(first, second)));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/restaurants/all?after=3"))
+                                .andExpect(status().isOk())
+                                .andExpect(header().doesNotExist("X-Next-Cursor"))
+                                .andReturn();
+
+                // assert
+
+                verify(restaurantRepository, times(1)).findByIdGreaterThanOrderByIdAsc(eq(3L), eq(PageRequest.ofSize(1001)));
+                String expectedJson = mapper.writeValueAsString(Arrays.asList(first, second));
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        // conditional GET of /all, from the table_versions row
+
+        TableVersion tableVersion = TableVersion.builder()
+                        .tableName("restaurants")
+                        .version(12)
+                        .lastModified(Instant.parse("2023-05-01T10:15:30Z"))
+                        .build();
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void all_restaurants_has_etag_and_last_modified() throws Exception {
+                // arrange
+                when(tableVersionRepository.findById(eq("restaurants"))).thenReturn(Optional.of(tableVersion));
+                when(restaurantRepository.findByIdGreaterThanOrderByIdAsc(anyLong(), any())).thenReturn(new ArrayList<>());
+
+                // act
+                mockMvc.perform(get("/api/restaurants/all"))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("ETag", "\"12-1682936130000\""))
+                                .andExpect(header().string("Last-Modified", "Mon, 01 May 2023 10:15:30 GMT"))
+                                .andExpect(header().string("Cache-Control", "no-cache, private"));
+
+                // assert
+                verify(restaurantRepository, times(1)).findByIdGreaterThanOrderByIdAsc(anyLong(), any());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void all_restaurants_is_not_modified_for_the_current_etag() throws Exception {
+                // arrange
+                when(tableVersionRepository.findById(eq("restaurants"))).thenReturn(Optional.of(tableVersion));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/restaurants/all").header("If-None-Match", "\"12-1682936130000\""))
+                                .andExpect(status().isNotModified())
+                                .andExpect(header().string("ETag", "\"12-1682936130000\""))
+                                .andReturn();
+
+                // assert
+                verify(restaurantRepository, never()).findByIdGreaterThanOrderByIdAsc(anyLong(), any());
+                assertEquals("", response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void all_restaurants_is_not_modified_since_last_modified() throws Exception {
+                // arrange
+                when(tableVersionRepository.findById(eq("restaurants"))).thenReturn(Optional.of(tableVersion));
+
+                // act
+                mockMvc.perform(get("/api/restaurants/all").header("If-Modified-Since", "Mon, 01 May 2023 10:15:30 GMT"))
+                                .andExpect(status().isNotModified());
+
+                // assert
+                verify(restaurantRepository, never()).findByIdGreaterThanOrderByIdAsc(anyLong(), any());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void all_restaurants_is_sent_again_for_a_stale_etag() throws Exception {
+                // arrange
+                when(tableVersionRepository.findById(eq("restaurants"))).thenReturn(Optional.of(tableVersion));
+                when(restaurantRepository.findByIdGreaterThanOrderByIdAsc(anyLong(), any())).thenReturn(new ArrayList<>());
+
+                // act
+                mockMvc.perform(get("/api/restaurants/all").header("If-None-Match", "\"11-1682936100000\""))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("ETag", "\"12-1682936130000\""));
+
+                // assert
+                verify(restaurantRepository, times(1)).findByIdGreaterThanOrderByIdAsc(anyLong(), any());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_export_all_restaurants_as_ndjson() throws Exception {
+
+                // arrange
+
+                Restaurant first = Restaurant.builder().id(4L).name("Taco Bell").cuisine("Mexican").roachCounter(69).build();
+                Restaurant second = Restaurant.builder().id(9L).name("McDonalds").cuisine("American").roachCounter(699).build();
+
+                when(restaurantRepository.streamAllByOrderByIdAsc()).thenReturn(Stream.of(first, second));
+
+                // act
+                MvcResult started = mockMvc.perform(get("/api/restaurants/all").accept(MediaType.APPLICATION_NDJSON))
+                                .andExpect(request().asyncStarted()).andReturn();
+                MvcResult response = mockMvc.perform(asyncDispatch(started))
+                                .andExpect(status().isOk())
+                                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                                .andReturn();
+
+                // assert
+
+                verify(restaurantRepository, times(1)).streamAllByOrderByIdAsc();
+                String expectedNdjson = mapper.writeValueAsString(first) + "\n" + mapper.writeValueAsString(second) + "\n";
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedNdjson, responseString);
+        }
+
+        @Test
+        public void logged_out_users_cannot_stream_all_restaurants() throws Exception {
+                mockMvc.perform(get("/api/restaurants/stream").accept(MediaType.APPLICATION_NDJSON))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_stream_all_restaurants_as_ndjson() throws Exception {
+
+                // arrange
+
+                Restaurant first = Restaurant.builder().id(4L).name("Taco Bell").cuisine("Mexican").roachCounter(69).build();
+                Restaurant second = Restaurant.builder().id(9L).name("McDonalds").cuisine("American").roachCounter(699).build();
+
+                when(restaurantReadRepository.findByIdGreaterThanOrderByIdAsc(3L)).thenReturn(Flux.just(first, second));
+
+                // act
+                MvcResult started = mockMvc.perform(get("/api/restaurants/stream?after=3").accept(MediaType.APPLICATION_NDJSON))
+                                .andExpect(request().asyncStarted()).andReturn();
+                MvcResult response = mockMvc.perform(asyncDispatch(started))
+                                .andExpect(status().isOk())
+                                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                                .andReturn();
+
+                // assert
+
+                verify(restaurantReadRepository, times(1)).findByIdGreaterThanOrderByIdAsc(3L);
+                String expectedNdjson = mapper.writeValueAsString(first) + "\n" + mapper.writeValueAsString(second) + "\n";
+                assertEquals(expectedNdjson, response.getResponse().getContentAsString());
+        }
+
         @WithMockUser(roles = { "ADMIN", "USER" })
         @Test
         public void an_admin_user_can_post_a_new_restaurant() throws Exception {
@@ -181,6 +390,8 @@ public class RestaurantsControllerTests extends ControllerTestCase {
 
                 // assert
                 verify(restaurantRepository, times(1)).save(restaurant1);
+                verify(searchService, times(1)).update(restaurant1);
+                verify(tableVersionRepository, times(1)).bump("restaurants");
                 String expectedJson = mapper.writeValueAsString(restaurant1);
                 String responseString = response.getResponse().getContentAsString();
                 assertEquals(expectedJson, responseString);
@@ -191,13 +402,7 @@ public class RestaurantsControllerTests extends ControllerTestCase {
         public void admin_can_delete_a_restaurant() throws Exception {
                 // arrange
 
-                Restaurant restaurant = Restaurant.builder()
-                                .name("Taco Bell")
-                                .cuisine("Mexican")
-                                .roachCounter(69)
-                                .build();
-
-                when(restaurantRepository.findById(eq(15L))).thenReturn(Optional.of(restaurant));
+                when(restaurantRepository.removeById(eq(15L))).thenReturn(1);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -206,8 +411,9 @@ public class RestaurantsControllerTests extends ControllerTestCase {
                                 .andExpect(status().isOk()).andReturn();
 
                 // assert
-                verify(restaurantRepository, times(1)).findById(15L);
-                verify(restaurantRepository, times(1)).delete(any());
+                verify(restaurantRepository, times(1)).removeById(15L);
+                verify(searchService, times(1)).remove(SearchService.RESTAURANT, 15L);
+                verify(tableVersionRepository, times(1)).bump("restaurants");
 
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("Restaurant with id 15 deleted", json.get("message"));
@@ -219,7 +425,7 @@ public class RestaurantsControllerTests extends ControllerTestCase {
                         throws Exception {
                 // arrange
 
-                when(restaurantRepository.findById(eq(15L))).thenReturn(Optional.empty());
+                when(restaurantRepository.removeById(eq(15L))).thenReturn(0);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -228,7 +434,9 @@ public class RestaurantsControllerTests extends ControllerTestCase {
                                 .andExpect(status().isNotFound()).andReturn();
 
                 // assert
-                verify(restaurantRepository, times(1)).findById(15L);
+                verify(restaurantRepository, times(1)).removeById(15L);
+                verify(searchService, never()).remove(any(), anyLong());
+                verify(tableVersionRepository, never()).bump(any());
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("Restaurant with id 15 not found", json.get("message"));
         }
@@ -238,12 +446,6 @@ public class RestaurantsControllerTests extends ControllerTestCase {
         public void admin_can_edit_an_existing_restaurant() throws Exception {
                 // arrange
 
-                Restaurant restaurantOrig = Restaurant.builder().id(67L)
-                                .name("Chipotle")
-                                .cuisine("Mexican")
-                                .roachCounter(69)
-                                .build();
-
                 Restaurant restaurantEdited = Restaurant.builder().id(67L)
                                 .name("Taco Bell")
                                 .cuisine("American")
@@ -252,7 +454,12 @@ public class RestaurantsControllerTests extends ControllerTestCase {
 
                 String requestBody = mapper.writeValueAsString(restaurantEdited);
 
-                when(restaurantRepository.findById(eq(67L))).thenReturn(Optional.of(restaurantOrig));
+                when(restaurantRepository.updateById(eq(67L), isNull(), eq(restaurantEdited.getName()), eq(restaurantEdited.getCuisine()), eq(restaurantEdited.getRoachCounter()))).thenReturn(1);
+
+                // as stored: the update gave it version 1, though no version was sent
+                Restaurant stored = mapper.readValue(requestBody, Restaurant.class);
+                stored.setVersion(1L);
+                when(restaurantRepository.findById(eq(67L))).thenReturn(Optional.of(stored));
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -264,10 +471,11 @@ public class RestaurantsControllerTests extends ControllerTestCase {
                                 .andExpect(status().isOk()).andReturn();
 
                 // assert
-                verify(restaurantRepository, times(1)).findById(67L);
-                verify(restaurantRepository, times(1)).save(restaurantEdited); // should be saved with correct user
+                verify(restaurantRepository, times(1)).updateById(67L, null, restaurantEdited.getName(), restaurantEdited.getCuisine(), restaurantEdited.getRoachCounter());
+                verify(tableVersionRepository, times(1)).bump("restaurants");
                 String responseString = response.getResponse().getContentAsString();
-                assertEquals(requestBody, responseString);
+                verify(restaurantRepository, times(1)).findById(67L);
+                assertEquals(mapper.writeValueAsString(stored), responseString);
         }
 
         @WithMockUser(roles = { "ADMIN", "USER" })
@@ -284,7 +492,7 @@ public class RestaurantsControllerTests extends ControllerTestCase {
 
                 String requestBody = mapper.writeValueAsString(editedRestaurant);
 
-                when(restaurantRepository.findById(eq(67L))).thenReturn(Optional.empty());
+                when(restaurantRepository.existsById(eq(67L))).thenReturn(false);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -296,9 +504,518 @@ public class RestaurantsControllerTests extends ControllerTestCase {
                                 .andExpect(status().isNotFound()).andReturn();
 
                 // assert
-                verify(restaurantRepository, times(1)).findById(67L);
+                verify(restaurantRepository, times(1)).existsById(67L);
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("Restaurant with id 67 not found", json.get("message"));
 
         }
+
+        @Test
+        public void logged_out_users_cannot_post_a_batch() throws Exception {
+                mockMvc.perform(post("/api/restaurants/batch"))
+                                .andExpect(status().is(403)); // logged out users can't post
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_regular_users_cannot_delete_a_batch() throws Exception {
+                mockMvc.perform(delete("/api/restaurants/batch"))
+                                .andExpect(status().is(403)); // only admins can delete
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_post_a_batch_of_restaurants() throws Exception {
+                // arrange
+
+                // ids sent by the client are ignored, as for /post
+                Restaurant incoming1 = Restaurant.builder()
+                                .id(5L)
+                                .name("Chipotle")
+                                .cuisine("Mexican")
+                                .roachCounter(69)
+                                .build();
+
+                Restaurant incoming2 = Restaurant.builder()
+                                .id(6L)
+                                .name("Taco Bell")
+                                .cuisine("Mexican")
+                                .roachCounter(12)
+                                .build();
+
+                Restaurant row1 = Restaurant.builder()
+                                .name("Chipotle")
+                                .cuisine("Mexican")
+                                .roachCounter(69)
+                                .build();
+
+                Restaurant row2 = Restaurant.builder()
+                                .name("Taco Bell")
+                                .cuisine("Mexican")
+                                .roachCounter(12)
+                                .build();
+
+                List<Restaurant> rows = List.of(row1, row2);
+                String requestBody = mapper.writeValueAsString(List.of(incoming1, incoming2));
+
+                when(restaurantRepository.saveAll(eq(rows))).thenReturn(rows);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                post("/api/restaurants/batch")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(requestBody)
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(restaurantRepository, times(1)).saveAll(rows);
+                verify(tableVersionRepository, times(1)).bump("restaurants");
+                String expectedJson = mapper.writeValueAsString(rows);
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_cannot_post_an_empty_batch_of_restaurants() throws Exception {
+                // act
+                MvcResult response = mockMvc.perform(
+                                post("/api/restaurants/batch")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content("[]")
+                                                .with(csrf()))
+                                .andExpect(status().isBadRequest()).andReturn();
+
+                // assert
+                verify(restaurantRepository, never()).saveAll(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("a batch must have between 1 and 1000 items", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_edit_a_batch_of_restaurants() throws Exception {
+                // arrange
+
+                Restaurant orig1 = Restaurant.builder()
+                                .id(1L)
+                                .name("Chipotle")
+                                .cuisine("Mexican")
+                                .roachCounter(69)
+                                .build();
+
+                Restaurant orig2 = Restaurant.builder()
+                                .id(2L)
+                                .name("Taco Bell")
+                                .cuisine("Mexican")
+                                .roachCounter(12)
+                                .build();
+
+                Restaurant edited1 = Restaurant.builder()
+                                .id(1L)
+                                .name("Chipotle")
+                                .cuisine("Tex-Mex")
+                                .roachCounter(70)
+                                .build();
+
+                Restaurant edited2 = Restaurant.builder()
+                                .id(2L)
+                                .name("Taco Bell")
+                                .cuisine("Fast Food")
+                                .roachCounter(0)
+                                .build();
+
+                List<Restaurant> edited = List.of(edited1, edited2);
+                String requestBody = mapper.writeValueAsString(edited);
+
+                when(restaurantRepository.findAllById(eq(List.of(1L, 2L)))).thenReturn(List.of(orig1, orig2));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                put("/api/restaurants/batch")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(requestBody)
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(restaurantRepository, times(1)).findAllById(List.of(1L, 2L));
+                verify(restaurantRepository, times(1)).saveAll(edited);
+                verify(tableVersionRepository, times(1)).bump("restaurants");
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(requestBody, responseString);
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_cannot_edit_a_batch_with_a_missing_restaurant() throws Exception {
+                // arrange
+
+                Restaurant orig1 = Restaurant.builder()
+                                .id(1L)
+                                .name("Chipotle")
+                                .cuisine("Mexican")
+                                .roachCounter(69)
+                                .build();
+
+                Restaurant edited1 = Restaurant.builder()
+                                .id(1L)
+                                .name("Chipotle")
+                                .cuisine("Tex-Mex")
+                                .roachCounter(70)
+                                .build();
+
+                Restaurant edited2 = Restaurant.builder()
+                                .id(2L)
+                                .name("Taco Bell")
+                                .cuisine("Fast Food")
+                                .roachCounter(0)
+                                .build();
+
+                String requestBody = mapper.writeValueAsString(List.of(edited1, edited2));
+
+                when(restaurantRepository.findAllById(eq(List.of(1L, 2L)))).thenReturn(List.of(orig1));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                put("/api/restaurants/batch")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(requestBody)
+                                                .with(csrf()))
+                                .andExpect(status().isNotFound()).andReturn();
+
+                // assert
+                verify(restaurantRepository, never()).saveAll(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("Restaurant with id 2 not found", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_cannot_edit_a_batch_with_a_repeated_id() throws Exception {
+                // arrange
+
+                Restaurant edited1 = Restaurant.builder()
+                                .id(1L)
+                                .name("Chipotle")
+                                .cuisine("Tex-Mex")
+                                .roachCounter(70)
+                                .build();
+
+                String requestBody = mapper.writeValueAsString(List.of(edited1, edited1));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                put("/api/restaurants/batch")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(requestBody)
+                                                .with(csrf()))
+                                .andExpect(status().isBadRequest()).andReturn();
+
+                // assert
+                verify(restaurantRepository, never()).findAllById(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("1 is missing or repeated in the batch", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_cannot_post_a_batch_with_an_invalid_restaurant() throws Exception {
+                // arrange
+
+                Restaurant row1 = Restaurant.builder()
+                                .id(1L)
+                                .name("Chipotle")
+                                .cuisine("Tex-Mex")
+                                .roachCounter(70)
+                                .build();
+
+                Restaurant row2 = Restaurant.builder()
+                                .id(2L)
+                                .name("")
+                                .cuisine("Tex-Mex")
+                                .roachCounter(70)
+                                .build();
+
+                String requestBody = mapper.writeValueAsString(List.of(row1, row2));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                post("/api/restaurants/batch")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(requestBody)
+                                                .with(csrf()))
+                                .andExpect(status().isBadRequest()).andReturn();
+
+                // assert
+                verify(restaurantRepository, never()).saveAll(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("postRestaurantsBatch.incoming[1].name: must not be blank", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_cannot_edit_a_batch_with_an_invalid_restaurant() throws Exception {
+                // arrange
+
+                Restaurant edited1 = Restaurant.builder()
+                                .id(1L)
+                                .name("Chipotle")
+                                .cuisine("Tex-Mex")
+                                .roachCounter(70)
+                                .build();
+
+                Restaurant edited2 = Restaurant.builder()
+                                .id(2L)
+                                .name("")
+                                .cuisine("Tex-Mex")
+                                .roachCounter(70)
+                                .build();
+
+                String requestBody = mapper.writeValueAsString(List.of(edited1, edited2));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                put("/api/restaurants/batch")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(requestBody)
+                                                .with(csrf()))
+                                .andExpect(status().isBadRequest()).andReturn();
+
+                // assert
+                verify(restaurantRepository, never()).findAllById(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("updateRestaurantsBatch.incoming[1].name: must not be blank", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_delete_a_batch_of_restaurants() throws Exception {
+                // arrange
+
+                Restaurant row1 = Restaurant.builder()
+                                .id(1L)
+                                .name("Chipotle")
+                                .cuisine("Mexican")
+                                .roachCounter(69)
+                                .build();
+
+                Restaurant row2 = Restaurant.builder()
+                                .id(2L)
+                                .name("Taco Bell")
+                                .cuisine("Mexican")
+                                .roachCounter(12)
+                                .build();
+
+                when(restaurantRepository.findAllById(eq(List.of(1L, 2L)))).thenReturn(List.of(row1, row2));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                delete("/api/restaurants/batch")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content("[1, 2]")
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(restaurantRepository, times(1)).findAllById(List.of(1L, 2L));
+                verify(restaurantRepository, times(1)).deleteAll(any());
+                verify(searchService, times(1)).remove(SearchService.RESTAURANT, 1L);
+                verify(searchService, times(1)).remove(SearchService.RESTAURANT, 2L);
+                verify(tableVersionRepository, times(1)).bump("restaurants");
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("2 restaurants deleted", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_cannot_delete_a_batch_with_a_missing_restaurant() throws Exception {
+                // arrange
+
+                Restaurant row1 = Restaurant.builder()
+                                .id(1L)
+                                .name("Chipotle")
+                                .cuisine("Mexican")
+                                .roachCounter(69)
+                                .build();
+
+                when(restaurantRepository.findAllById(eq(List.of(1L, 2L)))).thenReturn(List.of(row1));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                delete("/api/restaurants/batch")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content("[1, 2]")
+                                                .with(csrf()))
+                                .andExpect(status().isNotFound()).andReturn();
+
+                // assert
+                verify(restaurantRepository, never()).deleteAll(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("Restaurant with id 2 not found", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_edit_a_restaurant_with_the_current_version() throws Exception {
+                // arrange
+
+                Restaurant edited = Restaurant.builder()
+                                .id(67L)
+                                .name("Taco Bell")
+                                .cuisine("American")
+                                .roachCounter(72)
+                                .version(3L)
+                                .build();
+
+                String requestBody = mapper.writeValueAsString(edited);
+
+                when(restaurantRepository.updateById(eq(67L), eq(3L), eq(edited.getName()), eq(edited.getCuisine()), eq(edited.getRoachCounter()))).thenReturn(1);
+
+                // as stored, with the version the update gave it
+                Restaurant stored = mapper.readValue(requestBody, Restaurant.class);
+                stored.setVersion(4L);
+                when(restaurantRepository.findById(eq(67L))).thenReturn(Optional.of(stored));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                put("/api/restaurants?id=67")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(requestBody)
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                edited.setVersion(4L);
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(mapper.writeValueAsString(edited), responseString);
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_cannot_edit_a_restaurant_with_a_stale_version() throws Exception {
+                // arrange
+
+                Restaurant edited = Restaurant.builder()
+                                .id(67L)
+                                .name("Taco Bell")
+                                .cuisine("American")
+                                .roachCounter(72)
+                                .version(3L)
+                                .build();
+
+                String requestBody = mapper.writeValueAsString(edited);
+
+                when(restaurantRepository.updateById(eq(67L), eq(3L), eq(edited.getName()), eq(edited.getCuisine()), eq(edited.getRoachCounter()))).thenReturn(0);
+                when(restaurantRepository.existsById(eq(67L))).thenReturn(true);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                put("/api/restaurants?id=67")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(requestBody)
+                                                .with(csrf()))
+                                .andExpect(status().isConflict()).andReturn();
+
+                // assert
+                verify(restaurantRepository, times(1)).existsById(67L);
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("Object of class [edu.ucsb.cs156.example.entities.Restaurant] with identifier [67]: optimistic locking failed", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_cannot_edit_a_batch_with_a_stale_version() throws Exception {
+                // arrange
+
+                Restaurant current = Restaurant.builder()
+                                .id(67L)
+                                .name("Taco Bell")
+                                .cuisine("American")
+                                .roachCounter(72)
+                                .version(4L)
+                                .build();
+
+                Restaurant edited = Restaurant.builder()
+                                .id(67L)
+                                .name("Taco Bell")
+                                .cuisine("American")
+                                .roachCounter(72)
+                                .version(3L)
+                                .build();
+
+                String requestBody = mapper.writeValueAsString(List.of(edited));
+
+                when(restaurantRepository.findAllById(eq(List.of(67L)))).thenReturn(List.of(current));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                put("/api/restaurants/batch")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(requestBody)
+                                                .with(csrf()))
+                                .andExpect(status().isConflict()).andReturn();
+
+                // assert
+                verify(restaurantRepository, never()).saveAll(any());
+        }
+
+        // Tests for /query
+
+        @Test
+        public void logged_out_users_cannot_query() throws Exception {
+                mockMvc.perform(get("/api/restaurants/query"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_query_restaurants() throws Exception {
+
+                // arrange
+                Restaurant row = Restaurant.builder().id(7).name("Chipotle").cuisine("Mexican").roachCounter(3).build();
+                PageRequest pageRequest = PageRequest.of(2, 10, Sort.by(Sort.Direction.DESC, "roachCounter").and(Sort.by("id")));
+                when(restaurantRepository.findAll(any(Specification.class), eq(pageRequest)))
+                                .thenReturn(new PageImpl<>(List.of(row), pageRequest, 21));
+
+                // act
+                MvcResult started = mockMvc.perform(get("/api/restaurants/query?cuisine=Mexican&maxRoachCounter=5&sort=roachCounter,desc&page=2&limit=10"))
+                                .andExpect(request().asyncStarted())
+                                .andReturn();
+                MvcResult response = mockMvc.perform(asyncDispatch(started))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string(ApiController.TOTAL_COUNT_HEADER, "21"))
+                                .andReturn();
+
+                // assert
+                verify(restaurantRepository, times(1)).findAll(any(Specification.class), eq(pageRequest));
+                assertEquals(mapper.writeValueAsString(List.of(row)), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void query_cannot_sort_by_an_unindexed_property() throws Exception {
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/restaurants/query?sort=name"))
+                                .andExpect(status().isBadRequest()).andReturn();
+
+                // assert
+                verify(restaurantRepository, never()).findAll(any(Specification.class), any(Pageable.class));
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("InvalidQueryException", json.get("type"));
+        }
 }
@@ -1,21 +1,36 @@
 package edu.ucsb.cs156.example.controllers;
 
 import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.SearchService;
+import edu.ucsb.cs156.example.entities.TableVersion;
+import edu.ucsb.cs156.example.repositories.TableVersionRepository;
+import edu.ucsb.cs156.example.services.TableCacheService;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
 import edu.ucsb.cs156.example.ControllerTestCase;
 import edu.ucsb.cs156.example.entities.Schools;
 import edu.ucsb.cs156.example.repositories.SchoolsRepository;
+import edu.ucsb.cs156.example.repositories.reactive.SchoolsReadRepository;
 
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
 import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MvcResult;
+import reactor.core.publisher.Flux;
 
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -25,9 +40,13 @@ import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.when;
 
 @WebMvcTest(controllers = SchoolsController.class)
@@ -37,9 +56,21 @@ public class SchoolsControllerTests extends ControllerTestCase {
         @MockBean
         SchoolsRepository schoolsRepository;
 
+        @MockBean
+        SchoolsReadRepository schoolsReadRepository;
+
         @MockBean
         UserRepository userRepository;
 
+        @MockBean
+        SearchService searchService;
+
+        @MockBean
+        TableVersionRepository tableVersionRepository;
+
+        @MockBean
+        TableCacheService tableCacheService;
+
         // Authorization tests for /api/schools/admin/all
 
         @Test
@@ -146,7 +177,7 @@ public class SchoolsControllerTests extends ControllerTestCase {
                 ArrayList<Schools> expectedSchools = new ArrayList<>();
                 expectedSchools.addAll(Arrays.asList(school1, school2));
 
-                when(schoolsRepository.findAll()).thenReturn(expectedSchools);
+                when(schoolsRepository.findByIdGreaterThanOrderByIdAsc(eq(0L), eq(Pageable.unpaged()))).thenReturn(expectedSchools);
 
                 // act
                 MvcResult response = mockMvc.perform(get("/api/schools/all"))
@@ -154,12 +185,161 @@ public class SchoolsControllerTests extends ControllerTestCase {
 
                 // assert
 
-                verify(schoolsRepository, times(1)).findAll();
+                verify(schoolsRepository, times(1)).findByIdGreaterThanOrderByIdAsc(eq(0L), eq(Pageable.unpaged()));
                 String expectedJson = mapper.writeValueAsString(expectedSchools);
                 String responseString = response.getResponse().getContentAsString();
                 assertEquals(expectedJson, responseString);
         }
 
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_gets_next_cursor_when_more_schools_remain() throws Exception {
+
+                // arrange
+
+                Schools first = Schools.builder().id(4L).name("Dos Pueblos").district("SBUSD").gradeRange("9-12").build();
+                Schools second = Schools.builder().id(9L).name("San Marcos").district("SBUSD").gradeRange("9-12").build();
+
+                when(schoolsRepository.findByIdGreaterThanOrderByIdAsc(eq(3L), eq(PageRequest.ofSize(2))))
+                                .thenReturn(new ArrayList<>(Arrays.asList(first, second)));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/schools/all?after=3&limit=1"))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("X-Next-Cursor", "4"))
+                                .andReturn();
+
+                // assert
+
+                verify(schoolsRepository, times(1)).findByIdGreaterThanOrderByIdAsc(eq(3L), eq(PageRequest.ofSize(2)));
+                String expectedJson = mapper.writeValueAsString(Arrays.asList(first));
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_gets_a_page_of_the_default_size_for_a_cursor_without_a_limit() throws Exception {
+
+                // arrange
+
+                Schools first = Schools.builder().id(4L).name("Dos Pueblos").district("SBUSD").gradeRange("9-12").build();
+                Schools second = Schools.builder().id(9L).name("San Marcos").district("SBUSD").gradeRange("9-12").build();
+
+                when(schoolsRepository.findByIdGreaterThanOrderByIdAsc(eq(3L), eq(PageRequest.ofSize(1001))))
+                                .thenReturn(new ArrayList<>(Arrays.asList(first, second)));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/schools/all?after=3"))
+                                .andExpect(status().isOk())
+                                .andExpect(header().doesNotExist("X-Next-Cursor"))
+                                .andReturn();
+
+                // assert
+
+                verify(schoolsRepository, times(1)).findByIdGreaterThanOrderByIdAsc(eq(3L), eq(PageRequest.ofSize(1001)));
+                String expectedJson = mapper.writeValueAsString(Arrays.asList(first, second));
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void all_schools_checks_the_table_version_before_reading() throws Exception {
+                // arrange
+                Optional<TableVersion> version = Optional.of(TableVersion.builder().tableName("schools").version(3L)
+                                .lastModified(Instant.parse("2023-05-01T10:15:30Z")).build());
+                when(tableVersionRepository.findById(eq("schools"))).thenReturn(version);
+                when(schoolsRepository.findByIdGreaterThanOrderByIdAsc(eq(0L), eq(Pageable.unpaged()))).thenReturn(new ArrayList<>());
+
+                // act
+                mockMvc.perform(get("/api/schools/all"))
+                                .andExpect(status().isOk());
+
+                // assert
+                InOrder inOrder = inOrder(tableCacheService, schoolsRepository);
+                inOrder.verify(tableCacheService).checkVersion(version, Schools.class);
+                inOrder.verify(schoolsRepository).findByIdGreaterThanOrderByIdAsc(0L, Pageable.unpaged());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void get_by_id_checks_the_table_version_before_reading() throws Exception {
+                // arrange
+                Optional<TableVersion> version = Optional.of(TableVersion.builder().tableName("schools").version(3L)
+                                .lastModified(Instant.parse("2023-05-01T10:15:30Z")).build());
+                when(tableVersionRepository.findById(eq("schools"))).thenReturn(version);
+                when(schoolsRepository.findById(eq(7L))).thenReturn(Optional.of(Schools.builder().id(7L).name("Dos Pueblos").build()));
+
+                // act
+                mockMvc.perform(get("/api/schools?id=7"))
+                                .andExpect(status().isOk());
+
+                // assert
+                InOrder inOrder = inOrder(tableCacheService, schoolsRepository);
+                inOrder.verify(tableCacheService).checkVersion(version, Schools.class);
+                inOrder.verify(schoolsRepository).findById(7L);
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_export_all_schools_as_ndjson() throws Exception {
+
+                // arrange
+
+                Schools first = Schools.builder().id(4L).name("Dos Pueblos").district("SBUSD").gradeRange("9-12").build();
+                Schools second = Schools.builder().id(9L).name("San Marcos").district("SBUSD").gradeRange("9-12").build();
+
+                when(schoolsRepository.streamAllByOrderByIdAsc()).thenReturn(Stream.of(first, second));
+
+                // act
+                MvcResult started = mockMvc.perform(get("/api/schools/all").accept(MediaType.APPLICATION_NDJSON))
+                                .andExpect(request().asyncStarted()).andReturn();
+                MvcResult response = mockMvc.perform(asyncDispatch(started))
+                                .andExpect(status().isOk())
+                                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                                .andReturn();
+
+                // assert
+
+                verify(schoolsRepository, times(1)).streamAllByOrderByIdAsc();
+                String expectedNdjson = mapper.writeValueAsString(first) + "\n" + mapper.writeValueAsString(second) + "\n";
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedNdjson, responseString);
+        }
+
+        @Test
+        public void logged_out_users_cannot_stream_all_schools() throws Exception {
+                mockMvc.perform(get("/api/schools/stream").accept(MediaType.APPLICATION_NDJSON))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_stream_all_schools_as_ndjson() throws Exception {
+
+                // arrange
+
+                Schools first = Schools.builder().id(4L).name("Dos Pueblos").district("SBUSD").gradeRange("9-12").build();
+                Schools second = Schools.builder().id(9L).name("San Marcos").district("SBUSD").gradeRange("9-12").build();
+
+                when(schoolsReadRepository.findByIdGreaterThanOrderByIdAsc(3L)).thenReturn(Flux.just(first, second));
+
+                // act
+                MvcResult started = mockMvc.perform(get("/api/schools/stream?after=3").accept(MediaType.APPLICATION_NDJSON))
+                                .andExpect(request().asyncStarted()).andReturn();
+                MvcResult response = mockMvc.perform(asyncDispatch(started))
+                                .andExpect(status().isOk())
+                                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                                .andReturn();
+
+                // assert
+
+                verify(schoolsReadRepository, times(1)).findByIdGreaterThanOrderByIdAsc(3L);
+                String expectedNdjson = mapper.writeValueAsString(first) + "\n" + mapper.writeValueAsString(second) + "\n";
+                assertEquals(expectedNdjson, response.getResponse().getContentAsString());
+        }
+
         @WithMockUser(roles = { "ADMIN", "USER" })
         @Test
         public void an_admin_user_can_post_a_new_school() throws Exception {
@@ -181,6 +361,8 @@ public class SchoolsControllerTests extends ControllerTestCase {
 
                 // assert
                 verify(schoolsRepository, times(1)).save(school1);
+                verify(tableVersionRepository, times(1)).bump("schools");
+                verify(searchService, times(1)).update(school1);
                 String expectedJson = mapper.writeValueAsString(school1);
                 String responseString = response.getResponse().getContentAsString();
                 assertEquals(expectedJson, responseString);
@@ -191,13 +373,7 @@ public class SchoolsControllerTests extends ControllerTestCase {
         public void admin_can_delete_a_school() throws Exception {
                 // arrange
 
-                Schools school1 = Schools.builder()
-                                .name("Isla Vista Elementary School")
-                                .district("Goleta Union School District")
-                                .gradeRange("K-6")  
-                                .build();
-
-                when(schoolsRepository.findById(eq(15L))).thenReturn(Optional.of(school1));
+                when(schoolsRepository.removeById(eq(15L))).thenReturn(1);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -206,8 +382,9 @@ public class SchoolsControllerTests extends ControllerTestCase {
                                 .andExpect(status().isOk()).andReturn();
 
                 // assert
-                verify(schoolsRepository, times(1)).findById(15L);
-                verify(schoolsRepository, times(1)).delete(any());
+                verify(schoolsRepository, times(1)).removeById(15L);
+                verify(tableVersionRepository, times(1)).bump("schools");
+                verify(searchService, times(1)).remove(SearchService.SCHOOL, 15L);
 
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("School with id 15 deleted", json.get("message"));
@@ -219,7 +396,7 @@ public class SchoolsControllerTests extends ControllerTestCase {
                         throws Exception {
                 // arrange
 
-                when(schoolsRepository.findById(eq(15L))).thenReturn(Optional.empty());
+                when(schoolsRepository.removeById(eq(15L))).thenReturn(0);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -228,7 +405,9 @@ public class SchoolsControllerTests extends ControllerTestCase {
                                 .andExpect(status().isNotFound()).andReturn();
 
                 // assert
-                verify(schoolsRepository, times(1)).findById(15L);
+                verify(schoolsRepository, times(1)).removeById(15L);
+                verify(tableVersionRepository, never()).bump(any());
+                verify(searchService, never()).remove(any(), anyLong());
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("Schools with id 15 not found", json.get("message"));
         }
@@ -238,13 +417,7 @@ public class SchoolsControllerTests extends ControllerTestCase {
         public void admin_can_edit_an_existing_school() throws Exception {
                 // arrange
 
-                Schools schoolOrig = Schools.builder()
-                                .name("Isla Vista Elementary School")
-                                .district("Goleta Union School District")
-                                .gradeRange("K-6") 
-                                .build();
-
-                Schools schoolEdited = Schools.builder()
+                Schools schoolEdited = Schools.builder().id(67L)
                                 .name("Goleta Valley Junior High School")
                                 .district("Santa Barbara Unified School District")
                                 .gradeRange("7-8") 
@@ -252,7 +425,12 @@ public class SchoolsControllerTests extends ControllerTestCase {
 
                 String requestBody = mapper.writeValueAsString(schoolEdited);
 
-                when(schoolsRepository.findById(eq(67L))).thenReturn(Optional.of(schoolOrig));
+                when(schoolsRepository.updateById(eq(67L), isNull(), eq(schoolEdited.getName()), eq(schoolEdited.getDistrict()), eq(schoolEdited.getGradeRange()))).thenReturn(1);
+
+                // as stored: the update gave it version 1, though no version was sent
+                Schools stored = mapper.readValue(requestBody, Schools.class);
+                stored.setVersion(1L);
+                when(schoolsRepository.findById(eq(67L))).thenReturn(Optional.of(stored));
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -264,10 +442,11 @@ public class SchoolsControllerTests extends ControllerTestCase {
                                 .andExpect(status().isOk()).andReturn();
 
                 // assert
-                verify(schoolsRepository, times(1)).findById(67L);
-                verify(schoolsRepository, times(1)).save(schoolEdited); // should be saved with correct user
+                verify(schoolsRepository, times(1)).updateById(67L, null, schoolEdited.getName(), schoolEdited.getDistrict(), schoolEdited.getGradeRange());
+                verify(tableVersionRepository, times(1)).bump("schools");
                 String responseString = response.getResponse().getContentAsString();
-                assertEquals(requestBody, responseString);
+                verify(schoolsRepository, times(1)).findById(67L);
+                assertEquals(mapper.writeValueAsString(stored), responseString);
         }
 
         @WithMockUser(roles = { "ADMIN", "USER" })
@@ -283,7 +462,7 @@ public class SchoolsControllerTests extends ControllerTestCase {
 
                 String requestBody = mapper.writeValueAsString(schoolEdited);
 
-                when(schoolsRepository.findById(eq(67L))).thenReturn(Optional.empty());
+                when(schoolsRepository.existsById(eq(67L))).thenReturn(false);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -295,9 +474,518 @@ public class SchoolsControllerTests extends ControllerTestCase {
                                 .andExpect(status().isNotFound()).andReturn();
 
                 // assert
-                verify(schoolsRepository, times(1)).findById(67L);
+                verify(schoolsRepository, times(1)).existsById(67L);
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("Schools with id 67 not found", json.get("message"));
 
         }
+
+        @Test
+        public void logged_out_users_cannot_post_a_batch() throws Exception {
+                mockMvc.perform(post("/api/schools/batch"))
+                                .andExpect(status().is(403)); // logged out users can't post
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_regular_users_cannot_delete_a_batch() throws Exception {
+                mockMvc.perform(delete("/api/schools/batch"))
+                                .andExpect(status().is(403)); // only admins can delete
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_post_a_batch_of_schools() throws Exception {
+                // arrange
+
+                // ids sent by the client are ignored, as for /post
+                Schools incoming1 = Schools.builder()
+                                .id(5L)
+                                .name("Dos Pueblos High School")
+                                .district("Santa Barbara Unified")
+                                .gradeRange("9-12")
+                                .build();
+
+                Schools incoming2 = Schools.builder()
+                                .id(6L)
+                                .name("Goleta Valley Junior High")
+                                .district("Santa Barbara Unified")
+                                .gradeRange("7-8")
+                                .build();
+
+                Schools row1 = Schools.builder()
+                                .name("Dos Pueblos High School")
+                                .district("Santa Barbara Unified")
+                                .gradeRange("9-12")
+                                .build();
+
+                Schools row2 = Schools.builder()
+                                .name("Goleta Valley Junior High")
+                                .district("Santa Barbara Unified")
+                                .gradeRange("7-8")
+                                .build();
+
+                List<Schools> rows = List.of(row1, row2);
+                String requestBody = mapper.writeValueAsString(List.of(incoming1, incoming2));
+
+                when(schoolsRepository.saveAll(eq(rows))).thenReturn(rows);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                post("/api/schools/batch")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(requestBody)
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(schoolsRepository, times(1)).saveAll(rows);
+                verify(tableVersionRepository, times(1)).bump("schools");
+                String expectedJson = mapper.writeValueAsString(rows);
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_cannot_post_an_empty_batch_of_schools() throws Exception {
+                // act
+                MvcResult response = mockMvc.perform(
+                                post("/api/schools/batch")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content("[]")
+                                                .with(csrf()))
+                                .andExpect(status().isBadRequest()).andReturn();
+
+                // assert
+                verify(schoolsRepository, never()).saveAll(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("a batch must have between 1 and 1000 items", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_edit_a_batch_of_schools() throws Exception {
+                // arrange
+
+                Schools orig1 = Schools.builder()
+                                .id(1L)
+                                .name("Dos Pueblos High School")
+                                .district("Santa Barbara Unified")
+                                .gradeRange("9-12")
+                                .build();
+
+                Schools orig2 = Schools.builder()
+                                .id(2L)
+                                .name("Goleta Valley Junior High")
+                                .district("Santa Barbara Unified")
+                                .gradeRange("7-8")
+                                .build();
+
+                Schools edited1 = Schools.builder()
+                                .id(1L)
+                                .name("Dos Pueblos High")
+                                .district("SBUSD")
+                                .gradeRange("9-12")
+                                .build();
+
+                Schools edited2 = Schools.builder()
+                                .id(2L)
+                                .name("Goleta Valley JHS")
+                                .district("SBUSD")
+                                .gradeRange("7-9")
+                                .build();
+
+                List<Schools> edited = List.of(edited1, edited2);
+                String requestBody = mapper.writeValueAsString(edited);
+
+                when(schoolsRepository.findAllById(eq(List.of(1L, 2L)))).thenReturn(List.of(orig1, orig2));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                put("/api/schools/batch")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(requestBody)
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(schoolsRepository, times(1)).findAllById(List.of(1L, 2L));
+                verify(tableVersionRepository, times(1)).bump("schools");
+                verify(schoolsRepository, times(1)).saveAll(edited);
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(requestBody, responseString);
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_cannot_edit_a_batch_with_a_missing_schools() throws Exception {
+                // arrange
+
+                Schools orig1 = Schools.builder()
+                                .id(1L)
+                                .name("Dos Pueblos High School")
+                                .district("Santa Barbara Unified")
+                                .gradeRange("9-12")
+                                .build();
+
+                Schools edited1 = Schools.builder()
+                                .id(1L)
+                                .name("Dos Pueblos High")
+                                .district("SBUSD")
+                                .gradeRange("9-12")
+                                .build();
+
+                Schools edited2 = Schools.builder()
+                                .id(2L)
+                                .name("Goleta Valley JHS")
+                                .district("SBUSD")
+                                .gradeRange("7-9")
+                                .build();
+
+                String requestBody = mapper.writeValueAsString(List.of(edited1, edited2));
+
+                when(schoolsRepository.findAllById(eq(List.of(1L, 2L)))).thenReturn(List.of(orig1));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                put("/api/schools/batch")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(requestBody)
+                                                .with(csrf()))
+                                .andExpect(status().isNotFound()).andReturn();
+
+                // assert
+                verify(schoolsRepository, never()).saveAll(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("Schools with id 2 not found", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_cannot_edit_a_batch_with_a_repeated_id() throws Exception {
+                // arrange
+
+                Schools edited1 = Schools.builder()
+                                .id(1L)
+                                .name("Dos Pueblos High")
+                                .district("SBUSD")
+                                .gradeRange("9-12")
+                                .build();
+
+                String requestBody = mapper.writeValueAsString(List.of(edited1, edited1));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                put("/api/schools/batch")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(requestBody)
+                                                .with(csrf()))
+                                .andExpect(status().isBadRequest()).andReturn();
+
+                // assert
+                verify(schoolsRepository, never()).findAllById(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("1 is missing or repeated in the batch", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_cannot_post_a_batch_with_an_invalid_school() throws Exception {
+                // arrange
+
+                Schools row1 = Schools.builder()
+                                .id(1L)
+                                .name("Dos Pueblos High")
+                                .district("SBUSD")
+                                .gradeRange("9-12")
+                                .build();
+
+                Schools row2 = Schools.builder()
+                                .id(2L)
+                                .name("")
+                                .district("SBUSD")
+                                .gradeRange("9-12")
+                                .build();
+
+                String requestBody = mapper.writeValueAsString(List.of(row1, row2));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                post("/api/schools/batch")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(requestBody)
+                                                .with(csrf()))
+                                .andExpect(status().isBadRequest()).andReturn();
+
+                // assert
+                verify(schoolsRepository, never()).saveAll(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("postSchoolsBatch.incoming[1].name: must not be blank", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_cannot_edit_a_batch_with_an_invalid_school() throws Exception {
+                // arrange
+
+                Schools edited1 = Schools.builder()
+                                .id(1L)
+                                .name("Dos Pueblos High")
+                                .district("SBUSD")
+                                .gradeRange("9-12")
+                                .build();
+
+                Schools edited2 = Schools.builder()
+                                .id(2L)
+                                .name("")
+                                .district("SBUSD")
+                                .gradeRange("9-12")
+                                .build();
+
+                String requestBody = mapper.writeValueAsString(List.of(edited1, edited2));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                put("/api/schools/batch")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(requestBody)
+                                                .with(csrf()))
+                                .andExpect(status().isBadRequest()).andReturn();
+
+                // assert
+                verify(schoolsRepository, never()).findAllById(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("updateSchoolsBatch.incoming[1].name: must not be blank", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_delete_a_batch_of_schools() throws Exception {
+                // arrange
+
+                Schools row1 = Schools.builder()
+                                .id(1L)
+                                .name("Dos Pueblos High School")
+                                .district("Santa Barbara Unified")
+                                .gradeRange("9-12")
+                                .build();
+
+                Schools row2 = Schools.builder()
+                                .id(2L)
+                                .name("Goleta Valley Junior High")
+                                .district("Santa Barbara Unified")
+                                .gradeRange("7-8")
+                                .build();
+
+                when(schoolsRepository.findAllById(eq(List.of(1L, 2L)))).thenReturn(List.of(row1, row2));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                delete("/api/schools/batch")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content("[1, 2]")
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(schoolsRepository, times(1)).findAllById(List.of(1L, 2L));
+                verify(tableVersionRepository, times(1)).bump("schools");
+                verify(schoolsRepository, times(1)).deleteAll(any());
+                verify(searchService, times(1)).remove(SearchService.SCHOOL, 1L);
+                verify(searchService, times(1)).remove(SearchService.SCHOOL, 2L);
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("2 schools deleted", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_cannot_delete_a_batch_with_a_missing_schools() throws Exception {
+                // arrange
+
+                Schools row1 = Schools.builder()
+                                .id(1L)
+                                .name("Dos Pueblos High School")
+                                .district("Santa Barbara Unified")
+                                .gradeRange("9-12")
+                                .build();
+
+                when(schoolsRepository.findAllById(eq(List.of(1L, 2L)))).thenReturn(List.of(row1));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                delete("/api/schools/batch")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content("[1, 2]")
+                                                .with(csrf()))
+                                .andExpect(status().isNotFound()).andReturn();
+
+                // assert
+                verify(schoolsRepository, never()).deleteAll(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("Schools with id 2 not found", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_edit_a_school_with_the_current_version() throws Exception {
+                // arrange
+
+                Schools edited = Schools.builder()
+                                .id(67L)
+                                .name("Dos Pueblos High")
+                                .district("SBUSD")
+                                .gradeRange("9-12")
+                                .version(3L)
+                                .build();
+
+                String requestBody = mapper.writeValueAsString(edited);
+
+                when(schoolsRepository.updateById(eq(67L), eq(3L), eq(edited.getName()), eq(edited.getDistrict()), eq(edited.getGradeRange()))).thenReturn(1);
+
+                // as stored, with the version the update gave it
+                Schools stored = mapper.readValue(requestBody, Schools.class);
+                stored.setVersion(4L);
+                when(schoolsRepository.findById(eq(67L))).thenReturn(Optional.of(stored));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                put("/api/schools?id=67")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(requestBody)
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                edited.setVersion(4L);
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(mapper.writeValueAsString(edited), responseString);
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_cannot_edit_a_school_with_a_stale_version() throws Exception {
+                // arrange
+
+                Schools edited = Schools.builder()
+                                .id(67L)
+                                .name("Dos Pueblos High")
+                                .district("SBUSD")
+                                .gradeRange("9-12")
+                                .version(3L)
+                                .build();
+
+                String requestBody = mapper.writeValueAsString(edited);
+
+                when(schoolsRepository.updateById(eq(67L), eq(3L), eq(edited.getName()), eq(edited.getDistrict()), eq(edited.getGradeRange()))).thenReturn(0);
+                when(schoolsRepository.existsById(eq(67L))).thenReturn(true);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                put("/api/schools?id=67")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(requestBody)
+                                                .with(csrf()))
+                                .andExpect(status().isConflict()).andReturn();
+
+                // assert
+                verify(schoolsRepository, times(1)).existsById(67L);
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("Object of class [edu.ucsb.cs156.example.entities.Schools] with identifier [67]: optimistic locking failed", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_cannot_edit_a_batch_with_a_stale_version() throws Exception {
+                // arrange
+
+                Schools current = Schools.builder()
+                                .id(67L)
+                                .name("Dos Pueblos High")
+                                .district("SBUSD")
+                                .gradeRange("9-12")
+                                .version(4L)
+                                .build();
+
+                Schools edited = Schools.builder()
+                                .id(67L)
+                                .name("Dos Pueblos High")
+                                .district("SBUSD")
+                                .gradeRange("9-12")
+                                .version(3L)
+                                .build();
+
+                String requestBody = mapper.writeValueAsString(List.of(edited));
+
+                when(schoolsRepository.findAllById(eq(List.of(67L)))).thenReturn(List.of(current));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                put("/api/schools/batch")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(requestBody)
+                                                .with(csrf()))
+                                .andExpect(status().isConflict()).andReturn();
+
+                // assert
+                verify(schoolsRepository, never()).saveAll(any());
+        }
+
+        // Tests for /query
+
+        @Test
+        public void logged_out_users_cannot_query() throws Exception {
+                mockMvc.perform(get("/api/schools/query"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_query_schools() throws Exception {
+
+                // arrange
+                Schools row = Schools.builder().id(7).name("Dos Pueblos").district("SBUnified").gradeRange("9-12").build();
+                PageRequest pageRequest = PageRequest.of(2, 10, Sort.by(Sort.Direction.DESC, "district").and(Sort.by("id")));
+                when(schoolsRepository.findAll(any(Specification.class), eq(pageRequest)))
+                                .thenReturn(new PageImpl<>(List.of(row), pageRequest, 21));
+
+                // act
+                MvcResult started = mockMvc.perform(get("/api/schools/query?district=SBUnified&sort=district,desc&page=2&limit=10"))
+                                .andExpect(request().asyncStarted())
+                                .andReturn();
+                MvcResult response = mockMvc.perform(asyncDispatch(started))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string(ApiController.TOTAL_COUNT_HEADER, "21"))
+                                .andReturn();
+
+                // assert
+                verify(schoolsRepository, times(1)).findAll(any(Specification.class), eq(pageRequest));
+                assertEquals(mapper.writeValueAsString(List.of(row)), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void query_cannot_sort_by_an_unindexed_property() throws Exception {
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/schools/query?sort=gradeRange"))
+                                .andExpect(status().isBadRequest()).andReturn();
+
+                // assert
+                verify(schoolsRepository, never()).findAll(any(Specification.class), any(Pageable.class));
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("InvalidQueryException", json.get("type"));
+        }
 }
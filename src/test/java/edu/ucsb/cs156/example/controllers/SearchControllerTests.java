@@ -0,0 +1,133 @@
+package edu.ucsb.cs156.example.controllers;
+
+import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.SearchService;
+import edu.ucsb.cs156.example.testconfig.TestConfig;
+import edu.ucsb.cs156.example.ControllerTestCase;
+import edu.ucsb.cs156.example.errors.ServerBusyException;
+import edu.ucsb.cs156.example.models.SearchHit;
+
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MvcResult;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@WebMvcTest(controllers = SearchController.class)
+@Import(TestConfig.class)
+public class SearchControllerTests extends ControllerTestCase {
+
+        @MockBean
+        SearchService searchService;
+
+        @MockBean
+        UserRepository userRepository;
+
+        @Test
+        public void logged_out_users_cannot_search() throws Exception {
+                mockMvc.perform(get("/api/search?q=taco"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_search() throws Exception {
+
+                // arrange
+                SearchHit hit = new SearchHit(SearchService.RESTAURANT, 7, "Taco Bell", "Mexican", 1.0);
+                PageRequest pageRequest = PageRequest.of(1, 10);
+                when(searchService.search(eq("taco bel"), eq(pageRequest)))
+                                .thenReturn(new PageImpl<>(List.of(hit), pageRequest, 11));
+
+                // act
+                MvcResult started = mockMvc.perform(get("/api/search?q=taco bel&page=1&limit=10"))
+                                .andExpect(request().asyncStarted())
+                                .andReturn();
+                MvcResult response = mockMvc.perform(asyncDispatch(started))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string(ApiController.TOTAL_COUNT_HEADER, "11"))
+                                .andReturn();
+
+                // assert
+                verify(searchService, times(1)).search(eq("taco bel"), eq(pageRequest));
+                assertEquals(mapper.writeValueAsString(List.of(hit)), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void search_limit_defaults_to_20_and_is_clamped() throws Exception {
+                when(searchService.search(anyString(), any(Pageable.class)))
+                                .thenAnswer(invocation -> new PageImpl<>(List.of(), invocation.getArgument(1), 0));
+
+                mockMvc.perform(get("/api/search?q=taco"))
+                                .andExpect(status().isOk());
+                mockMvc.perform(get("/api/search?q=taco&limit=5000"))
+                                .andExpect(status().isOk());
+
+                verify(searchService, times(1)).search("taco", PageRequest.of(0, 20));
+                verify(searchService, times(1)).search("taco", PageRequest.of(0, 1000));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void search_is_refused_with_503_when_the_server_is_busy() throws Exception {
+
+                // arrange
+                when(searchService.search(anyString(), any(Pageable.class)))
+                                .thenThrow(new ServerBusyException("too many requests are waiting; try again later"));
+
+                // act
+                MvcResult started = mockMvc.perform(get("/api/search?q=taco"))
+                                .andExpect(request().asyncStarted())
+                                .andReturn();
+                MvcResult response = mockMvc.perform(asyncDispatch(started))
+                                .andExpect(status().isServiceUnavailable())
+                                .andExpect(header().string("Retry-After", "1"))
+                                .andReturn();
+
+                // assert
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("ServerBusyException", json.get("type"));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void search_rejects_a_query_without_words() throws Exception {
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/search?q= -!"))
+                                .andExpect(status().isBadRequest()).andReturn();
+
+                // assert
+                verify(searchService, never()).search(anyString(), any(Pageable.class));
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("InvalidQueryException", json.get("type"));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void search_rejects_a_query_that_is_too_long() throws Exception {
+                mockMvc.perform(get("/api/search?q=" + "a".repeat(SearchController.MAX_QUERY_LENGTH + 1)))
+                                .andExpect(status().isBadRequest());
+
+                verify(searchService, never()).search(anyString(), any(Pageable.class));
+        }
+}
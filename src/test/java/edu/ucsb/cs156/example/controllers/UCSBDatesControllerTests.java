@@ -5,17 +5,26 @@ import edu.ucsb.cs156.example.testconfig.TestConfig;
 import edu.ucsb.cs156.example.ControllerTestCase;
 import edu.ucsb.cs156.example.entities.UCSBDate;
 import edu.ucsb.cs156.example.repositories.UCSBDateRepository;
+import edu.ucsb.cs156.example.repositories.reactive.UCSBDateReadRepository;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MvcResult;
+import reactor.core.publisher.Flux;
 
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -28,6 +37,8 @@ import java.util.Optional;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -39,6 +50,9 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
         @MockBean
         UCSBDateRepository ucsbDateRepository;
 
+        @MockBean
+        UCSBDateReadRepository ucsbDateReadRepository;
+
         @MockBean
         UserRepository userRepository;
 
@@ -152,7 +166,7 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
                 ArrayList<UCSBDate> expectedDates = new ArrayList<>();
                 expectedDates.addAll(Arrays.asList(ucsbDate1, ucsbDate2));
 
-                when(ucsbDateRepository.findAll()).thenReturn(expectedDates);
+                when(ucsbDateRepository.findByIdGreaterThanOrderByIdAsc(eq(0L), eq(Pageable.unpaged()))).thenReturn(expectedDates);
 
                 // act
                 MvcResult response = mockMvc.perform(get("/api/ucsbdates/all"))
@@ -160,12 +174,123 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
 
                 // assert
 
-                verify(ucsbDateRepository, times(1)).findAll();
+                verify(ucsbDateRepository, times(1)).findByIdGreaterThanOrderByIdAsc(eq(0L), eq(Pageable.unpaged()));
                 String expectedJson = mapper.writeValueAsString(expectedDates);
                 String responseString = response.getResponse().getContentAsString();
                 assertEquals(expectedJson, responseString);
         }
 
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_gets_next_cursor_when_more_ucsbdates_remain() throws Exception {
+
+                // arrange
+
+                UCSBDate first = UCSBDate.builder().id(4L).quarterYYYYQ("20222").name("firstDayOfClasses").localDateTime(LocalDateTime.parse("2022-04-03T00:00:00")).build();
+                UCSBDate second = UCSBDate.builder().id(9L).quarterYYYYQ("20222").name("lastDayOfClasses").localDateTime(LocalDateTime.parse("2022-06-03T00:00:00")).build();
+
+                when(ucsbDateRepository.findByIdGreaterThanOrderByIdAsc(eq(3L), eq(PageRequest.ofSize(2))))
+                                .thenReturn(new ArrayList<>(Arrays.asList(first, second)));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdates/all?after=3&limit=1"))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("X-Next-Cursor", "4"))
+                                .andReturn();
+
+                // assert
+
+                verify(ucsbDateRepository, times(1)).findByIdGreaterThanOrderByIdAsc(eq(3L), eq(PageRequest.ofSize(2)));
+                String expectedJson = mapper.writeValueAsString(Arrays.asList(first));
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_gets_a_page_of_the_default_size_for_a_cursor_without_a_limit() throws Exception {
+
+                // arrange
+
+                UCSBDate first = UCSBDate.builder().id(4L).quarterYYYYQ("20222").name("firstDayOfClasses").localDateTime(LocalDateTime.parse("2022-04-03T00:00:00")).build();
+                UCSBDate second = UCSBDate.builder().id(9L).quarterYYYYQ("20222").name("lastDayOfClasses").localDateTime(LocalDateTime.parse("2022-06-03T00:00:00")).build();
+
+                when(ucsbDateRepository.findByIdGreaterThanOrderByIdAsc(eq(3L), eq(PageRequest.ofSize(1001))))
+                                .thenReturn(new ArrayList<>(Arrays.asList(first, second)));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdates/all?after=3"))
+                                .andExpect(status().isOk())
+                                .andExpect(header().doesNotExist("X-Next-Cursor"))
+                                .andReturn();
+
+                // assert
+
+                verify(ucsbDateRepository, times(1)).findByIdGreaterThanOrderByIdAsc(eq(3L), eq(PageRequest.ofSize(1001)));
+                String expectedJson = mapper.writeValueAsString(Arrays.asList(first, second));
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_export_all_ucsbdates_as_ndjson() throws Exception {
+
+                // arrange
+
+                UCSBDate first = UCSBDate.builder().id(4L).quarterYYYYQ("20222").name("firstDayOfClasses").localDateTime(LocalDateTime.parse("2022-04-03T00:00:00")).build();
+                UCSBDate second = UCSBDate.builder().id(9L).quarterYYYYQ("20222").name("lastDayOfClasses").localDateTime(LocalDateTime.parse("2022-06-03T00:00:00")).build();
+
+                when(ucsbDateRepository.streamAllByOrderByIdAsc()).thenReturn(Stream.of(first, second));
+
+                // act
+                MvcResult started = mockMvc.perform(get("/api/ucsbdates/all").accept(MediaType.APPLICATION_NDJSON))
+                                .andExpect(request().asyncStarted()).andReturn();
+                MvcResult response = mockMvc.perform(asyncDispatch(started))
+                                .andExpect(status().isOk())
+                                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                                .andReturn();
+
+                // assert
+
+                verify(ucsbDateRepository, times(1)).streamAllByOrderByIdAsc();
+                String expectedNdjson = mapper.writeValueAsString(first) + "\n" + mapper.writeValueAsString(second) + "\n";
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedNdjson, responseString);
+        }
+
+        @Test
+        public void logged_out_users_cannot_stream_all_ucsbdates() throws Exception {
+                mockMvc.perform(get("/api/ucsbdates/stream").accept(MediaType.APPLICATION_NDJSON))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_stream_all_ucsbdates_as_ndjson() throws Exception {
+
+                // arrange
+
+                UCSBDate first = UCSBDate.builder().id(4L).quarterYYYYQ("20222").name("firstDayOfClasses").localDateTime(LocalDateTime.parse("2022-04-03T00:00:00")).build();
+                UCSBDate second = UCSBDate.builder().id(9L).quarterYYYYQ("20222").name("lastDayOfClasses").localDateTime(LocalDateTime.parse("2022-06-03T00:00:00")).build();
+
+                when(ucsbDateReadRepository.findByIdGreaterThanOrderByIdAsc(3L)).thenReturn(Flux.just(first, second));
+
+                // act
+                MvcResult started = mockMvc.perform(get("/api/ucsbdates/stream?after=3").accept(MediaType.APPLICATION_NDJSON))
+                                .andExpect(request().asyncStarted()).andReturn();
+                MvcResult response = mockMvc.perform(asyncDispatch(started))
+                                .andExpect(status().isOk())
+                                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                                .andReturn();
+
+                // assert
+
+                verify(ucsbDateReadRepository, times(1)).findByIdGreaterThanOrderByIdAsc(3L);
+                String expectedNdjson = mapper.writeValueAsString(first) + "\n" + mapper.writeValueAsString(second) + "\n";
+                assertEquals(expectedNdjson, response.getResponse().getContentAsString());
+        }
+
         @WithMockUser(roles = { "ADMIN", "USER" })
         @Test
         public void an_admin_user_can_post_a_new_ucsbdate() throws Exception {
@@ -201,13 +326,7 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
 
                 LocalDateTime ldt1 = LocalDateTime.parse("2022-01-03T00:00:00");
 
-                UCSBDate ucsbDate1 = UCSBDate.builder()
-                                .name("firstDayOfClasses")
-                                .quarterYYYYQ("20222")
-                                .localDateTime(ldt1)
-                                .build();
-
-                when(ucsbDateRepository.findById(eq(15L))).thenReturn(Optional.of(ucsbDate1));
+                when(ucsbDateRepository.removeById(eq(15L))).thenReturn(1);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -216,8 +335,7 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
                                 .andExpect(status().isOk()).andReturn();
 
                 // assert
-                verify(ucsbDateRepository, times(1)).findById(15L);
-                verify(ucsbDateRepository, times(1)).delete(any());
+                verify(ucsbDateRepository, times(1)).removeById(15L);
 
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("UCSBDate with id 15 deleted", json.get("message"));
@@ -229,7 +347,7 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
                         throws Exception {
                 // arrange
 
-                when(ucsbDateRepository.findById(eq(15L))).thenReturn(Optional.empty());
+                when(ucsbDateRepository.removeById(eq(15L))).thenReturn(0);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -238,7 +356,7 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
                                 .andExpect(status().isNotFound()).andReturn();
 
                 // assert
-                verify(ucsbDateRepository, times(1)).findById(15L);
+                verify(ucsbDateRepository, times(1)).removeById(15L);
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("UCSBDate with id 15 not found", json.get("message"));
         }
@@ -251,13 +369,7 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
                 LocalDateTime ldt1 = LocalDateTime.parse("2022-01-03T00:00:00");
                 LocalDateTime ldt2 = LocalDateTime.parse("2023-01-03T00:00:00");
 
-                UCSBDate ucsbDateOrig = UCSBDate.builder()
-                                .name("firstDayOfClasses")
-                                .quarterYYYYQ("20222")
-                                .localDateTime(ldt1)
-                                .build();
-
-                UCSBDate ucsbDateEdited = UCSBDate.builder()
+                UCSBDate ucsbDateEdited = UCSBDate.builder().id(67L)
                                 .name("firstDayOfFestivus")
                                 .quarterYYYYQ("20232")
                                 .localDateTime(ldt2)
@@ -265,7 +377,12 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
 
                 String requestBody = mapper.writeValueAsString(ucsbDateEdited);
 
-                when(ucsbDateRepository.findById(eq(67L))).thenReturn(Optional.of(ucsbDateOrig));
+                when(ucsbDateRepository.updateById(eq(67L), isNull(), eq(ucsbDateEdited.getQuarterYYYYQ()), eq(ucsbDateEdited.getName()), eq(ucsbDateEdited.getLocalDateTime()))).thenReturn(1);
+
+                // as stored: the update gave it version 1, though no version was sent
+                UCSBDate stored = mapper.readValue(requestBody, UCSBDate.class);
+                stored.setVersion(1L);
+                when(ucsbDateRepository.findById(eq(67L))).thenReturn(Optional.of(stored));
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -277,10 +394,10 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
                                 .andExpect(status().isOk()).andReturn();
 
                 // assert
-                verify(ucsbDateRepository, times(1)).findById(67L);
-                verify(ucsbDateRepository, times(1)).save(ucsbDateEdited); // should be saved with correct user
+                verify(ucsbDateRepository, times(1)).updateById(67L, null, ucsbDateEdited.getQuarterYYYYQ(), ucsbDateEdited.getName(), ucsbDateEdited.getLocalDateTime());
                 String responseString = response.getResponse().getContentAsString();
-                assertEquals(requestBody, responseString);
+                verify(ucsbDateRepository, times(1)).findById(67L);
+                assertEquals(mapper.writeValueAsString(stored), responseString);
         }
 
         @WithMockUser(roles = { "ADMIN", "USER" })
@@ -298,7 +415,7 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
 
                 String requestBody = mapper.writeValueAsString(ucsbEditedDate);
 
-                when(ucsbDateRepository.findById(eq(67L))).thenReturn(Optional.empty());
+                when(ucsbDateRepository.existsById(eq(67L))).thenReturn(false);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -310,9 +427,513 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
                                 .andExpect(status().isNotFound()).andReturn();
 
                 // assert
-                verify(ucsbDateRepository, times(1)).findById(67L);
+                verify(ucsbDateRepository, times(1)).existsById(67L);
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("UCSBDate with id 67 not found", json.get("message"));
 
         }
+
+        @Test
+        public void logged_out_users_cannot_post_a_batch() throws Exception {
+                mockMvc.perform(post("/api/ucsbdates/batch"))
+                                .andExpect(status().is(403)); // logged out users can't post
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_regular_users_cannot_delete_a_batch() throws Exception {
+                mockMvc.perform(delete("/api/ucsbdates/batch"))
+                                .andExpect(status().is(403)); // only admins can delete
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_post_a_batch_of_ucsbdates() throws Exception {
+                // arrange
+
+                // ids sent by the client are ignored, as for /post
+                UCSBDate incoming1 = UCSBDate.builder()
+                                .id(5L)
+                                .quarterYYYYQ("20221")
+                                .name("firstDayOfClasses")
+                                .localDateTime(LocalDateTime.parse("2022-01-03T00:00:00"))
+                                .build();
+
+                UCSBDate incoming2 = UCSBDate.builder()
+                                .id(6L)
+                                .quarterYYYYQ("20221")
+                                .name("lastDayOfClasses")
+                                .localDateTime(LocalDateTime.parse("2022-03-11T00:00:00"))
+                                .build();
+
+                UCSBDate row1 = UCSBDate.builder()
+                                .quarterYYYYQ("20221")
+                                .name("firstDayOfClasses")
+                                .localDateTime(LocalDateTime.parse("2022-01-03T00:00:00"))
+                                .build();
+
+                UCSBDate row2 = UCSBDate.builder()
+                                .quarterYYYYQ("20221")
+                                .name("lastDayOfClasses")
+                                .localDateTime(LocalDateTime.parse("2022-03-11T00:00:00"))
+                                .build();
+
+                List<UCSBDate> rows = List.of(row1, row2);
+                String requestBody = mapper.writeValueAsString(List.of(incoming1, incoming2));
+
+                when(ucsbDateRepository.saveAll(eq(rows))).thenReturn(rows);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                post("/api/ucsbdates/batch")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(requestBody)
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbDateRepository, times(1)).saveAll(rows);
+                String expectedJson = mapper.writeValueAsString(rows);
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_cannot_post_an_empty_batch_of_ucsbdates() throws Exception {
+                // act
+                MvcResult response = mockMvc.perform(
+                                post("/api/ucsbdates/batch")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content("[]")
+                                                .with(csrf()))
+                                .andExpect(status().isBadRequest()).andReturn();
+
+                // assert
+                verify(ucsbDateRepository, never()).saveAll(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("a batch must have between 1 and 1000 items", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_edit_a_batch_of_ucsbdates() throws Exception {
+                // arrange
+
+                UCSBDate orig1 = UCSBDate.builder()
+                                .id(1L)
+                                .quarterYYYYQ("20221")
+                                .name("firstDayOfClasses")
+                                .localDateTime(LocalDateTime.parse("2022-01-03T00:00:00"))
+                                .build();
+
+                UCSBDate orig2 = UCSBDate.builder()
+                                .id(2L)
+                                .quarterYYYYQ("20221")
+                                .name("lastDayOfClasses")
+                                .localDateTime(LocalDateTime.parse("2022-03-11T00:00:00"))
+                                .build();
+
+                UCSBDate edited1 = UCSBDate.builder()
+                                .id(1L)
+                                .quarterYYYYQ("20222")
+                                .name("firstDayOfClasses")
+                                .localDateTime(LocalDateTime.parse("2022-03-28T00:00:00"))
+                                .build();
+
+                UCSBDate edited2 = UCSBDate.builder()
+                                .id(2L)
+                                .quarterYYYYQ("20222")
+                                .name("lastDayOfClasses")
+                                .localDateTime(LocalDateTime.parse("2022-06-03T00:00:00"))
+                                .build();
+
+                List<UCSBDate> edited = List.of(edited1, edited2);
+                String requestBody = mapper.writeValueAsString(edited);
+
+                when(ucsbDateRepository.findAllById(eq(List.of(1L, 2L)))).thenReturn(List.of(orig1, orig2));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                put("/api/ucsbdates/batch")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(requestBody)
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbDateRepository, times(1)).findAllById(List.of(1L, 2L));
+                verify(ucsbDateRepository, times(1)).saveAll(edited);
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(requestBody, responseString);
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_cannot_edit_a_batch_with_a_missing_ucsbdate() throws Exception {
+                // arrange
+
+                UCSBDate orig1 = UCSBDate.builder()
+                                .id(1L)
+                                .quarterYYYYQ("20221")
+                                .name("firstDayOfClasses")
+                                .localDateTime(LocalDateTime.parse("2022-01-03T00:00:00"))
+                                .build();
+
+                UCSBDate edited1 = UCSBDate.builder()
+                                .id(1L)
+                                .quarterYYYYQ("20222")
+                                .name("firstDayOfClasses")
+                                .localDateTime(LocalDateTime.parse("2022-03-28T00:00:00"))
+                                .build();
+
+                UCSBDate edited2 = UCSBDate.builder()
+                                .id(2L)
+                                .quarterYYYYQ("20222")
+                                .name("lastDayOfClasses")
+                                .localDateTime(LocalDateTime.parse("2022-06-03T00:00:00"))
+                                .build();
+
+                String requestBody = mapper.writeValueAsString(List.of(edited1, edited2));
+
+                when(ucsbDateRepository.findAllById(eq(List.of(1L, 2L)))).thenReturn(List.of(orig1));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                put("/api/ucsbdates/batch")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(requestBody)
+                                                .with(csrf()))
+                                .andExpect(status().isNotFound()).andReturn();
+
+                // assert
+                verify(ucsbDateRepository, never()).saveAll(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("UCSBDate with id 2 not found", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_cannot_edit_a_batch_with_a_repeated_id() throws Exception {
+                // arrange
+
+                UCSBDate edited1 = UCSBDate.builder()
+                                .id(1L)
+                                .quarterYYYYQ("20222")
+                                .name("firstDayOfClasses")
+                                .localDateTime(LocalDateTime.parse("2022-03-28T00:00:00"))
+                                .build();
+
+                String requestBody = mapper.writeValueAsString(List.of(edited1, edited1));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                put("/api/ucsbdates/batch")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(requestBody)
+                                                .with(csrf()))
+                                .andExpect(status().isBadRequest()).andReturn();
+
+                // assert
+                verify(ucsbDateRepository, never()).findAllById(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("1 is missing or repeated in the batch", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_cannot_post_a_batch_with_an_invalid_date() throws Exception {
+                // arrange
+
+                UCSBDate row1 = UCSBDate.builder()
+                                .id(1L)
+                                .quarterYYYYQ("20222")
+                                .name("firstDayOfClasses")
+                                .localDateTime(LocalDateTime.parse("2022-03-28T00:00:00"))
+                                .build();
+
+                UCSBDate row2 = UCSBDate.builder()
+                                .id(2L)
+                                .quarterYYYYQ("20222")
+                                .name("")
+                                .localDateTime(LocalDateTime.parse("2022-03-28T00:00:00"))
+                                .build();
+
+                String requestBody = mapper.writeValueAsString(List.of(row1, row2));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                post("/api/ucsbdates/batch")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(requestBody)
+                                                .with(csrf()))
+                                .andExpect(status().isBadRequest()).andReturn();
+
+                // assert
+                verify(ucsbDateRepository, never()).saveAll(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("postUCSBDatesBatch.incoming[1].name: must not be blank", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_cannot_edit_a_batch_with_an_invalid_date() throws Exception {
+                // arrange
+
+                UCSBDate edited1 = UCSBDate.builder()
+                                .id(1L)
+                                .quarterYYYYQ("20222")
+                                .name("firstDayOfClasses")
+                                .localDateTime(LocalDateTime.parse("2022-03-28T00:00:00"))
+                                .build();
+
+                UCSBDate edited2 = UCSBDate.builder()
+                                .id(2L)
+                                .quarterYYYYQ("20222")
+                                .name("")
+                                .localDateTime(LocalDateTime.parse("2022-03-28T00:00:00"))
+                                .build();
+
+                String requestBody = mapper.writeValueAsString(List.of(edited1, edited2));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                put("/api/ucsbdates/batch")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(requestBody)
+                                                .with(csrf()))
+                                .andExpect(status().isBadRequest()).andReturn();
+
+                // assert
+                verify(ucsbDateRepository, never()).findAllById(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("updateUCSBDatesBatch.incoming[1].name: must not be blank", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_delete_a_batch_of_ucsbdates() throws Exception {
+                // arrange
+
+                UCSBDate row1 = UCSBDate.builder()
+                                .id(1L)
+                                .quarterYYYYQ("20221")
+                                .name("firstDayOfClasses")
+                                .localDateTime(LocalDateTime.parse("2022-01-03T00:00:00"))
+                                .build();
+
+                UCSBDate row2 = UCSBDate.builder()
+                                .id(2L)
+                                .quarterYYYYQ("20221")
+                                .name("lastDayOfClasses")
+                                .localDateTime(LocalDateTime.parse("2022-03-11T00:00:00"))
+                                .build();
+
+                when(ucsbDateRepository.findAllById(eq(List.of(1L, 2L)))).thenReturn(List.of(row1, row2));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                delete("/api/ucsbdates/batch")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content("[1, 2]")
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbDateRepository, times(1)).findAllById(List.of(1L, 2L));
+                verify(ucsbDateRepository, times(1)).deleteAll(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("2 dates deleted", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_cannot_delete_a_batch_with_a_missing_ucsbdate() throws Exception {
+                // arrange
+
+                UCSBDate row1 = UCSBDate.builder()
+                                .id(1L)
+                                .quarterYYYYQ("20221")
+                                .name("firstDayOfClasses")
+                                .localDateTime(LocalDateTime.parse("2022-01-03T00:00:00"))
+                                .build();
+
+                when(ucsbDateRepository.findAllById(eq(List.of(1L, 2L)))).thenReturn(List.of(row1));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                delete("/api/ucsbdates/batch")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content("[1, 2]")
+                                                .with(csrf()))
+                                .andExpect(status().isNotFound()).andReturn();
+
+                // assert
+                verify(ucsbDateRepository, never()).deleteAll(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("UCSBDate with id 2 not found", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_edit_a_ucsbdate_with_the_current_version() throws Exception {
+                // arrange
+
+                UCSBDate edited = UCSBDate.builder()
+                                .id(67L)
+                                .quarterYYYYQ("20222")
+                                .name("firstDayOfClasses")
+                                .localDateTime(LocalDateTime.parse("2022-03-28T00:00:00"))
+                                .version(3L)
+                                .build();
+
+                String requestBody = mapper.writeValueAsString(edited);
+
+                when(ucsbDateRepository.updateById(eq(67L), eq(3L), eq(edited.getQuarterYYYYQ()), eq(edited.getName()), eq(edited.getLocalDateTime()))).thenReturn(1);
+
+                // as stored, with the version the update gave it
+                UCSBDate stored = mapper.readValue(requestBody, UCSBDate.class);
+                stored.setVersion(4L);
+                when(ucsbDateRepository.findById(eq(67L))).thenReturn(Optional.of(stored));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                put("/api/ucsbdates?id=67")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(requestBody)
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                edited.setVersion(4L);
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(mapper.writeValueAsString(edited), responseString);
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_cannot_edit_a_ucsbdate_with_a_stale_version() throws Exception {
+                // arrange
+
+                UCSBDate edited = UCSBDate.builder()
+                                .id(67L)
+                                .quarterYYYYQ("20222")
+                                .name("firstDayOfClasses")
+                                .localDateTime(LocalDateTime.parse("2022-03-28T00:00:00"))
+                                .version(3L)
+                                .build();
+
+                String requestBody = mapper.writeValueAsString(edited);
+
+                when(ucsbDateRepository.updateById(eq(67L), eq(3L), eq(edited.getQuarterYYYYQ()), eq(edited.getName()), eq(edited.getLocalDateTime()))).thenReturn(0);
+                when(ucsbDateRepository.existsById(eq(67L))).thenReturn(true);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                put("/api/ucsbdates?id=67")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(requestBody)
+                                                .with(csrf()))
+                                .andExpect(status().isConflict()).andReturn();
+
+                // assert
+                verify(ucsbDateRepository, times(1)).existsById(67L);
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("Object of class [edu.ucsb.cs156.example.entities.UCSBDate] with identifier [67]: optimistic locking failed", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_cannot_edit_a_batch_with_a_stale_version() throws Exception {
+                // arrange
+
+                UCSBDate current = UCSBDate.builder()
+                                .id(67L)
+                                .quarterYYYYQ("20222")
+                                .name("firstDayOfClasses")
+                                .localDateTime(LocalDateTime.parse("2022-03-28T00:00:00"))
+                                .version(4L)
+                                .build();
+
+                UCSBDate edited = UCSBDate.builder()
+                                .id(67L)
+                                .quarterYYYYQ("20222")
+                                .name("firstDayOfClasses")
+                                .localDateTime(LocalDateTime.parse("2022-03-28T00:00:00"))
+                                .version(3L)
+                                .build();
+
+                String requestBody = mapper.writeValueAsString(List.of(edited));
+
+                when(ucsbDateRepository.findAllById(eq(List.of(67L)))).thenReturn(List.of(current));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                put("/api/ucsbdates/batch")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(requestBody)
+                                                .with(csrf()))
+                                .andExpect(status().isConflict()).andReturn();
+
+                // assert
+                verify(ucsbDateRepository, never()).saveAll(any());
+        }
+
+        // Tests for /query
+
+        @Test
+        public void logged_out_users_cannot_query() throws Exception {
+                mockMvc.perform(get("/api/ucsbdates/query"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_query_dates() throws Exception {
+
+                // arrange
+                UCSBDate row = UCSBDate.builder().id(7).quarterYYYYQ("20222").name("firstDayOfClasses").localDateTime(LocalDateTime.parse("2022-04-03T00:00:00")).build();
+                PageRequest pageRequest = PageRequest.of(2, 10, Sort.by(Sort.Direction.DESC, "localDateTime").and(Sort.by("id")));
+                when(ucsbDateRepository.findAll(any(Specification.class), eq(pageRequest)))
+                                .thenReturn(new PageImpl<>(List.of(row), pageRequest, 21));
+
+                // act
+                MvcResult started = mockMvc.perform(get("/api/ucsbdates/query?quarterYYYYQ=20222&from=2022-04-01T00:00:00&to=2022-06-30T23:59:59&sort=localDateTime,desc&page=2&limit=10"))
+                                .andExpect(request().asyncStarted())
+                                .andReturn();
+                MvcResult response = mockMvc.perform(asyncDispatch(started))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string(ApiController.TOTAL_COUNT_HEADER, "21"))
+                                .andReturn();
+
+                // assert
+                verify(ucsbDateRepository, times(1)).findAll(any(Specification.class), eq(pageRequest));
+                assertEquals(mapper.writeValueAsString(List.of(row)), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void query_cannot_sort_by_an_unindexed_property() throws Exception {
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdates/query?sort=name"))
+                                .andExpect(status().isBadRequest()).andReturn();
+
+                // assert
+                verify(ucsbDateRepository, never()).findAll(any(Specification.class), any(Pageable.class));
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("InvalidQueryException", json.get("type"));
+        }
 }
@@ -1,21 +1,35 @@
 package edu.ucsb.cs156.example.controllers;
 
+import edu.ucsb.cs156.example.repositories.TableVersionRepository;
 import edu.ucsb.cs156.example.repositories.UserRepository;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
 import edu.ucsb.cs156.example.ControllerTestCase;
+import edu.ucsb.cs156.example.entities.TableVersion;
 import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
 import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsRepository;
+import edu.ucsb.cs156.example.services.NearestDiningCommonsService;
+import edu.ucsb.cs156.example.services.TableCacheService;
+import edu.ucsb.cs156.example.services.SpatialIndex;
+import edu.ucsb.cs156.example.repositories.reactive.UCSBDiningCommonsReadRepository;
 
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
 import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MvcResult;
+import reactor.core.publisher.Flux;
 
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -26,8 +40,11 @@ import java.util.Optional;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.when;
 
 @WebMvcTest(controllers = UCSBDiningCommonsController.class)
@@ -37,9 +54,21 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
         @MockBean
         UCSBDiningCommonsRepository ucsbDiningCommonsRepository;
 
+        @MockBean
+        UCSBDiningCommonsReadRepository ucsbDiningCommonsReadRepository;
+
         @MockBean
         UserRepository userRepository;
 
+        @MockBean
+        TableVersionRepository tableVersionRepository;
+
+        @MockBean
+        NearestDiningCommonsService nearestDiningCommonsService;
+
+        @MockBean
+        TableCacheService tableCacheService;
+
         // Authorization tests for /api/ucsbdiningcommons/admin/all
 
         @Test
@@ -158,7 +187,7 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
                 ArrayList<UCSBDiningCommons> expectedCommons = new ArrayList<>();
                 expectedCommons.addAll(Arrays.asList(carrillo, dlg));
 
-                when(ucsbDiningCommonsRepository.findAll()).thenReturn(expectedCommons);
+                when(ucsbDiningCommonsRepository.findByCodeGreaterThanOrderByCodeAsc(eq(""), eq(Pageable.unpaged()))).thenReturn(expectedCommons);
 
                 // act
                 MvcResult response = mockMvc.perform(get("/api/ucsbdiningcommons/all"))
@@ -166,12 +195,215 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
 
                 // assert
 
-                verify(ucsbDiningCommonsRepository, times(1)).findAll();
+                verify(ucsbDiningCommonsRepository, times(1)).findByCodeGreaterThanOrderByCodeAsc(eq(""), eq(Pageable.unpaged()));
                 String expectedJson = mapper.writeValueAsString(expectedCommons);
                 String responseString = response.getResponse().getContentAsString();
                 assertEquals(expectedJson, responseString);
         }
 
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_gets_next_cursor_when_more_ucsbdiningcommons_remain() throws Exception {
+
+                // arrange
+
+                UCSBDiningCommons first = UCSBDiningCommons.builder().code("carrillo").name("Carrillo").hasDiningCam(true).latitude(34.409953).longitude(-119.85277).build();
+                UCSBDiningCommons second = UCSBDiningCommons.builder().code("de-la-guerra").name("De La Guerra").hasDiningCam(true).latitude(34.409811).longitude(-119.845026).build();
+
+                when(ucsbDiningCommonsRepository.findByCodeGreaterThanOrderByCodeAsc(eq("bistro"), eq(PageRequest.ofSize(2))))
+                                .thenReturn(new ArrayList<>(Arrays.asList(first, second)));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdiningcommons/all?after=bistro&limit=1"))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("X-Next-Cursor", "carrillo"))
+                                .andReturn();
+
+                // assert
+
+                verify(ucsbDiningCommonsRepository, times(1)).findByCodeGreaterThanOrderByCodeAsc(eq("bistro"), eq(PageRequest.ofSize(2)));
+                String expectedJson = mapper.writeValueAsString(Arrays.asList(first));
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_gets_a_page_of_the_default_size_for_a_cursor_without_a_limit() throws Exception {
+
+                // arrange
+
+                UCSBDiningCommons first = UCSBDiningCommons.builder().code("carrillo").name("Carrillo").hasDiningCam(true).latitude(34.409953).longitude(-119.85277).build();
+                UCSBDiningCommons second = UCSBDiningCommons.builder().code("de-la-guerra").name("De La Guerra").hasDiningCam(true).latitude(34.409811).longitude(-119.845026).build();
+
+                when(ucsbDiningCommonsRepository.findByCodeGreaterThanOrderByCodeAsc(eq("bistro"), eq(PageRequest.ofSize(1001))))
+                                .thenReturn(new ArrayList<>(Arrays.asList(first, second)));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdiningcommons/all?after=bistro"))
+                                .andExpect(status().isOk())
+                                .andExpect(header().doesNotExist("X-Next-Cursor"))
+                                .andReturn();
+
+                // assert
+
+                verify(ucsbDiningCommonsRepository, times(1)).findByCodeGreaterThanOrderByCodeAsc(eq("bistro"), eq(PageRequest.ofSize(1001)));
+                String expectedJson = mapper.writeValueAsString(Arrays.asList(first, second));
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        // conditional GET of /all, from the table_versions row
+
+        TableVersion tableVersion = TableVersion.builder()
+                        .tableName("ucsbdiningcommons")
+                        .version(12)
+                        .lastModified(Instant.parse("2023-05-01T10:15:30Z"))
+                        .build();
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void all_ucsbdiningcommons_has_etag_and_last_modified() throws Exception {
+                // arrange
+                when(tableVersionRepository.findById(eq("ucsbdiningcommons"))).thenReturn(Optional.of(tableVersion));
+                when(ucsbDiningCommonsRepository.findByCodeGreaterThanOrderByCodeAsc(any(), any())).thenReturn(new ArrayList<>());
+
+                // act
+                mockMvc.perform(get("/api/ucsbdiningcommons/all"))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("ETag", "\"12-1682936130000\""))
+                                .andExpect(header().string("Last-Modified", "Mon, 01 May 2023 10:15:30 GMT"))
+                                .andExpect(header().string("Cache-Control", "no-cache, private"));
+
+                // assert
+                verify(ucsbDiningCommonsRepository, times(1)).findByCodeGreaterThanOrderByCodeAsc(any(), any());
+                verify(tableCacheService, times(1)).checkVersion(Optional.of(tableVersion), UCSBDiningCommons.class);
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void get_by_id_checks_the_table_version_before_reading() throws Exception {
+                // arrange
+                UCSBDiningCommons commons = UCSBDiningCommons.builder().code("carrillo").name("Carrillo").build();
+                when(tableVersionRepository.findById(eq("ucsbdiningcommons"))).thenReturn(Optional.of(tableVersion));
+                when(ucsbDiningCommonsRepository.findById(eq("carrillo"))).thenReturn(Optional.of(commons));
+
+                // act
+                mockMvc.perform(get("/api/ucsbdiningcommons?code=carrillo"))
+                                .andExpect(status().isOk());
+
+                // assert
+                InOrder inOrder = inOrder(tableCacheService, ucsbDiningCommonsRepository);
+                inOrder.verify(tableCacheService).checkVersion(Optional.of(tableVersion), UCSBDiningCommons.class);
+                inOrder.verify(ucsbDiningCommonsRepository).findById("carrillo");
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void all_ucsbdiningcommons_is_not_modified_for_the_current_etag() throws Exception {
+                // arrange
+                when(tableVersionRepository.findById(eq("ucsbdiningcommons"))).thenReturn(Optional.of(tableVersion));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdiningcommons/all").header("If-None-Match", "\"12-1682936130000\""))
+                                .andExpect(status().isNotModified())
+                                .andExpect(header().string("ETag", "\"12-1682936130000\""))
+                                .andReturn();
+
+                // assert
+                verify(ucsbDiningCommonsRepository, never()).findByCodeGreaterThanOrderByCodeAsc(any(), any());
+                assertEquals("", response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void all_ucsbdiningcommons_is_not_modified_since_last_modified() throws Exception {
+                // arrange
+                when(tableVersionRepository.findById(eq("ucsbdiningcommons"))).thenReturn(Optional.of(tableVersion));
+
+                // act
+                mockMvc.perform(get("/api/ucsbdiningcommons/all").header("If-Modified-Since", "Mon, 01 May 2023 10:15:30 GMT"))
+                                .andExpect(status().isNotModified());
+
+                // assert
+                verify(ucsbDiningCommonsRepository, never()).findByCodeGreaterThanOrderByCodeAsc(any(), any());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void all_ucsbdiningcommons_is_sent_again_for_a_stale_etag() throws Exception {
+                // arrange
+                when(tableVersionRepository.findById(eq("ucsbdiningcommons"))).thenReturn(Optional.of(tableVersion));
+                when(ucsbDiningCommonsRepository.findByCodeGreaterThanOrderByCodeAsc(any(), any())).thenReturn(new ArrayList<>());
+
+                // act
+                mockMvc.perform(get("/api/ucsbdiningcommons/all").header("If-None-Match", "\"11-1682936100000\""))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("ETag", "\"12-1682936130000\""));
+
+                // assert
+                verify(ucsbDiningCommonsRepository, times(1)).findByCodeGreaterThanOrderByCodeAsc(any(), any());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_export_all_ucsbdiningcommons_as_ndjson() throws Exception {
+
+                // arrange
+
+                UCSBDiningCommons first = UCSBDiningCommons.builder().code("carrillo").name("Carrillo").hasDiningCam(true).latitude(34.409953).longitude(-119.85277).build();
+                UCSBDiningCommons second = UCSBDiningCommons.builder().code("de-la-guerra").name("De La Guerra").hasDiningCam(true).latitude(34.409811).longitude(-119.845026).build();
+
+                when(ucsbDiningCommonsRepository.streamAllByOrderByCodeAsc()).thenReturn(Stream.of(first, second));
+
+                // act
+                MvcResult started = mockMvc.perform(get("/api/ucsbdiningcommons/all").accept(MediaType.APPLICATION_NDJSON))
+                                .andExpect(request().asyncStarted()).andReturn();
+                MvcResult response = mockMvc.perform(asyncDispatch(started))
+                                .andExpect(status().isOk())
+                                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                                .andReturn();
+
+                // assert
+
+                verify(ucsbDiningCommonsRepository, times(1)).streamAllByOrderByCodeAsc();
+                String expectedNdjson = mapper.writeValueAsString(first) + "\n" + mapper.writeValueAsString(second) + "\n";
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedNdjson, responseString);
+        }
+
+        @Test
+        public void logged_out_users_cannot_stream_all_commons() throws Exception {
+                mockMvc.perform(get("/api/ucsbdiningcommons/stream").accept(MediaType.APPLICATION_NDJSON))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_stream_all_commons_as_ndjson() throws Exception {
+
+                // arrange
+
+                UCSBDiningCommons first = UCSBDiningCommons.builder().code("carrillo").name("Carrillo").hasDiningCam(true).latitude(34.409953).longitude(-119.85277).build();
+                UCSBDiningCommons second = UCSBDiningCommons.builder().code("de-la-guerra").name("De La Guerra").hasDiningCam(true).latitude(34.409811).longitude(-119.845026).build();
+
+                when(ucsbDiningCommonsReadRepository.findByIdGreaterThanOrderByIdAsc("b")).thenReturn(Flux.just(first, second));
+
+                // act
+                MvcResult started = mockMvc.perform(get("/api/ucsbdiningcommons/stream?after=b").accept(MediaType.APPLICATION_NDJSON))
+                                .andExpect(request().asyncStarted()).andReturn();
+                MvcResult response = mockMvc.perform(asyncDispatch(started))
+                                .andExpect(status().isOk())
+                                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                                .andReturn();
+
+                // assert
+
+                verify(ucsbDiningCommonsReadRepository, times(1)).findByIdGreaterThanOrderByIdAsc("b");
+                String expectedNdjson = mapper.writeValueAsString(first) + "\n" + mapper.writeValueAsString(second) + "\n";
+                assertEquals(expectedNdjson, response.getResponse().getContentAsString());
+        }
+
         @WithMockUser(roles = { "ADMIN", "USER" })
         @Test
         public void an_admin_user_can_post_a_new_commons() throws Exception {
@@ -197,6 +429,7 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
 
                 // assert
                 verify(ucsbDiningCommonsRepository, times(1)).save(ortega);
+                verify(tableVersionRepository, times(1)).bump("ucsbdiningcommons");
                 String expectedJson = mapper.writeValueAsString(ortega);
                 String responseString = response.getResponse().getContentAsString();
                 assertEquals(expectedJson, responseString);
@@ -207,17 +440,7 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
         public void admin_can_delete_a_date() throws Exception {
                 // arrange
 
-                UCSBDiningCommons portola = UCSBDiningCommons.builder()
-                                .name("Portola")
-                                .code("portola")
-                                .hasSackMeal(true)
-                                .hasTakeOutMeal(true)
-                                .hasDiningCam(true)
-                                .latitude(34.417723)
-                                .longitude(-119.867427)
-                                .build();
-
-                when(ucsbDiningCommonsRepository.findById(eq("portola"))).thenReturn(Optional.of(portola));
+                when(ucsbDiningCommonsRepository.removeByCode(eq("portola"))).thenReturn(1);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -226,8 +449,8 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
                                 .andExpect(status().isOk()).andReturn();
 
                 // assert
-                verify(ucsbDiningCommonsRepository, times(1)).findById("portola");
-                verify(ucsbDiningCommonsRepository, times(1)).delete(any());
+                verify(ucsbDiningCommonsRepository, times(1)).removeByCode("portola");
+                verify(tableVersionRepository, times(1)).bump("ucsbdiningcommons");
 
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("UCSBDiningCommons with id portola deleted", json.get("message"));
@@ -239,7 +462,7 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
                         throws Exception {
                 // arrange
 
-                when(ucsbDiningCommonsRepository.findById(eq("munger-hall"))).thenReturn(Optional.empty());
+                when(ucsbDiningCommonsRepository.removeByCode(eq("munger-hall"))).thenReturn(0);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -248,7 +471,8 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
                                 .andExpect(status().isNotFound()).andReturn();
 
                 // assert
-                verify(ucsbDiningCommonsRepository, times(1)).findById("munger-hall");
+                verify(ucsbDiningCommonsRepository, times(1)).removeByCode("munger-hall");
+                verify(tableVersionRepository, never()).bump(any());
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("UCSBDiningCommons with id munger-hall not found", json.get("message"));
         }
@@ -258,16 +482,6 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
         public void admin_can_edit_an_existing_commons() throws Exception {
                 // arrange
 
-                UCSBDiningCommons carrilloOrig = UCSBDiningCommons.builder()
-                                .name("Carrillo")
-                                .code("carrillo")
-                                .hasSackMeal(false)
-                                .hasTakeOutMeal(false)
-                                .hasDiningCam(true)
-                                .latitude(34.409953)
-                                .longitude(-119.85277)
-                                .build();
-
                 UCSBDiningCommons carrilloEdited = UCSBDiningCommons.builder()
                                 .name("Carrillo Dining Hall")
                                 .code("carrillo")
@@ -280,7 +494,12 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
 
                 String requestBody = mapper.writeValueAsString(carrilloEdited);
 
-                when(ucsbDiningCommonsRepository.findById(eq("carrillo"))).thenReturn(Optional.of(carrilloOrig));
+                when(ucsbDiningCommonsRepository.updateByCode(eq("carrillo"), isNull(), eq(carrilloEdited.getName()), eq(carrilloEdited.getHasSackMeal()), eq(carrilloEdited.getHasTakeOutMeal()), eq(carrilloEdited.getHasDiningCam()), eq(carrilloEdited.getLatitude()), eq(carrilloEdited.getLongitude()))).thenReturn(1);
+
+                // as stored: the update gave it version 1, though no version was sent
+                UCSBDiningCommons stored = mapper.readValue(requestBody, UCSBDiningCommons.class);
+                stored.setVersion(1L);
+                when(ucsbDiningCommonsRepository.findById(eq("carrillo"))).thenReturn(Optional.of(stored));
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -292,10 +511,11 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
                                 .andExpect(status().isOk()).andReturn();
 
                 // assert
-                verify(ucsbDiningCommonsRepository, times(1)).findById("carrillo");
-                verify(ucsbDiningCommonsRepository, times(1)).save(carrilloEdited); // should be saved with updated info
+                verify(ucsbDiningCommonsRepository, times(1)).updateByCode("carrillo", null, carrilloEdited.getName(), carrilloEdited.getHasSackMeal(), carrilloEdited.getHasTakeOutMeal(), carrilloEdited.getHasDiningCam(), carrilloEdited.getLatitude(), carrilloEdited.getLongitude());
+                verify(tableVersionRepository, times(1)).bump("ucsbdiningcommons");
                 String responseString = response.getResponse().getContentAsString();
-                assertEquals(requestBody, responseString);
+                verify(ucsbDiningCommonsRepository, times(1)).findById("carrillo");
+                assertEquals(mapper.writeValueAsString(stored), responseString);
         }
 
         @WithMockUser(roles = { "ADMIN", "USER" })
@@ -315,7 +535,7 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
 
                 String requestBody = mapper.writeValueAsString(editedCommons);
 
-                when(ucsbDiningCommonsRepository.findById(eq("munger-hall"))).thenReturn(Optional.empty());
+                when(ucsbDiningCommonsRepository.existsById(eq("munger-hall"))).thenReturn(false);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -327,9 +547,655 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
                                 .andExpect(status().isNotFound()).andReturn();
 
                 // assert
-                verify(ucsbDiningCommonsRepository, times(1)).findById("munger-hall");
+                verify(ucsbDiningCommonsRepository, times(1)).existsById("munger-hall");
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("UCSBDiningCommons with id munger-hall not found", json.get("message"));
 
         }
+
+        @Test
+        public void logged_out_users_cannot_post_a_batch() throws Exception {
+                mockMvc.perform(post("/api/ucsbdiningcommons/batch"))
+                                .andExpect(status().is(403)); // logged out users can't post
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_regular_users_cannot_delete_a_batch() throws Exception {
+                mockMvc.perform(delete("/api/ucsbdiningcommons/batch"))
+                                .andExpect(status().is(403)); // only admins can delete
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_post_a_batch_of_ucsbdiningcommons() throws Exception {
+                // arrange
+
+                UCSBDiningCommons row1 = UCSBDiningCommons.builder()
+                                .code("carrillo")
+                                .name("Carrillo")
+                                .hasSackMeal(false)
+                                .hasTakeOutMeal(false)
+                                .hasDiningCam(true)
+                                .latitude(34.409953)
+                                .longitude(-119.85277)
+                                .build();
+
+                UCSBDiningCommons row2 = UCSBDiningCommons.builder()
+                                .code("ortega")
+                                .name("Ortega")
+                                .hasSackMeal(true)
+                                .hasTakeOutMeal(true)
+                                .hasDiningCam(true)
+                                .latitude(34.410987)
+                                .longitude(-119.84709)
+                                .build();
+
+                List<UCSBDiningCommons> rows = List.of(row1, row2);
+                String requestBody = mapper.writeValueAsString(rows);
+
+                when(ucsbDiningCommonsRepository.saveAll(eq(rows))).thenReturn(rows);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                post("/api/ucsbdiningcommons/batch")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(requestBody)
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbDiningCommonsRepository, times(1)).saveAll(rows);
+                verify(tableVersionRepository, times(1)).bump("ucsbdiningcommons");
+                String expectedJson = mapper.writeValueAsString(rows);
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_cannot_post_an_empty_batch_of_ucsbdiningcommons() throws Exception {
+                // act
+                MvcResult response = mockMvc.perform(
+                                post("/api/ucsbdiningcommons/batch")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content("[]")
+                                                .with(csrf()))
+                                .andExpect(status().isBadRequest()).andReturn();
+
+                // assert
+                verify(ucsbDiningCommonsRepository, never()).saveAll(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("a batch must have between 1 and 1000 items", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_cannot_post_a_batch_with_an_existing_code() throws Exception {
+                // arrange
+
+                UCSBDiningCommons row1 = UCSBDiningCommons.builder()
+                                .code("carrillo")
+                                .name("Carrillo")
+                                .hasSackMeal(false)
+                                .hasTakeOutMeal(false)
+                                .hasDiningCam(true)
+                                .latitude(34.409953)
+                                .longitude(-119.85277)
+                                .build();
+
+                UCSBDiningCommons row2 = UCSBDiningCommons.builder()
+                                .code("ortega")
+                                .name("Ortega")
+                                .hasSackMeal(true)
+                                .hasTakeOutMeal(true)
+                                .hasDiningCam(true)
+                                .latitude(34.410987)
+                                .longitude(-119.84709)
+                                .build();
+
+                String requestBody = mapper.writeValueAsString(List.of(row1, row2));
+
+                when(ucsbDiningCommonsRepository.findAllById(eq(List.of("carrillo", "ortega")))).thenReturn(List.of(row2));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                post("/api/ucsbdiningcommons/batch")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(requestBody)
+                                                .with(csrf()))
+                                .andExpect(status().isBadRequest()).andReturn();
+
+                // assert
+                verify(ucsbDiningCommonsRepository, never()).saveAll(any());
+                verify(tableVersionRepository, never()).bump(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("commons [ortega] already exist", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_gets_a_conflict_when_a_code_is_taken_while_posting_a_batch() throws Exception {
+                // arrange
+
+                UCSBDiningCommons row1 = UCSBDiningCommons.builder()
+                                .code("carrillo")
+                                .name("Carrillo")
+                                .hasSackMeal(false)
+                                .hasTakeOutMeal(false)
+                                .hasDiningCam(true)
+                                .latitude(34.409953)
+                                .longitude(-119.85277)
+                                .build();
+
+                String requestBody = mapper.writeValueAsString(List.of(row1));
+
+                // inserted by another request after the check
+                when(ucsbDiningCommonsRepository.saveAll(any())).thenThrow(new DataIntegrityViolationException("duplicate key"));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                post("/api/ucsbdiningcommons/batch")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(requestBody)
+                                                .with(csrf()))
+                                .andExpect(status().isConflict()).andReturn();
+
+                // assert
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("DataIntegrityViolationException", json.get("type"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_edit_a_batch_of_ucsbdiningcommons() throws Exception {
+                // arrange
+
+                UCSBDiningCommons orig1 = UCSBDiningCommons.builder()
+                                .code("carrillo")
+                                .name("Carrillo")
+                                .hasSackMeal(false)
+                                .hasTakeOutMeal(false)
+                                .hasDiningCam(true)
+                                .latitude(34.409953)
+                                .longitude(-119.85277)
+                                .build();
+
+                UCSBDiningCommons orig2 = UCSBDiningCommons.builder()
+                                .code("ortega")
+                                .name("Ortega")
+                                .hasSackMeal(true)
+                                .hasTakeOutMeal(true)
+                                .hasDiningCam(true)
+                                .latitude(34.410987)
+                                .longitude(-119.84709)
+                                .build();
+
+                UCSBDiningCommons edited1 = UCSBDiningCommons.builder()
+                                .code("carrillo")
+                                .name("Carrillo Dining")
+                                .hasSackMeal(true)
+                                .hasTakeOutMeal(true)
+                                .hasDiningCam(false)
+                                .latitude(34.409953)
+                                .longitude(-119.85277)
+                                .build();
+
+                UCSBDiningCommons edited2 = UCSBDiningCommons.builder()
+                                .code("ortega")
+                                .name("Ortega Dining")
+                                .hasSackMeal(false)
+                                .hasTakeOutMeal(false)
+                                .hasDiningCam(false)
+                                .latitude(34.410987)
+                                .longitude(-119.84709)
+                                .build();
+
+                List<UCSBDiningCommons> edited = List.of(edited1, edited2);
+                String requestBody = mapper.writeValueAsString(edited);
+
+                when(ucsbDiningCommonsRepository.findAllById(eq(List.of("carrillo", "ortega")))).thenReturn(List.of(orig1, orig2));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                put("/api/ucsbdiningcommons/batch")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(requestBody)
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbDiningCommonsRepository, times(1)).findAllById(List.of("carrillo", "ortega"));
+                verify(ucsbDiningCommonsRepository, times(1)).saveAll(edited);
+                verify(tableVersionRepository, times(1)).bump("ucsbdiningcommons");
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(requestBody, responseString);
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_cannot_edit_a_batch_with_a_missing_commons() throws Exception {
+                // arrange
+
+                UCSBDiningCommons orig1 = UCSBDiningCommons.builder()
+                                .code("carrillo")
+                                .name("Carrillo")
+                                .hasSackMeal(false)
+                                .hasTakeOutMeal(false)
+                                .hasDiningCam(true)
+                                .latitude(34.409953)
+                                .longitude(-119.85277)
+                                .build();
+
+                UCSBDiningCommons edited1 = UCSBDiningCommons.builder()
+                                .code("carrillo")
+                                .name("Carrillo Dining")
+                                .hasSackMeal(true)
+                                .hasTakeOutMeal(true)
+                                .hasDiningCam(false)
+                                .latitude(34.409953)
+                                .longitude(-119.85277)
+                                .build();
+
+                UCSBDiningCommons edited2 = UCSBDiningCommons.builder()
+                                .code("ortega")
+                                .name("Ortega Dining")
+                                .hasSackMeal(false)
+                                .hasTakeOutMeal(false)
+                                .hasDiningCam(false)
+                                .latitude(34.410987)
+                                .longitude(-119.84709)
+                                .build();
+
+                String requestBody = mapper.writeValueAsString(List.of(edited1, edited2));
+
+                when(ucsbDiningCommonsRepository.findAllById(eq(List.of("carrillo", "ortega")))).thenReturn(List.of(orig1));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                put("/api/ucsbdiningcommons/batch")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(requestBody)
+                                                .with(csrf()))
+                                .andExpect(status().isNotFound()).andReturn();
+
+                // assert
+                verify(ucsbDiningCommonsRepository, never()).saveAll(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("UCSBDiningCommons with id ortega not found", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_cannot_edit_a_batch_with_a_repeated_code() throws Exception {
+                // arrange
+
+                UCSBDiningCommons edited1 = UCSBDiningCommons.builder()
+                                .code("carrillo")
+                                .name("Carrillo Dining")
+                                .hasSackMeal(true)
+                                .hasTakeOutMeal(true)
+                                .hasDiningCam(false)
+                                .latitude(34.409953)
+                                .longitude(-119.85277)
+                                .build();
+
+                String requestBody = mapper.writeValueAsString(List.of(edited1, edited1));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                put("/api/ucsbdiningcommons/batch")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(requestBody)
+                                                .with(csrf()))
+                                .andExpect(status().isBadRequest()).andReturn();
+
+                // assert
+                verify(ucsbDiningCommonsRepository, never()).findAllById(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("carrillo is missing or repeated in the batch", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_cannot_post_a_batch_with_an_invalid_commons() throws Exception {
+                // arrange
+
+                UCSBDiningCommons row1 = UCSBDiningCommons.builder()
+                                .code("carrillo")
+                                .name("Carrillo Dining")
+                                .hasSackMeal(true)
+                                .hasTakeOutMeal(true)
+                                .hasDiningCam(false)
+                                .latitude(34.409953)
+                                .longitude(-119.85277)
+                                .build();
+
+                UCSBDiningCommons row2 = UCSBDiningCommons.builder()
+                                .code("ortega")
+                                .name("")
+                                .hasSackMeal(true)
+                                .hasTakeOutMeal(true)
+                                .hasDiningCam(false)
+                                .latitude(34.409953)
+                                .longitude(-119.85277)
+                                .build();
+
+                String requestBody = mapper.writeValueAsString(List.of(row1, row2));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                post("/api/ucsbdiningcommons/batch")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(requestBody)
+                                                .with(csrf()))
+                                .andExpect(status().isBadRequest()).andReturn();
+
+                // assert
+                verify(ucsbDiningCommonsRepository, never()).saveAll(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("postCommonsBatch.incoming[1].name: must not be blank", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_cannot_edit_a_batch_with_an_invalid_commons() throws Exception {
+                // arrange
+
+                UCSBDiningCommons edited1 = UCSBDiningCommons.builder()
+                                .code("carrillo")
+                                .name("Carrillo Dining")
+                                .hasSackMeal(true)
+                                .hasTakeOutMeal(true)
+                                .hasDiningCam(false)
+                                .latitude(34.409953)
+                                .longitude(-119.85277)
+                                .build();
+
+                UCSBDiningCommons edited2 = UCSBDiningCommons.builder()
+                                .code("ortega")
+                                .name("")
+                                .hasSackMeal(true)
+                                .hasTakeOutMeal(true)
+                                .hasDiningCam(false)
+                                .latitude(34.409953)
+                                .longitude(-119.85277)
+                                .build();
+
+                String requestBody = mapper.writeValueAsString(List.of(edited1, edited2));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                put("/api/ucsbdiningcommons/batch")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(requestBody)
+                                                .with(csrf()))
+                                .andExpect(status().isBadRequest()).andReturn();
+
+                // assert
+                verify(ucsbDiningCommonsRepository, never()).findAllById(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("updateCommonsBatch.incoming[1].name: must not be blank", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_delete_a_batch_of_ucsbdiningcommons() throws Exception {
+                // arrange
+
+                UCSBDiningCommons row1 = UCSBDiningCommons.builder()
+                                .code("carrillo")
+                                .name("Carrillo")
+                                .hasSackMeal(false)
+                                .hasTakeOutMeal(false)
+                                .hasDiningCam(true)
+                                .latitude(34.409953)
+                                .longitude(-119.85277)
+                                .build();
+
+                UCSBDiningCommons row2 = UCSBDiningCommons.builder()
+                                .code("ortega")
+                                .name("Ortega")
+                                .hasSackMeal(true)
+                                .hasTakeOutMeal(true)
+                                .hasDiningCam(true)
+                                .latitude(34.410987)
+                                .longitude(-119.84709)
+                                .build();
+
+                when(ucsbDiningCommonsRepository.findAllById(eq(List.of("carrillo", "ortega")))).thenReturn(List.of(row1, row2));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                delete("/api/ucsbdiningcommons/batch")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content("[\"carrillo\", \"ortega\"]")
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbDiningCommonsRepository, times(1)).findAllById(List.of("carrillo", "ortega"));
+                verify(ucsbDiningCommonsRepository, times(1)).deleteAll(any());
+                verify(tableVersionRepository, times(1)).bump("ucsbdiningcommons");
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("2 commons deleted", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_cannot_delete_a_batch_with_a_missing_commons() throws Exception {
+                // arrange
+
+                UCSBDiningCommons row1 = UCSBDiningCommons.builder()
+                                .code("carrillo")
+                                .name("Carrillo")
+                                .hasSackMeal(false)
+                                .hasTakeOutMeal(false)
+                                .hasDiningCam(true)
+                                .latitude(34.409953)
+                                .longitude(-119.85277)
+                                .build();
+
+                when(ucsbDiningCommonsRepository.findAllById(eq(List.of("carrillo", "ortega")))).thenReturn(List.of(row1));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                delete("/api/ucsbdiningcommons/batch")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content("[\"carrillo\", \"ortega\"]")
+                                                .with(csrf()))
+                                .andExpect(status().isNotFound()).andReturn();
+
+                // assert
+                verify(ucsbDiningCommonsRepository, never()).deleteAll(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("UCSBDiningCommons with id ortega not found", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_edit_a_commons_with_the_current_version() throws Exception {
+                // arrange
+
+                UCSBDiningCommons edited = UCSBDiningCommons.builder()
+                                .code("carrillo")
+                                .name("Carrillo Dining Hall")
+                                .hasSackMeal(true)
+                                .hasTakeOutMeal(true)
+                                .hasDiningCam(false)
+                                .latitude(34.409954)
+                                .longitude(-119.85278)
+                                .version(3L)
+                                .build();
+
+                String requestBody = mapper.writeValueAsString(edited);
+
+                when(ucsbDiningCommonsRepository.updateByCode(eq("carrillo"), eq(3L), eq(edited.getName()), eq(edited.getHasSackMeal()), eq(edited.getHasTakeOutMeal()), eq(edited.getHasDiningCam()), eq(edited.getLatitude()), eq(edited.getLongitude()))).thenReturn(1);
+
+                // as stored, with the version the update gave it
+                UCSBDiningCommons stored = mapper.readValue(requestBody, UCSBDiningCommons.class);
+                stored.setVersion(4L);
+                when(ucsbDiningCommonsRepository.findById(eq("carrillo"))).thenReturn(Optional.of(stored));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                put("/api/ucsbdiningcommons?code=carrillo")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(requestBody)
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                edited.setVersion(4L);
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(mapper.writeValueAsString(edited), responseString);
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_cannot_edit_a_commons_with_a_stale_version() throws Exception {
+                // arrange
+
+                UCSBDiningCommons edited = UCSBDiningCommons.builder()
+                                .code("carrillo")
+                                .name("Carrillo Dining Hall")
+                                .hasSackMeal(true)
+                                .hasTakeOutMeal(true)
+                                .hasDiningCam(false)
+                                .latitude(34.409954)
+                                .longitude(-119.85278)
+                                .version(3L)
+                                .build();
+
+                String requestBody = mapper.writeValueAsString(edited);
+
+                when(ucsbDiningCommonsRepository.updateByCode(eq("carrillo"), eq(3L), eq(edited.getName()), eq(edited.getHasSackMeal()), eq(edited.getHasTakeOutMeal()), eq(edited.getHasDiningCam()), eq(edited.getLatitude()), eq(edited.getLongitude()))).thenReturn(0);
+                when(ucsbDiningCommonsRepository.existsById(eq("carrillo"))).thenReturn(true);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                put("/api/ucsbdiningcommons?code=carrillo")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(requestBody)
+                                                .with(csrf()))
+                                .andExpect(status().isConflict()).andReturn();
+
+                // assert
+                verify(ucsbDiningCommonsRepository, times(1)).existsById("carrillo");
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("Object of class [edu.ucsb.cs156.example.entities.UCSBDiningCommons] with identifier [carrillo]: optimistic locking failed", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_cannot_edit_a_batch_with_a_stale_version() throws Exception {
+                // arrange
+
+                UCSBDiningCommons current = UCSBDiningCommons.builder()
+                                .code("carrillo")
+                                .name("Carrillo Dining Hall")
+                                .hasSackMeal(true)
+                                .hasTakeOutMeal(true)
+                                .hasDiningCam(false)
+                                .latitude(34.409954)
+                                .longitude(-119.85278)
+                                .version(4L)
+                                .build();
+
+                UCSBDiningCommons edited = UCSBDiningCommons.builder()
+                                .code("carrillo")
+                                .name("Carrillo Dining Hall")
+                                .hasSackMeal(true)
+                                .hasTakeOutMeal(true)
+                                .hasDiningCam(false)
+                                .latitude(34.409954)
+                                .longitude(-119.85278)
+                                .version(3L)
+                                .build();
+
+                String requestBody = mapper.writeValueAsString(List.of(edited));
+
+                when(ucsbDiningCommonsRepository.findAllById(eq(List.of("carrillo")))).thenReturn(List.of(current));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                put("/api/ucsbdiningcommons/batch")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(requestBody)
+                                                .with(csrf()))
+                                .andExpect(status().isConflict()).andReturn();
+
+                // assert
+                verify(ucsbDiningCommonsRepository, never()).saveAll(any());
+        }
+
+        // Tests for /nearest
+
+        @Test
+        public void logged_out_users_cannot_get_nearest() throws Exception {
+                mockMvc.perform(get("/api/ucsbdiningcommons/nearest?lat=34.41&lon=-119.85"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_nearest() throws Exception {
+
+                // arrange
+                UCSBDiningCommons ortega = UCSBDiningCommons.builder().code("ortega").name("Ortega")
+                                .latitude(34.4109).longitude(-119.8470).build();
+                List<SpatialIndex.Neighbor<UCSBDiningCommons>> nearest = List.of(new SpatialIndex.Neighbor<>(ortega, 123.4));
+                when(nearestDiningCommonsService.nearest(eq(34.41), eq(-119.85), eq(1))).thenReturn(nearest);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdiningcommons/nearest?lat=34.41&lon=-119.85&k=1"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(nearestDiningCommonsService, times(1)).nearest(eq(34.41), eq(-119.85), eq(1));
+                assertEquals(mapper.writeValueAsString(nearest), response.getResponse().getContentAsString());
+                verify(ucsbDiningCommonsRepository, never()).findAll();
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void nearest_k_defaults_to_5_and_is_clamped() throws Exception {
+                mockMvc.perform(get("/api/ucsbdiningcommons/nearest?lat=34.41&lon=-119.85"))
+                                .andExpect(status().isOk());
+                mockMvc.perform(get("/api/ucsbdiningcommons/nearest?lat=34.41&lon=-119.85&k=5000"))
+                                .andExpect(status().isOk());
+
+                verify(nearestDiningCommonsService, times(1)).nearest(34.41, -119.85, 5);
+                verify(nearestDiningCommonsService, times(1)).nearest(34.41, -119.85, 1000);
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void nearest_rejects_a_location_off_the_map() throws Exception {
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdiningcommons/nearest?lat=91&lon=-119.85"))
+                                .andExpect(status().isBadRequest()).andReturn();
+
+                // assert
+                verify(nearestDiningCommonsService, never()).nearest(any(Double.class), any(Double.class), any(Integer.class));
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("InvalidQueryException", json.get("type"));
+                mockMvc.perform(get("/api/ucsbdiningcommons/nearest?lat=34.41&lon=NaN"))
+                                .andExpect(status().isBadRequest());
+        }
 }
@@ -0,0 +1,285 @@
+package edu.ucsb.cs156.example.repositories;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.session.Session;
+import org.springframework.session.jdbc.JdbcIndexedSessionRepository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+// Runs against the session tables of the Flyway migration, outside a test
+// transaction as the sessions are in production.  Each repository made by
+// instance() stands for one instance of the app, with a near-cache of its
+// own.
+
+@JdbcTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class NearCachingSessionRepositoryTests {
+
+  @Autowired
+  DataSource dataSource;
+
+  @Autowired
+  PlatformTransactionManager transactionManager;
+
+  @Autowired
+  JdbcTemplate jdbcTemplate;
+
+  @AfterEach
+  void cleanup() {
+    jdbcTemplate.update("DELETE FROM SPRING_SESSION");
+  }
+
+  private NearCachingSessionRepository instance(Duration timeToLive) {
+    JdbcIndexedSessionRepository sessions = new JdbcIndexedSessionRepository(new JdbcTemplate(dataSource),
+        new TransactionTemplate(transactionManager));
+    return new NearCachingSessionRepository(sessions, jdbcTemplate, timeToLive, 100);
+  }
+
+  private NearCachingSessionRepository instance() {
+    return instance(Duration.ofMinutes(1));
+  }
+
+  private String newSession(NearCachingSessionRepository repository, Instant lastAccessedTime,
+      Duration maxInactiveInterval) {
+    Session session = repository.createSession();
+    session.setAttribute("user", "user@ucsb.edu");
+    session.setLastAccessedTime(lastAccessedTime);
+    session.setMaxInactiveInterval(maxInactiveInterval);
+    repository.save(session);
+    return session.getId();
+  }
+
+  private long storedLastAccessTime(String id) {
+    return jdbcTemplate.queryForObject("SELECT LAST_ACCESS_TIME FROM SPRING_SESSION WHERE SESSION_ID = ?",
+        Long.class, id);
+  }
+
+  private int count(String table) {
+    return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table, Integer.class);
+  }
+
+  @Test
+  void test_findById_reads_from_the_near_cache() {
+    // arrange
+    NearCachingSessionRepository repository = instance();
+    String id = newSession(repository, Instant.now(), Duration.ofMinutes(30));
+    // gone from the database, but not from the near-cache
+    jdbcTemplate.update("DELETE FROM SPRING_SESSION");
+
+    // act
+    Session cached = repository.findById(id);
+    Session read = instance().findById(id);
+
+    // assert
+    assertEquals("user@ucsb.edu", cached.getAttribute("user"));
+    assertNull(read);
+  }
+
+  @Test
+  void test_findById_without_the_near_cache() {
+    // arrange
+    NearCachingSessionRepository repository = instance(Duration.ZERO);
+    String id = newSession(repository, Instant.now(), Duration.ofMinutes(30));
+    jdbcTemplate.update("DELETE FROM SPRING_SESSION");
+
+    // act
+    Session session = repository.findById(id);
+
+    // assert
+    assertNull(session);
+  }
+
+  @Test
+  void test_findById_reads_through_the_near_cache() {
+    // arrange
+    NearCachingSessionRepository repository = instance();
+    String deleted = newSession(repository, Instant.now(), Duration.ofMinutes(30));
+    String changed = newSession(repository, Instant.now(), Duration.ofMinutes(30));
+    // a logout and a change through another instance
+    instance().deleteById(deleted);
+    Session elsewhere = instance().findById(changed);
+    elsewhere.setAttribute("user", "admin@ucsb.edu");
+    instance().save(elsewhere);
+
+    // act
+    repository.setReadThrough(true);
+    Session readDeleted = repository.findById(deleted);
+    Session readChanged = repository.findById(changed);
+    repository.setReadThrough(false);
+
+    // assert
+    assertNull(readDeleted);
+    assertNull(repository.findById(deleted));
+    assertEquals("admin@ucsb.edu", readChanged.getAttribute("user"));
+    // and the near-cache has the stored session now
+    jdbcTemplate.update("DELETE FROM SPRING_SESSION");
+    assertEquals("admin@ucsb.edu", repository.findById(changed).getAttribute("user"));
+  }
+
+  @Test
+  void test_last_access_times_are_written_in_one_batch() {
+    // arrange
+    Instant before = Instant.now().minus(10, ChronoUnit.MINUTES).truncatedTo(ChronoUnit.MILLIS);
+    Instant now = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+    NearCachingSessionRepository repository = instance();
+    String first = newSession(repository, before, Duration.ofMinutes(30));
+    String second = newSession(repository, before, Duration.ofMinutes(30));
+    for (String id : new String[] { first, second }) {
+      Session session = repository.findById(id);
+      session.setLastAccessedTime(now);
+      repository.save(session);
+    }
+    long unwritten = storedLastAccessTime(first);
+
+    // act
+    int written = repository.flushLastAccessTimes();
+
+    // assert
+    assertEquals(before.toEpochMilli(), unwritten);
+    assertEquals(2, written);
+    assertEquals(now.toEpochMilli(), storedLastAccessTime(first));
+    assertEquals(now.toEpochMilli(), storedLastAccessTime(second));
+    assertEquals(now.plus(30, ChronoUnit.MINUTES).toEpochMilli(), jdbcTemplate.queryForObject(
+        "SELECT EXPIRY_TIME FROM SPRING_SESSION WHERE SESSION_ID = ?", Long.class, first));
+    assertEquals(0, repository.flushLastAccessTimes());
+  }
+
+  @Test
+  void test_last_access_time_older_than_the_stored_one_is_not_written() {
+    // arrange
+    Instant now = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+    NearCachingSessionRepository repository = instance();
+    String id = newSession(repository, now, Duration.ofMinutes(30));
+    Session session = repository.findById(id);
+    session.setLastAccessedTime(now.minusSeconds(1));
+    repository.save(session);
+
+    // act
+    int written = repository.flushLastAccessTimes();
+
+    // assert
+    assertEquals(0, written);
+    assertEquals(now.toEpochMilli(), storedLastAccessTime(id));
+  }
+
+  @Test
+  void test_noted_last_access_time_is_written_before_reading_the_session() {
+    // arrange
+    Instant before = Instant.now().minus(10, ChronoUnit.MINUTES).truncatedTo(ChronoUnit.MILLIS);
+    Instant now = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+    NearCachingSessionRepository repository = instance(Duration.ZERO);
+    String id = newSession(repository, before, Duration.ofMinutes(30));
+    Session session = repository.findById(id);
+    session.setLastAccessedTime(now);
+    repository.save(session);
+
+    // act
+    Session read = repository.findById(id);
+
+    // assert
+    assertEquals(now, read.getLastAccessedTime());
+    assertEquals(now.toEpochMilli(), storedLastAccessTime(id));
+  }
+
+  @Test
+  void test_attribute_changes_are_written_through_keeping_other_instances_changes() {
+    // arrange
+    NearCachingSessionRepository first = instance();
+    NearCachingSessionRepository second = instance();
+    String id = newSession(first, Instant.now(), Duration.ofMinutes(30));
+    Session onFirst = first.findById(id);
+    Session onSecond = second.findById(id);
+
+    // act
+    onFirst.setAttribute("first", 1);
+    first.save(onFirst);
+    onSecond.setAttribute("second", 2);
+    onSecond.removeAttribute("user");
+    second.save(onSecond);
+
+    // assert
+    Session stored = instance().findById(id);
+    assertEquals(1, (Integer) stored.getAttribute("first"));
+    assertEquals(2, (Integer) stored.getAttribute("second"));
+    assertNull(stored.getAttribute("user"));
+    assertEquals(2, count("SPRING_SESSION_ATTRIBUTES"));
+    // written through, so seen at once by the instance that wrote it
+    assertNull(second.findById(id).getAttribute("user"));
+  }
+
+  @Test
+  void test_changeSessionId() {
+    // arrange
+    NearCachingSessionRepository repository = instance();
+    String id = newSession(repository, Instant.now(), Duration.ofMinutes(30));
+    Session session = repository.findById(id);
+
+    // act
+    String changed = session.changeSessionId();
+    repository.save(session);
+
+    // assert
+    assertNotEquals(id, changed);
+    assertEquals(changed, session.getId());
+    assertNull(repository.findById(id));
+    assertNull(instance().findById(id));
+    assertEquals("user@ucsb.edu", instance().findById(changed).getAttribute("user"));
+  }
+
+  @Test
+  void test_deleteById() {
+    // arrange
+    NearCachingSessionRepository repository = instance();
+    String id = newSession(repository, Instant.now(), Duration.ofMinutes(30));
+    Session session = repository.findById(id);
+    session.setLastAccessedTime(Instant.now());
+    repository.save(session);
+
+    // act
+    repository.deleteById(id);
+
+    // assert
+    assertNull(repository.findById(id));
+    assertEquals(0, count("SPRING_SESSION"));
+    assertEquals(0, repository.flushLastAccessTimes());
+  }
+
+  @Test
+  void test_deleteExpiredSessions_in_batches() {
+    // arrange
+    NearCachingSessionRepository repository = instance();
+    Instant longAgo = Instant.now().minus(1, ChronoUnit.DAYS);
+    for (int i = 0; i < 5; i++) {
+      newSession(repository, longAgo, Duration.ofMinutes(30));
+    }
+    String live = newSession(repository, Instant.now(), Duration.ofMinutes(30));
+
+    // act
+    int firstRun = repository.deleteExpiredSessions(2, 2);
+    int secondRun = repository.deleteExpiredSessions(2, 2);
+
+    // assert
+    assertEquals(4, firstRun);
+    assertEquals(1, secondRun);
+    assertEquals(1, count("SPRING_SESSION"));
+    assertEquals(1, count("SPRING_SESSION_ATTRIBUTES"));
+    assertNotNull(instance().findById(live));
+  }
+}
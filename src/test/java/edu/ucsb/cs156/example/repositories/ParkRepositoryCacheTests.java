@@ -0,0 +1,107 @@
+package edu.ucsb.cs156.example.repositories;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import edu.ucsb.cs156.example.config.HibernateCacheConfig;
+import edu.ucsb.cs156.example.entities.Park;
+
+// Checks the Hibernate second-level and query caches for parks (see
+// HibernateCacheConfig).  Each repository call runs and commits in its
+// own transaction, as it does from the controllers; the cache is only
+// updated when a transaction commits.
+
+@DataJpaTest
+@Import(HibernateCacheConfig.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ParkRepositoryCacheTests {
+
+  @Autowired
+  ParkRepository parkRepository;
+
+  @Autowired
+  EntityManagerFactory entityManagerFactory;
+
+  Statistics statistics;
+
+  Park park;
+
+  @BeforeEach
+  void setup() {
+    park = parkRepository.save(Park.builder().name("Yosemite").state("CA").acres(759620).build());
+    statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    statistics.clear();
+  }
+
+  @AfterEach
+  void cleanup() {
+    parkRepository.deleteAll();
+  }
+
+  private CacheRegionStatistics parks() {
+    return statistics.getDomainDataRegionStatistics("parks");
+  }
+
+  @Test
+  void test_findById_is_cached() {
+    parkRepository.findById(park.getId());
+    parkRepository.findById(park.getId());
+
+    assertEquals(2, parks().getHitCount());
+    assertEquals(0, parks().getMissCount());
+    assertEquals(0, statistics.getPrepareStatementCount());
+  }
+
+  @Test
+  void test_updateById_evicts() {
+    parkRepository.findById(park.getId());
+
+    parkRepository.updateById(park.getId(), null, "Yellowstone", "WY", 2219791);
+    Park updated = parkRepository.findById(park.getId()).get();
+
+    assertEquals("Yellowstone", updated.getName());
+    assertEquals(1, parks().getMissCount());
+  }
+
+  @Test
+  void test_removeById_evicts() {
+    parkRepository.findById(park.getId());
+
+    parkRepository.removeById(park.getId());
+
+    assertEquals(false, parkRepository.findById(park.getId()).isPresent());
+  }
+
+  @Test
+  void test_all_page_is_cached_until_a_park_is_saved() {
+    parkRepository.findByIdGreaterThanOrderByIdAsc(0, PageRequest.ofSize(10));
+    List<Park> cached = parkRepository.findByIdGreaterThanOrderByIdAsc(0, PageRequest.ofSize(10));
+
+    assertEquals(List.of(park), cached);
+    assertEquals(1, statistics.getQueryCacheHitCount());
+    assertEquals(1, statistics.getQueryCacheMissCount());
+
+    Park second = parkRepository.save(Park.builder().name("Zion").state("UT").acres(147242).build());
+    List<Park> reloaded = parkRepository.findByIdGreaterThanOrderByIdAsc(0, PageRequest.ofSize(10));
+
+    assertEquals(List.of(park, second), reloaded);
+    assertEquals(1, statistics.getQueryCacheHitCount());
+    assertEquals(2, statistics.getQueryCacheMissCount());
+  }
+}
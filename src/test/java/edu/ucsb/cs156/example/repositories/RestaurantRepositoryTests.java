@@ -0,0 +1,115 @@
+package edu.ucsb.cs156.example.repositories;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import edu.ucsb.cs156.example.entities.Restaurant;
+
+// Checks the single statement update/delete queries and the /query
+// filters against the schema built by the Flyway migrations.
+
+@DataJpaTest(properties = "spring.jpa.hibernate.ddl-auto=validate")
+class RestaurantRepositoryTests {
+
+  @Autowired
+  TestEntityManager entityManager;
+
+  @Autowired
+  RestaurantRepository restaurantRepository;
+
+  private Restaurant saved() {
+    Restaurant restaurant = Restaurant.builder().name("Chipotle").cuisine("Mexican").roachCounter(69).build();
+    entityManager.persistAndFlush(restaurant);
+    entityManager.clear();
+    return restaurant;
+  }
+
+  @Test
+  void test_updateById_without_version() {
+    Restaurant restaurant = saved();
+
+    int rows = restaurantRepository.updateById(restaurant.getId(), null, "Taco Bell", "American", 72);
+
+    assertEquals(1, rows);
+    Restaurant updated = entityManager.find(Restaurant.class, restaurant.getId());
+    assertEquals("Taco Bell", updated.getName());
+    assertEquals("American", updated.getCuisine());
+    assertEquals(72, updated.getRoachCounter());
+    assertEquals(restaurant.getVersion() + 1, updated.getVersion());
+  }
+
+  @Test
+  void test_updateById_with_current_version() {
+    Restaurant restaurant = saved();
+
+    assertEquals(1, restaurantRepository.updateById(restaurant.getId(), restaurant.getVersion(), "Taco Bell", "American", 72));
+  }
+
+  @Test
+  void test_updateById_with_stale_version() {
+    Restaurant restaurant = saved();
+    restaurantRepository.updateById(restaurant.getId(), null, "Taco Bell", "American", 72);
+
+    int rows = restaurantRepository.updateById(restaurant.getId(), restaurant.getVersion(), "Panda Express", "Chinese", 3);
+
+    assertEquals(0, rows);
+    assertEquals("Taco Bell", entityManager.find(Restaurant.class, restaurant.getId()).getName());
+  }
+
+  @Test
+  void test_updateById_unknown_id() {
+    assertEquals(0, restaurantRepository.updateById(12345L, null, "Taco Bell", "American", 72));
+  }
+
+  @Test
+  void test_removeById() {
+    Restaurant restaurant = saved();
+
+    assertEquals(1, restaurantRepository.removeById(restaurant.getId()));
+    assertEquals(0, restaurantRepository.removeById(restaurant.getId()));
+    assertFalse(restaurantRepository.existsById(restaurant.getId()));
+  }
+
+  private Restaurant saved(String name, String cuisine, int roachCounter) {
+    return entityManager.persistFlushFind(Restaurant.builder().name(name).cuisine(cuisine).roachCounter(roachCounter).build());
+  }
+
+  @Test
+  void test_findAll_with_filters() {
+    Restaurant chipotle = saved("Chipotle", "Mexican", 3);
+    Restaurant tacoBell = saved("Taco Bell", "Mexican", 9);
+    saved("Panda Express", "Chinese", 3);
+    Restaurant freebirds = saved("Freebirds", "Mexican", 5);
+
+    Specification<Restaurant> filters = Specification.<Restaurant>where(Filters.equal("cuisine", "Mexican"))
+        .and(Filters.between("roachCounter", null, 5));
+    Page<Restaurant> page = restaurantRepository.findAll(filters,
+        PageRequest.of(0, 10, Sort.by(Sort.Direction.DESC, "roachCounter").and(Sort.by("id"))));
+
+    assertEquals(List.of(freebirds, chipotle), page.getContent());
+    assertEquals(2, page.getTotalElements());
+    assertEquals(List.of(tacoBell), restaurantRepository.findAll(Filters.between("roachCounter", 6, 10)));
+  }
+
+  @Test
+  void test_findAll_without_filters() {
+    saved("Chipotle", "Mexican", 3);
+    saved("Panda Express", "Chinese", 3);
+
+    Specification<Restaurant> filters = Specification.<Restaurant>where(Filters.equal("cuisine", null))
+        .and(Filters.between("roachCounter", null, null));
+
+    assertEquals(2, restaurantRepository.findAll(filters).size());
+  }
+}
@@ -0,0 +1,61 @@
+package edu.ucsb.cs156.example.repositories;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.transaction.IllegalTransactionStateException;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import edu.ucsb.cs156.example.entities.TableVersion;
+
+// Checks the table_versions rows created by the Flyway migration and the
+// bump query the write endpoints use.
+
+@DataJpaTest(properties = "spring.jpa.hibernate.ddl-auto=validate")
+class TableVersionRepositoryTests {
+
+  @Autowired
+  TestEntityManager entityManager;
+
+  @Autowired
+  TableVersionRepository tableVersionRepository;
+
+  @Test
+  void test_bump() {
+    TableVersion before = tableVersionRepository.findById("restaurants").get();
+    entityManager.clear();
+
+    int rows = tableVersionRepository.bump("restaurants");
+
+    assertEquals(1, rows);
+    TableVersion after = tableVersionRepository.findById("restaurants").get();
+    assertEquals(before.getVersion() + 1, after.getVersion());
+    assertTrue(!after.getLastModified().isBefore(before.getLastModified()));
+  }
+
+  @Test
+  void test_every_table_written_through_the_api_has_a_row() {
+    for (String table : List.of("restaurants", "ucsbdiningcommons", "parks", "schools")) {
+      assertTrue(tableVersionRepository.existsById(table), table);
+    }
+  }
+
+  @Test
+  void test_bump_unknown_table() {
+    assertEquals(0, tableVersionRepository.bump("no_such_table"));
+  }
+
+  @Test
+  @Transactional(propagation = Propagation.NOT_SUPPORTED)
+  void test_bump_outside_a_transaction() {
+    assertThrows(IllegalTransactionStateException.class, () -> tableVersionRepository.bump("restaurants"));
+  }
+}
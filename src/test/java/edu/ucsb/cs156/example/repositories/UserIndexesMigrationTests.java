@@ -0,0 +1,79 @@
+package edu.ucsb.cs156.example.repositories;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.List;
+import java.util.Map;
+
+import org.flywaydb.core.Flyway;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+// Runs V5__Add_unique_indexes_to_users against users saved before it, as
+// in a database that was migrated up to V4 before emails were unique.
+
+class UserIndexesMigrationTests {
+
+  JdbcDataSource dataSource = new JdbcDataSource();
+
+  JdbcTemplate jdbcTemplate;
+
+  private Flyway flyway(String target) {
+    return Flyway.configure()
+        .dataSource(dataSource)
+        .locations("classpath:db/migration", "classpath:db/vendor/h2")
+        .target(target)
+        .load();
+  }
+
+  private void user(long id, String email, String googleSub, boolean admin) {
+    jdbcTemplate.update("INSERT INTO users (id, email, google_sub, email_verified, admin) VALUES (?, ?, ?, TRUE, ?)",
+        id, email, googleSub, admin);
+  }
+
+  @BeforeEach
+  void setup() {
+    dataSource.setURL("jdbc:h2:mem:" + getClass().getSimpleName() + System.nanoTime() + ";DB_CLOSE_DELAY=-1");
+    jdbcTemplate = new JdbcTemplate(dataSource);
+    flyway("4").migrate();
+  }
+
+  @Test
+  void test_duplicate_users_are_merged_into_the_first() {
+    // arrange
+    user(1, "user@example.org", "sub-1", false);
+    user(2, "user@example.org", "sub-1", true);
+    user(3, "other@example.org", "sub-3", false);
+    user(4, "moved@example.org", "sub-3", false);
+    user(5, null, null, false);
+    user(6, null, null, false);
+
+    // act
+    flyway("5").migrate();
+
+    // assert
+    List<Map<String, Object>> users = jdbcTemplate.queryForList("SELECT id, email, admin FROM users ORDER BY id");
+    assertEquals(List.of(
+        Map.of("ID", 1L, "EMAIL", "user@example.org", "ADMIN", true),
+        Map.of("ID", 3L, "EMAIL", "other@example.org", "ADMIN", false)),
+        users.subList(0, 2));
+    assertEquals(4, users.size());
+  }
+
+  @Test
+  void test_indexes_are_unique_once_migrated() {
+    // arrange
+    user(1, "user@example.org", "sub-1", false);
+
+    // act
+    flyway("5").migrate();
+
+    // assert
+    assertThrows(DuplicateKeyException.class, () -> user(2, "user@example.org", "sub-2", false));
+    assertThrows(DuplicateKeyException.class, () -> user(3, "other@example.org", "sub-1", false));
+  }
+}
@@ -0,0 +1,144 @@
+package edu.ucsb.cs156.example.repositories;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.aop.framework.Advised;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import edu.ucsb.cs156.example.entities.User;
+import edu.ucsb.cs156.example.models.UserAdminStatus;
+
+// Checks the cache annotations on UserRepository, using a mock in place
+// of the Spring Data implementation so we can count the lookups.
+
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration
+class UserRepositoryCacheTests {
+
+  @Configuration
+  @EnableCaching
+  static class Config {
+    @Bean
+    public CacheManager cacheManager() {
+      return new ConcurrentMapCacheManager("users", "admins");
+    }
+
+    @Bean
+    public UserRepository userRepository() {
+      return mock(UserRepository.class);
+    }
+  }
+
+  @Autowired
+  UserRepository userRepository;
+
+  @Autowired
+  CacheManager cacheManager;
+
+  UserRepository target;
+
+  User user = User.builder().id(1L).email("user@example.org").admin(false).build();
+
+  UserAdminStatus adminStatus = mock(UserAdminStatus.class);
+
+  @BeforeEach
+  void setup() throws Exception {
+    cacheManager.getCache("users").clear();
+    cacheManager.getCache("admins").clear();
+    // the bean is a caching proxy around the mock
+    target = (UserRepository) ((Advised) userRepository).getTargetSource().getTarget();
+    reset(target);
+    when(target.findByEmail("user@example.org")).thenReturn(Optional.of(user));
+    when(target.findAdminStatusByEmail("user@example.org")).thenReturn(Optional.of(adminStatus));
+    when(target.save(user)).thenReturn(user);
+  }
+
+  @Test
+  void test_findByEmail_is_cached() {
+    assertEquals(Optional.of(user), userRepository.findByEmail("user@example.org"));
+    assertEquals(Optional.of(user), userRepository.findByEmail("user@example.org"));
+    verify(target, times(1)).findByEmail("user@example.org");
+  }
+
+  @Test
+  void test_save_evicts_user() {
+    userRepository.findByEmail("user@example.org");
+    userRepository.save(user);
+    userRepository.findByEmail("user@example.org");
+    verify(target, times(2)).findByEmail("user@example.org");
+  }
+
+  @Test
+  void test_unknown_email_is_not_cached() {
+    when(target.findByEmail("new@example.org")).thenReturn(Optional.empty());
+    userRepository.findByEmail("new@example.org");
+    userRepository.findByEmail("new@example.org");
+    verify(target, times(2)).findByEmail("new@example.org");
+  }
+
+  @Test
+  void test_findAdminStatusByEmail_is_cached() {
+    assertEquals(Optional.of(adminStatus), userRepository.findAdminStatusByEmail("user@example.org"));
+    assertEquals(Optional.of(adminStatus), userRepository.findAdminStatusByEmail("user@example.org"));
+    verify(target, times(1)).findAdminStatusByEmail("user@example.org");
+  }
+
+  @Test
+  void test_unknown_email_admin_status_is_cached() {
+    when(target.findAdminStatusByEmail("new@example.org")).thenReturn(Optional.empty());
+    assertEquals(Optional.empty(), userRepository.findAdminStatusByEmail("new@example.org"));
+    assertEquals(Optional.empty(), userRepository.findAdminStatusByEmail("new@example.org"));
+    verify(target, times(1)).findAdminStatusByEmail("new@example.org");
+  }
+
+  @Test
+  void test_save_evicts_admin_status() {
+    userRepository.findAdminStatusByEmail("user@example.org");
+    userRepository.save(user);
+    userRepository.findAdminStatusByEmail("user@example.org");
+    verify(target, times(2)).findAdminStatusByEmail("user@example.org");
+  }
+
+  @Test
+  void test_save_evicts_the_entries_of_the_email_it_changes() {
+    when(target.findByEmail("old@example.org")).thenReturn(Optional.of(user));
+    when(target.findAdminStatusByEmail("old@example.org")).thenReturn(Optional.of(adminStatus));
+    when(target.findEmailById(1L)).thenReturn(Optional.of("old@example.org"));
+    userRepository.findByEmail("old@example.org");
+    userRepository.findAdminStatusByEmail("old@example.org");
+
+    userRepository.save(user);
+    userRepository.findByEmail("old@example.org");
+    userRepository.findAdminStatusByEmail("old@example.org");
+
+    verify(target, times(2)).findByEmail("old@example.org");
+    verify(target, times(2)).findAdminStatusByEmail("old@example.org");
+  }
+
+  @Test
+  void test_save_of_a_new_user_does_not_look_up_a_stored_email() {
+    User newUser = User.builder().email("new@example.org").build();
+    when(target.save(newUser)).thenReturn(newUser);
+
+    userRepository.save(newUser);
+
+    verify(target, times(0)).findEmailById(0L);
+  }
+}
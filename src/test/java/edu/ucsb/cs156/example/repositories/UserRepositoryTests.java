@@ -0,0 +1,75 @@
+package edu.ucsb.cs156.example.repositories;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Optional;
+
+import javax.persistence.PersistenceException;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import edu.ucsb.cs156.example.entities.User;
+import edu.ucsb.cs156.example.models.UserAdminStatus;
+
+// Runs against the schema built by the Flyway migrations; ddl-auto=validate
+// makes the test fail if the migrations and the entities disagree.
+
+@DataJpaTest(properties = "spring.jpa.hibernate.ddl-auto=validate")
+class UserRepositoryTests {
+
+  @Autowired
+  TestEntityManager entityManager;
+
+  @Autowired
+  UserRepository userRepository;
+
+  private User user(String email, String googleSub, boolean admin) {
+    return User.builder().email(email).googleSub(googleSub).admin(admin).build();
+  }
+
+  @Test
+  void test_findAdminStatusByEmail() {
+    User saved = entityManager.persistFlushFind(user("admin@example.org", "sub-1", true));
+
+    Optional<UserAdminStatus> status = userRepository.findAdminStatusByEmail("admin@example.org");
+
+    assertTrue(status.isPresent());
+    assertEquals(saved.getId(), status.get().getId());
+    assertTrue(status.get().getAdmin());
+  }
+
+  @Test
+  void test_findAdminStatusByEmail_unknown_email() {
+    assertFalse(userRepository.findAdminStatusByEmail("nobody@example.org").isPresent());
+  }
+
+  @Test
+  void test_findEmailById_reads_the_stored_email() {
+    User saved = entityManager.persistFlushFind(user("old@example.org", "sub-1", false));
+    // changed, but not yet saved
+    saved.setEmail("new@example.org");
+
+    assertEquals(Optional.of("old@example.org"), userRepository.findEmailById(saved.getId()));
+    assertEquals(Optional.empty(), userRepository.findEmailById(saved.getId() + 1));
+  }
+
+  @Test
+  void test_email_is_unique() {
+    entityManager.persistAndFlush(user("user@example.org", "sub-1", false));
+    assertThrows(PersistenceException.class,
+        () -> entityManager.persistAndFlush(user("user@example.org", "sub-2", false)));
+  }
+
+  @Test
+  void test_google_sub_is_unique() {
+    entityManager.persistAndFlush(user("one@example.org", "sub-1", false));
+    assertThrows(PersistenceException.class,
+        () -> entityManager.persistAndFlush(user("two@example.org", "sub-1", false)));
+  }
+}
@@ -0,0 +1,137 @@
+package edu.ucsb.cs156.example.repositories.reactive;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase.Replace;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import edu.ucsb.cs156.example.config.R2dbcConfig;
+import edu.ucsb.cs156.example.entities.Restaurant;
+import edu.ucsb.cs156.example.entities.UCSBDate;
+import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
+import edu.ucsb.cs156.example.repositories.RestaurantRepository;
+import edu.ucsb.cs156.example.repositories.UCSBDateRepository;
+import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+// Rows written through the JPA repositories and committed, read back
+// through R2DBC from the same in-memory H2 database, with the schema
+// built by the Flyway migrations.
+
+@DataJpaTest(properties = "spring.datasource.url=jdbc:h2:mem:reads;DB_CLOSE_DELAY=-1")
+@AutoConfigureTestDatabase(replace = Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({ R2dbcConfig.class, RestaurantReadRepository.class, UCSBDateReadRepository.class,
+    UCSBDiningCommonsReadRepository.class })
+class ReadRepositoryTests {
+
+  @TestConfiguration
+  static class Metrics {
+    @Bean
+    MeterRegistry meterRegistry() {
+      return new SimpleMeterRegistry();
+    }
+  }
+
+  @Autowired
+  RestaurantRepository restaurantRepository;
+
+  @Autowired
+  RestaurantReadRepository restaurantReadRepository;
+
+  @Autowired
+  UCSBDateRepository ucsbDateRepository;
+
+  @Autowired
+  UCSBDateReadRepository ucsbDateReadRepository;
+
+  @Autowired
+  UCSBDiningCommonsRepository ucsbDiningCommonsRepository;
+
+  @Autowired
+  UCSBDiningCommonsReadRepository ucsbDiningCommonsReadRepository;
+
+  @BeforeEach
+  void cleanup() {
+    restaurantRepository.deleteAll();
+    ucsbDateRepository.deleteAll();
+    ucsbDiningCommonsRepository.deleteAll();
+  }
+
+  private List<Restaurant> restaurants(int count) {
+    List<Restaurant> restaurants = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      restaurants.add(Restaurant.builder().name("Restaurant " + i).cuisine("Cuisine " + i % 3).roachCounter(i).build());
+    }
+    List<Restaurant> saved = new ArrayList<>();
+    restaurantRepository.saveAll(restaurants).forEach(saved::add);
+    return saved;
+  }
+
+  @Test
+  void test_restaurants_are_streamed_in_id_order_after_the_cursor() {
+    List<Restaurant> saved = restaurants(5);
+
+    List<Restaurant> streamed = restaurantReadRepository.findByIdGreaterThanOrderByIdAsc(saved.get(1).getId())
+        .collectList().block();
+
+    assertEquals(saved.subList(2, 5), streamed);
+  }
+
+  @Test
+  void test_more_rows_than_one_fetch_are_streamed() {
+    List<Restaurant> saved = restaurants(R2dbcConfig.FETCH_SIZE * 2 + 1);
+
+    assertEquals(saved.size(), restaurantReadRepository.findByIdGreaterThanOrderByIdAsc(0L).count().block());
+    assertEquals(saved.size(), restaurantReadRepository.count().block());
+  }
+
+  @Test
+  void test_reading_stops_when_the_subscriber_has_enough() {
+    List<Restaurant> saved = restaurants(R2dbcConfig.FETCH_SIZE * 2 + 1);
+
+    List<Restaurant> streamed = restaurantReadRepository.findByIdGreaterThanOrderByIdAsc(0L)
+        .limitRate(10).take(3).collectList().block();
+
+    assertEquals(saved.subList(0, 3), streamed);
+  }
+
+  @Test
+  void test_columns_are_named_as_jpa_names_them() {
+    UCSBDate date = ucsbDateRepository.save(UCSBDate.builder().quarterYYYYQ("20222").name("firstDayOfClasses")
+        .localDateTime(LocalDateTime.parse("2022-04-03T00:00:00")).build());
+
+    assertEquals(date, ucsbDateReadRepository.findById(date.getId()).block());
+  }
+
+  @Test
+  void test_entities_with_string_ids() {
+    UCSBDiningCommons carrillo = ucsbDiningCommonsRepository.save(UCSBDiningCommons.builder().code("carrillo")
+        .name("Carrillo").hasDiningCam(true).hasSackMeal(false).hasTakeOutMeal(true).latitude(34.409953)
+        .longitude(-119.85277).build());
+    UCSBDiningCommons ortega = ucsbDiningCommonsRepository.save(UCSBDiningCommons.builder().code("ortega")
+        .name("Ortega").build());
+
+    assertEquals(List.of(carrillo, ortega), ucsbDiningCommonsReadRepository.findByIdGreaterThanOrderByIdAsc("")
+        .collectList().block());
+    assertEquals(List.of(ortega), ucsbDiningCommonsReadRepository.findByIdGreaterThanOrderByIdAsc("carrillo")
+        .collectList().block());
+    assertEquals(carrillo, ucsbDiningCommonsReadRepository.findById("carrillo").block());
+    assertNull(ucsbDiningCommonsReadRepository.findById("portola").block());
+  }
+}
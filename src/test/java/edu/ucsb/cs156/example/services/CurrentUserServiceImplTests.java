@@ -0,0 +1,100 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+import org.springframework.security.oauth2.core.user.DefaultOAuth2User;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import edu.ucsb.cs156.example.entities.User;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(classes = CurrentUserServiceImpl.class)
+@TestPropertySource(properties = "app.admin.emails=admin@ucsb.edu")
+class CurrentUserServiceImplTests {
+
+  @MockBean
+  UserRepository userRepository;
+
+  @MockBean
+  GrantedAuthoritiesService grantedAuthoritiesService;
+
+  @Autowired
+  CurrentUserServiceImpl currentUserService;
+
+  @AfterEach
+  void cleanup() {
+    SecurityContextHolder.clearContext();
+  }
+
+  private void login(String email) {
+    Set<GrantedAuthority> authorities = Set.of(new SimpleGrantedAuthority("ROLE_USER"));
+    DefaultOAuth2User principal = new DefaultOAuth2User(authorities, Map.of("sub", "sub-" + email, "email", email), "sub");
+    SecurityContextHolder.getContext().setAuthentication(
+        new OAuth2AuthenticationToken(principal, authorities, "google"));
+  }
+
+  // as UserRepository.findByEmail returns it from the users cache
+  private User cached(String email, boolean admin) {
+    User user = User.builder().id(1L).email(email).admin(admin).build();
+    when(userRepository.findByEmail(email)).thenReturn(Optional.of(user));
+    return user;
+  }
+
+  @Test
+  void test_getUser_returns_a_copy_of_the_cached_user() {
+    // arrange
+    login("user@ucsb.edu");
+    User cached = cached("user@ucsb.edu", false);
+
+    // act
+    User user = currentUserService.getUser();
+
+    // assert
+    assertEquals(cached, user);
+    assertNotSame(cached, user);
+    verify(userRepository, never()).save(any());
+  }
+
+  @Test
+  void test_getUser_saves_an_admin_without_changing_the_cached_user() {
+    // arrange
+    login("admin@ucsb.edu");
+    User cached = cached("admin@ucsb.edu", false);
+    ArgumentCaptor<User> saved = ArgumentCaptor.forClass(User.class);
+
+    // act
+    User user = currentUserService.getUser();
+
+    // assert
+    assertTrue(user.getAdmin());
+    assertFalse(cached.getAdmin());
+    verify(userRepository).save(saved.capture());
+    assertNotSame(cached, saved.getValue());
+    assertEquals(1L, saved.getValue().getId());
+    assertTrue(saved.getValue().getAdmin());
+  }
+}
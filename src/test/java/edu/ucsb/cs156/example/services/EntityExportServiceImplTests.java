@@ -0,0 +1,199 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import javax.persistence.EntityManager;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.json.AutoConfigureJson;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import edu.ucsb.cs156.example.entities.Restaurant;
+import edu.ucsb.cs156.example.repositories.RestaurantRepository;
+
+// Writes exports of the restaurants saved in H2.  The tests are not run
+// in a transaction, so that the export runs in its own, as it does once
+// the controller has returned.
+
+@DataJpaTest
+@AutoConfigureJson
+@Import(EntityExportServiceImpl.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class EntityExportServiceImplTests {
+
+  @Autowired
+  EntityExportServiceImpl entityExportService;
+
+  @Autowired
+  RestaurantRepository restaurantRepository;
+
+  @Autowired
+  EntityManager entityManager;
+
+  @Autowired
+  ObjectMapper mapper;
+
+  List<Restaurant> saved = new ArrayList<>();
+
+  @BeforeEach
+  void setup() {
+    saved.add(restaurantRepository.save(Restaurant.builder().name("Chipotle").cuisine("Mexican").roachCounter(69).build()));
+    saved.add(restaurantRepository.save(Restaurant.builder().name("Taco Bell").cuisine("Mexican").roachCounter(72).build()));
+    saved.add(restaurantRepository.save(Restaurant.builder().name("Panda Express").cuisine("Chinese").roachCounter(3).build()));
+  }
+
+  @AfterEach
+  void cleanup() {
+    restaurantRepository.deleteAll();
+  }
+
+  private String write(ResponseEntity<StreamingResponseBody> response) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    response.getBody().writeTo(out);
+    return out.toString(StandardCharsets.UTF_8);
+  }
+
+  @Test
+  void test_ndjson_writes_one_line_per_row_in_order() throws Exception {
+    // act
+    ResponseEntity<StreamingResponseBody> response = entityExportService.ndjson(restaurantRepository::streamAllByOrderByIdAsc);
+    String body = write(response);
+
+    // assert
+    assertEquals(MediaType.APPLICATION_NDJSON, response.getHeaders().getContentType());
+    StringBuilder expected = new StringBuilder();
+    for (Restaurant restaurant : saved) {
+      expected.append(mapper.writeValueAsString(restaurant)).append('\n');
+    }
+    assertEquals(expected.toString(), body);
+  }
+
+  @Test
+  void test_ndjson_reads_the_rows_only_once_the_body_is_written() throws Exception {
+    // arrange
+    AtomicInteger calls = new AtomicInteger();
+
+    // act
+    ResponseEntity<StreamingResponseBody> response = entityExportService.ndjson(() -> {
+      calls.incrementAndGet();
+      return restaurantRepository.streamAllByOrderByIdAsc();
+    });
+    int callsBeforeWriting = calls.get();
+    write(response);
+
+    // assert
+    assertEquals(0, callsBeforeWriting);
+    assertEquals(1, calls.get());
+  }
+
+  @Test
+  void test_ndjson_reads_in_a_read_only_transaction() throws Exception {
+    // arrange
+    AtomicBoolean active = new AtomicBoolean();
+    AtomicBoolean readOnly = new AtomicBoolean();
+
+    // act
+    write(entityExportService.ndjson(() -> {
+      active.set(TransactionSynchronizationManager.isActualTransactionActive());
+      readOnly.set(TransactionSynchronizationManager.isCurrentTransactionReadOnly());
+      return restaurantRepository.streamAllByOrderByIdAsc();
+    }));
+
+    // assert
+    assertTrue(active.get());
+    assertTrue(readOnly.get());
+    assertFalse(TransactionSynchronizationManager.isActualTransactionActive());
+  }
+
+  @Test
+  void test_ndjson_detaches_each_row_once_written() throws Exception {
+    // arrange
+    List<Restaurant> read = new ArrayList<>();
+    AtomicLong managedAtClose = new AtomicLong(-1);
+
+    // act
+    write(entityExportService.ndjson(() -> restaurantRepository.streamAllByOrderByIdAsc()
+        .peek(read::add)
+        // still in the transaction, with its persistence context
+        .onClose(() -> managedAtClose.set(read.stream().filter(entityManager::contains).count()))));
+
+    // assert
+    assertEquals(3, read.size());
+    assertEquals(0, managedAtClose.get());
+  }
+
+  @Test
+  void test_ndjson_flushes_every_FLUSH_EVERY_rows() throws Exception {
+    // arrange
+    int rows = EntityExportService.FLUSH_EVERY + 1;
+    List<Integer> linesAtFlush = new ArrayList<>();
+    ByteArrayOutputStream written = new ByteArrayOutputStream();
+    OutputStream out = new OutputStream() {
+      @Override
+      public void write(int b) {
+        written.write(b);
+      }
+
+      @Override
+      public void flush() {
+        linesAtFlush.add((int) written.toString(StandardCharsets.UTF_8).lines().count());
+      }
+    };
+
+    // act
+    entityExportService.ndjson(() -> Stream.generate(() -> saved.get(0)).limit(rows)).getBody().writeTo(out);
+
+    // assert
+    assertEquals(EntityExportService.FLUSH_EVERY, linesAtFlush.get(0));
+    assertEquals(rows, written.toString(StandardCharsets.UTF_8).lines().count());
+  }
+
+  @Test
+  void test_ndjson_closes_the_stream_when_writing_fails() {
+    // arrange
+    AtomicBoolean closed = new AtomicBoolean();
+    OutputStream failing = new OutputStream() {
+      @Override
+      public void write(int b) throws IOException {
+        throw new IOException("connection reset");
+      }
+    };
+    StreamingResponseBody body = entityExportService.ndjson(() -> restaurantRepository.streamAllByOrderByIdAsc()
+        .onClose(() -> closed.set(true))).getBody();
+
+    // act
+    UncheckedIOException thrown = assertThrows(UncheckedIOException.class, () -> body.writeTo(failing));
+
+    // assert
+    assertEquals("connection reset", thrown.getCause().getMessage());
+    assertTrue(closed.get());
+    assertFalse(TransactionSynchronizationManager.isActualTransactionActive());
+  }
+}
@@ -1,20 +1,46 @@
 package edu.ucsb.cs156.example.services;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+import org.springframework.security.oauth2.core.user.DefaultOAuth2User;
+import org.springframework.security.oauth2.core.user.OAuth2UserAuthority;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
 
+import edu.ucsb.cs156.example.entities.User;
+import edu.ucsb.cs156.example.models.RoleSet;
+import edu.ucsb.cs156.example.models.RoleSet.Role;
+import edu.ucsb.cs156.example.models.UserAdminStatus;
 import edu.ucsb.cs156.example.repositories.UserRepository;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
 
@@ -22,6 +48,7 @@ import edu.ucsb.cs156.example.testconfig.TestConfig;
 @EnableConfigurationProperties(value = SystemInfoServiceImpl.class)
 @Import(TestConfig.class)
 @ContextConfiguration
+@TestPropertySource(properties = "app.admin.emails=admin@ucsb.edu")
 class GrantedAuthoritiesServiceTests {
 
   @MockBean
@@ -30,6 +57,42 @@ class GrantedAuthoritiesServiceTests {
   @Autowired
   GrantedAuthoritiesService grantedAuthoritiesService;
 
+  MockHttpServletRequest request = new MockHttpServletRequest();
+
+  @AfterEach
+  void cleanup() {
+    RequestContextHolder.resetRequestAttributes();
+    SecurityContextHolder.clearContext();
+  }
+
+  private static UserAdminStatus adminStatus(boolean admin) {
+    return new UserAdminStatus() {
+      public Long getId() {
+        return 1L;
+      }
+
+      public Boolean getAdmin() {
+        return admin;
+      }
+    };
+  }
+
+  // logs in as email, with the authorities that mapAuthorities gave at login
+  private void login(String email, String... roles) {
+    Set<GrantedAuthority> authorities = new HashSet<>();
+    for (String role : roles) {
+      authorities.add(new SimpleGrantedAuthority(role));
+    }
+    DefaultOAuth2User principal = new DefaultOAuth2User(authorities, Map.of("sub", "sub-" + email, "email", email), "sub");
+    SecurityContextHolder.getContext().setAuthentication(
+        new OAuth2AuthenticationToken(principal, authorities, "google"));
+  }
+
+  private void inSession() {
+    request.getSession(true);
+    RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+  }
+
   @WithMockUser(roles = { "USER" })
   @Test
   void test_getGrantedAuthorities() {
@@ -41,4 +104,195 @@ class GrantedAuthoritiesServiceTests {
     assertTrue(grantedAuthorities.size() > 0 );
   }
 
+  @Test
+  void test_mapAuthorities_adds_admin_and_member_roles() {
+    // arrange
+    OAuth2UserAuthority authority = new OAuth2UserAuthority(Map.of("sub", "sub-1", "email", "admin@ucsb.edu"));
+
+    // act
+    Set<GrantedAuthority> mapped = grantedAuthoritiesService.mapAuthorities(List.of(authority));
+
+    // assert
+    assertEquals(Set.of(authority, new SimpleGrantedAuthority("ROLE_ADMIN"), new SimpleGrantedAuthority("ROLE_MEMBER")),
+        mapped);
+  }
+
+  @Test
+  void test_mapAuthorities_reads_the_admin_flag_of_other_users() {
+    // arrange
+    OAuth2UserAuthority authority = new OAuth2UserAuthority(Map.of("sub", "sub-1", "email", "user@example.org"));
+    when(userRepository.findAdminStatusByEmail("user@example.org")).thenReturn(Optional.of(adminStatus(true)));
+
+    // act
+    Set<GrantedAuthority> mapped = grantedAuthoritiesService.mapAuthorities(List.of(authority));
+
+    // assert
+    assertEquals(Set.of(authority, new SimpleGrantedAuthority("ROLE_ADMIN")), mapped);
+  }
+
+  @Test
+  void test_roles_are_worked_out_once_per_session() {
+    // arrange
+    inSession();
+    login("user@ucsb.edu", "ROLE_USER", "ROLE_MEMBER", "SCOPE_email");
+
+    // act
+    RoleSet roles = grantedAuthoritiesService.getRoles();
+    RoleSet again = grantedAuthoritiesService.getRoles();
+    Collection<? extends GrantedAuthority> authorities = grantedAuthoritiesService.getGrantedAuthorities();
+
+    // assert
+    assertTrue(roles.has(Role.USER));
+    assertTrue(roles.has(Role.MEMBER));
+    assertFalse(roles.has(Role.ADMIN));
+    assertEquals(roles, again);
+    assertEquals(Set.of(new SimpleGrantedAuthority("ROLE_USER"), new SimpleGrantedAuthority("ROLE_MEMBER"),
+        new SimpleGrantedAuthority("SCOPE_email")), authorities);
+    assertNotNull(request.getSession().getAttribute(GrantedAuthoritiesService.SESSION_ATTRIBUTE));
+    verify(userRepository, times(1)).findAdminStatusByEmail("user@ucsb.edu");
+  }
+
+  @Test
+  void test_roles_are_worked_out_again_when_a_user_changes() {
+    // arrange
+    inSession();
+    login("user@ucsb.edu", "ROLE_USER", "ROLE_MEMBER");
+    assertFalse(grantedAuthoritiesService.getRoles().has(Role.ADMIN));
+    when(userRepository.findAdminStatusByEmail("user@ucsb.edu")).thenReturn(Optional.of(adminStatus(true)));
+
+    // act
+    new GrantedAuthoritiesService.UserListener().userChanged(User.builder().email("user@ucsb.edu").admin(true).build());
+
+    // assert
+    assertTrue(grantedAuthoritiesService.getRoles().has(Role.ADMIN));
+    assertTrue(grantedAuthoritiesService.getGrantedAuthorities().contains(new SimpleGrantedAuthority("ROLE_ADMIN")));
+  }
+
+  @Test
+  void test_roles_are_worked_out_again_for_another_login_in_the_session() {
+    // arrange
+    inSession();
+    login("admin@ucsb.edu", "ROLE_USER", "ROLE_MEMBER", "ROLE_ADMIN");
+    assertTrue(grantedAuthoritiesService.getRoles().has(Role.ADMIN));
+
+    // act
+    login("user@example.org", "ROLE_USER");
+
+    // assert
+    assertEquals(RoleSet.NONE.with(Role.USER), grantedAuthoritiesService.getRoles());
+  }
+
+  @Test
+  void test_session_counted_further_by_another_instance_is_only_written_when_the_roles_change() {
+    // arrange
+    inSession();
+    login("user@ucsb.edu", "ROLE_USER", "ROLE_MEMBER");
+    grantedAuthoritiesService.getRoles();
+    GrantedAuthoritiesService.SessionAuthorities ours = (GrantedAuthoritiesService.SessionAuthorities) request
+        .getSession().getAttribute(GrantedAuthoritiesService.SESSION_ATTRIBUTE);
+    // as written by an instance that has counted more users saved
+    GrantedAuthoritiesService.SessionAuthorities theirs = new GrantedAuthoritiesService.SessionAuthorities(
+        ours.name(), ours.userChanges() + 100, ours.authorities(), ours.roles(), ours.workedOutAt());
+    request.getSession().setAttribute(GrantedAuthoritiesService.SESSION_ATTRIBUTE, theirs);
+
+    // act
+    RoleSet unchanged = grantedAuthoritiesService.getRoles();
+    Object keptUnchanged = request.getSession().getAttribute(GrantedAuthoritiesService.SESSION_ATTRIBUTE);
+    when(userRepository.findAdminStatusByEmail("user@ucsb.edu")).thenReturn(Optional.of(adminStatus(true)));
+    RoleSet changed = grantedAuthoritiesService.getRoles();
+    Object keptChanged = request.getSession().getAttribute(GrantedAuthoritiesService.SESSION_ATTRIBUTE);
+
+    // assert
+    assertEquals(ours.roles(), unchanged);
+    assertSame(theirs, keptUnchanged);
+    assertTrue(changed.has(Role.ADMIN));
+    assertEquals(changed, ((GrantedAuthoritiesService.SessionAuthorities) keptChanged).roles());
+  }
+
+  @Test
+  void test_roles_are_worked_out_again_once_they_are_old() {
+    // arrange
+    inSession();
+    login("user@ucsb.edu", "ROLE_USER", "ROLE_MEMBER");
+    grantedAuthoritiesService.getRoles();
+    GrantedAuthoritiesService.SessionAuthorities ours = (GrantedAuthoritiesService.SessionAuthorities) request
+        .getSession().getAttribute(GrantedAuthoritiesService.SESSION_ATTRIBUTE);
+    // as if worked out before the cached admin flags expired, with no user
+    // saved through this instance since, but made an admin through another
+    GrantedAuthoritiesService.SessionAuthorities old = new GrantedAuthoritiesService.SessionAuthorities(
+        ours.name(), ours.userChanges(), ours.authorities(), ours.roles(), ours.workedOutAt() - 60_000);
+    request.getSession().setAttribute(GrantedAuthoritiesService.SESSION_ATTRIBUTE, old);
+    when(userRepository.findAdminStatusByEmail("user@ucsb.edu")).thenReturn(Optional.of(adminStatus(true)));
+
+    // act
+    RoleSet roles = grantedAuthoritiesService.getRoles();
+    GrantedAuthoritiesService.SessionAuthorities kept = (GrantedAuthoritiesService.SessionAuthorities) request
+        .getSession().getAttribute(GrantedAuthoritiesService.SESSION_ATTRIBUTE);
+
+    // assert
+    assertTrue(roles.has(Role.ADMIN));
+    assertEquals(roles, kept.roles());
+    assertTrue(kept.workedOutAt() >= ours.workedOutAt());
+  }
+
+  @Test
+  void test_old_roles_that_have_not_changed_are_written_again() {
+    // arrange
+    inSession();
+    login("user@ucsb.edu", "ROLE_USER", "ROLE_MEMBER");
+    grantedAuthoritiesService.getRoles();
+    GrantedAuthoritiesService.SessionAuthorities ours = (GrantedAuthoritiesService.SessionAuthorities) request
+        .getSession().getAttribute(GrantedAuthoritiesService.SESSION_ATTRIBUTE);
+    // as written by an instance that has counted more users saved, a while ago
+    GrantedAuthoritiesService.SessionAuthorities old = new GrantedAuthoritiesService.SessionAuthorities(
+        ours.name(), ours.userChanges() + 100, ours.authorities(), ours.roles(), ours.workedOutAt() - 60_000);
+    request.getSession().setAttribute(GrantedAuthoritiesService.SESSION_ATTRIBUTE, old);
+
+    // act
+    RoleSet roles = grantedAuthoritiesService.getRoles();
+    GrantedAuthoritiesService.SessionAuthorities kept = (GrantedAuthoritiesService.SessionAuthorities) request
+        .getSession().getAttribute(GrantedAuthoritiesService.SESSION_ATTRIBUTE);
+
+    // assert
+    assertEquals(ours.roles(), roles);
+    assertEquals(old.userChanges(), kept.userChanges());
+    assertTrue(kept.workedOutAt() >= ours.workedOutAt());
+  }
+
+  @Test
+  void test_roles_are_worked_out_on_every_call_without_a_session() {
+    // arrange
+    login("user@ucsb.edu", "ROLE_USER", "ROLE_MEMBER");
+
+    // act
+    grantedAuthoritiesService.getRoles();
+    grantedAuthoritiesService.getRoles();
+
+    // assert
+    verify(userRepository, times(2)).findAdminStatusByEmail("user@ucsb.edu");
+  }
+
+  @Test
+  void test_roles_of_a_session_token_are_those_signed_into_it() {
+    // arrange
+    inSession();
+    DefaultOAuth2User principal = new DefaultOAuth2User(Set.of(new SimpleGrantedAuthority("ROLE_USER")),
+        Map.of("sub", "sub-1", "uid", 7L, "email", "admin@ucsb.edu"), "sub");
+    SecurityContextHolder.getContext().setAuthentication(
+        new SessionTokenService.SessionTokenAuthentication(principal, "google", RoleSet.NONE.with(Role.USER)));
+
+    // act
+    RoleSet roles = grantedAuthoritiesService.getRoles();
+
+    // assert: not made an admin by app.admin.emails, as that was looked at on login
+    assertEquals(RoleSet.NONE.with(Role.USER), roles);
+    assertEquals(Set.of(new SimpleGrantedAuthority("ROLE_USER")), grantedAuthoritiesService.getGrantedAuthorities());
+    verify(userRepository, times(0)).findAdminStatusByEmail("admin@ucsb.edu");
+  }
+
+  @Test
+  void test_roles_of_nobody() {
+    assertEquals(RoleSet.NONE, grantedAuthoritiesService.getRoles());
+    assertEquals(Set.of(), grantedAuthoritiesService.getGrantedAuthorities());
+  }
 }
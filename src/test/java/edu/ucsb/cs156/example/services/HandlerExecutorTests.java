@@ -0,0 +1,92 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import edu.ucsb.cs156.example.errors.ServerBusyException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class HandlerExecutorTests {
+
+  MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  @AfterEach
+  void cleanup() {
+    SecurityContextHolder.clearContext();
+  }
+
+  @Test
+  void test_inline_runs_on_the_calling_thread() {
+    HandlerExecutor executor = HandlerExecutor.inline();
+
+    CompletableFuture<String> result = executor.supply(() -> Thread.currentThread().getName());
+
+    assertTrue(result.isDone());
+    assertEquals(Thread.currentThread().getName(), result.join());
+  }
+
+  @Test
+  void test_inline_failures_complete_the_future() {
+    HandlerExecutor executor = HandlerExecutor.inline();
+
+    CompletableFuture<String> result = executor.supply(() -> {
+      throw new IllegalStateException("fail");
+    });
+
+    assertTrue(result.isCompletedExceptionally());
+    CompletionException e = assertThrows(CompletionException.class, result::join);
+    assertTrue(e.getCause() instanceof IllegalStateException);
+  }
+
+  @Test
+  void test_pooled_runs_on_a_handler_thread_as_the_same_user() throws Exception {
+    HandlerExecutor executor = HandlerExecutor.pooled(2, 10, meterRegistry);
+    Authentication user = new TestingAuthenticationToken("user", null, "ROLE_USER");
+    SecurityContextHolder.getContext().setAuthentication(user);
+
+    String thread = executor.supply(() -> Thread.currentThread().getName()).join();
+    Authentication authentication = executor.supply(() -> SecurityContextHolder.getContext().getAuthentication()).join();
+
+    assertTrue(thread.startsWith("handler-"), thread);
+    assertEquals(user, authentication);
+    assertEquals(2.0, meterRegistry.get("executor.pool.max").tags("name", "handlers").gauge().value());
+    executor.destroy();
+  }
+
+  @Test
+  void test_pooled_refuses_work_when_the_queue_is_full() throws Exception {
+    HandlerExecutor executor = HandlerExecutor.pooled(1, 1, meterRegistry);
+    CountDownLatch release = new CountDownLatch(1);
+    CountDownLatch running = new CountDownLatch(1);
+
+    CompletableFuture<String> first = executor.supply(() -> {
+      running.countDown();
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return "first";
+    });
+    running.await();
+    CompletableFuture<String> second = executor.supply(() -> "second");
+
+    assertThrows(ServerBusyException.class, () -> executor.supply(() -> "third"));
+    release.countDown();
+    assertEquals("first", first.join());
+    assertEquals("second", second.join());
+    executor.destroy();
+  }
+}
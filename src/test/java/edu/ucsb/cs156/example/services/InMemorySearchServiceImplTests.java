@@ -0,0 +1,104 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import edu.ucsb.cs156.example.entities.Park;
+import edu.ucsb.cs156.example.entities.Restaurant;
+import edu.ucsb.cs156.example.entities.Schools;
+import edu.ucsb.cs156.example.models.SearchHit;
+import edu.ucsb.cs156.example.repositories.ParkRepository;
+import edu.ucsb.cs156.example.repositories.RestaurantRepository;
+import edu.ucsb.cs156.example.repositories.SchoolsRepository;
+
+// Checks that the index is loaded from the tables, and that changes reach
+// it when, and only when, their transaction commits.
+
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class InMemorySearchServiceImplTests {
+
+  @Autowired
+  AutowireCapableBeanFactory beanFactory;
+
+  @Autowired
+  RestaurantRepository restaurantRepository;
+
+  @Autowired
+  ParkRepository parkRepository;
+
+  @Autowired
+  SchoolsRepository schoolsRepository;
+
+  @Autowired
+  PlatformTransactionManager transactionManager;
+
+  // a new instance for each test, so that each one loads its own index
+  InMemorySearchServiceImpl searchService;
+
+  @BeforeEach
+  void setup() {
+    searchService = new InMemorySearchServiceImpl();
+    beanFactory.autowireBean(searchService);
+  }
+
+  @AfterEach
+  void cleanup() {
+    restaurantRepository.deleteAll();
+    parkRepository.deleteAll();
+    schoolsRepository.deleteAll();
+  }
+
+  private List<String> search(String query) {
+    return searchService.search(query, PageRequest.of(0, 20)).getContent().stream().map(SearchHit::name).toList();
+  }
+
+  @Test
+  void test_the_first_search_loads_the_tables() {
+    restaurantRepository.save(Restaurant.builder().name("Taco Bell").cuisine("Mexican").build());
+    parkRepository.save(Park.builder().name("Mexican Hat Park").state("Utah").acres(10).build());
+    schoolsRepository.save(Schools.builder().name("Goleta Valley").district("Santa Barbara Unified").gradeRange("7-8").build());
+
+    assertEquals(List.of("Mexican Hat Park", "Taco Bell"), search("mexican"));
+    assertEquals(List.of("Goleta Valley"), search("santa barbara"));
+  }
+
+  @Test
+  void test_changes_are_applied_when_they_commit() {
+    search("anything");
+    TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+
+    Park park = transaction.execute(status -> {
+      Park saved = parkRepository.save(Park.builder().name("Zion").state("Utah").acres(146597).build());
+      searchService.update(saved);
+      // not yet committed
+      assertEquals(List.of(), search("zion"));
+      return saved;
+    });
+    assertEquals(List.of("Zion"), search("zion"));
+
+    transaction.executeWithoutResult(status -> {
+      parkRepository.deleteById(park.getId());
+      searchService.remove(SearchService.PARK, park.getId());
+      status.setRollbackOnly();
+    });
+    assertEquals(List.of("Zion"), search("zion"));
+
+    // outside a transaction, at once
+    searchService.remove(SearchService.PARK, park.getId());
+    assertEquals(List.of(), search("zion"));
+  }
+}
@@ -0,0 +1,76 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import edu.ucsb.cs156.example.entities.TableVersion;
+import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
+import edu.ucsb.cs156.example.repositories.TableVersionRepository;
+import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsRepository;
+
+class NearestDiningCommonsServiceTests {
+
+  UCSBDiningCommons ortega = UCSBDiningCommons.builder().code("ortega").latitude(34.4109).longitude(-119.8470).build();
+  UCSBDiningCommons carrillo = UCSBDiningCommons.builder().code("carrillo").latitude(34.4095).longitude(-119.8525).build();
+  UCSBDiningCommons dlg = UCSBDiningCommons.builder().code("de-la-guerra").latitude(34.4093).longitude(-119.8456).build();
+
+  NearestDiningCommonsService service;
+
+  @BeforeEach
+  void setup() {
+    service = new NearestDiningCommonsService();
+    service.ucsbDiningCommonsRepository = mock(UCSBDiningCommonsRepository.class);
+    service.tableVersionRepository = mock(TableVersionRepository.class);
+  }
+
+  private static Optional<TableVersion> version(long version) {
+    return Optional.of(new TableVersion("ucsbdiningcommons", version, Instant.parse("2023-05-01T10:15:30Z")));
+  }
+
+  private List<String> nearest(int k) {
+    return service.nearest(34.4100, -119.8480, k).stream().map(n -> n.item().getCode()).toList();
+  }
+
+  @Test
+  void test_index_is_built_once_per_table_version() {
+    when(service.tableVersionRepository.findById("ucsbdiningcommons")).thenReturn(version(1));
+    when(service.ucsbDiningCommonsRepository.findAll()).thenReturn(List.of(ortega, carrillo, dlg));
+
+    assertEquals(List.of("ortega", "de-la-guerra"), nearest(2));
+    assertEquals(List.of("ortega", "de-la-guerra", "carrillo"), nearest(5));
+
+    verify(service.ucsbDiningCommonsRepository, times(1)).findAll();
+  }
+
+  @Test
+  void test_index_is_rebuilt_after_a_write() {
+    when(service.tableVersionRepository.findById("ucsbdiningcommons")).thenReturn(version(1), version(2));
+    when(service.ucsbDiningCommonsRepository.findAll()).thenReturn(List.of(ortega, carrillo), List.of(carrillo));
+
+    assertEquals(List.of("ortega"), nearest(1));
+    assertEquals(List.of("carrillo"), nearest(1));
+
+    verify(service.ucsbDiningCommonsRepository, times(2)).findAll();
+  }
+
+  @Test
+  void test_index_is_rebuilt_every_time_without_a_table_version() {
+    when(service.tableVersionRepository.findById("ucsbdiningcommons")).thenReturn(Optional.empty());
+    when(service.ucsbDiningCommonsRepository.findAll()).thenReturn(List.of(ortega));
+
+    nearest(1);
+    nearest(1);
+
+    verify(service.ucsbDiningCommonsRepository, times(2)).findAll();
+  }
+}
@@ -0,0 +1,154 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+
+import edu.ucsb.cs156.example.models.SearchHit;
+
+class SearchIndexTests {
+
+  private static final PageRequest FIRST_PAGE = PageRequest.of(0, 20);
+
+  private static SearchHit restaurant(long id, String name, String cuisine) {
+    return new SearchHit(SearchService.RESTAURANT, id, name, cuisine, 0);
+  }
+
+  private static SearchHit park(long id, String name, String state) {
+    return new SearchHit(SearchService.PARK, id, name, state, 0);
+  }
+
+  private static SearchIndex index(SearchHit... documents) {
+    SearchIndex index = new SearchIndex();
+    for (SearchHit document : documents) {
+      index.update(document);
+    }
+    return index;
+  }
+
+  private static List<String> names(Page<SearchHit> hits) {
+    return hits.getContent().stream().map(SearchHit::name).toList();
+  }
+
+  @Test
+  void test_exact_words_match_in_any_case() {
+    SearchIndex index = index(restaurant(1, "Taco Bell", "Mexican"), restaurant(2, "Pizza Hut", "Italian"));
+
+    Page<SearchHit> hits = index.search("TACO", FIRST_PAGE);
+
+    assertEquals(List.of("Taco Bell"), names(hits));
+    assertEquals(SearchIndex.EXACT, hits.getContent().get(0).score());
+    assertEquals(SearchService.RESTAURANT, hits.getContent().get(0).type());
+    assertEquals(1L, hits.getContent().get(0).id());
+  }
+
+  @Test
+  void test_only_the_last_word_matches_as_a_prefix() {
+    SearchIndex index = index(restaurant(1, "Taco Bell", "Mexican"));
+
+    assertEquals(List.of("Taco Bell"), names(index.search("taco be", FIRST_PAGE)));
+    assertEquals(List.of(), names(index.search("ta bell", FIRST_PAGE)));
+    // "be" is 2 of the 4 letters of "bell"
+    assertEquals(SearchIndex.EXACT + SearchIndex.PREFIX * 2 / 4,
+        index.search("taco be", FIRST_PAGE).getContent().get(0).score(), 1e-9);
+  }
+
+  @Test
+  void test_one_typo_is_corrected() {
+    SearchIndex index = index(park(1, "Yosemite National Park", "California"));
+
+    // changed, dropped, added, swapped
+    for (String query : List.of("yosemote", "yosmite", "yosemmite", "yoesmite")) {
+      assertEquals(List.of("Yosemite National Park"), names(index.search(query, FIRST_PAGE)), query);
+    }
+    assertEquals(List.of(), names(index.search("yosmote", FIRST_PAGE)));
+    // too short to correct
+    assertEquals(List.of(), names(index.search("prk", FIRST_PAGE)));
+  }
+
+  @Test
+  void test_every_word_must_match() {
+    SearchIndex index = index(park(1, "Yosemite National Park", "California"), park(2, "Zion National Park", "Utah"));
+
+    assertEquals(List.of("Yosemite National Park", "Zion National Park"), names(index.search("national", FIRST_PAGE)));
+    assertEquals(List.of("Zion National Park"), names(index.search("national utah", FIRST_PAGE)));
+    assertEquals(List.of(), names(index.search("national nevada", FIRST_PAGE)));
+  }
+
+  @Test
+  void test_matches_in_the_name_rank_above_matches_in_the_detail() {
+    SearchIndex index = index(restaurant(1, "Mexican Grill", "Californian"), restaurant(2, "Taco Bell", "Mexican"));
+
+    Page<SearchHit> hits = index.search("mexican", FIRST_PAGE);
+
+    assertEquals(List.of("Mexican Grill", "Taco Bell"), names(hits));
+    assertEquals(SearchIndex.EXACT * SearchIndex.DETAIL, hits.getContent().get(1).score());
+  }
+
+  @Test
+  void test_update_replaces_and_remove_removes() {
+    SearchIndex index = index(restaurant(1, "Taco Bell", "Mexican"));
+
+    index.update(restaurant(1, "Pizza Hut", "Italian"));
+    assertEquals(List.of(), names(index.search("taco", FIRST_PAGE)));
+    assertEquals(List.of("Pizza Hut"), names(index.search("pizza", FIRST_PAGE)));
+    assertEquals(1, index.size());
+
+    // the same id with another type is another document
+    index.update(park(1, "Pizza Park", "Nevada"));
+    assertEquals(2, index.search("pizza", FIRST_PAGE).getTotalElements());
+
+    index.remove(SearchService.RESTAURANT, 1);
+    assertEquals(List.of("Pizza Park"), names(index.search("pizza", FIRST_PAGE)));
+    assertEquals(1, index.size());
+    index.remove(SearchService.RESTAURANT, 1);
+    assertEquals(1, index.size());
+  }
+
+  @Test
+  void test_pages_and_total() {
+    SearchIndex index = new SearchIndex();
+    for (int i = 0; i < 45; i++) {
+      index.update(park(i, "Park %02d".formatted(i), "Utah"));
+    }
+
+    Page<SearchHit> second = index.search("park", PageRequest.of(1, 20));
+    Page<SearchHit> past = index.search("park", PageRequest.of(3, 20));
+
+    assertEquals(45, second.getTotalElements());
+    assertEquals(20, second.getContent().size());
+    assertEquals("Park 20", second.getContent().get(0).name());
+    assertEquals(List.of(), past.getContent());
+    assertEquals(List.of(), index.search("", FIRST_PAGE).getContent());
+  }
+
+  @Test
+  void test_the_index_is_compacted_when_mostly_dead() {
+    SearchIndex index = new SearchIndex();
+    for (int i = 0; i < 3 * SearchIndex.COMPACT_MIN_DEAD; i++) {
+      index.update(park(i % 10, "Park " + i, "Utah"));
+    }
+
+    assertEquals(10, index.size());
+    assertEquals(10, index.search("park", FIRST_PAGE).getTotalElements());
+    assertEquals(List.of("Park 29999"), names(index.search("park 29999", FIRST_PAGE)));
+  }
+
+  @Test
+  void test_oneTypoApart() {
+    assertTrue(SearchIndex.oneTypoApart("bell", "belt"));
+    assertTrue(SearchIndex.oneTypoApart("bell", "bel"));
+    assertTrue(SearchIndex.oneTypoApart("bel", "bell"));
+    assertTrue(SearchIndex.oneTypoApart("bell", "blel"));
+    assertFalse(SearchIndex.oneTypoApart("bell", "bell"));
+    assertFalse(SearchIndex.oneTypoApart("bell", "ball!"));
+    assertFalse(SearchIndex.oneTypoApart("bell", "lleb"));
+    assertFalse(SearchIndex.oneTypoApart("bell", "be"));
+  }
+}
@@ -0,0 +1,125 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+import org.springframework.security.oauth2.core.endpoint.OAuth2AuthorizationRequest;
+import org.springframework.security.oauth2.core.endpoint.OAuth2ParameterNames;
+import org.springframework.security.oauth2.core.user.DefaultOAuth2User;
+
+import edu.ucsb.cs156.example.models.RoleSet;
+import edu.ucsb.cs156.example.models.RoleSet.Role;
+import edu.ucsb.cs156.example.services.SessionTokenService.SessionTokenAuthentication;
+
+class SessionTokenServiceTests {
+
+  static final byte[] SECRET = "a secret of at least 32 bytes!!!".getBytes(StandardCharsets.UTF_8);
+  static final Instant NOW = Instant.parse("2023-05-01T12:00:00Z");
+
+  SessionTokenService sessionTokenService = service(SECRET, NOW);
+
+  private static SessionTokenService service(byte[] secret, Instant now) {
+    return new SessionTokenService(secret, Duration.ofHours(8), Clock.fixed(now, ZoneOffset.UTC));
+  }
+
+  private static OAuth2AuthenticationToken login() {
+    DefaultOAuth2User principal = new DefaultOAuth2User(Set.of(new SimpleGrantedAuthority("ROLE_USER")),
+        Map.of("sub", "sub-1", "email", "user@ucsb.edu", "name", "User 1"), "sub");
+    return new OAuth2AuthenticationToken(principal, principal.getAuthorities(), "google");
+  }
+
+  private static OAuth2AuthorizationRequest authorizationRequest() {
+    return OAuth2AuthorizationRequest.authorizationCode()
+        .authorizationUri("https://accounts.google.com/o/oauth2/v2/auth")
+        .clientId("client-id")
+        .redirectUri("http://localhost:8080/login/oauth2/code/google")
+        .scopes(Set.of("email", "profile"))
+        .state("state-1")
+        .additionalParameters(Map.of("prompt", "select_account"))
+        .attributes(Map.of(OAuth2ParameterNames.REGISTRATION_ID, "google"))
+        .authorizationRequestUri("https://accounts.google.com/o/oauth2/v2/auth?response_type=code&state=state-1")
+        .build();
+  }
+
+  @Test
+  void test_session_token_stands_for_the_login() {
+    // arrange
+    RoleSet roles = RoleSet.NONE.with(Role.USER).with(Role.MEMBER);
+
+    // act
+    String token = sessionTokenService.issue(login(), 7L, "user@ucsb.edu", roles);
+    SessionTokenAuthentication authentication = service(SECRET, NOW.plus(Duration.ofHours(7))).authentication(token);
+
+    // assert
+    assertEquals("sub-1", authentication.getName());
+    assertEquals("google", authentication.getAuthorizedClientRegistrationId());
+    assertEquals(7L, authentication.getPrincipal().<Long>getAttribute("uid"));
+    assertEquals("user@ucsb.edu", authentication.getPrincipal().getAttribute("email"));
+    assertEquals(roles, authentication.getRoles());
+    assertEquals(Set.of(new SimpleGrantedAuthority("ROLE_USER"), new SimpleGrantedAuthority("ROLE_MEMBER")),
+        Set.copyOf(authentication.getAuthorities()));
+  }
+
+  @Test
+  void test_expired_session_tokens_are_rejected() {
+    String token = sessionTokenService.issue(login(), 7L, "user@ucsb.edu", RoleSet.NONE.with(Role.USER));
+
+    assertNull(service(SECRET, NOW.plus(Duration.ofHours(8)).plusSeconds(1)).authentication(token));
+  }
+
+  @Test
+  void test_forged_session_tokens_are_rejected() {
+    // arrange
+    String token = sessionTokenService.issue(login(), 7L, "user@ucsb.edu", RoleSet.NONE.with(Role.USER));
+    String admin = service("another secret of 32 bytes or more".getBytes(StandardCharsets.UTF_8), NOW)
+        .issue(login(), 7L, "user@ucsb.edu", RoleSet.NONE.with(Role.USER).with(Role.ADMIN));
+    String[] parts = token.split("\\.");
+    String[] adminParts = admin.split("\\.");
+
+    // act and assert
+    assertNull(sessionTokenService.authentication(admin));
+    assertNull(sessionTokenService.authentication(parts[0] + "." + adminParts[1] + "." + parts[2]));
+    assertNull(sessionTokenService.authentication(parts[0] + "." + parts[1] + "."));
+    assertNull(sessionTokenService.authentication("not a token"));
+  }
+
+  @Test
+  void test_authorization_request_round_trip() {
+    // arrange
+    OAuth2AuthorizationRequest request = authorizationRequest();
+
+    // act
+    OAuth2AuthorizationRequest loaded = sessionTokenService.authorizationRequest(sessionTokenService.issue(request));
+
+    // assert
+    assertEquals(request.getAuthorizationUri(), loaded.getAuthorizationUri());
+    assertEquals(request.getClientId(), loaded.getClientId());
+    assertEquals(request.getRedirectUri(), loaded.getRedirectUri());
+    assertEquals(request.getScopes(), loaded.getScopes());
+    assertEquals(request.getState(), loaded.getState());
+    assertEquals(request.getAdditionalParameters(), loaded.getAdditionalParameters());
+    assertEquals(request.getAttributes(), loaded.getAttributes());
+    assertEquals(request.getAuthorizationRequestUri(), loaded.getAuthorizationRequestUri());
+  }
+
+  @Test
+  void test_tokens_are_only_good_for_what_they_were_issued_for() {
+    String sessionToken = sessionTokenService.issue(login(), 7L, "user@ucsb.edu", RoleSet.NONE.with(Role.USER));
+    String requestToken = sessionTokenService.issue(authorizationRequest());
+
+    assertNull(sessionTokenService.authorizationRequest(sessionToken));
+    assertNull(sessionTokenService.authentication(requestToken));
+    assertNull(service(SECRET, NOW.plus(Duration.ofMinutes(6))).authorizationRequest(requestToken));
+  }
+}
@@ -0,0 +1,86 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class SpatialIndexTests {
+
+  record Place(String name, Double latitude, Double longitude) {
+  }
+
+  private static SpatialIndex<Place> index(List<Place> places) {
+    return new SpatialIndex<>(places, Place::latitude, Place::longitude);
+  }
+
+  // haversine, computed directly
+  private static double meters(Place place, double latitude, double longitude) {
+    double dLat = Math.toRadians(place.latitude() - latitude);
+    double dLon = Math.toRadians(place.longitude() - longitude);
+    double a = Math.pow(Math.sin(dLat / 2), 2)
+        + Math.cos(Math.toRadians(latitude)) * Math.cos(Math.toRadians(place.latitude())) * Math.pow(Math.sin(dLon / 2), 2);
+    return 2 * Math.asin(Math.sqrt(a)) * SpatialIndex.EARTH_RADIUS_METERS;
+  }
+
+  @Test
+  void test_nearest_matches_a_full_scan() {
+    Random random = new Random(156);
+    List<Place> places = new ArrayList<>();
+    for (int i = 0; i < 2000; i++) {
+      places.add(new Place("p" + i, random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180));
+    }
+    SpatialIndex<Place> index = index(places);
+
+    double[][] queries = { { 34.41, -119.85 }, { 89.9, 0 }, { -89.9, 45 }, { 0, 179.99 }, { 0, -179.99 }, { 12.3, 45.6 } };
+    for (double[] q : queries) {
+      List<Place> expected = places.stream()
+          .sorted(Comparator.comparingDouble(p -> meters(p, q[0], q[1])))
+          .limit(10)
+          .toList();
+
+      List<SpatialIndex.Neighbor<Place>> nearest = index.nearest(q[0], q[1], 10);
+
+      assertEquals(expected, nearest.stream().map(SpatialIndex.Neighbor::item).toList());
+      for (SpatialIndex.Neighbor<Place> n : nearest) {
+        assertEquals(meters(n.item(), q[0], q[1]), n.distanceMeters(), 0.01);
+      }
+    }
+  }
+
+  @Test
+  void test_nearest_skips_places_without_a_location() {
+    Place ortega = new Place("ortega", 34.4109, -119.8470);
+    Place carrillo = new Place("carrillo", 34.4095, -119.8525);
+    SpatialIndex<Place> index = index(List.of(ortega, new Place("nowhere", null, -119.0), carrillo,
+        new Place("elsewhere", 34.0, null)));
+
+    List<SpatialIndex.Neighbor<Place>> nearest = index.nearest(34.4100, -119.8480, 5);
+
+    assertEquals(2, index.size());
+    assertEquals(List.of(ortega, carrillo), nearest.stream().map(SpatialIndex.Neighbor::item).toList());
+  }
+
+  @Test
+  void test_nearest_across_the_antimeridian() {
+    Place east = new Place("east", 0.0, 179.9);
+    Place west = new Place("west", 0.0, -170.0);
+    SpatialIndex<Place> index = index(List.of(east, west));
+
+    List<SpatialIndex.Neighbor<Place>> nearest = index.nearest(0, -179.9, 1);
+
+    assertEquals(east, nearest.get(0).item());
+    // 0.2 degrees of the equator
+    assertEquals(22239, nearest.get(0).distanceMeters(), 1);
+  }
+
+  @Test
+  void test_nearest_of_nothing() {
+    assertEquals(List.of(), index(List.of()).nearest(0, 0, 3));
+    assertEquals(List.of(), index(List.of(new Place("p", 0.0, 0.0))).nearest(0, 0, 0));
+  }
+}
@@ -0,0 +1,129 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+import java.util.Optional;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import edu.ucsb.cs156.example.config.HibernateCacheConfig;
+import edu.ucsb.cs156.example.entities.TableVersion;
+import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
+import edu.ucsb.cs156.example.repositories.TableVersionRepository;
+import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsRepository;
+
+// Checks that a dining commons page cached by this instance is not used
+// once the table's version has changed.  Writes made through another
+// instance are made here with plain JDBC, which Hibernate does not see.
+// Each repository call runs and commits in its own transaction, as it
+// does from the controllers.
+
+@DataJpaTest
+@Import({ HibernateCacheConfig.class, TableCacheService.class })
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class TableCacheServiceTests {
+
+  @Autowired
+  UCSBDiningCommonsRepository ucsbDiningCommonsRepository;
+
+  @Autowired
+  TableVersionRepository tableVersionRepository;
+
+  @Autowired
+  TableCacheService tableCacheService;
+
+  @Autowired
+  JdbcTemplate jdbcTemplate;
+
+  @Autowired
+  EntityManagerFactory entityManagerFactory;
+
+  Statistics statistics;
+
+  @BeforeEach
+  void setup() {
+    ucsbDiningCommonsRepository.save(UCSBDiningCommons.builder().code("ortega").name("Ortega").build());
+    statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    statistics.clear();
+  }
+
+  @AfterEach
+  void cleanup() {
+    ucsbDiningCommonsRepository.deleteAll();
+  }
+
+  // as GET /all reads it, after checking the version
+  private List<String> allNames() {
+    Optional<TableVersion> version = tableVersionRepository.findById("ucsbdiningcommons");
+    tableCacheService.checkVersion(version, UCSBDiningCommons.class);
+    return ucsbDiningCommonsRepository.findByCodeGreaterThanOrderByCodeAsc("", PageRequest.ofSize(10)).stream()
+        .map(UCSBDiningCommons::getName).toList();
+  }
+
+  // a write through another instance, and its version bump
+  private void renameElsewhere(String name) {
+    jdbcTemplate.update("update ucsbdiningcommons set name = ?, version = version + 1 where code = 'ortega'", name);
+    jdbcTemplate.update("update table_versions set version = version + 1, last_modified = current_timestamp "
+        + "where table_name = 'ucsbdiningcommons'");
+  }
+
+  @Test
+  void test_page_is_cached_while_the_version_is_the_same() {
+    // act
+    List<String> first = allNames();
+    List<String> second = allNames();
+
+    // assert
+    assertEquals(List.of("Ortega"), first);
+    assertEquals(List.of("Ortega"), second);
+    assertEquals(1, statistics.getQueryCacheHitCount());
+  }
+
+  @Test
+  void test_page_is_read_again_once_the_version_changes() {
+    // arrange
+    List<String> before = allNames();
+    renameElsewhere("Ortega Commons");
+
+    // act
+    List<String> afterFirstChange = allNames();
+    renameElsewhere("Ortega Dining Commons");
+    List<String> afterSecondChange = allNames();
+    List<String> cachedAgain = allNames();
+
+    // assert
+    assertEquals(List.of("Ortega"), before);
+    assertEquals(List.of("Ortega Commons"), afterFirstChange);
+    assertEquals(List.of("Ortega Dining Commons"), afterSecondChange);
+    assertEquals(List.of("Ortega Dining Commons"), cachedAgain);
+    assertEquals(3, statistics.getQueryCacheMissCount());
+    assertEquals(1, statistics.getQueryCacheHitCount());
+  }
+
+  @Test
+  void test_entities_are_read_again_once_the_version_changes() {
+    // arrange
+    ucsbDiningCommonsRepository.findById("ortega");
+    renameElsewhere("Ortega Commons");
+
+    // act
+    tableCacheService.checkVersion(tableVersionRepository.findById("ucsbdiningcommons"), UCSBDiningCommons.class);
+
+    // assert
+    assertEquals("Ortega Commons", ucsbDiningCommonsRepository.findById("ortega").get().getName());
+  }
+}
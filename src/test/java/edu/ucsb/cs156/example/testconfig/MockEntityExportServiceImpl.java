@@ -0,0 +1,29 @@
+package edu.ucsb.cs156.example.testconfig;
+
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import edu.ucsb.cs156.example.services.EntityExportService;
+
+// Same output as EntityExportServiceImpl, but without the transaction and
+// entity manager, which are not available in @WebMvcTest tests.
+
+@Service("entityExport")
+public class MockEntityExportServiceImpl extends EntityExportService {
+
+  public <T> ResponseEntity<StreamingResponseBody> ndjson(Supplier<Stream<T>> rows) {
+    StreamingResponseBody body = out -> {
+      try (Stream<T> stream = rows.get()) {
+        writeNdjson(stream, out, row -> {});
+      }
+    };
+    return ResponseEntity.ok()
+        .contentType(MediaType.APPLICATION_NDJSON)
+        .body(body);
+  }
+}
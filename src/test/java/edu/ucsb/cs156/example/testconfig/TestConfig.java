@@ -2,9 +2,12 @@ package edu.ucsb.cs156.example.testconfig;
 
 import org.springframework.boot.test.context.TestConfiguration;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Lazy;
 
 import edu.ucsb.cs156.example.services.CurrentUserService;
+import edu.ucsb.cs156.example.services.EntityExportService;
 import edu.ucsb.cs156.example.services.GrantedAuthoritiesService;
+import edu.ucsb.cs156.example.services.HandlerExecutor;
 
 @TestConfiguration
 public class TestConfig {
@@ -18,4 +21,19 @@ public class TestConfig {
     public GrantedAuthoritiesService grantedAuthoritiesService() {
         return new GrantedAuthoritiesService();
     }
+
+    // the handlers that return a CompletableFuture run on the test's
+    // thread, and complete before perform returns (see asyncDispatch)
+    @Bean
+    public HandlerExecutor handlerExecutor() {
+        return HandlerExecutor.inline();
+    }
+
+    // lazy, because it needs the ObjectMapper, which only the
+    // @WebMvcTest contexts provide
+    @Bean
+    @Lazy
+    public EntityExportService entityExportService() {
+        return new MockEntityExportServiceImpl();
+    }
 }